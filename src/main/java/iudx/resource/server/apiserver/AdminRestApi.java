@@ -81,6 +81,11 @@ public final class AdminRestApi {
         .handler(AuthHandler.create(vertx, api))
         .handler(this::deleteUniqueAttribute);
 
+    router
+        .delete(SEARCH_CACHE)
+        .handler(AuthHandler.create(vertx, api))
+        .handler(this::invalidateSearchCache);
+
     return router;
   }
 
@@ -107,7 +112,7 @@ public final class AdminRestApi {
         pgHandler -> {
           if (pgHandler.succeeded()) {
             rmqBrokerService.publishMessage(
-                rmqMessage,
+                BroadcastSequence.stamp(TOKEN_INVALID_EX, rmqMessage),
                 TOKEN_INVALID_EX,
                 TOKEN_INVALID_EX_ROUTING_KEY,
                 rmqHandler -> {
@@ -165,7 +170,7 @@ public final class AdminRestApi {
         pghandler -> {
           if (pghandler.succeeded()) {
             rmqBrokerService.publishMessage(
-                rmqMessage,
+                BroadcastSequence.stamp(UNIQUE_ATTR_EX, rmqMessage),
                 UNIQUE_ATTR_EX,
                 UNIQUE_ATTR_EX_ROUTING_KEY,
                 rmqHandler -> {
@@ -221,7 +226,7 @@ public final class AdminRestApi {
         pghandler -> {
           if (pghandler.succeeded()) {
             rmqBrokerService.publishMessage(
-                rmqMessage,
+                BroadcastSequence.stamp(UNIQUE_ATTR_EX, rmqMessage),
                 UNIQUE_ATTR_EX,
                 UNIQUE_ATTR_EX_ROUTING_KEY,
                 rmqHandler -> {
@@ -271,7 +276,7 @@ public final class AdminRestApi {
         pghandler -> {
           if (pghandler.succeeded()) {
             rmqBrokerService.publishMessage(
-                rmqMessage,
+                BroadcastSequence.stamp(UNIQUE_ATTR_EX, rmqMessage),
                 UNIQUE_ATTR_EX,
                 UNIQUE_ATTR_EX_ROUTING_KEY,
                 rmqHandler -> {
@@ -302,6 +307,24 @@ public final class AdminRestApi {
         });
   }
 
+  /**
+   * Drop cached search results of a resource group, on every database verticle in the cluster.
+   * Used after data of the group was corrected or backfilled.
+   */
+  private void invalidateSearchCache(RoutingContext context) {
+    HttpServerResponse response = context.response();
+    String id = context.request().params().get("id");
+    if (id == null || id.isBlank()) {
+      handleResponse(response, BAD_REQUEST, BAD_REQUEST_URN);
+      return;
+    }
+    vertx
+        .eventBus()
+        .publish(SEARCH_CACHE_INVALIDATE_ADDRESS, new JsonObject().put(RESOURCE_GROUP, id));
+    Future.future(fu -> updateAuditTable(context));
+    handleResponse(response, SUCCESS, SUCCESS_URN);
+  }
+
   private void handleResponse(HttpServerResponse response, Response respObject) {
     ResponseUrn urn = fromCode(respObject.getType());
     handleResponse(response, respObject, urn.getMessage());
@@ -11,7 +11,6 @@ import static iudx.resource.server.common.HttpStatusCode.BAD_REQUEST;
 import static iudx.resource.server.common.HttpStatusCode.NOT_FOUND;
 import static iudx.resource.server.common.HttpStatusCode.UNAUTHORIZED;
 import static iudx.resource.server.common.ResponseUrn.*;
-import static iudx.resource.server.database.archives.Constants.ITEM_TYPES;
 import static iudx.resource.server.database.archives.Constants.TIME_LIMIT;
 import static iudx.resource.server.metering.util.Constants.DELEGATOR_ID;
 import static iudx.resource.server.metering.util.Constants.EPOCH_TIME;
@@ -22,6 +21,8 @@ import static iudx.resource.server.metering.util.Constants.TYPE_KEY;
 import io.netty.handler.codec.http.HttpConstants;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
@@ -58,6 +59,9 @@ import iudx.resource.server.common.Api;
 import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.archives.DatabaseService;
+import iudx.resource.server.database.archives.DatabaseServiceImpl;
+import iudx.resource.server.database.archives.SharedArchiveClient;
+import iudx.resource.server.database.elastic.EsSearchResponseStreamer;
 import iudx.resource.server.database.latest.LatestDataService;
 import iudx.resource.server.database.postgres.PostgresService;
 import iudx.resource.server.databroker.DataBrokerService;
@@ -71,7 +75,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -117,6 +120,9 @@ public class ApiServerVerticle extends AbstractVerticle {
   private CatalogueService catalogueService;
   private MeteringService meteringService;
   private DatabaseService database;
+  private boolean searchStreaming;
+  private boolean streamingUnavailableLogged;
+  private DatabaseServiceImpl streamingDatabase;
   private PostgresService postgresService;
   private DataBrokerService databroker;
   private ParamsValidator validator;
@@ -148,6 +154,7 @@ public class ApiServerVerticle extends AbstractVerticle {
     allowedHeaders.add(HEADER_ALLOW_ORIGIN);
     allowedHeaders.add(HEADER_PUBLIC_KEY);
     allowedHeaders.add(HEADER_RESPONSE_FILE_FORMAT);
+    allowedHeaders.add(HEADER_RESPONSE_FILE_COMPRESSION);
     allowedHeaders.add(HEADER_OPTIONS);
 
     Set<HttpMethod> allowedMethods = new HashSet<>();
@@ -424,7 +431,7 @@ public class ApiServerVerticle extends AbstractVerticle {
     databroker = DataBrokerService.createProxy(vertx, BROKER_SERVICE_ADDRESS);
     meteringService = MeteringService.createProxy(vertx, METERING_SERVICE_ADDRESS);
     latestDataService = LatestDataService.createProxy(vertx, LATEST_SEARCH_ADDRESS);
-    cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
+    cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
     managementApi = new ManagementApiImpl();
     subsService = new SubscriptionService();
     catalogueService = new CatalogueService(cacheService);
@@ -433,6 +440,13 @@ public class ApiServerVerticle extends AbstractVerticle {
     postgresService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
     encryptionService = EncryptionService.createProxy(vertx, ENCRYPTION_SERVICE_ADDRESS);
 
+    /* Stream search results straight from Elasticsearch instead of via the database service.
+     * Streamed responses are never materialised, so they bypass the search cache of the database
+     * verticle. Cursor searches never use it, so only encrypted searches still do. Streaming needs
+     * the Elasticsearch client shared by a database verticle deployed in this JVM, it is looked up
+     * on the first search since that verticle may be deployed after this one. */
+    searchStreaming = config().getBoolean("enableSearchStreaming", false);
+
     router
         .route(api.getAsyncPath() + "/*")
         .subRouter(new AsyncRestApi(vertx, router, api, timeLimitForAsync).init());
@@ -786,6 +800,11 @@ public class ApiServerVerticle extends AbstractVerticle {
                     if (params.contains("limit") && params.contains("offset")) {
                       json.put("limit", params.get("limit"));
                       json.put("offset", params.get("offset"));
+                    } else if (params.contains(NGSILDQUERY_CURSOR)) {
+                      json.put(NGSILDQUERY_CURSOR, params.get(NGSILDQUERY_CURSOR));
+                      if (params.contains("limit")) {
+                        json.put("limit", params.get("limit"));
+                      }
                     }
                     if (json.containsKey(IUDXQUERY_OPTIONS)
                         && JSON_COUNT.equalsIgnoreCase(json.getString(IUDXQUERY_OPTIONS))) {
@@ -857,6 +876,15 @@ public class ApiServerVerticle extends AbstractVerticle {
    */
   private void executeSearchQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
+    if (searchStreaming
+        && context.request().getHeader(HEADER_PUBLIC_KEY) == null
+        && !json.containsKey(NGSILDQUERY_CURSOR)) {
+      DatabaseServiceImpl streaming = getStreamingDatabase();
+      if (streaming != null) {
+        executeStreamingSearchQuery(streaming, context, json, response);
+        return;
+      }
+    }
     Future<JsonObject> searchDbFuture = database.search(json);
     searchDbFuture.onComplete(
         handler -> {
@@ -893,6 +921,81 @@ public class ApiServerVerticle extends AbstractVerticle {
         });
   }
 
+  /**
+   * Database service of this verticle around the Elasticsearch client shared in this JVM.
+   *
+   * @return the service, null when no database verticle of this JVM shares its client
+   */
+  private DatabaseServiceImpl getStreamingDatabase() {
+    if (streamingDatabase == null) {
+      SharedArchiveClient shared = SharedArchiveClient.get();
+      if (shared == null) {
+        if (!streamingUnavailableLogged) {
+          LOGGER.error("search streaming needs the database verticle in the same JVM");
+          streamingUnavailableLogged = true;
+        }
+        return null;
+      }
+      streamingDatabase =
+          new DatabaseServiceImpl(
+              shared.getClient(),
+              config().getString(TIME_LIMIT),
+              shared.getTenantPrefix(),
+              cacheService);
+    }
+    return streamingDatabase;
+  }
+
+  /**
+   * Execute a search query and copy the raw documents from DB into a chunked response.
+   *
+   * @param streaming database service of this verticle
+   * @param json valid json query
+   * @param response HttpServerResponse
+   */
+  private void executeStreamingSearchQuery(
+      DatabaseServiceImpl streaming,
+      RoutingContext context,
+      JsonObject json,
+      HttpServerResponse response) {
+    /* the search completes on a thread of the Elasticsearch client, write from this context */
+    Context verticleContext = vertx.getOrCreateContext();
+    Future<EsSearchResponseStreamer> searchDbFuture = streaming.searchStream(json);
+    searchDbFuture.onComplete(
+        handler ->
+            verticleContext.runOnContext(v -> writeSearchStream(context, response, handler)));
+  }
+
+  private void writeSearchStream(
+      RoutingContext context,
+      HttpServerResponse response,
+      AsyncResult<EsSearchResponseStreamer> handler) {
+    if (handler.failed()) {
+      LOGGER.error("Fail: Search Fail");
+      processBackendResponse(response, handler.cause().getMessage());
+      return;
+    }
+    LOGGER.info("Success: Search Success");
+    response
+        .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+        .setStatusCode(ResponseType.Ok.getCode())
+        .setChunked(true);
+    handler
+        .result()
+        .writeTo(response)
+        .onComplete(
+            writeHandler -> {
+              if (writeHandler.failed()) {
+                LOGGER.error("Fail: Search response streaming failed");
+                response.reset();
+                return;
+              }
+              response.end();
+              context.data().put(RESPONSE_SIZE, response.bytesWritten());
+              Future.future(fu -> updateAuditTable(context));
+            });
+  }
+
   private void executeLatestSearchQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
     latestDataService.getLatestData(
@@ -1035,26 +1138,11 @@ public class ApiServerVerticle extends AbstractVerticle {
     jsonObj.put(USER_ID, authInfo.getString(USER_ID));
     jsonObj.put(JSON_INSTANCEID, instanceId);
     String entities = jsonObj.getJsonArray("entities").getString(0);
-    JsonObject cacheJson = new JsonObject().put("key", entities).put("type", CATALOGUE_CACHE);
     HttpServerResponse response = routingContext.response();
-    cacheService
-        .get(cacheJson)
+    getCacheItem(entities)
         .onSuccess(
-            cacheServiceResult -> {
-              Set<String> type =
-                  new HashSet<String>(cacheServiceResult.getJsonArray("type").getList());
-              Set<String> itemTypeSet =
-                  type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-              itemTypeSet.retainAll(ITEM_TYPES);
-
-              String resourceGroup;
-              if (!itemTypeSet.contains("Resource")) {
-                resourceGroup = cacheServiceResult.getString("id");
-              } else {
-                resourceGroup = cacheServiceResult.getString("resourceGroup");
-              }
-              jsonObj.put("type", itemTypeSet.iterator().next());
-              jsonObj.put("resourcegroup", resourceGroup);
+            cacheItem -> {
+              jsonObj.mergeIn(cacheItem);
 
               Future<JsonObject> subsReq =
                   subsService.createSubscription(
@@ -1100,9 +1188,8 @@ public class ApiServerVerticle extends AbstractVerticle {
     JsonObject authInfo = (JsonObject) routingContext.data().get("authInfo");
     HttpServerResponse response = routingContext.response();
     String entities = requestJson.getJsonArray("entities").getString(0);
-    JsonObject cacheJson = new JsonObject().put("key", entities).put("type", CATALOGUE_CACHE);
 
-    getCacheItem(cacheJson)
+    getCacheItem(entities)
         .onSuccess(
             handler -> {
               requestJson.mergeIn(handler);
@@ -1732,34 +1819,14 @@ public class ApiServerVerticle extends AbstractVerticle {
     return promise.future();
   }
 
-  private Future<JsonObject> getCacheItem(JsonObject cacheJson) {
-    Promise<JsonObject> promise = Promise.promise();
-    JsonObject cacheResult = new JsonObject();
-    cacheService
-        .get(cacheJson)
-        .onSuccess(
-            cacheServiceResult -> {
-              Set<String> type =
-                  new HashSet<String>(cacheServiceResult.getJsonArray("type").getList());
-              Set<String> itemTypeSet =
-                  type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-              itemTypeSet.retainAll(ITEM_TYPES);
-              String resourceGroup;
-              if (!itemTypeSet.contains("Resource")) {
-                resourceGroup = cacheServiceResult.getString("id");
-              } else {
-                resourceGroup = cacheServiceResult.getString("resourceGroup");
-              }
-              cacheResult.put("type", itemTypeSet.iterator().next());
-              cacheResult.put("resourcegroup", resourceGroup);
-              promise.complete(cacheResult);
-            })
-        .onFailure(
-            fail -> {
-              LOGGER.debug("Failed");
-              promise.fail(fail.getMessage());
-            });
-
-    return promise.future();
+  private Future<JsonObject> getCacheItem(String id) {
+    return cacheService
+        .getCatalogueItem(id)
+        .map(
+            item ->
+                new JsonObject()
+                    .put("type", item.getKind())
+                    .put("resourcegroup", item.getGroupId()))
+        .onFailure(fail -> LOGGER.debug("Failed"));
   }
 }
@@ -10,7 +10,6 @@ import static iudx.resource.server.common.Constants.*;
 import static iudx.resource.server.common.HttpStatusCode.BAD_REQUEST;
 import static iudx.resource.server.common.ResponseUrn.BACKING_SERVICE_FORMAT_URN;
 import static iudx.resource.server.common.ResponseUrn.INVALID_PARAM_URN;
-import static iudx.resource.server.database.archives.Constants.ITEM_TYPES;
 import static iudx.resource.server.database.postgres.Constants.INSERT_S3_PENDING_SQL;
 
 import com.google.common.hash.Hashing;
@@ -36,24 +35,28 @@ import iudx.resource.server.apiserver.query.QueryMapper;
 import iudx.resource.server.apiserver.response.ResponseType;
 import iudx.resource.server.apiserver.service.CatalogueService;
 import iudx.resource.server.cache.CacheService;
-import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.common.Api;
 import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.async.AsyncService;
+import iudx.resource.server.database.async.AsyncStatusCache;
 import iudx.resource.server.database.async.util.QueryProgress;
 import iudx.resource.server.database.postgres.PostgresService;
 import iudx.resource.server.databroker.DataBrokerService;
 import iudx.resource.server.encryption.EncryptionService;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class AsyncRestApi {
 
   private static final Logger LOGGER = LogManager.getLogger(AsyncRestApi.class);
+  /** interval of the comments keeping an idle status stream open through proxies. */
+  private static final long STATUS_KEEPALIVE_MILLIS = TimeUnit.SECONDS.toMillis(15);
+  /** a status stream is ended after this long, the client reconnects if it still waits. */
+  private static final long STATUS_STREAM_MAX_MILLIS = TimeUnit.MINUTES.toMillis(30);
 
   private final Vertx vertx;
   private final Router router;
@@ -66,12 +69,14 @@ public class AsyncRestApi {
   private EncryptionService encryptionService;
   private Api api;
   private int timeLimitForAsync;
+  /** clients streaming the status of a search, by search id. */
+  private final Map<String, List<StatusStream>> statusStreams = new HashMap<>();
 
   AsyncRestApi(Vertx vertx, Router router, Api api, int timeLimitForAsync) {
     this.vertx = vertx;
     this.router = router;
     this.databroker = DataBrokerService.createProxy(vertx, BROKER_SERVICE_ADDRESS);
-    this.cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
+    this.cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
     this.catalogueService = new CatalogueService(cacheService);
     this.validator = new ParamsValidator(catalogueService);
     this.postgresService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
@@ -101,6 +106,10 @@ public class AsyncRestApi {
         .handler(this::handleAsyncStatusRequest)
         .failureHandler(validationsFailureHandler);
 
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(ASYNC_STATUS_ADDRESS, message -> pushAsyncStatus(message.body()));
+
     return this.router;
   }
 
@@ -139,6 +148,11 @@ public class AsyncRestApi {
             if (routingContext.request().getHeader(HEADER_RESPONSE_FILE_FORMAT) != null) {
               json.put("format", routingContext.request().getHeader(HEADER_RESPONSE_FILE_FORMAT));
             }
+            if (routingContext.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION) != null) {
+              json.put(
+                  HEADER_RESPONSE_FILE_COMPRESSION,
+                  routingContext.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION));
+            }
 
             Future<List<String>> filtersFuture =
                 catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
@@ -167,6 +181,7 @@ public class AsyncRestApi {
 
     String searchId = UUID.randomUUID().toString();
     String format = routingContext.request().getHeader(HEADER_RESPONSE_FILE_FORMAT);
+    String compression = routingContext.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION);
 
     StringBuilder insertQuery =
         new StringBuilder(
@@ -180,31 +195,18 @@ public class AsyncRestApi {
                 .replace("$7", json.toString()));
 
     String resourceId = json.getJsonArray("id").getString(0);
-    JsonObject cacheRequest = new JsonObject();
-    cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
-    cacheRequest.put("key", resourceId);
     cacheService
-        .get(cacheRequest)
+        .getCatalogueItem(resourceId)
         .onSuccess(
-            successHandler -> {
-              Set<String> type = new HashSet<String>(successHandler.getJsonArray("type").getList());
-              Set<String> itemTypeSet =
-                  type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-              itemTypeSet.retainAll(ITEM_TYPES);
-
-              String groupId;
-              if (!itemTypeSet.contains("Resource")) {
-                groupId = resourceId;
-              } else {
-                groupId = successHandler.getString("resourceGroup");
-              }
-              json.put("resourceGroup", groupId);
+            item -> {
+              json.put("resourceGroup", item.getGroupId());
               JsonObject rmqQueryMessage =
                   new JsonObject()
                       .put("searchId", searchId)
                       .put("requestId", requestId)
                       .put("user", sub)
                       .put(HEADER_RESPONSE_FILE_FORMAT, format)
+                      .put(HEADER_RESPONSE_FILE_COMPRESSION, compression)
                       .put("query", json)
                       .put(ROLE, authInfo.getString(ROLE))
                       .put(DRL, authInfo.getString(DRL))
@@ -214,6 +216,15 @@ public class AsyncRestApi {
                   insertQuery.toString(),
                   pgInsertHandler -> {
                     if (pgInsertHandler.succeeded()) {
+                      vertx
+                          .eventBus()
+                          .publish(
+                              ASYNC_STATUS_ADDRESS,
+                              new JsonObject()
+                                  .put(AsyncStatusCache.SEARCH_ID, searchId)
+                                  .put(AsyncStatusCache.USER_ID, sub)
+                                  .put("status", QueryProgress.SUBMITTED.toString())
+                                  .put(AsyncStatusCache.PROGRESS, 0.0));
                       databroker.publishMessage(
                           rmqQueryMessage,
                           "async-query",
@@ -280,6 +291,14 @@ public class AsyncRestApi {
 
     String searchId = request.getParam("searchID");
 
+    String accept = request.getHeader(HEADER_ACCEPT);
+    if (accept != null
+        && accept.contains(TEXT_EVENT_STREAM)
+        && request.getHeader(HEADER_PUBLIC_KEY) == null) {
+      streamAsyncStatus(response, sub, searchId);
+      return;
+    }
+
     asyncService.asyncStatus(
         sub,
         searchId,
@@ -314,6 +333,107 @@ public class AsyncRestApi {
         });
   }
 
+  /**
+   * Stream the status of an async search as server-sent events until the search is done: the
+   * current status first, then the status after each change published by the async service, each
+   * as the response of a status request. The stream is kept open with comments and ended after
+   * {@link #STATUS_STREAM_MAX_MILLIS}.
+   */
+  private void streamAsyncStatus(HttpServerResponse response, String sub, String searchId) {
+    // registered before the status is read, the changes in between are kept until it is written
+    StatusStream stream = new StatusStream(searchId, response);
+    statusStreams.computeIfAbsent(searchId, key -> new ArrayList<>()).add(stream);
+    response.closeHandler(v -> closeStatusStream(stream));
+
+    asyncService.asyncStatus(
+        sub,
+        searchId,
+        handler -> {
+          if (handler.failed()) {
+            LOGGER.error("Fail: Async status stream fail");
+            closeStatusStream(stream);
+            processBackendResponse(response, handler.cause().getMessage());
+            return;
+          }
+          if (response.ended() || response.closed()) {
+            return;
+          }
+          response
+              .setChunked(true)
+              .putHeader(CONTENT_TYPE, TEXT_EVENT_STREAM)
+              .putHeader("Cache-Control", "no-cache")
+              .setStatusCode(ResponseType.Ok.getCode());
+          stream.result = handler.result();
+          stream.keepaliveTimer =
+              vertx.setPeriodic(STATUS_KEEPALIVE_MILLIS, id -> writeKeepalive(stream));
+          stream.lifetimeTimer =
+              vertx.setTimer(STATUS_STREAM_MAX_MILLIS, id -> endStatusStream(stream));
+          writeStatusEvent(stream);
+          for (JsonObject change : stream.pending) {
+            applyStatusChange(stream, change);
+          }
+          stream.pending.clear();
+        });
+  }
+
+  private void pushAsyncStatus(JsonObject change) {
+    List<StatusStream> streams = statusStreams.get(change.getString(AsyncStatusCache.SEARCH_ID));
+    if (streams == null) {
+      return;
+    }
+    for (StatusStream stream : new ArrayList<>(streams)) {
+      if (stream.result != null) {
+        applyStatusChange(stream, change);
+      } else {
+        stream.pending.add(change);
+      }
+    }
+  }
+
+  /** Merge a change into the streamed status, a final status is not replaced by progress. */
+  private void applyStatusChange(StatusStream stream, JsonObject change) {
+    JsonObject status = stream.result.getJsonArray("results").getJsonObject(0);
+    if (AsyncStatusCache.isFinal(status) && !AsyncStatusCache.isFinal(change)) {
+      return;
+    }
+    status.mergeIn(change);
+    writeStatusEvent(stream);
+  }
+
+  private void writeStatusEvent(StatusStream stream) {
+    if (stream.response.ended() || stream.response.closed()) {
+      return;
+    }
+    stream.response.write("event: status\ndata: " + stream.result.encode() + "\n\n");
+    if (AsyncStatusCache.isFinal(stream.result.getJsonArray("results").getJsonObject(0))) {
+      endStatusStream(stream);
+    }
+  }
+
+  private void writeKeepalive(StatusStream stream) {
+    if (!stream.response.ended() && !stream.response.closed()) {
+      stream.response.write(":keepalive\n\n");
+    }
+  }
+
+  private void endStatusStream(StatusStream stream) {
+    closeStatusStream(stream);
+    if (!stream.response.ended() && !stream.response.closed()) {
+      stream.response.end();
+    }
+  }
+
+  private void closeStatusStream(StatusStream stream) {
+    vertx.cancelTimer(stream.keepaliveTimer);
+    vertx.cancelTimer(stream.lifetimeTimer);
+    statusStreams.computeIfPresent(
+        stream.searchId,
+        (key, streams) -> {
+          streams.remove(stream);
+          return streams.isEmpty() ? null : streams;
+        });
+  }
+
   /**
    * Encrypts the result of API response.
    *
@@ -433,4 +553,21 @@ public class AsyncRestApi {
         || params.contains(JSON_GEOMETRY)
         || params.contains(JSON_COORDINATES);
   }
+
+  /** A client streaming the status of a search. */
+  private static final class StatusStream {
+    private final String searchId;
+    private final HttpServerResponse response;
+    /** changes received before the current status was written. */
+    private final List<JsonObject> pending = new ArrayList<>();
+    /** status response streamed, null until the current status is read. */
+    private JsonObject result;
+    private long keepaliveTimer = -1;
+    private long lifetimeTimer = -1;
+
+    private StatusStream(String searchId, HttpServerResponse response) {
+      this.searchId = searchId;
+      this.response = response;
+    }
+  }
 }
@@ -55,6 +55,7 @@ public class ParamsValidator {
     validParams.add(NGSILDQUERY_TIME_PROPERTY);
     validParams.add(NGSILDQUERY_FROM);
     validParams.add(NGSILDQUERY_SIZE);
+    validParams.add(NGSILDQUERY_CURSOR);
 
     // for IUDX count query
     validParams.add(IUDXQUERY_OPTIONS);
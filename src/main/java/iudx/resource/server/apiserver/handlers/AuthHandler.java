@@ -284,6 +284,8 @@ public class AuthHandler implements Handler<RoutingContext> {
       path = ADMIN + REVOKE_TOKEN;
     } else if (url.matches(UNIQUE_ATTR_REGEX)) {
       path = ADMIN + RESOURCE_ATTRIBS;
+    } else if (url.matches(SEARCH_CACHE_REGEX)) {
+      path = ADMIN + SEARCH_CACHE;
     } else if (url.matches(api.getIudxConsumerAuditUrl())) {
       path = api.getIudxConsumerAuditUrl();
     } else if (url.matches(api.getIudxProviderAuditUrl())) {
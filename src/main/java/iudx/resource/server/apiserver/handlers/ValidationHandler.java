@@ -1,6 +1,7 @@
 package iudx.resource.server.apiserver.handlers;
 
 import static iudx.resource.server.apiserver.util.Constants.HEADER_PUBLIC_KEY;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_RESPONSE_FILE_COMPRESSION;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_RESPONSE_FILE_FORMAT;
 
 import io.vertx.core.Handler;
@@ -45,6 +46,9 @@ public class ValidationHandler implements Handler<RoutingContext> {
     parameters.set(HEADER_PUBLIC_KEY, context.request().getHeader(HEADER_PUBLIC_KEY));
     parameters.set(
         HEADER_RESPONSE_FILE_FORMAT, context.request().getHeader(HEADER_RESPONSE_FILE_FORMAT));
+    parameters.set(
+        HEADER_RESPONSE_FILE_COMPRESSION,
+        context.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION));
     parameters.addAll(pathParams);
     ValidatorsHandlersFactory validationFactory = new ValidatorsHandlersFactory();
     MultiMap headers = context.request().headers();
@@ -5,6 +5,7 @@ import static iudx.resource.server.apiserver.util.Constants.MSG_INVALID_PARAM;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_COORDINATES;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENDTIME;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_CURSOR;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_FROM;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_GEOMETRY;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_GEOPROPERTY;
@@ -50,6 +51,7 @@ public class NgsildQueryParams {
   private String options;
   private String pageFrom;
   private String pageSize;
+  private String pageCursor;
 
   public NgsildQueryParams() {}
 
@@ -138,6 +140,9 @@ public class NgsildQueryParams {
         case NGSILDQUERY_FROM:
           this.pageFrom = entry.getValue();
           break;
+        case NGSILDQUERY_CURSOR:
+          this.pageCursor = entry.getValue();
+          break;
         default:
           LOGGER.warn(MSG_INVALID_PARAM + ":" + entry.getKey());
           break;
@@ -205,6 +210,8 @@ public class NgsildQueryParams {
             this.pageFrom = requestJson.getString(entry.getKey());
           } else if (entry.getKey().equalsIgnoreCase(NGSILDQUERY_SIZE)) {
             this.pageSize = requestJson.getString(NGSILDQUERY_SIZE);
+          } else if (entry.getKey().equalsIgnoreCase(NGSILDQUERY_CURSOR)) {
+            this.pageCursor = requestJson.getString(NGSILDQUERY_CURSOR);
           }
         });
   }
@@ -315,6 +322,10 @@ public class NgsildQueryParams {
     return pageSize;
   }
 
+  public String getPageCursor() {
+    return pageCursor;
+  }
+
   @Override
   public String toString() {
     return "NGSILDQueryParams [id="
@@ -146,6 +146,18 @@ public class QueryMapper {
     if (params.getPageSize() != null) {
       json.put(NGSILDQUERY_SIZE, params.getPageSize());
     }
+    if (params.getPageCursor() != null) {
+      if (params.getPageFrom() != null) {
+        DxRuntimeException ex =
+            new DxRuntimeException(
+                BAD_REQUEST.getValue(),
+                INVALID_PARAM_VALUE_URN,
+                "offset is not supported with cursor pagination");
+        this.context.fail(400, ex);
+        return null;
+      }
+      json.put(NGSILDQUERY_CURSOR, params.getPageCursor());
+    }
 
     json.put(JSON_SEARCH_TYPE, getSearchType(isAsyncQuery));
     LOGGER.debug("Info : json " + json);
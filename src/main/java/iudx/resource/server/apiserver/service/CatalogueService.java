@@ -1,8 +1,5 @@
 package iudx.resource.server.apiserver.service;
 
-import static iudx.resource.server.apiserver.util.Util.toList;
-import static iudx.resource.server.database.archives.Constants.*;
-
 import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
@@ -10,10 +7,7 @@ import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -94,57 +88,23 @@ public class CatalogueService {
 
   public Future<List<String>> getApplicableFilters(String id) {
     Promise<List<String>> promise = Promise.promise();
-    JsonObject cacheRequests = new JsonObject();
-    cacheRequests.put("type", CacheType.CATALOGUE_CACHE);
-    cacheRequests.put("key", id);
-    Future<JsonObject> groupIdFuture = cacheService.get(cacheRequests);
-    groupIdFuture.onComplete(
-        grpId -> {
-          if (grpId.succeeded()) {
-            Set<String> type = new HashSet<String>(grpId.result().getJsonArray("type").getList());
-            Set<String> itemTypeSet =
-                type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-            itemTypeSet.retainAll(ITEM_TYPES);
-
-            String groupId;
-            if (!itemTypeSet.contains("Resource")) {
-              groupId = id;
-            } else {
-              groupId = grpId.result().getString("resourceGroup");
-            }
-
-            LOGGER.debug("groupId = " + groupId);
-            JsonObject cacheRequest = new JsonObject();
-            cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
-            cacheRequest.put("key", groupId);
-            Future<JsonObject> groupFilter = cacheService.get(cacheRequest);
-            JsonObject itemCacheRequest = cacheRequest.copy();
-            itemCacheRequest.put("key", id);
-            Future<JsonObject> itemFilters = cacheService.get(itemCacheRequest);
-            List<String> filters = new ArrayList<String>();
-            CompositeFuture.all(List.of(groupFilter, itemFilters))
-                .onComplete(
-                    ar -> {
-                      if (ar.failed()) {
-                        promise.fail("no filters available for : " + id);
-                        return;
-                      }
-                      if (groupFilter.result().containsKey("iudxResourceAPIs")) {
-                        filters.addAll(
-                            toList(groupFilter.result().getJsonArray("iudxResourceAPIs")));
-                        promise.complete(filters);
-                      }
-
-                      if (itemFilters.result().containsKey("iudxResourceAPIs")) {
-                        filters.addAll(
-                            toList(itemFilters.result().getJsonArray("iudxResourceAPIs")));
-                        promise.complete(filters);
-                      }
-                    });
-          } else {
-            LOGGER.debug("Failed : " + grpId.cause().getMessage());
-          }
-        });
+    cacheService
+        .getCatalogueItem(id)
+        .onSuccess(
+            item -> {
+              LOGGER.debug("groupId = " + item.getGroupId());
+              List<String> filters = item.getApplicableFilters();
+              if (filters.isEmpty()) {
+                promise.fail("no filters available for : " + id);
+              } else {
+                promise.complete(new ArrayList<>(filters));
+              }
+            })
+        .onFailure(
+            failure -> {
+              LOGGER.debug("Failed : " + failure.getMessage());
+              promise.fail("no filters available for : " + id);
+            });
     return promise.future();
   }
 
@@ -86,6 +86,8 @@ public class Constants {
   public static final String REVOKE_TOKEN_REGEX = "/admin/revokeToken" + "(.*)";
   public static final String RESOURCE_ATTRIBS = "/resourceattribute";
   public static final String UNIQUE_ATTR_REGEX = "/admin/resourceattribute";
+  public static final String SEARCH_CACHE = "/searchCache";
+  public static final String SEARCH_CACHE_REGEX = "/admin/searchCache";
   public static final String ADMIN = "/admin";
 
   public static final String MONTHLY_OVERVIEW = "/overview";
@@ -120,6 +122,7 @@ public class Constants {
   public static final String NGSILDQUERY_TIME_PROPERTY = "timeProperty";
   public static final String NGSILDQUERY_FROM = "offset";
   public static final String NGSILDQUERY_SIZE = "limit";
+  public static final String NGSILDQUERY_CURSOR = "cursor";
 
   // Header params
   public static final String HEADER_TOKEN = "token";
@@ -139,10 +142,15 @@ public class Constants {
   public static final String PUBLIC_TOKEN = "public";
   public static final String HEADER_PUBLIC_KEY = "publicKey";
   public static final String HEADER_RESPONSE_FILE_FORMAT = "format";
+  public static final String HEADER_RESPONSE_FILE_COMPRESSION = "compression";
+  public static final String COMPRESSION_GZIP = "gzip";
+  public static final String COMPRESSION_ZSTD = "zstd";
+  public static final String COMPRESSION_NONE = "none";
 
   // request/response params
   public static final String CONTENT_TYPE = "content-type";
   public static final String APPLICATION_JSON = "application/json";
+  public static final String TEXT_EVENT_STREAM = "text/event-stream";
   public static final String SUBSCRIPTION_ID = "subscriptionID";
   public static final String EXCHANGE_ID = "exId";
 
@@ -270,6 +278,7 @@ public class Constants {
   public static final double VALIDATION_ALLOWED_DIST_FOR_ASYNC = 10000.0;
   public static final int VALIDATION_PAGINATION_LIMIT_MAX = 5000;
   public static final int VALIDATION_PAGINATION_OFFSET_MAX = 49999;
+  public static final int VALIDATION_PAGINATION_CURSOR_MAXLEN = 2048;
   public static final List<Object> VALIDATION_ALLOWED_GEOM =
       List.of("Point", "point", "Polygon", "polygon", "LineString", "linestring", "bbox");
   public static final List<Object> VALIDATION_ALLOWED_GEOPROPERTY = List.of("location", "Location");
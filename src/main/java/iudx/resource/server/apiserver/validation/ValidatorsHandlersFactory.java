@@ -105,6 +105,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationCursorTypeValidator(parameters.get(NGSILDQUERY_CURSOR), false));
 
     // optional header public key
     validators.add(new HeaderKeyTypeValidation(parameters.get(HEADER_PUBLIC_KEY), false));
@@ -133,6 +134,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationCursorTypeValidator(parameters.get(NGSILDQUERY_CURSOR), false));
 
     // optional header public key
     validators.add(new HeaderKeyTypeValidation(parameters.get(HEADER_PUBLIC_KEY), false));
@@ -161,6 +163,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationCursorTypeValidator(parameters.get(NGSILDQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -179,6 +182,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new PaginationCursorTypeValidator(parameters.get(NGSILDQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -220,6 +224,8 @@ public class ValidatorsHandlersFactory {
     validators.add(
         new ElasticSearchFileResponseTypeValidator(
             parameters.get(HEADER_RESPONSE_FILE_FORMAT), false));
+    validators.add(
+        new FileCompressionTypeValidator(parameters.get(HEADER_RESPONSE_FILE_COMPRESSION), false));
 
     return validators;
   }
@@ -0,0 +1,50 @@
+package iudx.resource.server.apiserver.validation.types;
+
+import static iudx.resource.server.apiserver.util.Constants.*;
+import static iudx.resource.server.common.ResponseUrn.INVALID_HEADER_VALUE_URN;
+
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.common.HttpStatusCode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public class FileCompressionTypeValidator implements Validator {
+
+  private static final Logger LOGGER = LogManager.getLogger(FileCompressionTypeValidator.class);
+
+  private final String value;
+  private final boolean required;
+
+  public FileCompressionTypeValidator(final String value, final boolean required) {
+    this.value = value;
+    this.required = required;
+  }
+
+  @Override
+  public boolean isValid() {
+    LOGGER.debug("value : " + value + "required : " + required);
+
+    if (required && (value == null || value.isBlank())) {
+      LOGGER.error("Validation error : null or blank value for required mandatory field");
+      throw new DxRuntimeException(failureCode(), INVALID_HEADER_VALUE_URN, failureMessage());
+    } else if (!required && value == null) {
+      return true;
+    } else if (value.equals(COMPRESSION_GZIP)
+        || value.equals(COMPRESSION_ZSTD)
+        || value.equals(COMPRESSION_NONE)) {
+      return true;
+    }
+    LOGGER.error("Validation error : Invalid header compression type");
+    throw new DxRuntimeException(failureCode(), INVALID_HEADER_VALUE_URN, failureMessage(value));
+  }
+
+  @Override
+  public int failureCode() {
+    return HttpStatusCode.BAD_REQUEST.getValue();
+  }
+
+  @Override
+  public String failureMessage() {
+    return INVALID_HEADER_VALUE_URN.getMessage();
+  }
+}
@@ -0,0 +1,165 @@
+package iudx.resource.server.authenticator;
+
+import static iudx.resource.server.common.Constants.CACHE_INVALIDATION_ADDRESS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Successful token introspections by token, endpoint, method and resource id, so a client reusing
+ * its token for the same request is answered with one lookup instead of the whole introspection.
+ *
+ * <p>Tokens are kept as their SHA-256 hash. A decision is kept until the earlier of the token
+ * expiry and a short TTL. The decisions of a client are dropped when the revoked token index
+ * changes it, all decisions when the index is reloaded or the catalogue changes, as the access
+ * policy of a group applies to all its resources. An introspection that ran while decisions were
+ * dropped is not kept, it may have read the state from before the change.
+ */
+public class AuthDecisionCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(AuthDecisionCache.class);
+  private static final String SEPARATOR = "\n";
+
+  private final Cache<String, Decision> decisions;
+  private final long ttlMillis;
+  /** number of times decisions were dropped. */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Build the cache from the AuthenticationVerticle config.
+   *
+   * @param vertx vertx
+   * @param config authDecisionCacheSize and authDecisionCacheTtlSeconds are optional
+   */
+  public AuthDecisionCache(Vertx vertx, JsonObject config) {
+    this.ttlMillis = TimeUnit.SECONDS.toMillis(config.getLong("authDecisionCacheTtlSeconds", 60L));
+    this.decisions =
+        CacheBuilder.newBuilder()
+            .maximumSize(config.getLong("authDecisionCacheSize", 10000L))
+            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+            .build();
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(CACHE_INVALIDATION_ADDRESS, message -> invalidate(message.body()));
+  }
+
+  /** Read before an introspection starts, to be passed to {@link #put}. */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Key of a request.
+   *
+   * @param token token presented
+   * @param endPoint api endpoint called
+   * @param method http method
+   * @param id resource id, may be null
+   * @return key of the decision
+   */
+  public static String key(String token, String endPoint, String method, String id) {
+    return sha256(String.valueOf(token))
+        + SEPARATOR
+        + String.valueOf(endPoint).toLowerCase(Locale.ROOT)
+        + SEPARATOR
+        + String.valueOf(method).toUpperCase(Locale.ROOT)
+        + SEPARATOR
+        + id;
+  }
+
+  private static String sha256(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Get a decision.
+   *
+   * @param key key of the request
+   * @return a copy of the introspection response, or null when the request has to be introspected
+   */
+  public JsonObject get(String key) {
+    Decision decision = decisions.getIfPresent(key);
+    if (decision == null) {
+      return null;
+    }
+    if (decision.expiresAt <= System.currentTimeMillis()) {
+      decisions.invalidate(key);
+      return null;
+    }
+    return decision.response.copy();
+  }
+
+  /**
+   * Keep a successful introspection.
+   *
+   * @param key key of the request
+   * @param sub subject of the token
+   * @param exp expiry of the token in epoch seconds
+   * @param response introspection response
+   * @param startedAt generation read when the introspection started
+   */
+  public void put(String key, String sub, long exp, JsonObject response, long startedAt) {
+    long now = System.currentTimeMillis();
+    long expiresAt = Math.min(TimeUnit.SECONDS.toMillis(exp), now + ttlMillis);
+    if (expiresAt > now && generation.get() == startedAt) {
+      decisions.put(key, new Decision(sub, expiresAt, response.copy()));
+    }
+  }
+
+  long size() {
+    return decisions.size();
+  }
+
+  /**
+   * Drop the decisions of a client.
+   *
+   * @param sub client changed, null to drop all decisions
+   */
+  public void invalidateClient(String sub) {
+    generation.incrementAndGet();
+    if (sub == null) {
+      decisions.invalidateAll();
+    } else {
+      decisions.asMap().values().removeIf(decision -> sub.equals(decision.sub));
+    }
+  }
+
+  void invalidate(JsonObject message) {
+    if (CacheType.CATALOGUE_CACHE.toString().equals(message.getString(CacheInvalidation.TYPE))) {
+      LOGGER.debug("catalogue changed, dropping auth decisions");
+      generation.incrementAndGet();
+      decisions.invalidateAll();
+    }
+  }
+
+  private static final class Decision {
+    private final String sub;
+    private final long expiresAt;
+    private final JsonObject response;
+
+    private Decision(String sub, long expiresAt, JsonObject response) {
+      this.sub = sub;
+      this.expiresAt = expiresAt;
+      this.response = response;
+    }
+  }
+}
@@ -17,7 +17,8 @@ import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.common.Api;
-import iudx.resource.server.metering.MeteringService;
+import iudx.resource.server.common.MeterRegistryProvider;
+import iudx.resource.server.database.postgres.PostgresService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -41,7 +42,6 @@ public class AuthenticationVerticle extends AbstractVerticle {
   private WebClient webClient;
 
   private CacheService cacheService;
-  private MeteringService meteringService;
   private Api api;
   private String dxApiBasePath;
 
@@ -91,14 +91,24 @@ public class AuthenticationVerticle extends AbstractVerticle {
                         + "do not set IgnoreExpiration in production!!");
               }
 
-              cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
-              meteringService = MeteringService.createProxy(vertx, METERING_SERVICE_ADDRESS);
+              cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
               dxApiBasePath = config().getString("dxApiBasePath");
               api = Api.getInstance(dxApiBasePath);
+              PostgresService pgService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
+              RevokedTokenIndex revokedTokens =
+                  new RevokedTokenIndex(
+                      vertx,
+                      pgService,
+                      CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS),
+                      MeterRegistryProvider.get());
+              QuotaCounters quotaCounters =
+                  config().getBoolean("enableLimits", false)
+                      ? new QuotaCounters(vertx, pgService)
+                      : new QuotaCounters();
               JWTAuth jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
               jwtAuthenticationService =
                   new JwtAuthenticationServiceImpl(
-                      vertx, jwtAuth, config(), cacheService, meteringService, api);
+                      vertx, jwtAuth, config(), cacheService, quotaCounters, revokedTokens, api);
 
               /* Publish the Authentication service with the Event Bus against an address. */
               consumer =
@@ -1,7 +1,6 @@
 package iudx.resource.server.authenticator;
 
 import static iudx.resource.server.authenticator.Constants.*;
-import static iudx.resource.server.database.archives.Constants.ITEM_TYPES;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
@@ -23,22 +22,17 @@ import iudx.resource.server.authenticator.authorization.JwtAuthorization;
 import iudx.resource.server.authenticator.authorization.Method;
 import iudx.resource.server.authenticator.model.JwtData;
 import iudx.resource.server.cache.CacheService;
-import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.common.Api;
-import iudx.resource.server.metering.MeteringService;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class JwtAuthenticationServiceImpl implements AuthenticationService {
 
   private static final Logger LOGGER = LogManager.getLogger(JwtAuthenticationServiceImpl.class);
+  private static final Future<Boolean> NOT_REVOKED = Future.succeededFuture(true);
   static WebClient catWebClient;
   final JWTAuth jwtAuth;
   final String host;
@@ -46,7 +40,9 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   final String path;
   final String audience;
   final CacheService cache;
-  final MeteringService meteringService;
+  final QuotaCounters quotaCounters;
+  final RevokedTokenIndex revokedTokens;
+  final AuthDecisionCache decisions;
   final Api apis;
   final String catBasePath;
   boolean isLimitsEnabled;
@@ -57,7 +53,8 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
       final JWTAuth jwtAuth,
       final JsonObject config,
       final CacheService cacheService,
-      final MeteringService meteringService,
+      final QuotaCounters quotaCounters,
+      final RevokedTokenIndex revokedTokens,
       final Api apis) {
     this.jwtAuth = jwtAuth;
     this.audience = config.getString("audience");
@@ -73,7 +70,10 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     options.setTrustAll(true).setVerifyHost(false).setSsl(true);
     catWebClient = WebClient.create(vertx, options);
     this.cache = cacheService;
-    this.meteringService = meteringService;
+    this.quotaCounters = quotaCounters;
+    this.revokedTokens = revokedTokens;
+    this.decisions = new AuthDecisionCache(vertx, config);
+    revokedTokens.onChange(decisions::invalidateClient);
   }
 
   private static boolean isIngestionEntitiesEndpoint(JsonObject authenticationInfo) {
@@ -86,12 +86,21 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   public AuthenticationService tokenInterospect(
       JsonObject request, JsonObject authenticationInfo, Handler<AsyncResult<JsonObject>> handler) {
 
-    LOGGER.info("authInfo " + authenticationInfo);
     String endPoint = authenticationInfo.getString("apiEndpoint");
     String id = authenticationInfo.getString("id");
     String token = authenticationInfo.getString("token");
     String method = authenticationInfo.getString("method");
 
+    String decisionKey = AuthDecisionCache.key(token, endPoint, method, id);
+    JsonObject decided = decisions.get(decisionKey);
+    if (decided != null) {
+      LOGGER.debug("cached auth decision for {} {}", method, endPoint);
+      handler.handle(Future.succeededFuture(decided));
+      return this;
+    }
+    long generation = decisions.generation();
+    LOGGER.info("authInfo " + authenticationInfo);
+
     Future<JwtData> jwtDecodeFuture = decodeJwt(token);
 
     boolean skipResourceIdCheck =
@@ -101,6 +110,7 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
             || endPoint.equalsIgnoreCase(apis.getIudxConsumerAuditUrl())
             || endPoint.equalsIgnoreCase("/admin/revokeToken")
             || endPoint.equalsIgnoreCase("/admin/resourceattribute")
+            || endPoint.equalsIgnoreCase("/admin/searchCache")
             || endPoint.equalsIgnoreCase(apis.getIudxProviderAuditUrl())
             || endPoint.equalsIgnoreCase(apis.getIudxAsyncStatusApi())
             || endPoint.equalsIgnoreCase(apis.getIngestionPath())
@@ -194,6 +204,17 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
             })
         .onSuccess(
             successHandler -> {
+              // with limits the access of a consumer also depends on its usage of the day
+              boolean metered =
+                  isLimitsEnabled && "consumer".equalsIgnoreCase(result.jwtData.getRole());
+              if (!metered && result.jwtData.getExp() != null) {
+                decisions.put(
+                    decisionKey,
+                    result.jwtData.getSub(),
+                    result.jwtData.getExp(),
+                    successHandler,
+                    generation);
+              }
               handler.handle(Future.succeededFuture(successHandler));
             })
         .onFailure(
@@ -229,69 +250,20 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   public Future<String> isOpenResource(String id) {
     LOGGER.trace("isOpenResource() started");
 
-    JsonObject cacheRequest = new JsonObject();
-    cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
-    cacheRequest.put("key", id);
-    Future<JsonObject> resourceIdFuture = cache.get(cacheRequest);
-
     Promise<String> promise = Promise.promise();
-    resourceIdFuture.onComplete(
-        isResourceExistHandler -> {
-          if (isResourceExistHandler.failed()) {
-            promise.fail("Not Found  : " + id);
-            return;
-          } else {
-            Set<String> type =
-                new HashSet<String>(isResourceExistHandler.result().getJsonArray("type").getList());
-            Set<String> itemTypeSet =
-                type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-            itemTypeSet.retainAll(ITEM_TYPES);
-            String groupId;
-            if (!itemTypeSet.contains("Resource")) {
-              groupId = id;
-            } else {
-              groupId = isResourceExistHandler.result().getString("resourceGroup");
-            }
-            JsonObject resourceGroupCacheRequest = cacheRequest.copy();
-            resourceGroupCacheRequest.put("key", groupId);
-            Future<JsonObject> groupIdFuture = cache.get(resourceGroupCacheRequest);
-            groupIdFuture.onComplete(
-                groupCacheResultHandler -> {
-                  if (groupCacheResultHandler.failed()) {
-                    if (resourceIdFuture.result() != null
-                        && resourceIdFuture.result().containsKey("accessPolicy")) {
-                      String acl = resourceIdFuture.result().getString("accessPolicy");
-                      promise.complete(acl);
-                    } else {
-                      LOGGER.error("ACL not defined in group or resource item");
-                      promise.fail("ACL not defined in group or resource item");
-                      return;
-                    }
-                  } else {
-                    String acl = null;
-
-                    JsonObject groupCacheResult = groupCacheResultHandler.result();
-                    if (groupCacheResult != null && groupCacheResult.containsKey("accessPolicy")) {
-                      acl = groupIdFuture.result().getString("accessPolicy");
-                    }
-
-                    JsonObject resourceCacheResult = resourceIdFuture.result();
-                    if (resourceCacheResult != null
-                        && resourceCacheResult.containsKey("accessPolicy")) {
-                      acl = resourceIdFuture.result().getString("accessPolicy");
-                    }
-
-                    if (acl == null) {
-                      LOGGER.error("ACL not defined in group or resource item");
-                      promise.fail("ACL not defined in group or resource item");
-                      return;
-                    } else {
-                      promise.complete(acl);
-                    }
-                  }
-                });
-          }
-        });
+    cache
+        .getCatalogueItem(id)
+        .onComplete(
+            itemHandler -> {
+              if (itemHandler.failed()) {
+                promise.fail("Not Found  : " + id);
+              } else if (itemHandler.result().getAccessPolicy() == null) {
+                LOGGER.error("ACL not defined in group or resource item");
+                promise.fail("ACL not defined in group or resource item");
+              } else {
+                promise.complete(itemHandler.result().getAccessPolicy());
+              }
+            });
 
     return promise.future();
   }
@@ -332,68 +304,22 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
     JwtAuthorization jwtAuthStrategy = new JwtAuthorization(authStrategy);
     LOGGER.info("endPoint : " + authInfo.getString("apiEndpoint"));
 
-    OffsetDateTime startDateTime = OffsetDateTime.now(ZoneId.of("Z", ZoneId.SHORT_IDS));
-    OffsetDateTime endDateTime = startDateTime.withHour(00).withMinute(00).withSecond(00);
-
-    JsonObject meteringCountRequest = new JsonObject();
-    meteringCountRequest.put("timeRelation", "during");
-    meteringCountRequest.put("startTime", endDateTime.toString());
-    meteringCountRequest.put("endTime", startDateTime.toString());
-    meteringCountRequest.put("userid", jwtData.getSub());
-    meteringCountRequest.put("endPoint", "/consumer/audit");
-    meteringCountRequest.put("options", "count");
-
-    LOGGER.debug("metering request : " + meteringCountRequest);
+    boolean authorized;
     if (isLimitsEnabled) {
-      meteringService.executeReadQuery(
-          meteringCountRequest,
-          meteringCountHandler -> {
-            if (meteringCountHandler.succeeded()) {
-              JsonObject consumedApiCount = new JsonObject();
-              LOGGER.info("metering response : " + meteringCountHandler.result());
-              JsonObject meteringResponse = meteringCountHandler.result();
-              consumedApiCount.put(
-                  "api",
-                  meteringResponse.getJsonArray("results").getJsonObject(0).getInteger("total"));
-              if (jwtAuthStrategy.isAuthorized(authRequest, jwtData, consumedApiCount)) {
-                LOGGER.info("User access is allowed.");
-                promise.complete(createValidateAccessSuccessResponse(jwtData));
-              } else {
-                LOGGER.error("failed - no access provided to endpoint");
-                JsonObject result = new JsonObject().put("401", "no access provided to endpoint");
-                promise.fail(result.toString());
-              }
-            } else {
-              LOGGER.error("failed to get metering response");
-              String failureMessage = meteringCountHandler.cause().getMessage();
-              JsonObject failureJson = new JsonObject(failureMessage);
-              int failureCode = failureJson.getInteger("type");
-              if (failureCode == 204) {
-                JsonObject consumedApiCount = new JsonObject();
-                consumedApiCount.put("api", 0);
-                if (jwtAuthStrategy.isAuthorized(authRequest, jwtData, consumedApiCount)) {
-                  LOGGER.info("User access is allowed.");
-                  promise.complete(createValidateAccessSuccessResponse(jwtData));
-                } else {
-                  LOGGER.error("failed - no access provided to endpoint");
-                  JsonObject result = new JsonObject().put("401", "no access provided to endpoint");
-                  promise.fail(result.toString());
-                }
-              }
-
-              //          JsonObject result = new JsonObject().put("401", "Access limit exceeds");
-              //          promise.fail(result.toString());
-            }
-          });
+      JsonObject consumedApiCount =
+          new JsonObject().put("api", quotaCounters.consumed(jwtData.getSub()));
+      LOGGER.debug("consumed api count : {}", consumedApiCount);
+      authorized = jwtAuthStrategy.isAuthorized(authRequest, jwtData, consumedApiCount);
     } else {
-      if (jwtAuthStrategy.isAuthorized(authRequest, jwtData)) {
-        LOGGER.info("User access is allowed.");
-        promise.complete(createValidateAccessSuccessResponse(jwtData));
-      } else {
-        LOGGER.error("failed - no access provided to endpoint");
-        JsonObject result = new JsonObject().put("401", "no access provided to endpoint");
-        promise.fail(result.toString());
-      }
+      authorized = jwtAuthStrategy.isAuthorized(authRequest, jwtData);
+    }
+    if (authorized) {
+      LOGGER.info("User access is allowed.");
+      promise.complete(createValidateAccessSuccessResponse(jwtData));
+    } else {
+      LOGGER.error("failed - no access provided to endpoint");
+      JsonObject result = new JsonObject().put("401", "no access provided to endpoint");
+      promise.fail(result.toString());
     }
     return promise.future();
   }
@@ -516,41 +442,14 @@ public class JwtAuthenticationServiceImpl implements AuthenticationService {
   }
 
   Future<Boolean> isRevokedClientToken(JwtData jwtData) {
-    LOGGER.trace("isRevokedClientToken started param : " + jwtData);
-    Promise<Boolean> promise = Promise.promise();
-    CacheType cacheType = CacheType.REVOKED_CLIENT;
-    String subId = jwtData.getSub();
-    JsonObject requestJson = new JsonObject().put("type", cacheType).put("key", subId);
-
-    Future<JsonObject> cacheCallFuture = cache.get(requestJson);
-    cacheCallFuture
-        .onSuccess(
-            successhandler -> {
-              JsonObject responseJson = successhandler;
-              LOGGER.debug("responseJson : " + responseJson);
-              String timestamp = responseJson.getString("value");
-
-              LocalDateTime revokedAt = LocalDateTime.parse(timestamp);
-              LocalDateTime jwtIssuedAt =
-                  LocalDateTime.ofInstant(
-                      Instant.ofEpochSecond(jwtData.getIat()), ZoneId.systemDefault());
-
-              if (jwtIssuedAt.isBefore(revokedAt)) {
-                LOGGER.info("jwt issued at : " + jwtIssuedAt + " revokedAt : " + revokedAt);
-                LOGGER.error("Privilages for client are revoked.");
-                JsonObject result = new JsonObject().put("401", "revoked token passes");
-                promise.fail(result.toString());
-              } else {
-                promise.complete(true);
-              }
-            })
-        .onFailure(
-            failureHandler -> {
-              LOGGER.info("cache call result : [fail] " + failureHandler);
-              promise.complete(true);
-            });
-
-    return promise.future();
+    LOGGER.trace("isRevokedClientToken started param : {}", jwtData);
+    if (revokedTokens.isRevoked(jwtData.getSub(), jwtData.getIat())) {
+      LOGGER.info("jwt issued at : {} revoked for : {}", jwtData.getIat(), jwtData.getSub());
+      LOGGER.error("Privilages for client are revoked.");
+      JsonObject result = new JsonObject().put("401", "revoked token passes");
+      return Future.failedFuture(result.toString());
+    }
+    return NOT_REVOKED;
   }
 
   // class to contain intermeddiate data for token interospection
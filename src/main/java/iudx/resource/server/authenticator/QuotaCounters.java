@@ -0,0 +1,165 @@
+package iudx.resource.server.authenticator;
+
+import static iudx.resource.server.common.Constants.METERING_USAGE_ADDRESS;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.Constants;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * API calls made by each user since the start of the day in UTC, counted in memory so checking the
+ * limits of a consumer does not count its rows in the audit table on every request.
+ *
+ * <p>The counters follow the usage published by the metering verticle for each audit record it
+ * sends, which every node of the cluster receives. They are loaded from the audit table and
+ * reconciled with it every few minutes, keeping the larger of the two counts: records reach the
+ * table some time after they are published, and usage published while this node was not listening
+ * is only in the table.
+ */
+public class QuotaCounters {
+
+  private static final Logger LOGGER = LogManager.getLogger(QuotaCounters.class);
+  private static final long RECONCILE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  private static final String USER_ID = "userid";
+  private static final String EPOCH_TIME = "epochTime";
+
+  private volatile Day today = new Day(LocalDate.now(ZoneOffset.UTC));
+
+  private PostgresService pgService;
+
+  QuotaCounters() {}
+
+  /**
+   * Load the counters and follow the usage published by the metering verticle.
+   *
+   * @param vertx vertx
+   * @param pgService postgres service reading the audit table
+   */
+  public QuotaCounters(Vertx vertx, PostgresService pgService) {
+    this.pgService = pgService;
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(
+            METERING_USAGE_ADDRESS,
+            message -> {
+              JsonObject usage = message.body();
+              record(usage.getString(USER_ID), usage.getLong(EPOCH_TIME));
+            });
+    reconcile();
+    vertx.setPeriodic(RECONCILE_MILLIS, id -> reconcile());
+  }
+
+  /**
+   * Calls made by a user today.
+   *
+   * @param userId user
+   * @return number of calls since the start of the day in UTC
+   */
+  public long consumed(String userId) {
+    AtomicLong count = currentDay().counts.get(userId);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Count a call.
+   *
+   * @param userId user
+   * @param epochMillis time of the call, calls of another day are left out
+   */
+  void record(String userId, Long epochMillis) {
+    Day day = currentDay();
+    if (userId != null && epochMillis != null && day.contains(epochMillis)) {
+      day.counts.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+  }
+
+  /**
+   * Raise the counters of a day to the counts of the audit table.
+   *
+   * @param date day counted
+   * @param counts calls in the audit table by user
+   */
+  void reconcile(LocalDate date, Map<String, Long> counts) {
+    Day day = currentDay();
+    if (!day.date.equals(date)) {
+      return;
+    }
+    counts.forEach(
+        (userId, count) ->
+            day.counts
+                .computeIfAbsent(userId, id -> new AtomicLong())
+                .accumulateAndGet(count, Math::max));
+  }
+
+  private Day currentDay() {
+    Day day = today;
+    if (System.currentTimeMillis() < day.endMillis) {
+      return day;
+    }
+    synchronized (this) {
+      if (System.currentTimeMillis() >= today.endMillis) {
+        today = new Day(LocalDate.now(ZoneOffset.UTC));
+      }
+      return today;
+    }
+  }
+
+  private void reconcile() {
+    LocalDate date = currentDay().date;
+    String query =
+        Constants.SELECT_USAGE_BY_USER_SQL
+            .replace("$1", date.atStartOfDay().atOffset(ZoneOffset.UTC).toString())
+            .replace("$2", OffsetDateTime.now(ZoneOffset.UTC).toString());
+    pgService.executeQuery(
+        query,
+        handler -> {
+          if (handler.succeeded()) {
+            JsonArray rows = handler.result().getJsonArray("result");
+            Map<String, Long> counts = new HashMap<>();
+            rows.forEach(
+                row -> {
+                  JsonObject usage = (JsonObject) row;
+                  String userId = usage.getString(USER_ID);
+                  Long count = usage.getLong("count");
+                  if (userId != null && count != null) {
+                    counts.put(userId, count);
+                  }
+                });
+            reconcile(date, counts);
+            LOGGER.debug("quota counters reconciled for {} users", counts.size());
+          } else {
+            LOGGER.error("failed to reconcile quota counters : {}", handler.cause().getMessage());
+          }
+        });
+  }
+
+  /** counters of one day. */
+  private static final class Day {
+    final LocalDate date;
+    final long startMillis;
+    final long endMillis;
+    final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    Day(LocalDate date) {
+      this.date = date;
+      this.startMillis = date.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+      this.endMillis = date.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    boolean contains(long epochMillis) {
+      return epochMillis >= startMillis && epochMillis < endMillis;
+    }
+  }
+}
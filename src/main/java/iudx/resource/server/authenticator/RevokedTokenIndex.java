@@ -0,0 +1,313 @@
+package iudx.resource.server.authenticator;
+
+import static iudx.resource.server.common.Constants.CACHE_INVALIDATION_ADDRESS;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.common.Constants;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Revocation times of the clients whose tokens were revoked, kept in the authentication verticle
+ * so checking a token is a lookup in memory instead of a cache service call.
+ *
+ * <p>The subjects are kept sorted next to their revocation times in epoch seconds, a lookup is a
+ * binary search and a comparison of longs. A change copies the arrays and publishes the copy,
+ * revocations are rare next to token checks. The index is loaded from the revoked tokens table and
+ * kept current through the invalidations published by the cache verticle, a changed subject is read
+ * from the cache service and a refreshed cache reloads the table.
+ *
+ * <p>Its size and the count and total time of its lookups are reported to the meter registry,
+ * tagged with a number telling apart the indexes of the verticle instances.
+ */
+public class RevokedTokenIndex {
+
+  private static final Logger LOGGER = LogManager.getLogger(RevokedTokenIndex.class);
+  private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+  private static final AtomicInteger INDEXES = new AtomicInteger();
+
+  private volatile Entries entries = new Entries(new String[0], new long[0]);
+  /** subjects changed during a reload, null for the removed ones. */
+  private final Map<String, Long> written = new HashMap<>();
+  private boolean reloading;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder lookupNanos = new LongAdder();
+  /** told of each changed subject once the change is visible, null after a reload. */
+  private volatile Consumer<String> changeListener = sub -> {};
+
+  private Vertx vertx;
+  private PostgresService pgService;
+  private CacheService cacheService;
+
+  RevokedTokenIndex() {}
+
+  RevokedTokenIndex(MeterRegistry registry) {
+    String index = String.valueOf(INDEXES.incrementAndGet());
+    Gauge.builder("rs.auth.revoked.entries", this, RevokedTokenIndex::size)
+        .tag("index", index)
+        .register(registry);
+    FunctionTimer.builder(
+            "rs.auth.revoked.lookup",
+            this,
+            revokedTokens -> revokedTokens.lookups.sum(),
+            revokedTokens -> revokedTokens.lookupNanos.sum(),
+            TimeUnit.NANOSECONDS)
+        .tag("index", index)
+        .register(registry);
+  }
+
+  /**
+   * Load the index and follow the changes of the revoked client cache.
+   *
+   * @param vertx vertx
+   * @param pgService postgres service reading the revoked tokens table
+   * @param cacheService cache service read for a changed subject, not a near cache which may still
+   *     hold the previous value
+   * @param registry registry its size and lookups are reported to
+   */
+  public RevokedTokenIndex(
+      Vertx vertx, PostgresService pgService, CacheService cacheService, MeterRegistry registry) {
+    this(registry);
+    this.vertx = vertx;
+    this.pgService = pgService;
+    this.cacheService = cacheService;
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(
+            CACHE_INVALIDATION_ADDRESS, message -> onInvalidation(message.body()));
+    reload();
+  }
+
+  /**
+   * First second at which an issued token is no longer before the revocation, a token issued at
+   * an earlier second is revoked.
+   *
+   * @param timestamp revocation time as stored in the revoked tokens table
+   * @return epoch seconds
+   */
+  static long toEpochSecond(String timestamp) {
+    ZonedDateTime revokedAt = LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault());
+    return revokedAt.toEpochSecond() + (revokedAt.getNano() > 0 ? 1 : 0);
+  }
+
+  /**
+   * Check a token of a client.
+   *
+   * @param sub subject of the token
+   * @param issuedAt issue time of the token in epoch seconds
+   * @return true when the client was revoked after the token was issued
+   */
+  public boolean isRevoked(String sub, long issuedAt) {
+    long start = System.nanoTime();
+    Entries current = entries;
+    int index = sub == null ? -1 : Arrays.binarySearch(current.subs, sub);
+    boolean revoked = index >= 0 && issuedAt < current.revokedAt[index];
+    lookups.increment();
+    lookupNanos.add(System.nanoTime() - start);
+    return revoked;
+  }
+
+  /** Number of revoked clients. */
+  public int size() {
+    return entries.subs.length;
+  }
+
+  /**
+   * Size and lookup latency of the index.
+   *
+   * <pre>
+   * {
+   *    "size": 12,
+   *    "lookups": 3400,
+   *    "averageLookupNanos": 85
+   * }
+   * </pre>
+   */
+  public JsonObject metrics() {
+    long count = lookups.sum();
+    return new JsonObject()
+        .put("size", size())
+        .put("lookups", count)
+        .put("averageLookupNanos", count == 0 ? 0 : lookupNanos.sum() / count);
+  }
+
+  /**
+   * Follow the changes of the index.
+   *
+   * @param listener called with each changed subject, with null when the index was reloaded
+   */
+  public void onChange(Consumer<String> listener) {
+    this.changeListener = listener;
+  }
+
+  synchronized void put(String sub, long revokedAt) {
+    Entries current = entries;
+    int index = Arrays.binarySearch(current.subs, sub);
+    if (index >= 0) {
+      long[] times = current.revokedAt.clone();
+      times[index] = revokedAt;
+      entries = new Entries(current.subs, times);
+    } else {
+      int at = -index - 1;
+      int length = current.subs.length;
+      String[] subs = new String[length + 1];
+      long[] times = new long[length + 1];
+      System.arraycopy(current.subs, 0, subs, 0, at);
+      System.arraycopy(current.revokedAt, 0, times, 0, at);
+      subs[at] = sub;
+      times[at] = revokedAt;
+      System.arraycopy(current.subs, at, subs, at + 1, length - at);
+      System.arraycopy(current.revokedAt, at, times, at + 1, length - at);
+      entries = new Entries(subs, times);
+    }
+    if (reloading) {
+      written.put(sub, revokedAt);
+    }
+    changeListener.accept(sub);
+  }
+
+  synchronized void remove(String sub) {
+    Entries current = entries;
+    int index = Arrays.binarySearch(current.subs, sub);
+    if (index >= 0) {
+      int length = current.subs.length;
+      String[] subs = new String[length - 1];
+      long[] times = new long[length - 1];
+      System.arraycopy(current.subs, 0, subs, 0, index);
+      System.arraycopy(current.revokedAt, 0, times, 0, index);
+      System.arraycopy(current.subs, index + 1, subs, index, length - index - 1);
+      System.arraycopy(current.revokedAt, index + 1, times, index, length - index - 1);
+      entries = new Entries(subs, times);
+    }
+    if (reloading) {
+      written.put(sub, null);
+    }
+    changeListener.accept(sub);
+  }
+
+  /**
+   * Replace all entries, keeping the subjects changed since the reload began.
+   *
+   * @param revoked revocation times read by the reload
+   */
+  synchronized void publish(Map<String, Long> revoked) {
+    TreeMap<String, Long> sorted = new TreeMap<>(revoked);
+    written.forEach(
+        (sub, revokedAt) -> {
+          if (revokedAt == null) {
+            sorted.remove(sub);
+          } else {
+            sorted.put(sub, revokedAt);
+          }
+        });
+    String[] subs = new String[sorted.size()];
+    long[] times = new long[sorted.size()];
+    int index = 0;
+    for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+      subs[index] = entry.getKey();
+      times[index] = entry.getValue();
+      index++;
+    }
+    entries = new Entries(subs, times);
+    endReload();
+    changeListener.accept(null);
+  }
+
+  private synchronized void beginReload() {
+    reloading = true;
+  }
+
+  private synchronized void endReload() {
+    reloading = false;
+    written.clear();
+  }
+
+  private void reload() {
+    beginReload();
+    pgService.executeQuery(
+        Constants.SELECT_REVOKE_TOKEN_SQL,
+        handler -> {
+          if (handler.succeeded()) {
+            JsonArray rows = handler.result().getJsonArray("result");
+            Map<String, Long> revoked = new HashMap<>();
+            rows.forEach(
+                row -> {
+                  JsonObject clientInfo = (JsonObject) row;
+                  String sub = clientInfo.getString("_id");
+                  try {
+                    revoked.put(sub, toEpochSecond(clientInfo.getString("expiry")));
+                  } catch (RuntimeException e) {
+                    LOGGER.warn("skipping revoked client {} : {}", sub, e.getMessage());
+                  }
+                });
+            publish(revoked);
+            LOGGER.info("revoked token index loaded : {}", metrics());
+          } else {
+            endReload();
+            LOGGER.error("failed to load revoked token index : {}", handler.cause().getMessage());
+            vertx.setTimer(RETRY_MILLIS, id -> reload());
+          }
+        });
+  }
+
+  private void reload(String sub) {
+    JsonObject request = new JsonObject().put("type", CacheType.REVOKED_CLIENT).put("key", sub);
+    cacheService
+        .get(request)
+        .onSuccess(result -> put(sub, toEpochSecond(result.getString("value"))))
+        .onFailure(
+            failure -> {
+              if (failure instanceof ServiceException) {
+                remove(sub);
+              } else {
+                LOGGER.error("failed to read revoked client {} : {}", sub, failure.getMessage());
+                reload();
+              }
+            });
+  }
+
+  private void onInvalidation(JsonObject message) {
+    if (!CacheType.REVOKED_CLIENT.toString().equals(message.getString(CacheInvalidation.TYPE))) {
+      return;
+    }
+    String sub = message.getString(CacheInvalidation.KEY);
+    if (sub == null) {
+      reload();
+    } else {
+      reload(sub);
+    }
+  }
+
+  /** subjects in ascending order and the revocation time of each. */
+  private static final class Entries {
+    final String[] subs;
+    final long[] revokedAt;
+
+    Entries(String[] subs, long[] revokedAt) {
+      this.subs = subs;
+      this.revokedAt = revokedAt;
+    }
+  }
+}
@@ -6,6 +6,9 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
+import iudx.resource.server.common.HttpStatusCode;
 
 @ProxyGen
 @VertxGen
@@ -16,6 +19,31 @@ public interface CacheService {
     return new CacheServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * proxy with a near cache kept in the calling verticle, invalidated by the cache verticle.
+   *
+   * @param vertx vertx of the calling verticle
+   * @param address address of the cache service
+   * @return CacheService
+   */
+  @GenIgnore
+  static CacheService createNearCache(Vertx vertx, String address) {
+    return new NearCacheService(vertx, createProxy(vertx, address));
+  }
+
+  /**
+   * Whether a lookup failed because the key is not in the cache, as opposed to the cache or the
+   * catalogue not answering.
+   *
+   * @param failure failure of get or getCatalogueItem
+   * @return true for a not found answer
+   */
+  @GenIgnore
+  static boolean isNotFound(Throwable failure) {
+    return failure instanceof ServiceException
+        && ((ServiceException) failure).failureCode() == HttpStatusCode.NOT_FOUND.getValue();
+  }
+
   /**
    * get value from cache passing a json object specifying cache name (in case of multiple caches
    * are configured) and key.
@@ -41,6 +69,16 @@ public interface CacheService {
    */
   Future<JsonObject> get(JsonObject request);
 
+  /**
+   * get an item of the catalogue cache with its kind, group, access policy, applicable filters and
+   * provider already resolved.
+   *
+   * @param id id of the catalogue item
+   * @return Future of the item, failed with a not found {@link ServiceException} when the id is
+   *     not in the catalogue
+   */
+  Future<CatalogueItem> getCatalogueItem(String id);
+
   /**
    * put value in cache passing a json object specifying cache name (in case of multiple caches are
    * configured), key and value
@@ -72,6 +110,22 @@ public interface CacheService {
    */
   Future<JsonObject> put(JsonObject request);
 
+  /**
+   * remove a key from a cache passing a json object specifying cache name and key. Used to apply a
+   * deletion in place instead of refreshing the whole cache from its source.
+   *
+   * <pre>
+   * {
+   *    "type":"cache name",
+   *    "key":"cache key"
+   * }
+   * </pre>
+   *
+   * @param request valid json request
+   * @return Future
+   */
+  Future<JsonObject> delete(JsonObject request);
+
   /**
    * method used to refresh content of cache specifying the name of cache, key(optional) and
    * value(optional). When Key and Value are not provided cache will be refreshed from source
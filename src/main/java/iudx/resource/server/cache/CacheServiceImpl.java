@@ -1,15 +1,20 @@
 package iudx.resource.server.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.cache.cachelmpl.CacheValue;
 import iudx.resource.server.cache.cachelmpl.CatalogueCacheImpl;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
 import iudx.resource.server.cache.cachelmpl.IudxCache;
 import iudx.resource.server.cache.cachelmpl.RevokedClientCache;
 import iudx.resource.server.cache.cachelmpl.UniqueAttributeCache;
+import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.database.postgres.PostgresService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -20,14 +25,19 @@ public class CacheServiceImpl implements CacheService {
 
   private IudxCache revokedClientCache;
   private IudxCache uniqueAttributeCache;
-  private IudxCache catalogueCache;
+  private CatalogueCacheImpl catalogueCache;
   private PostgresService postgresService;
+  private Vertx vertx;
 
   public CacheServiceImpl(
-      Vertx vertx, PostgresService pgService, CatalogueCacheImpl catalogueCache) {
+      Vertx vertx,
+      PostgresService pgService,
+      CatalogueCacheImpl catalogueCache,
+      MeterRegistry registry) {
+    this.vertx = vertx;
     this.postgresService = pgService;
-    this.revokedClientCache = new RevokedClientCache(vertx, postgresService);
-    this.uniqueAttributeCache = new UniqueAttributeCache(vertx, postgresService);
+    this.revokedClientCache = new RevokedClientCache(vertx, postgresService, registry);
+    this.uniqueAttributeCache = new UniqueAttributeCache(vertx, postgresService, registry);
     this.catalogueCache = catalogueCache;
   }
 
@@ -55,7 +65,13 @@ public class CacheServiceImpl implements CacheService {
               })
           .onFailure(
               failureHandler -> {
-                promise.fail("No entry for given key");
+                if (CacheService.isNotFound(failureHandler)) {
+                  promise.fail(
+                      new ServiceException(
+                          HttpStatusCode.NOT_FOUND.getValue(), "No entry for given key"));
+                } else {
+                  promise.fail("No entry for given key");
+                }
               });
     } else {
       promise.fail("null key passed.");
@@ -63,6 +79,15 @@ public class CacheServiceImpl implements CacheService {
     return promise.future();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Future<CatalogueItem> getCatalogueItem(String id) {
+    if (id == null) {
+      return Future.failedFuture("null key passed.");
+    }
+    return catalogueCache.getItem(id);
+  }
+
   /** {@inheritDoc} */
   @Override
   public Future<JsonObject> put(JsonObject request) {
@@ -81,6 +106,7 @@ public class CacheServiceImpl implements CacheService {
     String value = request.getString("value");
     if (cache != null && key != null && value != null) {
       cache.put(key, cache.createCacheValue(key, value));
+      CacheInvalidation.publish(vertx, CacheType.valueOf(request.getString("type")), key);
       promise.complete(new JsonObject().put(key, value));
     } else {
       promise.fail("'null' key or value not allowed in cache.");
@@ -88,6 +114,32 @@ public class CacheServiceImpl implements CacheService {
     return promise.future();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> delete(JsonObject request) {
+    LOGGER.trace("message received for cache delete()");
+    LOGGER.debug("message : " + request);
+    IudxCache cache = null;
+    try {
+      cache = getCache(request);
+    } catch (IllegalArgumentException ex) {
+      LOGGER.error("No cache defined for given argument.");
+      return Future.failedFuture("No cache defined for given type");
+    }
+    String key = request.getString("key");
+    if (key == null) {
+      return Future.failedFuture("null key passed.");
+    }
+    CacheType cacheType = CacheType.valueOf(request.getString("type"));
+    return cache
+        .delete(key)
+        .map(
+            deleted -> {
+              CacheInvalidation.publish(vertx, cacheType, key);
+              return new JsonObject();
+            });
+  }
+
   /** {@inheritDoc} */
   @Override
   public Future<JsonObject> refresh(JsonObject request) {
@@ -106,6 +158,7 @@ public class CacheServiceImpl implements CacheService {
 
     if (cache != null && key != null && value != null) {
       cache.put(key, cache.createCacheValue(key, value));
+      CacheInvalidation.publish(vertx, CacheType.valueOf(request.getString("type")), key);
     } else {
       cache.refreshCache();
     }
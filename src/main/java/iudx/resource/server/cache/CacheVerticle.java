@@ -3,11 +3,13 @@ package iudx.resource.server.cache;
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.PG_SERVICE_ADDRESS;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.cachelmpl.CatalogueCacheImpl;
+import iudx.resource.server.common.MeterRegistryProvider;
 import iudx.resource.server.database.postgres.PostgresService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -27,8 +29,9 @@ public class CacheVerticle extends AbstractVerticle {
   public void start() throws Exception {
 
     pgService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
-    catalogueCache = new CatalogueCacheImpl(vertx, config());
-    cacheService = new CacheServiceImpl(vertx, pgService, catalogueCache);
+    MeterRegistry registry = MeterRegistryProvider.get();
+    catalogueCache = new CatalogueCacheImpl(vertx, config(), registry);
+    cacheService = new CacheServiceImpl(vertx, pgService, catalogueCache, registry);
 
     binder = new ServiceBinder(vertx);
     consumer = binder.setAddress(CACHE_SERVICE_ADDRESS).register(CacheService.class, cacheService);
@@ -0,0 +1,184 @@
+package iudx.resource.server.cache;
+
+import static iudx.resource.server.common.Constants.CACHE_INVALIDATION_ADDRESS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
+import iudx.resource.server.common.BroadcastSequence;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Read-through cache in front of the cache service proxy, embedded in the verticles reading the
+ * caches so repeated lookups are local memory reads instead of event bus round trips.
+ *
+ * <p>Values and the not found answers of the cache service are kept until the cache verticle
+ * publishes an invalidation for their key or their cache. Invalidations are numbered per cache, a
+ * gap in the numbers means one was lost and the whole cache is forgotten. Values are also forgotten
+ * after a quarter of the hourly refresh of the cache verticle, in case the last invalidation was
+ * lost. Misses are forgotten after a short while, the catalogue cache may load an item on a later
+ * miss without publishing anything. Other failures, such as a catalogue that can not be reached or
+ * a timeout, are never kept. A lookup answered while an invalidation arrived is not kept, it may be
+ * older than the change. Puts and refreshes go to the cache service.
+ */
+public class NearCacheService implements CacheService {
+
+  private static final Logger LOGGER = LogManager.getLogger(NearCacheService.class);
+  private static final long MAX_ENTRIES = 10000L;
+  private static final long ENTRY_TTL_MINUTES = 15L;
+  private static final long MISS_TTL_SECONDS = 30L;
+  private static final String SEPARATOR = "|";
+
+  private final CacheService cacheService;
+  private final Cache<String, JsonObject> values =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_ENTRIES)
+          .expireAfterWrite(ENTRY_TTL_MINUTES, TimeUnit.MINUTES)
+          .build();
+  private final Cache<String, CatalogueItem> items =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_ENTRIES)
+          .expireAfterWrite(ENTRY_TTL_MINUTES, TimeUnit.MINUTES)
+          .build();
+  private final Cache<String, Throwable> misses =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_ENTRIES)
+          .expireAfterWrite(MISS_TTL_SECONDS, TimeUnit.SECONDS)
+          .build();
+  /** number of invalidations received, to leave out lookups answered before one of them. */
+  private final AtomicLong generation = new AtomicLong();
+  /** numbering of the invalidations received for each cache. */
+  private final Map<String, BroadcastSequence> sequences = new ConcurrentHashMap<>();
+
+  public NearCacheService(Vertx vertx, CacheService cacheService) {
+    this.cacheService = cacheService;
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(CACHE_INVALIDATION_ADDRESS, message -> invalidate(message.body()));
+  }
+
+  private static String cacheKey(String type, String key) {
+    return type + SEPARATOR + key;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> get(JsonObject request) {
+    String type = request.getString("type");
+    String key = request.getString("key");
+    if (type == null || key == null) {
+      return cacheService.get(request);
+    }
+    String cacheKey = cacheKey(type, key);
+    JsonObject value = values.getIfPresent(cacheKey);
+    if (value != null) {
+      return Future.succeededFuture(value.copy());
+    }
+    Throwable miss = misses.getIfPresent(cacheKey);
+    if (miss != null) {
+      return Future.failedFuture(miss);
+    }
+    long loadedAt = generation.get();
+    return cacheService
+        .get(request)
+        .onSuccess(
+            result -> {
+              if (generation.get() == loadedAt) {
+                values.put(cacheKey, result.copy());
+              }
+            })
+        .onFailure(
+            failure -> {
+              if (CacheService.isNotFound(failure) && generation.get() == loadedAt) {
+                misses.put(cacheKey, failure);
+              }
+            });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<CatalogueItem> getCatalogueItem(String id) {
+    if (id == null) {
+      return cacheService.getCatalogueItem(id);
+    }
+    CatalogueItem item = items.getIfPresent(id);
+    if (item != null) {
+      return Future.succeededFuture(item);
+    }
+    String cacheKey = cacheKey(CacheType.CATALOGUE_CACHE.toString(), id);
+    Throwable miss = misses.getIfPresent(cacheKey);
+    if (miss != null) {
+      return Future.failedFuture(miss);
+    }
+    long loadedAt = generation.get();
+    return cacheService
+        .getCatalogueItem(id)
+        .onSuccess(
+            result -> {
+              if (generation.get() == loadedAt) {
+                items.put(id, result);
+              }
+            })
+        .onFailure(
+            failure -> {
+              if (CacheService.isNotFound(failure) && generation.get() == loadedAt) {
+                misses.put(cacheKey, failure);
+              }
+            });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> put(JsonObject request) {
+    return cacheService.put(request);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> delete(JsonObject request) {
+    return cacheService.delete(request);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> refresh(JsonObject request) {
+    return cacheService.refresh(request);
+  }
+
+  void invalidate(JsonObject message) {
+    generation.incrementAndGet();
+    String type = message.getString(CacheInvalidation.TYPE);
+    String key = message.getString(CacheInvalidation.KEY);
+    LOGGER.debug("invalidate {} {}", type, key);
+    if (type != null
+        && !sequences.computeIfAbsent(type, name -> new BroadcastSequence()).inSequence(message)) {
+      LOGGER.warn("missed invalidations of {}, forgetting the whole cache", type);
+      key = null;
+    }
+    boolean catalogue = CacheType.CATALOGUE_CACHE.toString().equals(type);
+    if (key == null) {
+      String prefix = type + SEPARATOR;
+      values.asMap().keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
+      misses.asMap().keySet().removeIf(cacheKey -> cacheKey.startsWith(prefix));
+      if (catalogue) {
+        items.invalidateAll();
+      }
+    } else {
+      values.invalidate(cacheKey(type, key));
+      misses.invalidate(cacheKey(type, key));
+      if (catalogue) {
+        items.invalidate(key);
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package iudx.resource.server.cache.cachelmpl;
+
+import static iudx.resource.server.common.Constants.CACHE_INVALIDATION_ADDRESS;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.BroadcastSequence;
+
+/**
+ * Invalidation messages published when an entry or a whole cache changes, for the near caches in
+ * front of the cache service.
+ *
+ * <p>Messages are numbered with a {@link BroadcastSequence} of their own for each cache, so a near
+ * cache that missed an invalidation of a cache forgets the whole of that cache.
+ *
+ * <pre>
+ * {
+ *    "type": "cache name",
+ *    "key": "changed key, absent when the whole cache was refreshed",
+ *    "publisher": "id of the publishing server",
+ *    "sequence": 1
+ * }
+ * </pre>
+ */
+public final class CacheInvalidation {
+
+  public static final String TYPE = "type";
+  public static final String KEY = "key";
+
+  private CacheInvalidation() {}
+
+  /**
+   * Publish a change.
+   *
+   * @param vertx vertx
+   * @param type cache changed
+   * @param key key changed, null when the whole cache was refreshed
+   */
+  public static void publish(Vertx vertx, CacheType type, String key) {
+    JsonObject message = new JsonObject().put(TYPE, type.toString());
+    if (key != null) {
+      message.put(KEY, key);
+    }
+    vertx
+        .eventBus()
+        .publish(CACHE_INVALIDATION_ADDRESS, BroadcastSequence.stamp(sequenceOf(type), message));
+  }
+
+  /** Name the messages of a cache are numbered under. */
+  private static String sequenceOf(CacheType type) {
+    return CACHE_INVALIDATION_ADDRESS + "." + type;
+  }
+}
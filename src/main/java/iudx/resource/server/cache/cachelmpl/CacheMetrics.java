@@ -0,0 +1,107 @@
+package iudx.resource.server.cache.cachelmpl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of one cache, tagged with its cache type: lookups answered from memory or not, evictions,
+ * durations of the loads on a miss and of the refreshes, the number of entries and the time since
+ * the last successful refresh.
+ */
+final class CacheMetrics {
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer loads;
+  private final Timer refreshes;
+  private final Timer failedRefreshes;
+  /** time of the last successful refresh, 0 before the first one. */
+  private volatile long refreshedAtMillis;
+
+  /**
+   * Register the meters of a cache.
+   *
+   * @param type cache measured
+   * @param registry registry to report to
+   * @param cache entries of the cache, counted and followed for evictions
+   */
+  CacheMetrics(CacheType type, MeterRegistry registry, SnapshotCache<?> cache) {
+    String name = type.toString();
+    this.hits =
+        Counter.builder("rs.cache.requests")
+            .tag("cache", name)
+            .tag("result", "hit")
+            .register(registry);
+    this.misses =
+        Counter.builder("rs.cache.requests")
+            .tag("cache", name)
+            .tag("result", "miss")
+            .register(registry);
+    this.loads =
+        Timer.builder("rs.cache.load")
+            .tag("cache", name)
+            .publishPercentileHistogram()
+            .register(registry);
+    this.refreshes =
+        Timer.builder("rs.cache.refresh")
+            .tag("cache", name)
+            .tag("result", "success")
+            .publishPercentileHistogram()
+            .register(registry);
+    this.failedRefreshes =
+        Timer.builder("rs.cache.refresh")
+            .tag("cache", name)
+            .tag("result", "failure")
+            .publishPercentileHistogram()
+            .register(registry);
+    FunctionCounter.builder("rs.cache.evictions", cache, SnapshotCache::evictionCount)
+        .tag("cache", name)
+        .register(registry);
+    Gauge.builder("rs.cache.entries", cache, SnapshotCache::size)
+        .tag("cache", name)
+        .register(registry);
+    Gauge.builder("rs.cache.refresh.age", this, CacheMetrics::secondsSinceRefresh)
+        .tag("cache", name)
+        .baseUnit("seconds")
+        .register(registry);
+  }
+
+  void hit() {
+    hits.increment();
+  }
+
+  void miss() {
+    misses.increment();
+  }
+
+  /** Start timing a load or a refresh. */
+  long start() {
+    return System.nanoTime();
+  }
+
+  void loaded(long start) {
+    loads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  void refreshed(long start) {
+    refreshes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    refreshedAtMillis = System.currentTimeMillis();
+  }
+
+  void refreshFailed(long start) {
+    failedRefreshes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  /** Seconds since the last successful refresh, NaN before the first one. */
+  double secondsSinceRefresh() {
+    long refreshedAt = refreshedAtMillis;
+    if (refreshedAt == 0) {
+      return Double.NaN;
+    }
+    return (System.currentTimeMillis() - refreshedAt) / 1000.0;
+  }
+}
@@ -2,6 +2,7 @@ package iudx.resource.server.cache.cachelmpl;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
@@ -10,24 +11,50 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.resource.server.common.HttpStatusCode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Active catalogue items by id, refreshed from the catalogue server every hour. Items are kept as
+ * {@link CatalogueItem}, resolved with their group when the cache is populated.
+ *
+ * <p>A miss fetches only the missing item, and its group when not cached, from the catalogue.
+ * Concurrent misses for an id share one fetch, and ids the catalogue does not know are remembered
+ * for a short while so repeated requests for them do not reach the catalogue. Lookups answered
+ * without a fetch, including the remembered unknown ids, count as hits.
+ */
 public class CatalogueCacheImpl implements IudxCache {
 
   private static final Logger LOGGER = LogManager.getLogger(CatalogueCacheImpl.class);
   private static final CacheType cacheType = CacheType.CATALOGUE_CACHE;
+  private static final long NOT_FOUND_TTL_SECONDS = 60L;
+  private static final String ACTIVE = "ACTIVE";
+  private static final String ITEM_NOT_FOUND = "key not found";
 
   static WebClient catWebClient;
-  private final Cache<String, CacheValue<JsonObject>> cache =
-      CacheBuilder.newBuilder().maximumSize(5000).expireAfterWrite(1L, TimeUnit.DAYS).build();
+  private final SnapshotCache<CatalogueItem> cache = new SnapshotCache<>();
+  private final Cache<String, Boolean> notFound =
+      CacheBuilder.newBuilder()
+          .maximumSize(5000)
+          .expireAfterWrite(NOT_FOUND_TTL_SECONDS, TimeUnit.SECONDS)
+          .build();
+  private final Map<String, Future<CatalogueItem>> loading = new ConcurrentHashMap<>();
+  private final Vertx vertx;
+  private final CacheMetrics metrics;
   private String catHost;
   private int catPort;
   private String catBasePath;
 
-  public CatalogueCacheImpl(Vertx vertx, JsonObject config) {
+  public CatalogueCacheImpl(Vertx vertx, JsonObject config, MeterRegistry registry) {
     LOGGER.debug("config : {}", config);
+    this.vertx = vertx;
+    this.metrics = new CacheMetrics(cacheType, registry, cache);
     this.catHost = config.getString("catServerHost");
     this.catPort = config.getInteger("catServerPort");
     this.catBasePath = config.getString("dxCatalogueBasePath");
@@ -53,26 +80,119 @@ public class CatalogueCacheImpl implements IudxCache {
 
   @Override
   public Future<CacheValue<JsonObject>> get(String key) {
+    return getItem(key).map(item -> item::getItem);
+  }
+
+  /**
+   * Catalogue item of an id.
+   *
+   * @param key id of the item
+   * @return item, failed with a not found {@link ServiceException} when the id is not in the
+   *     catalogue
+   */
+  public Future<CatalogueItem> getItem(String key) {
     LOGGER.trace("request for id : {}", key);
-    Promise<CacheValue<JsonObject>> promise = Promise.promise();
-    if (cache.getIfPresent(key) != null) {
-      return Future.succeededFuture(cache.getIfPresent(key));
-    } else {
-      populateCache()
-          .onSuccess(
-              successHandler -> {
-                if (cache.getIfPresent(key) != null) {
-                  promise.complete(cache.getIfPresent(key));
-                } else {
-                  LOGGER.info("key :{} not found in cache/catatlgue server", key);
-                  promise.fail("key not found");
-                }
-              })
-          .onFailure(
-              failureHandler -> {
-                promise.fail("Value not found");
-              });
+    CatalogueItem item = cache.getIfPresent(key);
+    if (item != null) {
+      metrics.hit();
+      return Future.succeededFuture(item);
     }
+    if (notFound.getIfPresent(key) != null) {
+      metrics.hit();
+      return Future.failedFuture(notFound());
+    }
+    metrics.miss();
+    Promise<CatalogueItem> promise = Promise.promise();
+    Future<CatalogueItem> inFlight = loading.putIfAbsent(key, promise.future());
+    if (inFlight != null) {
+      return inFlight;
+    }
+    long start = metrics.start();
+    loadItem(key)
+        .onComplete(
+            loaded -> {
+              metrics.loaded(start);
+              loading.remove(key, promise.future());
+              promise.handle(loaded);
+            });
+    return promise.future();
+  }
+
+  /** Failure of an id the catalogue does not have, load failures are plain failures. */
+  private static ServiceException notFound() {
+    return new ServiceException(HttpStatusCode.NOT_FOUND.getValue(), ITEM_NOT_FOUND);
+  }
+
+  private Future<CatalogueItem> loadItem(String key) {
+    return fetchItem(key)
+        .compose(
+            json -> {
+              if (json == null) {
+                LOGGER.info("key :{} not found in cache/catatlgue server", key);
+                notFound.put(key, Boolean.TRUE);
+                return Future.failedFuture(notFound());
+              }
+              String groupId = CatalogueItem.groupIdOf(json);
+              if (groupId == null || groupId.equals(key)) {
+                return Future.succeededFuture(CatalogueItem.of(json, json));
+              }
+              return loadGroup(groupId).map(group -> CatalogueItem.of(json, group));
+            })
+        .onSuccess(item -> cache.put(key, item));
+  }
+
+  /**
+   * json of a group, null when the catalogue does not have it. Fails when the catalogue can not be
+   * reached, so the item is not cached without the access policy of its group.
+   */
+  private Future<JsonObject> loadGroup(String groupId) {
+    CatalogueItem group = cache.getIfPresent(groupId);
+    if (group != null) {
+      return Future.succeededFuture(group.getItem());
+    }
+    return fetchItem(groupId)
+        .onSuccess(
+            json -> {
+              if (json != null) {
+                cache.put(groupId, CatalogueItem.of(json, json));
+              }
+            });
+  }
+
+  /**
+   * Fetch one item from the catalogue server.
+   *
+   * @param id id of the item
+   * @return json of the item, null when the catalogue does not have it as an active item
+   */
+  private Future<JsonObject> fetchItem(String id) {
+    Promise<JsonObject> promise = Promise.promise();
+    catWebClient
+        .get(catPort, catHost, catBasePath + "/item")
+        .addQueryParam("id", id)
+        .send(
+            catHandler -> {
+              if (catHandler.failed()) {
+                LOGGER.error("Failed to fetch item {} from catalogue", id);
+                promise.fail("Value not found");
+                return;
+              }
+              int status = catHandler.result().statusCode();
+              if (status == 404) {
+                promise.complete(null);
+              } else if (status != 200) {
+                LOGGER.error("Failed to fetch item {} from catalogue : {}", id, status);
+                promise.fail("Value not found");
+              } else {
+                JsonArray results = catHandler.result().bodyAsJsonObject().getJsonArray("results");
+                JsonObject item =
+                    results == null || results.isEmpty() ? null : results.getJsonObject(0);
+                if (item != null && !ACTIVE.equals(item.getString("itemStatus", ACTIVE))) {
+                  item = null;
+                }
+                promise.complete(item);
+              }
+            });
     return promise.future();
   }
 
@@ -87,6 +207,8 @@ public class CatalogueCacheImpl implements IudxCache {
     LOGGER.debug("refresh() cache started");
     Promise<Void> promise = Promise.promise();
     String url = catBasePath + "/search";
+    long start = metrics.start();
+    cache.beginRefresh();
     catWebClient
         .get(catPort, catHost, url)
         .addQueryParam("property", "[itemStatus]")
@@ -100,17 +222,27 @@ public class CatalogueCacheImpl implements IudxCache {
             catHandler -> {
               if (catHandler.succeeded()) {
                 JsonArray response = catHandler.result().bodyAsJsonObject().getJsonArray("results");
-                cache.invalidateAll();
+                Map<String, JsonObject> items = new HashMap<>(response.size());
                 response.forEach(
                     json -> {
                       JsonObject res = (JsonObject) json;
-                      String id = res.getString("id");
-                      CacheValue<JsonObject> cacheValue = createCacheValue(id, res.toString());
-                      cache.put(id, cacheValue);
+                      items.put(res.getString("id"), res);
+                    });
+                Map<String, CatalogueItem> entries = new HashMap<>(items.size());
+                items.forEach(
+                    (id, item) -> {
+                      JsonObject group = items.get(CatalogueItem.groupIdOf(item));
+                      entries.put(id, CatalogueItem.of(item, group));
                     });
+                cache.publish(entries);
+                CacheInvalidation.publish(vertx, cacheType, null);
+                notFound.invalidateAll();
+                metrics.refreshed(start);
                 LOGGER.debug("refresh() cache completed");
                 promise.complete();
               } else if (catHandler.failed()) {
+                cache.endRefresh();
+                metrics.refreshFailed(start);
                 LOGGER.error("Failed to populate catalogue cache");
                 promise.fail("Failed to populate catalogue cache");
               }
@@ -0,0 +1,161 @@
+package iudx.resource.server.cache.cachelmpl;
+
+import static iudx.resource.server.database.archives.Constants.ITEM_TYPES;
+import static iudx.resource.server.database.archives.Constants.ITEM_TYPE_RESOURCE;
+
+import io.vertx.codegen.annotations.DataObject;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Catalogue item with the facts derived from it and its group, computed once when the catalogue
+ * cache is populated.
+ *
+ * <p>The kind is the first of the item types known to the server. The group of a resource is its
+ * resource group, any other item is its own group. The access policy of an item overrides the one
+ * of its group, and the applicable filters are the resource APIs of the group followed by the ones
+ * of the item.
+ */
+@DataObject
+public final class CatalogueItem {
+
+  private static final String ID = "id";
+  private static final String TYPE = "type";
+  private static final String KIND = "kind";
+  private static final String GROUP_ID = "groupId";
+  private static final String RESOURCE_GROUP = "resourceGroup";
+  private static final String PROVIDER = "provider";
+  private static final String ACCESS_POLICY = "accessPolicy";
+  private static final String APPLICABLE_FILTERS = "applicableFilters";
+  private static final String RESOURCE_APIS = "iudxResourceAPIs";
+  private static final String ITEM = "item";
+
+  private final String id;
+  private final String kind;
+  private final String groupId;
+  private final String provider;
+  private final String accessPolicy;
+  private final List<String> applicableFilters;
+  private final JsonObject item;
+
+  public CatalogueItem(JsonObject json) {
+    this.id = json.getString(ID);
+    this.kind = json.getString(KIND);
+    this.groupId = json.getString(GROUP_ID);
+    this.provider = json.getString(PROVIDER);
+    this.accessPolicy = json.getString(ACCESS_POLICY);
+    this.applicableFilters = toList(json.getJsonArray(APPLICABLE_FILTERS));
+    JsonObject item = json.getJsonObject(ITEM);
+    this.item = item == null ? new JsonObject() : item.copy();
+  }
+
+  private CatalogueItem(JsonObject item, JsonObject group) {
+    this.id = item.getString(ID);
+    this.kind = kindOf(item);
+    this.groupId = ITEM_TYPE_RESOURCE.equals(kind) ? item.getString(RESOURCE_GROUP) : id;
+    this.provider = item.getString(PROVIDER);
+
+    String policy = group == null ? null : group.getString(ACCESS_POLICY);
+    this.accessPolicy = item.getString(ACCESS_POLICY, policy);
+
+    List<String> filters = new ArrayList<>();
+    if (group != null && group != item) {
+      filters.addAll(toList(group.getJsonArray(RESOURCE_APIS)));
+    }
+    filters.addAll(toList(item.getJsonArray(RESOURCE_APIS)));
+    this.applicableFilters = Collections.unmodifiableList(filters);
+    this.item = item.copy();
+  }
+
+  /**
+   * Derive an item from its catalogue json and the json of its group.
+   *
+   * @param item catalogue json of the item
+   * @param group catalogue json of the group of the item, the item itself for a group, null when
+   *     not in the catalogue
+   * @return item
+   */
+  public static CatalogueItem of(JsonObject item, JsonObject group) {
+    return new CatalogueItem(item, group);
+  }
+
+  /** Group id of a catalogue json, the resource group for a resource and the id otherwise. */
+  static String groupIdOf(JsonObject item) {
+    return ITEM_TYPE_RESOURCE.equals(kindOf(item))
+        ? item.getString(RESOURCE_GROUP)
+        : item.getString(ID);
+  }
+
+  private static String kindOf(JsonObject item) {
+    JsonArray types = item.getJsonArray(TYPE);
+    if (types == null) {
+      return null;
+    }
+    for (int i = 0; i < types.size(); i++) {
+      String type = types.getString(i);
+      String kind = type.substring(type.lastIndexOf(':') + 1);
+      if (ITEM_TYPES.contains(kind)) {
+        return kind;
+      }
+    }
+    return null;
+  }
+
+  private static List<String> toList(JsonArray array) {
+    if (array == null) {
+      return Collections.emptyList();
+    }
+    List<String> list = new ArrayList<>(array.size());
+    array.forEach(value -> list.add(value.toString()));
+    return Collections.unmodifiableList(list);
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+        .put(ID, id)
+        .put(KIND, kind)
+        .put(GROUP_ID, groupId)
+        .put(PROVIDER, provider)
+        .put(ACCESS_POLICY, accessPolicy)
+        .put(APPLICABLE_FILTERS, new JsonArray(new ArrayList<>(applicableFilters)))
+        .put(ITEM, item.copy());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /** Item type without its prefix, one of Resource, ResourceGroup, Provider or ResourceServer. */
+  public String getKind() {
+    return kind;
+  }
+
+  public boolean isResource() {
+    return ITEM_TYPE_RESOURCE.equals(kind);
+  }
+
+  public String getGroupId() {
+    return groupId;
+  }
+
+  public String getProvider() {
+    return provider;
+  }
+
+  /** Access policy of the item, or of its group when the item has none. */
+  public String getAccessPolicy() {
+    return accessPolicy;
+  }
+
+  public List<String> getApplicableFilters() {
+    return applicableFilters;
+  }
+
+  /** Copy of the catalogue json of the item. */
+  public JsonObject getItem() {
+    return item.copy();
+  }
+}
@@ -9,6 +9,16 @@ public interface IudxCache {
 
   Future<CacheValue<JsonObject>> get(String key);
 
+  /**
+   * remove a key, as a delta instead of a refresh of the whole cache.
+   *
+   * @param key key to remove
+   * @return Future
+   */
+  default Future<Void> delete(String key) {
+    return Future.failedFuture("Removing elements is not allowed in " + getClass().getSimpleName());
+  }
+
   Future<Void> refreshCache();
 
   CacheValue<JsonObject> createCacheValue(String key, String value);
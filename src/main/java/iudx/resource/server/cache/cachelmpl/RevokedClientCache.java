@@ -1,14 +1,17 @@
 package iudx.resource.server.cache.cachelmpl;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
 import iudx.resource.server.common.Constants;
+import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.database.postgres.PostgresService;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,13 +21,17 @@ public class RevokedClientCache implements IudxCache {
   private static final Logger LOGGER = LogManager.getLogger(RevokedClientCache.class);
   private static final CacheType cacheType = CacheType.REVOKED_CLIENT;
 
-  private final Cache<String, CacheValue<JsonObject>> cache =
-      CacheBuilder.newBuilder().maximumSize(5000).expireAfterWrite(1L, TimeUnit.DAYS).build();
+  private final SnapshotCache<CacheValue<JsonObject>> cache = new SnapshotCache<>();
+
+  private final CacheMetrics metrics;
 
   private PostgresService pgService;
+  private Vertx vertx;
 
-  public RevokedClientCache(Vertx vertx, PostgresService postgresService) {
+  public RevokedClientCache(Vertx vertx, PostgresService postgresService, MeterRegistry registry) {
+    this.vertx = vertx;
     this.pgService = postgresService;
+    this.metrics = new CacheMetrics(cacheType, registry, cache);
     refreshCache();
 
     vertx.setPeriodic(
@@ -40,12 +47,22 @@ public class RevokedClientCache implements IudxCache {
     return Future.succeededFuture();
   }
 
+  @Override
+  public Future<Void> delete(String key) {
+    cache.invalidate(key);
+    return Future.succeededFuture();
+  }
+
   @Override
   public Future<CacheValue<JsonObject>> get(String key) {
-    if (cache.getIfPresent(key) != null) {
-      return Future.succeededFuture(cache.getIfPresent(key));
+    CacheValue<JsonObject> value = cache.getIfPresent(key);
+    if (value != null) {
+      metrics.hit();
+      return Future.succeededFuture(value);
     } else {
-      return Future.failedFuture("Value not found");
+      metrics.miss();
+      return Future.failedFuture(
+          new ServiceException(HttpStatusCode.NOT_FOUND.getValue(), "Value not found"));
     }
   }
 
@@ -54,22 +71,29 @@ public class RevokedClientCache implements IudxCache {
     LOGGER.trace(cacheType + " refreshCache() called");
     Promise<Void> promise = Promise.promise();
     String query = Constants.SELECT_REVOKE_TOKEN_SQL;
+    long start = metrics.start();
+    cache.beginRefresh();
     pgService.executeQuery(
         query,
         handler -> {
           if (handler.succeeded()) {
             JsonArray clientIdArray = handler.result().getJsonArray("result");
-            cache.invalidateAll();
+            Map<String, CacheValue<JsonObject>> entries = new HashMap<>();
             clientIdArray.forEach(
                 e -> {
                   JsonObject clientInfo = (JsonObject) e;
                   String key = clientInfo.getString("_id");
                   String expiry = clientInfo.getString("expiry");
                   CacheValue<JsonObject> cacheValue = createCacheValue(key, expiry);
-                  this.cache.put(key, cacheValue);
+                  entries.put(key, cacheValue);
                 });
+            cache.publish(entries);
+            CacheInvalidation.publish(vertx, cacheType, null);
+            metrics.refreshed(start);
             promise.complete();
           } else {
+            cache.endRefresh();
+            metrics.refreshFailed(start);
             promise.fail("failed to refresh");
           }
         });
@@ -0,0 +1,100 @@
+package iudx.resource.server.cache.cachelmpl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entries of a cache refreshed as a whole. A refresh fills a new cache off to the side and
+ * publishes it with one reference swap, so readers see either the previous or the new entries and
+ * never an empty or partly filled cache.
+ *
+ * <p>Entries put or removed while a refresh is running are carried over into the new entries, the
+ * source read by the refresh may not have the change yet. Entries evicted for size or age are
+ * counted across refreshes.
+ *
+ * @param <V> type of the cached values
+ */
+final class SnapshotCache<V> {
+
+  private static final long MAXIMUM_SIZE = 5000L;
+
+  private final LongAdder evictions = new LongAdder();
+  private volatile Cache<String, V> current = newCache();
+  /** entries put during a refresh, null for the removed ones. */
+  private final Map<String, V> written = new HashMap<>();
+  private boolean refreshing;
+
+  private Cache<String, V> newCache() {
+    return CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .expireAfterWrite(1L, TimeUnit.DAYS)
+        .<String, V>removalListener(
+            removal -> {
+              if (removal.wasEvicted()) {
+                evictions.increment();
+              }
+            })
+        .build();
+  }
+
+  long size() {
+    return current.size();
+  }
+
+  long evictionCount() {
+    return evictions.sum();
+  }
+
+  V getIfPresent(String key) {
+    return current.getIfPresent(key);
+  }
+
+  synchronized void put(String key, V value) {
+    current.put(key, value);
+    if (refreshing) {
+      written.put(key, value);
+    }
+  }
+
+  synchronized void invalidate(String key) {
+    current.invalidate(key);
+    if (refreshing) {
+      written.put(key, null);
+    }
+  }
+
+  /** Start recording the entries put until the refresh is published. */
+  synchronized void beginRefresh() {
+    refreshing = true;
+  }
+
+  /**
+   * Replace all entries.
+   *
+   * @param entries entries read by the refresh
+   */
+  synchronized void publish(Map<String, V> entries) {
+    Cache<String, V> next = newCache();
+    next.putAll(entries);
+    written.forEach(
+        (key, value) -> {
+          if (value == null) {
+            next.invalidate(key);
+          } else {
+            next.put(key, value);
+          }
+        });
+    current = next;
+    endRefresh();
+  }
+
+  /** Keep the current entries, the refresh failed. */
+  synchronized void endRefresh() {
+    refreshing = false;
+    written.clear();
+  }
+}
@@ -0,0 +1,63 @@
+package iudx.resource.server.common;
+
+import io.vertx.core.json.JsonObject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sequence numbers of the broadcast messages changing the caches, so a listener applying them as
+ * deltas notices when it missed or reordered one and reloads the whole cache instead.
+ *
+ * <p>Each server publishes under its own publisher id with numbers counting up from 1 on each
+ * exchange, as a listener only receives the messages of one exchange. A listener keeps the last
+ * number seen per publisher, a number that does not follow it is a gap. The first
+ * message seen from a publisher and messages without a number are taken as they come.
+ */
+public final class BroadcastSequence {
+
+  public static final String PUBLISHER = "publisher";
+  public static final String SEQUENCE = "sequence";
+
+  private static final String PUBLISHER_ID = UUID.randomUUID().toString();
+  /** last number published by this server on each exchange. */
+  private static final Map<String, AtomicLong> SEQUENCES = new ConcurrentHashMap<>();
+
+  private final Map<String, Long> lastSeen = new HashMap<>();
+
+  /**
+   * Number a message published by this server.
+   *
+   * @param exchange exchange the message is published to
+   * @param message broadcast message
+   * @return the message
+   */
+  public static JsonObject stamp(String exchange, JsonObject message) {
+    long sequence =
+        SEQUENCES.computeIfAbsent(exchange, key -> new AtomicLong()).incrementAndGet();
+    return message.put(PUBLISHER, PUBLISHER_ID).put(SEQUENCE, sequence);
+  }
+
+  /**
+   * Check a received message against the messages received before from its publisher.
+   *
+   * @param message broadcast message
+   * @return false when messages of its publisher were missed or came out of order
+   */
+  public synchronized boolean inSequence(JsonObject message) {
+    String publisher = message.getString(PUBLISHER);
+    Long sequence = message.getLong(SEQUENCE);
+    if (publisher == null || sequence == null) {
+      return true;
+    }
+    Long last = lastSeen.get(publisher);
+    if (last == null || sequence == last + 1) {
+      lastSeen.put(publisher, sequence);
+      return true;
+    }
+    lastSeen.put(publisher, Math.max(last, sequence));
+    return false;
+  }
+}
@@ -13,6 +13,14 @@ public class Constants {
   public static final String BROKER_SERVICE_ADDRESS = "iudx.rs.broker.service";
   public static final String METERING_SERVICE_ADDRESS = "iudx.rs.metering.service";
   public static final String ENCRYPTION_SERVICE_ADDRESS = "iudx.rs.encryption.service";
+  /* event bus addresses */
+  public static final String SEARCH_CACHE_INVALIDATE_ADDRESS = "iudx.rs.search.cache.invalidate";
+  public static final String ASYNC_JOB_DONE_ADDRESS = "iudx.rs.async.job.done";
+  public static final String ASYNC_JOB_RESUME_ADDRESS = "iudx.rs.async.job.resume";
+  public static final String ASYNC_JOB_WAITING_ADDRESS = "iudx.rs.async.job.waiting";
+  public static final String ASYNC_STATUS_ADDRESS = "iudx.rs.async.status";
+  public static final String CACHE_INVALIDATION_ADDRESS = "iudx.rs.cache.invalidation";
+  public static final String METERING_USAGE_ADDRESS = "iudx.rs.metering.usage";
   public static final String CREATE_INGESTION_SQL =
       "INSERT INTO "
           + "adaptors_details(exchange_name,resource_id,dataset_name,dataset_details_json,user_id,providerid) "
@@ -32,4 +40,6 @@ public class Constants {
   // postgres queries
   public static String SELECT_REVOKE_TOKEN_SQL = "SELECT * FROM revoked_tokens";
   public static String SELECT_UNIQUE_ATTRIBUTE = "SELECT * from unique_attributes";
+  public static String SELECT_USAGE_BY_USER_SQL =
+      "SELECT userid, count(*) FROM auditing_rs where time between '$1' and '$2' group by userid";
 }
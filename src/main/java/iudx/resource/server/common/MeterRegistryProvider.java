@@ -0,0 +1,20 @@
+package iudx.resource.server.common;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+/**
+ * Resolves the meter registry used for application metrics. This is the prometheus registry set up
+ * by the Deployer, or the micrometer global registry when vertx metrics are not enabled (tests,
+ * embedded use).
+ */
+public final class MeterRegistryProvider {
+
+  private MeterRegistryProvider() {}
+
+  public static MeterRegistry get() {
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    return registry != null ? registry : Metrics.globalRegistry;
+  }
+}
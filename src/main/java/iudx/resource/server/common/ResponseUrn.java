@@ -29,6 +29,9 @@ public enum ResponseUrn {
       "urn:dx:rs:requestLimitExceeded", "Operation exceeds the default value of limit"),
 
   PAYLOAD_TOO_LARGE_URN("urn:dx:rs:payloadTooLarge", "Response size exceeds limit"),
+  INVALID_CURSOR_URN("urn:dx:rs:invalidCursor", "Invalid pagination cursor"),
+  CURSOR_EXPIRED_URN(
+      "urn:dx:rs:cursorExpired", "Pagination cursor expired, start the search again"),
 
   // extra urn
   INVALID_ID_VALUE_URN("urn:dx:rs:invalidIdValue", "Invalid id"),
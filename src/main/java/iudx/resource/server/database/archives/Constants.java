@@ -79,6 +79,11 @@ public class Constants {
   /*pagination*/
   public static final String PARAM_SIZE = "limit";
   public static final String PARAM_FROM = "offset";
+  public static final String PARAM_CURSOR = "cursor";
+  public static final String NEXT_CURSOR = "nextCursor";
+  public static final String CURSOR_SORT_FIELD = "observationDateTime";
+  public static final String PIT_ID = "pitId";
+  public static final String LAST_SORT = "lastSort";
 
   /* Errors */
   public static final String INVALID_OPERATOR = "Invalid operator";
@@ -95,6 +100,7 @@ public class Constants {
   public static final String DB_ERROR = "DB request has failed";
   public static final String DB_ERROR_2XX = "Status code is not 2xx";
   public static final String ID_NOT_FOUND = "No id found";
+  public static final String CATALOGUE_ITEM_NOT_FOUND = "key not found";
   public static final String EMPTY_RESOURCE_ID = "resource-id is empty";
   public static final String SEARCHTYPE_NOT_FOUND = "No searchType found";
   public static final String BAD_PARAMETERS = "Bad parameters";
@@ -107,6 +113,7 @@ public class Constants {
   public static final String ROOT_CAUSE = "root_cause";
   public static final String REASON = "reason";
   public static final String MALFORMED_ID = "Malformed Id ";
+  public static final String INVALID_CURSOR = "Invalid pagination cursor";
   public static final String STATUS = "status";
   public static final String INDEX_NOT_FOUND = "index_not_found_exception";
   public static final String INVALID_RESOURCE_ID = "Invalid resource id";
@@ -141,10 +148,16 @@ public class Constants {
   public static final String INVALID_OPTIONS = "invalid options for latest";
   // needs modification depending on the actual error returned from Redis
   public static final String ID_NOT_PRESENT = "Not found";
+  public static final String TOO_MANY_CURSORS = "Too many open search cursors, retry later";
+  public static final String CURSOR_EXPIRED = "Pagination cursor expired, start the search again";
+  public static final String SEARCH_RETRY = "Search failed, retry later";
 
   // pagination
 
   public static final int DEFAULT_SIZE_VALUE = 5000;
   public static final int DEFAULT_FROM_VALUE = 0;
+  public static final int MAX_SEARCH_HITS = 50000;
+  public static final int MAX_CURSOR_PAGE_SIZE = 5000;
+  public static final int DEFAULT_MAX_OPEN_CURSORS = 100;
   public static final String COUNT_MATCH_ALL_QUERY = "{\"query\": { \"match_all\": {} }}";
 }
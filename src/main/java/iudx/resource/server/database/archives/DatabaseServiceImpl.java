@@ -6,15 +6,18 @@ import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.CacheService;
-import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.EsSearchResponseStreamer;
 import iudx.resource.server.database.elastic.QueryDecoder;
+import iudx.resource.server.database.elastic.SearchCursor;
 import iudx.resource.server.database.elastic.exception.EsQueryException;
 import java.util.*;
-import java.util.stream.Collectors;
+import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -32,18 +35,34 @@ import org.apache.logging.log4j.Logger;
 public class DatabaseServiceImpl implements DatabaseService {
 
   private static final Logger LOGGER = LogManager.getLogger(DatabaseServiceImpl.class);
-  static ElasticClient client;
-  static CacheService cacheService;
+  private ElasticClient client;
+  private CacheService cacheService;
   private QueryDecoder queryDecoder = new QueryDecoder();
   private String timeLimit;
   private String tenantPrefix;
+  private SearchResultCache searchResultCache;
 
   public DatabaseServiceImpl(
       ElasticClient client, String timeLimit, String tenantPrefix, CacheService cacheService) {
+    this(client, timeLimit, tenantPrefix, cacheService, null);
+  }
+
+  /**
+   * Constructor with a cache for search responses.
+   *
+   * @param searchResultCache cache shared by the database services, null disables caching
+   */
+  public DatabaseServiceImpl(
+      ElasticClient client,
+      String timeLimit,
+      String tenantPrefix,
+      CacheService cacheService,
+      SearchResultCache searchResultCache) {
     this.client = client;
     this.timeLimit = timeLimit;
     this.tenantPrefix = tenantPrefix;
     this.cacheService = cacheService;
+    this.searchResultCache = searchResultCache;
   }
 
   public int getOrDefault(JsonObject json, String key, int def) {
@@ -59,7 +78,7 @@ public class DatabaseServiceImpl implements DatabaseService {
     Promise<JsonObject> promise = Promise.promise();
     request.put(TIME_LIMIT, timeLimit);
     try {
-      Future<JsonObject> validationFuture = checkQuery(request);
+      Future<CatalogueItem> validationFuture = checkQuery(request);
       validationFuture
           .onFailure(
               handler -> {
@@ -67,51 +86,67 @@ public class DatabaseServiceImpl implements DatabaseService {
               })
           .onSuccess(
               handler -> {
-                String resourceGroup = handler.getString("resourceGroup");
-                StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
-                final String searchIndex;
-                if (!this.tenantPrefix.equals("none")) {
-                  searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-                } else {
-                  searchIndex = resourceGroup;
-                }
-                // String searchIndex = tenantBuilder;
+                final String searchIndex = getSearchIndex(handler);
                 final int sizeKeyValue = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
                 final int fromKeyValue = getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE);
 
                 Query query = queryDecoder.getQuery(request);
                 LOGGER.info("query : " + query.toString());
-                CountResultPlaceholder countPlaceHolder = new CountResultPlaceholder();
-                Future<JsonObject> countFuture = client.asyncCount(searchIndex, query);
-                countFuture
+                SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
+                final SearchCursor cursor;
+                try {
+                  cursor = queryDecoder.getSearchCursor(request);
+                } catch (EsQueryException ex) {
+                  promise.fail(ex.toString());
+                  return;
+                }
+                if (cursor != null) {
+                  searchWithCursor(searchIndex, query, sourceFilter, sizeKeyValue, cursor)
+                      .onSuccess(promise::complete)
+                      .onFailure(failureHandler -> promise.fail(failureHandler.getMessage()));
+                  return;
+                }
+                final JsonObject cacheKey =
+                    request.copy().put(PARAM_SIZE, sizeKeyValue).put(PARAM_FROM, fromKeyValue);
+                if (searchResultCache != null) {
+                  JsonObject cached = searchResultCache.get(searchIndex, cacheKey);
+                  if (cached != null) {
+                    LOGGER.debug("Success: served search from cache");
+                    promise.complete(cached);
+                    return;
+                  }
+                }
+                // single round trip, the total is tracked only up to the limit by elastic
+                Future<JsonObject> searchFuture =
+                    client.asyncSearch(searchIndex, query, sizeKeyValue, fromKeyValue, sourceFilter);
+                searchFuture
                     .compose(
-                        countQueryHandler -> {
-                          long count =
-                              countQueryHandler
-                                  .getJsonArray("results")
-                                  .getJsonObject(0)
-                                  .getInteger("totalHits");
+                        searchHandler -> {
+                          Long count = searchHandler.getLong(TOTAL_HITS);
+                          if (count == null) {
+                            LOGGER.error("Search response without total hits");
+                            return Future.failedFuture(
+                                new EsQueryException("Exception occured executing query")
+                                    .toString());
+                          }
                           LOGGER.info("count : " + count);
-                          if (count > 50000) {
-                            JsonObject json = new JsonObject();
-                            json.put("type", 413);
-                            json.put("title", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getUrn());
-                            json.put("details", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getMessage()+ " use filters to get value within limit or use async api");
-                            return Future.failedFuture(json.toString());
+                          if (count > MAX_SEARCH_HITS) {
+                            return Future.failedFuture(payloadTooLargeResponse().toString());
                           }
-                          countPlaceHolder.setCount(count);
-                          SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
-                          return client.asyncSearch(
-                              searchIndex, query, sizeKeyValue, fromKeyValue, sourceFilter);
+                          return Future.succeededFuture(searchHandler);
                         })
                     .onSuccess(
                         successHandler -> {
                           LOGGER.debug("Success: Successful DB request");
                           JsonObject responseJson = successHandler;
+                          Object totalHits = responseJson.remove(TOTAL_HITS);
                           responseJson
                               .put(PARAM_SIZE, sizeKeyValue)
                               .put(PARAM_FROM, fromKeyValue)
-                              .put("totalHits", countPlaceHolder.getCount());
+                              .put(TOTAL_HITS, totalHits);
+                          if (searchResultCache != null) {
+                            searchResultCache.put(searchIndex, cacheKey, responseJson);
+                          }
                           promise.complete(responseJson);
                         })
                     .onFailure(
@@ -130,13 +165,187 @@ public class DatabaseServiceImpl implements DatabaseService {
     return promise.future();
   }
 
+  /**
+   * Search one page using a point in time and search_after, so the cost of a page does not grow
+   * with its depth. The results are not limited to {@link Constants#MAX_SEARCH_HITS} as offset
+   * paging is, each page is limited to {@link Constants#MAX_CURSOR_PAGE_SIZE} instead. Total hits
+   * are only counted on the first page. The first page is read from the index and kept, a point in
+   * time is only opened when it does not hold every hit, and the last page closes it.
+   */
+  private Future<JsonObject> searchWithCursor(
+      String searchIndex, Query query, SourceConfig sourceFilter, int size, SearchCursor cursor) {
+    final int pageSize = Math.min(size, MAX_CURSOR_PAGE_SIZE);
+    if (!cursor.isStart()) {
+      return searchAfter(cursor.getPitId(), query, sourceFilter, pageSize, cursor);
+    }
+    return client
+        .asyncSearchFirstPage(
+            searchIndex, query, pageSize, queryDecoder.getFirstPageSort(), sourceFilter)
+        .compose(
+            firstPage -> {
+              JsonArray nextSort = (JsonArray) firstPage.remove(LAST_SORT);
+              Object totalHits = firstPage.remove(TOTAL_HITS);
+              firstPage.put(PARAM_SIZE, pageSize).put(TOTAL_HITS, totalHits);
+              if (nextSort == null) {
+                return Future.succeededFuture(firstPage);
+              }
+              return client
+                  .asyncOpenPointInTime(searchIndex)
+                  .compose(
+                      pitId -> {
+                        if (nextSort.isEmpty()) {
+                          // every hit of the page has the same time, read it again by shard doc
+                          return searchAfter(pitId, query, sourceFilter, pageSize, cursor);
+                        }
+                        return Future.succeededFuture(
+                            firstPage.put(NEXT_CURSOR, new SearchCursor(pitId, nextSort).encode()));
+                      });
+            });
+  }
+
+  private Future<JsonObject> searchAfter(
+      String pitId, Query query, SourceConfig sourceFilter, int pageSize, SearchCursor cursor) {
+    return client
+        .asyncSearchAfter(
+            pitId,
+            query,
+            pageSize,
+            cursor.getSearchAfter(),
+            queryDecoder.getCursorSort(),
+            sourceFilter,
+            cursor.isStart())
+        .onFailure(
+            failure -> {
+              // a client holding the cursor may retry other failures, the keep alive reclaims it
+              if (cursor.isStart() || isCursorRejected(failure)) {
+                client.closePointInTime(pitId);
+              }
+            })
+        .compose(
+            searchHandler -> {
+              String nextPitId = (String) searchHandler.remove(PIT_ID);
+              JsonArray lastSort = (JsonArray) searchHandler.remove(LAST_SORT);
+              Object totalHits = searchHandler.remove(TOTAL_HITS);
+              searchHandler.put(PARAM_SIZE, pageSize);
+              if (totalHits != null) {
+                searchHandler.put(TOTAL_HITS, totalHits);
+              }
+              int resultCount = searchHandler.getJsonArray(RESULTS).size();
+              if (resultCount < pageSize || lastSort == null) {
+                client.closePointInTime(nextPitId);
+              } else {
+                searchHandler.put(NEXT_CURSOR, new SearchCursor(nextPitId, lastSort).encode());
+              }
+              return Future.succeededFuture(searchHandler);
+            });
+  }
+
+  /** Whether a cursor page failed for good, the cursor expired or was not valid. */
+  private static boolean isCursorRejected(Throwable failure) {
+    try {
+      int type = new JsonObject(failure.getMessage()).getInteger(ERROR_TYPE, 0);
+      return type == 400 || type == 410;
+    } catch (Exception ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Streaming variant of {@link #search(JsonObject)}. The Elasticsearch response is kept as raw
+   * bytes, so the caller can copy the documents straight to the HTTP response without the
+   * intermediate JsonObject and event bus hops. Only usable in-process, it is not part of the
+   * service proxy.
+   *
+   * @param request - search request query
+   * @return Future of a streamer over the raw search response, failed with the same json errors as
+   *     search
+   */
+  public Future<EsSearchResponseStreamer> searchStream(JsonObject request) {
+    Promise<EsSearchResponseStreamer> promise = Promise.promise();
+    request.put(TIME_LIMIT, timeLimit);
+    try {
+      checkQuery(request)
+          .onFailure(handler -> promise.fail(handler.toString()))
+          .onSuccess(
+              handler -> {
+                final String searchIndex = getSearchIndex(handler);
+                final int sizeKeyValue = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+                final int fromKeyValue = getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE);
+                final Query query;
+                final SourceConfig sourceFilter;
+                try {
+                  query = queryDecoder.getQuery(request);
+                  sourceFilter = queryDecoder.getSourceConfigFilters(request);
+                } catch (EsQueryException ex) {
+                  promise.fail(new EsQueryException(ResponseUrn.BAD_REQUEST_URN, ex.getMessage())
+                      .toString());
+                  return;
+                }
+                LOGGER.info("query : " + query.toString());
+                client
+                    .asyncSearchRaw(searchIndex, query, sizeKeyValue, fromKeyValue, sourceFilter)
+                    .compose(
+                        raw -> {
+                          try {
+                            EsSearchResponseStreamer streamer = EsSearchResponseStreamer.parse(raw);
+                            if (streamer.getTotalHits() == 0) {
+                              ResponseBuilder responseBuilder =
+                                  new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                              responseBuilder.setMessage(EMPTY_RESPONSE);
+                              return Future.failedFuture(
+                                  responseBuilder.getResponse().toString());
+                            }
+                            if (streamer.getTotalHits() > MAX_SEARCH_HITS) {
+                              return Future.failedFuture(payloadTooLargeResponse().toString());
+                            }
+                            return Future.succeededFuture(
+                                streamer.setPage(sizeKeyValue, fromKeyValue));
+                          } catch (Exception ex) {
+                            LOGGER.error("Malformed search response : {}", ex.getMessage());
+                            return Future.failedFuture(
+                                new EsQueryException("Exception occured executing query")
+                                    .toString());
+                          }
+                        })
+                    .onSuccess(promise::complete)
+                    .onFailure(
+                        failureHandler -> {
+                          LOGGER.info("failed to query : " + failureHandler);
+                          promise.fail(failureHandler.getMessage());
+                        });
+              });
+    } catch (Exception ex) {
+      promise.fail(new EsQueryException("Exception occured executing query").toString());
+    }
+    return promise.future();
+  }
+
+  private String getSearchIndex(CatalogueItem catalogueItem) {
+    String resourceGroup = catalogueItem.getGroupId();
+    if (!this.tenantPrefix.equals("none")) {
+      return tenantPrefix + "__" + resourceGroup;
+    }
+    return resourceGroup;
+  }
+
+  private JsonObject payloadTooLargeResponse() {
+    JsonObject json = new JsonObject();
+    json.put("type", 413);
+    json.put("title", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getUrn());
+    json.put(
+        "details",
+        ResponseUrn.PAYLOAD_TOO_LARGE_URN.getMessage()
+            + " use filters to get value within limit or use async api");
+    return json;
+  }
+
   @Override
   public Future<JsonObject> count(JsonObject request) {
     Promise<JsonObject> promise = Promise.promise();
 
     request.put(TIME_LIMIT, timeLimit);
     try {
-      Future<JsonObject> validationFuture = checkQuery(request);
+      Future<CatalogueItem> validationFuture = checkQuery(request);
       validationFuture
           .onFailure(
               handler -> {
@@ -151,14 +360,7 @@ public class DatabaseServiceImpl implements DatabaseService {
                           ResponseUrn.BAD_REQUEST_URN, "Count is not supported with filtering"));
                   return;
                 }
-                final String searchIndex;
-                String resourceGroup = handler.getString("resourceGroup");
-                StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
-                if (!this.tenantPrefix.equals("none")) {
-                  searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-                } else {
-                  searchIndex = resourceGroup;
-                }
+                final String searchIndex = getSearchIndex(handler);
                 Query query = queryDecoder.getQuery(request);
                 LOGGER.info("query : " + query.toString());
                 Future<JsonObject> countFuture = client.asyncCount(searchIndex, query);
@@ -181,43 +383,37 @@ public class DatabaseServiceImpl implements DatabaseService {
     return promise.future();
   }
 
-  public Future<JsonObject> checkQuery(JsonObject request) {
-    Promise<JsonObject> promise = Promise.promise();
-    JsonObject cacheRequest = new JsonObject();
-    cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
-    cacheRequest.put("key", request.getJsonArray(ID).getString(0));
-    Future<JsonObject> getItemType = cacheService.get(cacheRequest);
-    getItemType.onSuccess(
-        itemType -> {
-          Set<String> type = new HashSet<String>(itemType.getJsonArray("type").getList());
-          Set<String> itemTypeSet =
-              type.stream().map(e -> e.split(":")[1]).collect(Collectors.toSet());
-          itemTypeSet.retainAll(ITEM_TYPES);
-
-          if (!itemTypeSet.contains("Resource")) {
-            LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
-            promise.fail(new EsQueryException(ResponseUrn.BAD_REQUEST_URN, MALFORMED_ID));
-          } else {
-            promise.complete(itemType);
-          }
-        });
+  public Future<CatalogueItem> checkQuery(JsonObject request) {
+    Promise<CatalogueItem> promise = Promise.promise();
+    Future<CatalogueItem> getItem =
+        cacheService.getCatalogueItem(request.getJsonArray(ID).getString(0));
+    getItem
+        .onSuccess(
+            item -> {
+              if (!item.isResource()) {
+                LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
+                promise.fail(new EsQueryException(ResponseUrn.BAD_REQUEST_URN, MALFORMED_ID));
+              } else {
+                promise.complete(item);
+              }
+            })
+        .onFailure(
+            failure -> {
+              LOGGER.error(
+                  "Catalogue item lookup failed for {} : {}",
+                  request.getJsonArray(ID).getString(0),
+                  failure.getMessage());
+              if (CacheService.isNotFound(failure)) {
+                promise.fail(
+                    new EsQueryException(
+                        ResponseUrn.RESOURCE_NOT_FOUND_URN,
+                        CATALOGUE_ITEM_NOT_FOUND,
+                        HttpStatus.SC_NOT_FOUND));
+              } else {
+                promise.fail(new EsQueryException("Exception occured executing query"));
+              }
+            });
 
     return promise.future();
   }
-
-  private class CountResultPlaceholder {
-    private long count;
-
-    public CountResultPlaceholder() {
-      this.count = 0L;
-    }
-
-    public long getCount() {
-      return this.count;
-    }
-
-    public void setCount(long count) {
-      this.count = count;
-    }
-  }
 }
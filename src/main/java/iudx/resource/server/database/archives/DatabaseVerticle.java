@@ -2,12 +2,14 @@ package iudx.resource.server.database.archives;
 
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.DATABASE_SERVICE_ADDRESS;
+import static iudx.resource.server.common.Constants.SEARCH_CACHE_INVALIDATE_ADDRESS;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.common.MeterRegistryProvider;
 import iudx.resource.server.database.elastic.ElasticClient;
 
 /**
@@ -23,13 +25,12 @@ import iudx.resource.server.database.elastic.ElasticClient;
  */
 public class DatabaseVerticle extends AbstractVerticle {
 
+  /** shared by every instance of the verticle in this JVM. */
+  private static SearchResultCache searchResultCache;
+
   private DatabaseService database;
   private ElasticClient client;
-  private String databaseIp;
-  private String user;
-  private String password;
   private String timeLimit;
-  private int databasePort;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
   private String tenantPrefix;
@@ -45,21 +46,52 @@ public class DatabaseVerticle extends AbstractVerticle {
   @Override
   public void start() throws Exception {
 
-    databaseIp = config().getString("databaseIP");
-    databasePort = config().getInteger("databasePort");
-    user = config().getString("dbUser");
-    password = config().getString("dbPassword");
     timeLimit = config().getString("timeLimit");
     tenantPrefix = config().getString("tenantPrefix");
-    cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
-    client = new ElasticClient(databaseIp, databasePort, user, password);
+    cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
+    client = SharedArchiveClient.getOrCreate(config()).getClient();
+    ElasticClient.setMaxOpenCursorPits(
+        config().getInteger("maxOpenCursors", Constants.DEFAULT_MAX_OPEN_CURSORS));
     binder = new ServiceBinder(vertx);
-    database = new DatabaseServiceImpl(client, timeLimit, tenantPrefix, cacheService);
+    database =
+        new DatabaseServiceImpl(
+            client, timeLimit, tenantPrefix, cacheService, getSearchResultCache());
 
     consumer =
         binder.setAddress(DATABASE_SERVICE_ADDRESS).register(DatabaseService.class, database);
   }
 
+  /**
+   * Create the search cache on the first deployed instance, which also listens for invalidations
+   * published when data of a resource group changes.
+   */
+  private SearchResultCache getSearchResultCache() {
+    JsonObject cacheConfig = config().getJsonObject("searchCache", new JsonObject());
+    if (!cacheConfig.getBoolean("enabled", false)) {
+      return null;
+    }
+    synchronized (DatabaseVerticle.class) {
+      if (searchResultCache == null) {
+        searchResultCache = new SearchResultCache(cacheConfig, MeterRegistryProvider.get());
+        vertx
+            .eventBus()
+            .<JsonObject>consumer(
+                SEARCH_CACHE_INVALIDATE_ADDRESS,
+                message -> {
+                  String resourceGroup = message.body().getString("resourceGroup");
+                  if (resourceGroup == null) {
+                    searchResultCache.invalidateAll();
+                  } else if ("none".equals(tenantPrefix)) {
+                    searchResultCache.invalidate(resourceGroup);
+                  } else {
+                    searchResultCache.invalidate(tenantPrefix + "__" + resourceGroup);
+                  }
+                });
+      }
+      return searchResultCache;
+    }
+  }
+
   @Override
   public void stop() {
     binder.unregister(consumer);
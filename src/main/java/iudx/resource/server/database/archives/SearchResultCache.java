@@ -0,0 +1,189 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of search responses keyed on the canonical form of the decoded request.
+ *
+ * <p>Queries over a closed historical window are kept for the long TTL, anything that can still
+ * receive new data (no end time, or an end time close to now) only for the short TTL. The cache
+ * is weighed by the number of documents held, so a few large pages cannot crowd out the rest.
+ */
+public class SearchResultCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(SearchResultCache.class);
+  /** request keys that do not change the result of a query. */
+  private static final String[] IGNORED_KEYS = {"instanceID", TIME_LIMIT};
+
+  private final Cache<SearchKey, CachedResult> cache;
+  private final long closedWindowTtlMillis;
+  private final long openWindowTtlMillis;
+  private final long openWindowMarginMillis;
+  private final Counter hits;
+  private final Counter misses;
+
+  /**
+   * Build a cache from the DatabaseVerticle config.
+   *
+   * @param config searchCache config, maxDocuments, closedWindowTtlSeconds, openWindowTtlSeconds
+   *     and openWindowMarginSeconds are optional
+   * @param registry registry to report hits and misses to
+   */
+  public SearchResultCache(JsonObject config, MeterRegistry registry) {
+    this.closedWindowTtlMillis =
+        TimeUnit.SECONDS.toMillis(config.getLong("closedWindowTtlSeconds", 3600L));
+    this.openWindowTtlMillis = TimeUnit.SECONDS.toMillis(config.getLong("openWindowTtlSeconds", 10L));
+    this.openWindowMarginMillis =
+        TimeUnit.SECONDS.toMillis(config.getLong("openWindowMarginSeconds", 900L));
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(config.getLong("maxDocuments", 200000L))
+            .weigher((SearchKey key, CachedResult value) -> value.weight)
+            .expireAfterWrite(closedWindowTtlMillis, TimeUnit.MILLISECONDS)
+            .build();
+    this.hits = Counter.builder("rs.search.cache.requests").tag("result", "hit").register(registry);
+    this.misses =
+        Counter.builder("rs.search.cache.requests").tag("result", "miss").register(registry);
+    Gauge.builder("rs.search.cache.entries", cache, Cache::size).register(registry);
+  }
+
+  /**
+   * Get a cached response.
+   *
+   * @return a copy of the cached response, or null on a miss
+   */
+  public JsonObject get(String index, JsonObject request) {
+    SearchKey key = new SearchKey(index, request);
+    CachedResult result = cache.getIfPresent(key);
+    if (result == null || result.expiresAt < System.currentTimeMillis()) {
+      if (result != null) {
+        cache.invalidate(key);
+      }
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return result.response.copy();
+  }
+
+  public void put(String index, JsonObject request, JsonObject response) {
+    long ttl = isClosedWindow(request) ? closedWindowTtlMillis : openWindowTtlMillis;
+    JsonArray results = response.getJsonArray(RESULTS);
+    int weight = 1 + (results == null ? 0 : results.size());
+    cache.put(
+        new SearchKey(index, request),
+        new CachedResult(response.copy(), System.currentTimeMillis() + ttl, weight));
+  }
+
+  /** Drop every cached response for the index of a resource group. */
+  public void invalidate(String index) {
+    LOGGER.info("invalidating cached search results for index : {}", index);
+    cache.asMap().keySet().removeIf(key -> key.index.equals(index));
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * A window is closed when it has an end that is far enough in the past that no more data is
+   * expected to arrive for it.
+   */
+  boolean isClosedWindow(JsonObject request) {
+    String timerel = request.getString(REQ_TIMEREL);
+    String end;
+    if (DURING.equalsIgnoreCase(timerel) || BETWEEN.equalsIgnoreCase(timerel)) {
+      end = request.getString(END_TIME);
+    } else if (BEFORE.equalsIgnoreCase(timerel)) {
+      end = request.getString(TIME_KEY);
+    } else {
+      return false;
+    }
+    if (end == null) {
+      return false;
+    }
+    try {
+      ZonedDateTime endTime = ZonedDateTime.parse(end);
+      return endTime
+          .plus(Duration.ofMillis(openWindowMarginMillis))
+          .isBefore(ZonedDateTime.now(endTime.getZone()));
+    } catch (DateTimeParseException ex) {
+      return false;
+    }
+  }
+
+  private static final class CachedResult {
+    private final JsonObject response;
+    private final long expiresAt;
+    private final int weight;
+
+    private CachedResult(JsonObject response, long expiresAt, int weight) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+      this.weight = weight;
+    }
+  }
+
+  /** Index plus the request with its keys sorted at every level. */
+  static final class SearchKey {
+    private final String index;
+    private final String canonicalRequest;
+
+    SearchKey(String index, JsonObject request) {
+      this.index = index;
+      JsonObject copy = request.copy();
+      for (String ignored : IGNORED_KEYS) {
+        copy.remove(ignored);
+      }
+      this.canonicalRequest = ((JsonObject) canonical(copy)).encode();
+    }
+
+    private static Object canonical(Object value) {
+      if (value instanceof JsonObject) {
+        Map<String, Object> sorted = new TreeMap<>();
+        ((JsonObject) value).forEach(e -> sorted.put(e.getKey(), canonical(e.getValue())));
+        return new JsonObject(new LinkedHashMap<>(sorted));
+      } else if (value instanceof JsonArray) {
+        JsonArray array = new JsonArray();
+        ((JsonArray) value).forEach(e -> array.add(canonical(e)));
+        return array;
+      }
+      return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SearchKey)) {
+        return false;
+      }
+      SearchKey that = (SearchKey) o;
+      return index.equals(that.index) && canonicalRequest.equals(that.canonicalRequest);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(index, canonicalRequest);
+    }
+  }
+}
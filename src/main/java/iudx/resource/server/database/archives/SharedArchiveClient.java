@@ -0,0 +1,65 @@
+package iudx.resource.server.database.archives;
+
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.elastic.ElasticClient;
+
+/**
+ * Elasticsearch client of the archive and the tenant prefix of its indexes, shared by the verticles
+ * of a JVM so that each of them does not open its own connection pool.
+ *
+ * <p>The first database verticle instance creates it, other callers only look it up. It is
+ * published safely and never changes once created, so it may be read from any thread. The {@link
+ * ElasticClient} keeps no state of a request and completes its futures on its own threads, a
+ * caller builds its own {@link DatabaseServiceImpl} around it and goes back to its own context
+ * before touching state bound to that context. When the database verticle runs on another node
+ * there is nothing to look up, and callers have to go through the database service proxy.
+ */
+public final class SharedArchiveClient {
+
+  private static volatile SharedArchiveClient instance;
+
+  private final ElasticClient client;
+  private final String tenantPrefix;
+
+  private SharedArchiveClient(ElasticClient client, String tenantPrefix) {
+    this.client = client;
+    this.tenantPrefix = tenantPrefix;
+  }
+
+  /**
+   * Create the client from the database verticle config, or get the one already created.
+   *
+   * @param config config of the database verticle
+   * @return client shared in this JVM
+   */
+  static synchronized SharedArchiveClient getOrCreate(JsonObject config) {
+    if (instance == null) {
+      instance =
+          new SharedArchiveClient(
+              new ElasticClient(
+                  config.getString("databaseIP"),
+                  config.getInteger("databasePort"),
+                  config.getString("dbUser"),
+                  config.getString("dbPassword")),
+              config.getString("tenantPrefix"));
+    }
+    return instance;
+  }
+
+  /**
+   * Client created by a database verticle of this JVM.
+   *
+   * @return the client, null when no database verticle was deployed in this JVM
+   */
+  public static SharedArchiveClient get() {
+    return instance;
+  }
+
+  public ElasticClient getClient() {
+    return client;
+  }
+
+  public String getTenantPrefix() {
+    return tenantPrefix;
+  }
+}
@@ -0,0 +1,146 @@
+package iudx.resource.server.database.async;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Vertx;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs async queries with a global limit on running jobs, taking turns between users.
+ *
+ * <p>Submitted jobs wait in one queue per user, a free slot goes to the next user in round-robin
+ * order so a user submitting many queries does not hold back the others. A slot is freed when
+ * {@link #complete(String)} is called for the search id of the job, or when the job runs longer
+ * than the job timeout, in case its completion was lost. A search id is queued or run once at a
+ * time, a job submitted again while it waits or runs is rejected.
+ */
+public class AsyncJobScheduler {
+
+  private static final Logger LOGGER = LogManager.getLogger(AsyncJobScheduler.class);
+
+  private final Vertx vertx;
+  private final int maxRunningJobs;
+  private final long jobTimeoutMillis;
+  /** users in the order of their next turn, with their waiting jobs. */
+  private final Map<String, Deque<Job>> queues = new LinkedHashMap<>();
+  /** search ids of the running jobs with their timeout timers. */
+  private final Map<String, Long> running = new HashMap<>();
+  /** search ids of the waiting jobs. */
+  private final Set<String> queued = new HashSet<>();
+  private final Timer waitTime;
+
+  /**
+   * Scheduler for the jobs of one listener.
+   *
+   * @param vertx vertx instance, for the job timeouts
+   * @param maxRunningJobs jobs running at a time
+   * @param jobTimeoutMillis time after which a running job stops holding its slot
+   * @param registry registry to report queue depth and wait time to
+   */
+  public AsyncJobScheduler(
+      Vertx vertx, int maxRunningJobs, long jobTimeoutMillis, MeterRegistry registry) {
+    this.vertx = vertx;
+    this.maxRunningJobs = Math.max(1, maxRunningJobs);
+    this.jobTimeoutMillis = jobTimeoutMillis;
+    this.waitTime = Timer.builder("rs.async.jobs.wait").register(registry);
+    Gauge.builder("rs.async.jobs.queued", this, AsyncJobScheduler::getQueuedJobs)
+        .register(registry);
+    Gauge.builder("rs.async.jobs.running", this, AsyncJobScheduler::getRunningJobs)
+        .register(registry);
+  }
+
+  /**
+   * Queue a job, it is started right away when a slot is free.
+   *
+   * @param user user the job is run for
+   * @param searchId search id of the job
+   * @param start starts the job
+   * @return false when a job of the search id is already waiting or running
+   */
+  public synchronized boolean submit(String user, String searchId, Runnable start) {
+    if (running.containsKey(searchId) || !queued.add(searchId)) {
+      LOGGER.warn("async job {} already scheduled", searchId);
+      return false;
+    }
+    queues
+        .computeIfAbsent(user, key -> new ArrayDeque<>())
+        .add(new Job(searchId, start, System.nanoTime()));
+    dispatch();
+    return true;
+  }
+
+  /**
+   * Free the slot of a finished job.
+   *
+   * @param searchId search id of the job
+   */
+  public synchronized void complete(String searchId) {
+    Long timerId = running.remove(searchId);
+    if (timerId == null) {
+      return;
+    }
+    vertx.cancelTimer(timerId);
+    dispatch();
+  }
+
+  public synchronized int getQueuedJobs() {
+    return queued.size();
+  }
+
+  public synchronized int getRunningJobs() {
+    return running.size();
+  }
+
+  private void dispatch() {
+    while (running.size() < maxRunningJobs && !queues.isEmpty()) {
+      Iterator<Map.Entry<String, Deque<Job>>> users = queues.entrySet().iterator();
+      Map.Entry<String, Deque<Job>> next = users.next();
+      users.remove();
+      Job job = next.getValue().poll();
+      if (!next.getValue().isEmpty()) {
+        // the user takes its next turn after the others
+        queues.put(next.getKey(), next.getValue());
+      }
+      queued.remove(job.searchId);
+      waitTime.record(System.nanoTime() - job.submitted, TimeUnit.NANOSECONDS);
+      long timerId =
+          vertx.setTimer(
+              jobTimeoutMillis,
+              id -> {
+                LOGGER.warn("async job {} timed out, releasing its slot", job.searchId);
+                complete(job.searchId);
+              });
+      running.put(job.searchId, timerId);
+      try {
+        job.start.run();
+      } catch (RuntimeException e) {
+        LOGGER.error("async job {} failed to start : {}", job.searchId, e.getMessage());
+        running.remove(job.searchId);
+        vertx.cancelTimer(timerId);
+      }
+    }
+  }
+
+  private static final class Job {
+    private final String searchId;
+    private final Runnable start;
+    private final long submitted;
+
+    private Job(String searchId, Runnable start, long submitted) {
+      this.searchId = searchId;
+      this.start = start;
+      this.submitted = submitted;
+    }
+  }
+}
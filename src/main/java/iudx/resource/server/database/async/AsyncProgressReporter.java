@@ -0,0 +1,145 @@
+package iudx.resource.server.database.async;
+
+import static iudx.resource.server.database.postgres.Constants.UPDATE_S3_PROGRESS_BATCH_SQL;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes the progress of running async exports to postgres in batches.
+ *
+ * <p>Exports post their progress and checkpoints into maps, a periodic flush writes the latest
+ * progress of every running export, with the checkpoints posted since the previous flush, in a
+ * single statement. The rows of a running export are written on every flush even without a change,
+ * so an export whose row is not modified for a while is known to be orphaned. An export only moves
+ * forward, rows that are no longer in progress are left untouched. The progress written is also
+ * published to the {@link AsyncStatusCache}.
+ */
+public class AsyncProgressReporter {
+
+  public static final long DEFAULT_FLUSH_INTERVAL = 5000L;
+  private static final Logger LOGGER = LogManager.getLogger(AsyncProgressReporter.class);
+
+  private final Vertx vertx;
+  private final PostgresService pgService;
+  private final AsyncStatusCache statusCache;
+  /** latest progress in percent of the running exports, by request id. */
+  private final Map<String, Double> progress = new ConcurrentHashMap<>();
+  /** latest checkpoint by request id, not written yet. */
+  private final Map<String, JsonObject> checkpoints = new ConcurrentHashMap<>();
+  private final long timerId;
+
+  /**
+   * Reporter flushing at a fixed interval.
+   *
+   * @param vertx vertx instance, for the flush timer
+   * @param pgService postgres service
+   * @param flushIntervalMillis time between two flushes
+   */
+  public AsyncProgressReporter(Vertx vertx, PostgresService pgService, long flushIntervalMillis) {
+    this(vertx, pgService, flushIntervalMillis, new AsyncStatusCache(vertx));
+  }
+
+  /**
+   * Reporter flushing at a fixed interval.
+   *
+   * @param vertx vertx instance, for the flush timer
+   * @param pgService postgres service
+   * @param flushIntervalMillis time between two flushes
+   * @param statusCache cache of the status of the searches, the progress is published to
+   */
+  public AsyncProgressReporter(
+      Vertx vertx,
+      PostgresService pgService,
+      long flushIntervalMillis,
+      AsyncStatusCache statusCache) {
+    this.vertx = vertx;
+    this.pgService = pgService;
+    this.statusCache = statusCache;
+    this.timerId = vertx.setPeriodic(flushIntervalMillis, id -> flush());
+  }
+
+  /**
+   * Record the progress of the export of a request id.
+   *
+   * @param requestId request id of the export
+   * @param progress progress between 0 and 1
+   */
+  public void report(String requestId, double progress) {
+    this.progress.merge(requestId, Math.min(1.0, progress) * 100.0, Math::max);
+  }
+
+  /**
+   * Record the position of the export of a request id.
+   *
+   * @param requestId request id of the export
+   * @param checkpoint position to resume the export from
+   */
+  public void checkpoint(String requestId, JsonObject checkpoint) {
+    progress.putIfAbsent(requestId, 0.0);
+    checkpoints.put(requestId, checkpoint);
+  }
+
+  /**
+   * Stop writing the export, the final progress is written with the result.
+   *
+   * @param requestId request id of the export
+   */
+  public void finish(String requestId) {
+    progress.remove(requestId);
+    checkpoints.remove(requestId);
+  }
+
+  AsyncStatusCache getStatusCache() {
+    return statusCache;
+  }
+
+  int getRunning() {
+    return progress.size();
+  }
+
+  /** Write the progress of the running exports and the checkpoints recorded since last flush. */
+  void flush() {
+    StringJoiner values = new StringJoiner(",");
+    for (Map.Entry<String, Double> entry : progress.entrySet()) {
+      JsonObject checkpoint = checkpoints.remove(entry.getKey());
+      statusCache.progress(entry.getKey(), entry.getValue());
+      values.add(
+          "('"
+              + entry.getKey()
+              + "',"
+              + entry.getValue()
+              + ","
+              + (checkpoint == null ? "NULL" : quote(checkpoint.encode()))
+              + ")");
+    }
+    if (values.length() == 0) {
+      return;
+    }
+    String query = UPDATE_S3_PROGRESS_BATCH_SQL.replace("$1", values.toString());
+    LOGGER.debug("updating progress : {}", query);
+    pgService.executeQuery(
+        query,
+        pgHandler -> {
+          if (pgHandler.failed()) {
+            LOGGER.error("progress update failed : {}", pgHandler.cause().getMessage());
+          }
+        });
+  }
+
+  private static String quote(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
+
+  /** Stop flushing, the progress not written yet is written first. */
+  public void close() {
+    vertx.cancelTimer(timerId);
+    flush();
+  }
+}
@@ -0,0 +1,87 @@
+package iudx.resource.server.database.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Async queries being exported, keyed on their request id.
+ *
+ * <p>The first query for a request id leads the export, identical queries submitted while it runs
+ * attach to it as followers and are answered from the one exported object when the leader lands.
+ * Shared by the async service instances of a JVM.
+ */
+class AsyncQueryFlights {
+
+  private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Join the flight of a request id, starting it when there is none.
+   *
+   * @param requestId request id of the query
+   * @param passenger the query joining
+   * @return true when the query started the flight and has to run the export, a query already
+   *     leading the flight is not attached again
+   */
+  boolean join(String requestId, Passenger passenger) {
+    Flight started = new Flight(passenger.searchId);
+    Flight flight =
+        flights.compute(
+            requestId,
+            (key, current) -> {
+              if (current == null) {
+                return started;
+              }
+              if (!current.leader.equals(passenger.searchId)) {
+                current.followers.add(passenger);
+              }
+              return current;
+            });
+    return flight == started;
+  }
+
+  /**
+   * End the flight of a request id.
+   *
+   * @param requestId request id of the query
+   * @return the queries that attached to the flight
+   */
+  List<Passenger> land(String requestId) {
+    Flight flight = flights.remove(requestId);
+    return flight == null ? Collections.emptyList() : flight.followers;
+  }
+
+  boolean isFlying(String requestId) {
+    return flights.containsKey(requestId);
+  }
+
+  private static final class Flight {
+    private final String leader;
+    private final List<Passenger> followers = new ArrayList<>();
+
+    private Flight(String leader) {
+      this.leader = leader;
+    }
+  }
+
+  /** A query with the details needed to answer and meter it. */
+  static final class Passenger {
+    final String searchId;
+    final String sub;
+    final String id;
+    final String role;
+    final String drl;
+    final String did;
+
+    Passenger(String searchId, String sub, String id, String role, String drl, String did) {
+      this.searchId = searchId;
+      this.sub = sub;
+      this.id = id;
+      this.role = role;
+      this.drl = drl;
+      this.did = did;
+    }
+  }
+}
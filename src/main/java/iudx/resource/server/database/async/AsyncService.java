@@ -45,6 +45,8 @@ public interface AsyncService {
    * @param sub which is a String
    * @param searchId which is a String
    * @param query which is a Json
+   * @param format file format of the result
+   * @param compression gzip or zstd to compress the result file, null or none to leave it uncompressed
    * @param role which is a String
    * @param drl which is a String
    * @param did which is a String
@@ -57,6 +59,7 @@ public interface AsyncService {
       String searchId,
       JsonObject query,
       String format,
+      String compression,
       String role,
       String drl,
       String did);
@@ -2,6 +2,9 @@ package iudx.resource.server.database.async;
 
 import static iudx.resource.server.apiserver.util.Constants.*;
 import static iudx.resource.server.apiserver.util.Constants.ID;
+import static iudx.resource.server.authenticator.Constants.ROLE;
+import static iudx.resource.server.common.Constants.ASYNC_JOB_DONE_ADDRESS;
+import static iudx.resource.server.common.Constants.ASYNC_JOB_RESUME_ADDRESS;
 import static iudx.resource.server.common.Constants.METERING_SERVICE_ADDRESS;
 import static iudx.resource.server.database.archives.Constants.*;
 import static iudx.resource.server.database.async.util.Constants.*;
@@ -29,15 +32,21 @@ import iudx.resource.server.database.async.util.QueryProgress;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
 import iudx.resource.server.database.async.util.Util;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.ExportCheckpoint;
+import iudx.resource.server.database.elastic.ExportCompression;
 import iudx.resource.server.database.elastic.QueryDecoder;
 import iudx.resource.server.database.postgres.PostgresService;
 import iudx.resource.server.metering.MeteringService;
 import java.io.File;
 import java.net.URL;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
@@ -57,6 +66,10 @@ public class AsyncServiceImpl implements AsyncService {
   private ResponseBuilder responseBuilder;
   private String filePath;
   private String tenantPrefix;
+  private final AsyncQueryFlights flights;
+  private final AsyncProgressReporter progressReporter;
+  private final AsyncStatusCache statusCache;
+  private Duration ingestLag = IncrementalExport.DEFAULT_INGEST_LAG;
 
   public AsyncServiceImpl(
       Vertx vertx,
@@ -66,6 +79,29 @@ public class AsyncServiceImpl implements AsyncService {
       String filePath,
       String tenantPrefix,
       CacheService cacheService) {
+    this(
+        vertx,
+        client,
+        pgService,
+        s3FileOpsHelper,
+        filePath,
+        tenantPrefix,
+        cacheService,
+        new AsyncQueryFlights(),
+        new AsyncProgressReporter(
+            vertx, pgService, AsyncProgressReporter.DEFAULT_FLUSH_INTERVAL));
+  }
+
+  AsyncServiceImpl(
+      Vertx vertx,
+      ElasticClient client,
+      PostgresService pgService,
+      S3FileOpsHelper s3FileOpsHelper,
+      String filePath,
+      String tenantPrefix,
+      CacheService cacheService,
+      AsyncQueryFlights flights,
+      AsyncProgressReporter progressReporter) {
     this.vertx = vertx;
     this.client = client;
     this.pgService = pgService;
@@ -75,11 +111,29 @@ public class AsyncServiceImpl implements AsyncService {
     this.meteringService = MeteringService.createProxy(vertx, METERING_SERVICE_ADDRESS);
     this.tenantPrefix = tenantPrefix;
     this.cacheService = cacheService;
+    this.flights = flights;
+    this.progressReporter = progressReporter;
+    this.statusCache = progressReporter.getStatusCache();
+  }
+
+  /**
+   * Time documents may take to be indexed after their observation time. An earlier export is only
+   * continued when it started reading at least this long after the end of its window.
+   */
+  public AsyncServiceImpl setIngestLag(Duration ingestLag) {
+    this.ingestLag = ingestLag;
+    return this;
   }
 
   @Override
   public AsyncService asyncStatus(
       String sub, String searchId, Handler<AsyncResult<JsonObject>> handler) {
+    // status changes are published to the cache, postgres is only read for unknown searches
+    JsonObject cached = statusCache.get(searchId);
+    if (cached != null) {
+      respondStatus(sub, cached, handler);
+      return this;
+    }
     StringBuilder query = new StringBuilder(SELECT_S3_STATUS_SQL.replace("$1", searchId));
 
     pgService.executeQuery(
@@ -97,39 +151,45 @@ public class AsyncServiceImpl implements AsyncService {
               JsonObject answer = results.getJsonObject(0);
 
               String userId = answer.getString("user_id");
-              if (sub.equals(userId)) {
-                String status = answer.getString(STATUS);
-                if (status.equalsIgnoreCase(QueryProgress.COMPLETE.toString())) {
-                  answer.put(FILE_DOWNLOAD_URL, answer.getValue(S3_URL));
-                }
-                answer.put("searchId", answer.getString("search_id"));
-                answer.put("userId", userId);
-
-                answer.remove(S3_URL);
-                answer.remove("search_id");
-                answer.remove(USER_ID);
-                LOGGER.debug(answer.encodePrettily());
-                JsonObject response =
-                    new JsonObject()
-                        .put("type", ResponseUrn.SUCCESS_URN.getUrn())
-                        .put("title", ResponseUrn.SUCCESS_URN.getMessage())
-                        .put("results", new JsonArray().add(answer));
-                handler.handle(Future.succeededFuture(response));
-              } else {
-                responseBuilder =
-                    new ResponseBuilder("failed")
-                        .setTypeAndTitle(400, ResponseUrn.BAD_REQUEST_URN.getUrn())
-                        .setMessage(
-                            "Please use same user token to check status as "
-                                + "used while calling search API");
-                handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+              String status = answer.getString(STATUS);
+              if (status.equalsIgnoreCase(QueryProgress.COMPLETE.toString())) {
+                answer.put(FILE_DOWNLOAD_URL, answer.getValue(S3_URL));
               }
+              answer.put("searchId", answer.getString("search_id"));
+              answer.put("userId", userId);
+
+              answer.remove(S3_URL);
+              answer.remove("search_id");
+              answer.remove(USER_ID);
+              statusCache.put(answer);
+              respondStatus(sub, answer, handler);
             }
           }
         });
     return this;
   }
 
+  private void respondStatus(
+      String sub, JsonObject answer, Handler<AsyncResult<JsonObject>> handler) {
+    if (sub.equals(answer.getString("userId"))) {
+      LOGGER.debug(answer.encodePrettily());
+      JsonObject response =
+          new JsonObject()
+              .put("type", ResponseUrn.SUCCESS_URN.getUrn())
+              .put("title", ResponseUrn.SUCCESS_URN.getMessage())
+              .put("results", new JsonArray().add(answer));
+      handler.handle(Future.succeededFuture(response));
+    } else {
+      responseBuilder =
+          new ResponseBuilder("failed")
+              .setTypeAndTitle(400, ResponseUrn.BAD_REQUEST_URN.getUrn())
+              .setMessage(
+                  "Please use same user token to check status as "
+                      + "used while calling search API");
+      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+    }
+  }
+
   @Override
   public AsyncService asyncSearch(
       String requestId,
@@ -137,6 +197,7 @@ public class AsyncServiceImpl implements AsyncService {
       String searchId,
       JsonObject query,
       String format,
+      String compression,
       String role,
       String drl,
       String did) {
@@ -149,30 +210,71 @@ public class AsyncServiceImpl implements AsyncService {
             })
         .onFailure(
             handler -> {
-              updateQueryExecutionStatus(searchId, QueryProgress.IN_PROGRESS)
+              AsyncQueryFlights.Passenger passenger =
+                  new AsyncQueryFlights.Passenger(searchId, sub, id, role, drl, did);
+              boolean leader = flights.join(requestId, passenger);
+              // the query as received from the queue, to resume it if its export is orphaned
+              JsonObject job =
+                  new JsonObject()
+                      .put("requestId", requestId)
+                      .put("searchId", searchId)
+                      .put("user", sub)
+                      .put(HEADER_RESPONSE_FILE_FORMAT, format)
+                      .put(HEADER_RESPONSE_FILE_COMPRESSION, compression)
+                      .put(ROLE, role)
+                      .put(DRL, drl)
+                      .put(DID, did)
+                      .put("query", query.copy());
+              startJob(searchId, job)
+                  .compose(started -> leader ? getCheckpoint(searchId) : Future.succeededFuture())
                   .onSuccess(
-                      statusHandler -> {
-                        process4NewRequestId(searchId, sub, query, format, role, drl, did);
+                      checkpoint -> {
+                        statusCache.started(requestId, searchId, sub);
+                        if (leader) {
+                          process4NewRequestId(
+                              requestId,
+                              searchId,
+                              sub,
+                              query,
+                              format,
+                              compression,
+                              role,
+                              drl,
+                              did,
+                              checkpoint);
+                        } else {
+                          // answered when the running export of the same query lands
+                          LOGGER.info("async search {} attached to {}", searchId, requestId);
+                          jobDone(searchId);
+                        }
                       })
                   .onFailure(
                       statusHandler -> {
-                        LOGGER.error("");
+                        LOGGER.error("failed to start async search {}", searchId);
+                        if (leader) {
+                          landFailed(requestId);
+                        }
+                        jobDone(searchId);
                       });
             });
 
     return this;
   }
 
-  private Future<Void> updateQueryExecutionStatus(String searchId, QueryProgress status) {
+  /** Set a query in progress and keep it to resume it from if its export is interrupted. */
+  private Future<Void> startJob(String searchId, JsonObject job) {
     Promise<Void> promise = Promise.promise();
     StringBuilder querySb =
         new StringBuilder(
-            UPDATE_STATUS_SQL.replace("$1", status.toString()).replace("$2", searchId));
+            UPDATE_S3_JOB_SQL
+                .replace("$1", QueryProgress.IN_PROGRESS.toString())
+                .replace("$2", job.encode().replace("'", "''"))
+                .replace("$3", searchId));
     pgService.executeQuery(
         querySb.toString(),
         handler -> {
           if (handler.succeeded()) {
-            LOGGER.debug("status : {} update for search id : {}", status.toString(), searchId);
+            LOGGER.debug("status : IN_PROGRESS update for search id : {}", searchId);
             promise.complete();
           } else {
             promise.fail("failprocess4ExistingRequestId to update query status in database");
@@ -181,6 +283,74 @@ public class AsyncServiceImpl implements AsyncService {
     return promise.future();
   }
 
+  /**
+   * Checkpoint saved by an earlier run of a query, when its export was interrupted.
+   *
+   * @param searchId search id of the query
+   * @return Future of the checkpoint, null when the query has none
+   */
+  private Future<JsonObject> getCheckpoint(String searchId) {
+    Promise<JsonObject> promise = Promise.promise();
+    pgService.executeQuery(
+        SELECT_S3_CHECKPOINT_SQL.replace("$1", searchId),
+        pgHandler -> {
+          JsonArray results =
+              pgHandler.succeeded() ? pgHandler.result().getJsonArray("result") : null;
+          if (results == null || results.isEmpty()) {
+            promise.complete();
+          } else {
+            promise.complete(results.getJsonObject(0).getJsonObject("checkpoint"));
+          }
+        });
+    return promise.future();
+  }
+
+  /**
+   * Hand the queries whose export stopped reporting progress back to the job scheduler, their
+   * export resumes from its last checkpoint. A running export writes its row at every progress
+   * flush, a query is claimed by one instance by writing its row and kept by {@link
+   * #keepWaitingJobs(JsonArray)} while it waits for a slot of the scheduler.
+   *
+   * @param staleMinutes time without progress after which an export is orphaned
+   */
+  public void resumeOrphanedJobs(long staleMinutes) {
+    pgService.executeQuery(
+        CLAIM_S3_ORPHANED_JOBS_SQL.replace("$1", String.valueOf(staleMinutes)),
+        pgHandler -> {
+          if (pgHandler.failed()) {
+            LOGGER.error("failed to claim orphaned async queries : {}", pgHandler.cause());
+            return;
+          }
+          JsonArray results = pgHandler.result().getJsonArray("result");
+          for (int i = 0; i < results.size(); i++) {
+            JsonObject job = results.getJsonObject(i).getJsonObject("job");
+            LOGGER.info("resuming orphaned async search {}", job.getString("searchId"));
+            vertx.eventBus().send(ASYNC_JOB_RESUME_ADDRESS, job);
+          }
+        });
+  }
+
+  /**
+   * Write the rows of resumed queries still waiting for a slot of the job scheduler, so the next
+   * sweep does not take them for orphaned and resume them twice.
+   *
+   * @param searchIds search ids of the waiting queries
+   */
+  public void keepWaitingJobs(JsonArray searchIds) {
+    if (searchIds == null || searchIds.isEmpty()) {
+      return;
+    }
+    StringBuilder ids = new StringBuilder();
+    for (int i = 0; i < searchIds.size(); i++) {
+      if (i > 0) {
+        ids.append(',');
+      }
+      ids.append('\'').append(searchIds.getString(i).replace("'", "''")).append('\'');
+    }
+    executePgQuery(TOUCH_S3_WAITING_JOBS_SQL.replace("$1", ids.toString()))
+        .onFailure(failure -> LOGGER.error("failed to keep waiting async queries : {}", failure));
+  }
+
   /**
    * This method will fetch results from database for a provided requestId, and status="COMPLETE".
    * This method returns a failed future if no record exist, else it will return a successful
@@ -260,103 +430,352 @@ public class AsyncServiceImpl implements AsyncService {
         .onSuccess(
             handler -> {
               LOGGER.info("Query completed with existing requestId & objectId");
+              statusCache.completed(requestId, searchId, sub, s3Url.toString());
+              jobDone(searchId);
               Future.future(fu -> updateAuditTable(id, sub, fileSize, role, drl, did));
             })
         .onFailure(
             handler -> {
               LOGGER.error("Query execution failed for insert with existing requestId & objectId");
+              jobDone(searchId);
             });
   }
 
   private void process4NewRequestId(
+      String requestId,
       String searchId,
       String userId,
       JsonObject query,
       String format,
+      String compression,
       String role,
       String drl,
-      String did) {
-    if (format == null) {
-      format = "json";
-    }
-    File file = new File(filePath + "/" + searchId + "." + format);
+      String did,
+      JsonObject checkpointJson) {
+    String exportFormat = format == null ? "json" : format;
+    // parquet pages are compressed by the writer already
+    ExportCompression exportCompression =
+        HEADER_PARQUET.equals(exportFormat)
+            ? ExportCompression.NONE
+            : ExportCompression.of(compression);
+    String fileName = searchId + "." + exportFormat;
+    ExportCheckpoint checkpoint =
+        checkpointJson == null ? null : new ExportCheckpoint(checkpointJson);
+    // a resumed export continues the files of the run that was interrupted
+    File file =
+        checkpoint != null && checkpoint.getFile() != null
+            ? new File(checkpoint.getFile())
+            : new File(filePath + "/" + fileName + exportCompression.getExtension());
     String objectId = UUID.randomUUID().toString();
     String id = query.getJsonArray(ID).getString(0);
+    // a query whose window extends the window of an earlier export only exports the rest of it
+    String windowKey =
+        IncrementalExport.isIncremental(query, exportFormat)
+            ? IncrementalExport.windowKey(query)
+            : null;
+    JsonObject windowQuery = query.copy();
+    // documents indexed after this are not exported, a resumed export read some of them earlier
+    ZonedDateTime startedAt = checkpoint == null ? ZonedDateTime.now(ZoneOffset.UTC) : null;
+
+    // progress is shared with the queries attached to the export
+    ProgressListener progressListener =
+        new AsyncFileScrollProgressListener(requestId, progressReporter);
+
+    Future<JsonObject> base =
+        windowKey == null || checkpoint != null
+            ? Future.succeededFuture()
+            : getExportBase(windowKey, query);
+    base.compose(
+            baseRow -> {
+              if (baseRow == null) {
+                return exportFile(
+                    file,
+                    query,
+                    searchId,
+                    progressListener,
+                    exportFormat,
+                    exportCompression,
+                    checkpoint,
+                    objectId,
+                    fileName);
+              }
+              return appendFile(
+                      file,
+                      query,
+                      searchId,
+                      progressListener,
+                      exportCompression,
+                      baseRow,
+                      objectId,
+                      fileName)
+                  .recover(
+                      appendFailure -> {
+                        LOGGER.warn(
+                            "export of {} can not continue object {}, exporting all",
+                            searchId,
+                            baseRow.getString(OBJECT_ID));
+                        return exportFile(
+                            file,
+                            query,
+                            searchId,
+                            progressListener,
+                            exportFormat,
+                            exportCompression,
+                            null,
+                            objectId,
+                            fileName);
+                      });
+            })
+        .onComplete(
+            exportHandler -> {
+              progressListener.finish();
+              if (exportHandler.failed()) {
+                StringBuilder updateFailQuery =
+                    new StringBuilder(
+                        UPDATE_STATUS_SQL
+                            .replace("$1", QueryProgress.ERROR.toString())
+                            .replace("$2", searchId));
+                Future.future(fu -> util.writeToDb(updateFailQuery));
+                statusCache.failed(requestId, searchId, userId);
+                landFailed(requestId);
+                jobDone(searchId);
+                return;
+              }
+              JsonObject uploadResult = exportHandler.result();
+              String s3Url = uploadResult.getString("s3_url");
+              String expiry = LocalDateTime.now().plusDays(1).toString();
+              // size of the uploaded object, compressed when asked for
+              Long fileSize = uploadResult.getLong(SIZE_KEY);
+              // update DB for search ID and requestId;
+              StringBuilder updateQuery =
+                  new StringBuilder(
+                      UPDATE_S3_URL_SQL
+                          .replace("$1", s3Url)
+                          .replace("$2", expiry)
+                          .replace("$3", QueryProgress.COMPLETE.toString())
+                          .replace("$4", objectId)
+                          .replace("$5", String.valueOf(100.0))
+                          .replace("$6", String.valueOf(fileSize))
+                          .replace("$7", searchId));
+
+              executePgQuery(updateQuery.toString())
+                  .onSuccess(
+                      recordUpdateHandler -> {
+                        LOGGER.debug("updated status in postgres");
+                        statusCache.completed(requestId, searchId, userId, s3Url);
+                        // attached queries reuse the object once its row is COMPLETE
+                        landCompleted(requestId, objectId, fileSize, exportFormat);
+                        jobDone(searchId);
+                        Future.future(fu -> updateAuditTable(id, userId, fileSize, role, drl, did));
+                        JsonArray columns = uploadResult.getJsonArray(IncrementalExport.COLUMNS);
+                        if (windowKey != null && columns != null && startedAt != null) {
+                          recordExportWindow(
+                              searchId,
+                              windowKey,
+                              IncrementalExport.summary(windowQuery, columns, startedAt));
+                        }
+                        try {
+                          vertx.fileSystem().deleteBlocking(file.getPath());
+                        } catch (Exception ex) {
+                          LOGGER.error(
+                              "File deletion operation failed for fileName : "
+                                  + "{} try to delete manually to reclaim disk-space",
+                              file.getName());
+                        }
+                      })
+                  .onFailure(
+                      recordInsertFailure -> {
+                        LOGGER.error(
+                            "Postgres insert failure[COMPLETE status] {}", recordInsertFailure);
+                        landFailed(requestId);
+                        jobDone(searchId);
+                      });
+            });
+  }
 
-    ProgressListener progressListener = new AsyncFileScrollProgressListener(searchId, pgService);
-
+  /**
+   * Export the whole window of a query and upload it.
+   *
+   * @return Future of the upload result with the size of the object and the csv columns
+   */
+  private Future<JsonObject> exportFile(
+      File file,
+      JsonObject query,
+      String searchId,
+      ProgressListener progressListener,
+      String format,
+      ExportCompression compression,
+      ExportCheckpoint checkpoint,
+      String objectId,
+      String fileName) {
+    Promise<JsonObject> promise = Promise.promise();
     scrollQuery(
         file,
         query,
         searchId,
         progressListener,
         format,
+        compression,
+        checkpoint,
         scrollHandler -> {
-          if (scrollHandler.succeeded()) {
-            s3FileOpsHelper.s3Upload(
-                file,
-                objectId,
-                s3UploadHandler -> {
-                  if (s3UploadHandler.succeeded()) {
-                    JsonObject uploadResult = s3UploadHandler.result();
-                    String s3Url = uploadResult.getString("s3_url");
-                    String expiry = LocalDateTime.now().plusDays(1).toString();
-                    Long fileSize = file.length();
-                    // update DB for search ID and requestId;
-                    progressListener.finish();
-                    StringBuilder updateQuery =
-                        new StringBuilder(
-                            UPDATE_S3_URL_SQL
-                                .replace("$1", s3Url)
-                                .replace("$2", expiry)
-                                .replace("$3", QueryProgress.COMPLETE.toString())
-                                .replace("$4", objectId)
-                                .replace("$5", String.valueOf(100.0))
-                                .replace("$6", String.valueOf(fileSize))
-                                .replace("$7", searchId));
-
-                    executePgQuery(updateQuery.toString())
-                        .onSuccess(
-                            recordUpdateHandler -> {
-                              LOGGER.debug("updated status in postgres");
-                              Future.future(
-                                  fu -> updateAuditTable(id, userId, fileSize, role, drl, did));
-                              try {
-                                vertx.fileSystem().deleteBlocking(filePath + "/" + file.getName());
-                              } catch (Exception ex) {
-                                LOGGER.error(
-                                    "File deletion operation failed for fileName : "
-                                        + "{} try to delete manually to reclaim disk-space",
-                                    file.getName());
-                              }
-                            })
-                        .onFailure(
-                            recordInsertFailure -> {
-                              LOGGER.error(
-                                  "Postgres insert failure[COMPLETE status] {}",
-                                  recordInsertFailure);
-                            });
-
-                  } else {
-                    LOGGER.error("File upload to S3 failed for fileName : {}", file.getName());
-                    StringBuilder updateFailQuery =
-                        new StringBuilder(
-                            UPDATE_STATUS_SQL
-                                .replace("$1", QueryProgress.ERROR.toString())
-                                .replace("$2", searchId));
-                    Future.future(fu -> util.writeToDb(updateFailQuery));
-                  }
-                });
-          } else {
+          if (scrollHandler.failed()) {
             LOGGER.error("Scroll API operation failed for searchId : " + searchId);
-            StringBuilder updateFailQuery =
-                new StringBuilder(
-                    UPDATE_STATUS_SQL
-                        .replace("$1", QueryProgress.ERROR.toString())
-                        .replace("$2", searchId));
-            Future.future(fu -> util.writeToDb(updateFailQuery));
+            promise.fail(scrollHandler.cause());
+            return;
           }
+          JsonObject scrolled =
+              scrollHandler.result() == null ? new JsonObject() : scrollHandler.result();
+          s3FileOpsHelper.s3Upload(
+              file,
+              objectId,
+              fileName,
+              compression.getContentEncoding(),
+              s3UploadHandler -> {
+                if (s3UploadHandler.succeeded()) {
+                  promise.complete(
+                      s3UploadHandler
+                          .result()
+                          .put(SIZE_KEY, file.length())
+                          .put(
+                              IncrementalExport.COLUMNS,
+                              scrolled.getJsonArray(IncrementalExport.COLUMNS)));
+                } else {
+                  LOGGER.error("File upload to S3 failed for fileName : {}", file.getName());
+                  promise.fail(s3UploadHandler.cause());
+                }
+              });
         });
+    return promise.future();
+  }
+
+  /**
+   * Export the part of the window of a query after the end of an earlier export, and compose the
+   * object of the earlier export with it.
+   *
+   * @param baseRow earlier export, found by {@link IncrementalExport#findBase}
+   * @return Future of the upload result with the size of the object and the csv columns
+   */
+  private Future<JsonObject> appendFile(
+      File file,
+      JsonObject query,
+      String searchId,
+      ProgressListener progressListener,
+      ExportCompression compression,
+      JsonObject baseRow,
+      String objectId,
+      String fileName) {
+    JsonObject summary = IncrementalExport.getSummary(baseRow);
+    JsonObject request = IncrementalExport.deltaQuery(query, summary);
+    request.put("search", true);
+    Query deltaQuery;
+    try {
+      deltaQuery =
+          IncrementalExport.excludeUntil(new QueryDecoder().getQuery(request, true), summary);
+    } catch (Exception e) {
+      return Future.failedFuture(e);
+    }
+    JsonArray columns = summary.getJsonArray(IncrementalExport.COLUMNS);
+    List<String> baseColumns = new ArrayList<>(columns.size());
+    columns.forEach(column -> baseColumns.add((String) column));
+    String baseObjectId = baseRow.getString(OBJECT_ID);
+    long baseSize = baseRow.getLong(SIZE_KEY);
+    LOGGER.info("export of {} continues object {}", searchId, baseObjectId);
+    return client
+        .asyncScrollAppend(
+            file,
+            getSearchIndex(request),
+            deltaQuery,
+            searchId,
+            progressListener,
+            compression,
+            baseColumns)
+        .compose(
+            scrolled -> {
+              Promise<JsonObject> promise = Promise.promise();
+              s3FileOpsHelper.s3Compose(
+                  baseObjectId,
+                  file,
+                  objectId,
+                  fileName,
+                  compression.getContentEncoding(),
+                  promise);
+              return promise.future();
+            })
+        .map(
+            uploadResult ->
+                uploadResult
+                    .put(SIZE_KEY, baseSize + file.length())
+                    .put(IncrementalExport.COLUMNS, columns));
+  }
+
+  /**
+   * Completed export with the same window key covering the longest prefix of the window of a
+   * query.
+   *
+   * @return Future of the export row, null when there is none, never failed
+   */
+  private Future<JsonObject> getExportBase(String windowKey, JsonObject query) {
+    Promise<JsonObject> promise = Promise.promise();
+    pgService.executeQuery(
+        SELECT_S3_EXPORT_BASE_SQL.replace("$1", windowKey),
+        pgHandler -> {
+          if (pgHandler.failed()) {
+            LOGGER.error("failed to look up earlier exports : {}", pgHandler.cause());
+            promise.complete();
+            return;
+          }
+          JsonArray results = pgHandler.result().getJsonArray("result");
+          promise.complete(IncrementalExport.findBase(query, results, ingestLag));
+        });
+    return promise.future();
+  }
+
+  /** Keep the window of a completed export so that a query over a longer window continues it. */
+  private void recordExportWindow(String searchId, String windowKey, JsonObject summary) {
+    StringBuilder query =
+        new StringBuilder(
+            UPDATE_S3_EXPORT_SQL
+                .replace("$1", windowKey)
+                .replace("$2", summary.encode().replace("'", "''"))
+                .replace("$3", searchId));
+    executePgQuery(query.toString())
+        .onFailure(failure -> LOGGER.error("failed to record export window : {}", failure));
+  }
+
+  /** Answer the queries attached to a finished export, each with its own url and metering. */
+  private void landCompleted(String requestId, String objectId, long fileSize, String format) {
+    JsonArray record =
+        new JsonArray().add(new JsonObject().put(OBJECT_ID, objectId).put(SIZE_KEY, fileSize));
+    for (AsyncQueryFlights.Passenger follower : flights.land(requestId)) {
+      process4ExistingRequestId(
+          follower.id,
+          requestId,
+          follower.sub,
+          follower.searchId,
+          record,
+          format,
+          follower.role,
+          follower.drl,
+          follower.did);
+    }
+  }
+
+  private void landFailed(String requestId) {
+    for (AsyncQueryFlights.Passenger follower : flights.land(requestId)) {
+      LOGGER.error("export failed for attached async search {}", follower.searchId);
+      StringBuilder updateFailQuery =
+          new StringBuilder(
+              UPDATE_STATUS_SQL
+                  .replace("$1", QueryProgress.ERROR.toString())
+                  .replace("$2", follower.searchId));
+      Future.future(fu -> util.writeToDb(updateFailQuery));
+      statusCache.failed(requestId, follower.searchId, follower.sub);
+    }
+  }
+
+  /** Let the job scheduler of the async query listener start the next query. */
+  private void jobDone(String searchId) {
+    vertx.eventBus().publish(ASYNC_JOB_DONE_ADDRESS, new JsonObject().put("searchId", searchId));
   }
 
   public AsyncService scrollQuery(
@@ -365,6 +784,8 @@ public class AsyncServiceImpl implements AsyncService {
       String searchId,
       ProgressListener progressListener,
       String format,
+      ExportCompression compression,
+      ExportCheckpoint checkpoint,
       Handler<AsyncResult<JsonObject>> handler) {
 
     Query query;
@@ -375,20 +796,7 @@ public class AsyncServiceImpl implements AsyncService {
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return this;
     }
-    LOGGER.info("tenant {}", tenantPrefix);
-    StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
-    final String searchIndex;
-    String resourceGroup = request.getString("resourceGroup");
-    if (!this.tenantPrefix.equals("none")) {
-      searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-    } else {
-      searchIndex = resourceGroup;
-    }
-    /*
-     * Example: searchIndex =
-     * iudx__datakaveri.org__b8bd3e3f39615c8ec96722131ae95056b5938f2f__rs.iudx.io__pune-env-aqm
-     */
-    LOGGER.info("Index name: " + searchIndex);
+    final String searchIndex = getSearchIndex(request);
 
     try {
       query = new QueryDecoder().getQuery(request, true);
@@ -414,11 +822,20 @@ public class AsyncServiceImpl implements AsyncService {
     }
     Future<JsonObject> asyncFuture =
         client.asyncScroll(
-            file, searchIndex, query, sourceFilters, searchId, progressListener, format, filePath);
+            file,
+            searchIndex,
+            query,
+            sourceFilters,
+            searchId,
+            progressListener,
+            format,
+            compression,
+            checkpoint,
+            filePath);
     asyncFuture.onComplete(
         scrollHandler -> {
           if (scrollHandler.succeeded()) {
-            handler.handle(Future.succeededFuture());
+            handler.handle(Future.succeededFuture(scrollHandler.result()));
           } else {
             handler.handle(Future.failedFuture(scrollHandler.cause()));
           }
@@ -426,6 +843,24 @@ public class AsyncServiceImpl implements AsyncService {
     return this;
   }
 
+  private String getSearchIndex(JsonObject request) {
+    LOGGER.info("tenant {}", tenantPrefix);
+    StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
+    final String searchIndex;
+    String resourceGroup = request.getString("resourceGroup");
+    if (!this.tenantPrefix.equals("none")) {
+      searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
+    } else {
+      searchIndex = resourceGroup;
+    }
+    /*
+     * Example: searchIndex =
+     * iudx__datakaveri.org__b8bd3e3f39615c8ec96722131ae95056b5938f2f__rs.iudx.io__pune-env-aqm
+     */
+    LOGGER.info("Index name: " + searchIndex);
+    return searchIndex;
+  }
+
   private Future<Void> updateAuditTable(
       String id, String userId, long fileSize, String role, String drl, String did) {
     Promise<Void> promise = Promise.promise();
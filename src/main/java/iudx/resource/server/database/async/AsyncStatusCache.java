@@ -0,0 +1,145 @@
+package iudx.resource.server.database.async;
+
+import static iudx.resource.server.common.Constants.ASYNC_STATUS_ADDRESS;
+import static iudx.resource.server.database.async.util.Constants.FILE_DOWNLOAD_URL;
+import static iudx.resource.server.database.async.util.Constants.STATUS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.async.util.QueryProgress;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest status of the async searches, to answer status requests without postgres.
+ *
+ * <p>Every change of status is published on the event bus, as the result of a status request:
+ * searchId, userId, status, progress and the download url of a completed search. Each cache
+ * listening to the address applies the changes, so the caches of all instances follow the searches
+ * of all instances. Progress is published for the searches attached to the running exports of this
+ * instance when the progress reporter flushes. A search that finished keeps its final status.
+ */
+public class AsyncStatusCache {
+
+  public static final String SEARCH_ID = "searchId";
+  public static final String USER_ID = "userId";
+  public static final String PROGRESS = "progress";
+  private static final long MAX_ENTRIES = 100000L;
+
+  private final Vertx vertx;
+  /** status by search id, kept as long as a download url is valid. */
+  private final Cache<String, JsonObject> statuses =
+      CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).expireAfterWrite(1, TimeUnit.DAYS).build();
+  /** searches of the running exports of this instance, by request id. */
+  private final Map<String, Set<String>> running = new ConcurrentHashMap<>();
+
+  public AsyncStatusCache(Vertx vertx) {
+    this.vertx = vertx;
+  }
+
+  /** Whether a search is done, its status does not change anymore. */
+  public static boolean isFinal(JsonObject status) {
+    String value = status.getString(STATUS);
+    return QueryProgress.COMPLETE.toString().equals(value)
+        || QueryProgress.ERROR.toString().equals(value);
+  }
+
+  private static JsonObject status(String searchId, String userId, QueryProgress status) {
+    JsonObject json = new JsonObject().put(SEARCH_ID, searchId).put(STATUS, status.toString());
+    if (userId != null) {
+      json.put(USER_ID, userId);
+    }
+    return json;
+  }
+
+  /**
+   * Apply the changes published by all instances.
+   *
+   * @return consumer of the changes, unregistered to stop listening
+   */
+  public MessageConsumer<JsonObject> listen() {
+    return vertx.eventBus().consumer(ASYNC_STATUS_ADDRESS, message -> apply(message.body()));
+  }
+
+  /**
+   * Status of a search, when known with its user.
+   *
+   * @param searchId search id
+   * @return copy of the status, null when not known
+   */
+  public JsonObject get(String searchId) {
+    JsonObject status = statuses.getIfPresent(searchId);
+    return status == null || status.getString(USER_ID) == null ? null : status.copy();
+  }
+
+  /** Keep a status read from postgres. */
+  public void put(JsonObject status) {
+    apply(status);
+  }
+
+  /** Merge a change into the known status, a final status is not replaced by progress. */
+  void apply(JsonObject change) {
+    statuses
+        .asMap()
+        .merge(
+            change.getString(SEARCH_ID),
+            change.copy(),
+            (known, update) ->
+                isFinal(known) && !isFinal(update) ? known : known.copy().mergeIn(update));
+  }
+
+  /** An export for a request id started or picked up a search. */
+  void started(String requestId, String searchId, String userId) {
+    running.computeIfAbsent(requestId, key -> ConcurrentHashMap.newKeySet()).add(searchId);
+    publish(status(searchId, userId, QueryProgress.IN_PROGRESS));
+  }
+
+  /**
+   * Progress of the export of a request id, published for all its searches.
+   *
+   * @param requestId request id of the export
+   * @param percent progress in percent
+   */
+  void progress(String requestId, double percent) {
+    Set<String> searchIds = running.get(requestId);
+    if (searchIds == null) {
+      return;
+    }
+    for (String searchId : searchIds) {
+      publish(status(searchId, null, QueryProgress.IN_PROGRESS).put(PROGRESS, percent));
+    }
+  }
+
+  /** A search completed, its object can be downloaded from the url. */
+  void completed(String requestId, String searchId, String userId, String url) {
+    done(requestId, searchId);
+    publish(
+        status(searchId, userId, QueryProgress.COMPLETE)
+            .put(PROGRESS, 100.0)
+            .put(FILE_DOWNLOAD_URL, url));
+  }
+
+  /** A search failed. */
+  void failed(String requestId, String searchId, String userId) {
+    done(requestId, searchId);
+    publish(status(searchId, userId, QueryProgress.ERROR));
+  }
+
+  private void done(String requestId, String searchId) {
+    running.computeIfPresent(
+        requestId,
+        (key, searchIds) -> {
+          searchIds.remove(searchId);
+          return searchIds.isEmpty() ? null : searchIds;
+        });
+  }
+
+  private void publish(JsonObject status) {
+    vertx.eventBus().publish(ASYNC_STATUS_ADDRESS, status);
+  }
+}
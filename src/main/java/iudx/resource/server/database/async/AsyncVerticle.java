@@ -4,6 +4,7 @@ import static iudx.resource.server.common.Constants.*;
 
 import com.amazonaws.regions.Regions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
@@ -11,6 +12,9 @@ import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
 import iudx.resource.server.database.elastic.ElasticClient;
 import iudx.resource.server.database.postgres.PostgresService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Async worker Verticle.
@@ -40,6 +44,17 @@ public class AsyncVerticle extends AbstractVerticle {
   private CacheService cacheService;
   private MessageConsumer<JsonObject> consumer;
   private String tenantPrefix;
+  /** exports in progress, shared by the instances of the verticle. */
+  private static final AsyncQueryFlights FLIGHTS = new AsyncQueryFlights();
+  /** progress of the exports of all instances, written by one reporter. */
+  private static AsyncProgressReporter progressReporter;
+  private static int progressReporterUsers;
+  /** status of the searches of all instances, fed by the status changes on the event bus. */
+  private static MessageConsumer<JsonObject> statusConsumer;
+  /** one instance of the JVM looks for orphaned exports. */
+  private static final AtomicBoolean RESUME_SWEEP = new AtomicBoolean();
+  private long resumeTimerId = -1;
+  private MessageConsumer<JsonObject> waitingConsumer;
 
   /**
    * This method is used to start the Verticle. It deploys a verticle in a cluster, registers the
@@ -61,20 +76,97 @@ public class AsyncVerticle extends AbstractVerticle {
     tenantPrefix = config().getString("tenantPrefix");
 
     pgService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
-    cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
-    client = new ElasticClient(databaseIp, databasePort, user, password);
-    fileOpsHelper = new S3FileOpsHelper(clientRegion, bucketName);
+    cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
+    client =
+        new ElasticClient(databaseIp, databasePort, user, password)
+            .setScrollSlices(
+                config().getInteger("maxScrollSlices", 1),
+                config().getLong("docsPerScrollSlice", 500000L));
+    // S3 accepts parts of at least 5MB
+    long partSize = Math.max(5, config().getLong("s3PartSizeMb", 16L)) * 1024 * 1024;
+    fileOpsHelper =
+        new S3FileOpsHelper(
+            S3FileOpsHelper.createClient(clientRegion, config().getString("s3Endpoint")),
+            bucketName,
+            partSize,
+            config().getInteger("s3UploadThreads", S3FileOpsHelper.DEFAULT_UPLOAD_THREADS));
+
+    AsyncProgressReporter reporter =
+        acquireProgressReporter(
+            vertx,
+            pgService,
+            config().getLong(
+                "progressFlushIntervalMillis", AsyncProgressReporter.DEFAULT_FLUSH_INTERVAL));
 
     binder = new ServiceBinder(vertx);
-    asyncService =
+    AsyncServiceImpl asyncServiceImpl =
         new AsyncServiceImpl(
-            vertx, client, pgService, fileOpsHelper, filePath, tenantPrefix, cacheService);
+            vertx,
+            client,
+            pgService,
+            fileOpsHelper,
+            filePath,
+            tenantPrefix,
+            cacheService,
+            FLIGHTS,
+            reporter);
+    asyncServiceImpl.setIngestLag(
+        Duration.ofMinutes(
+            config().getLong(
+                "exportIngestLagMinutes", IncrementalExport.DEFAULT_INGEST_LAG.toMinutes())));
+
+    asyncService = asyncServiceImpl;
 
     consumer = binder.setAddress(ASYNC_SERVICE_ADDRESS).register(AsyncService.class, asyncService);
+
+    if (RESUME_SWEEP.compareAndSet(false, true)) {
+      long staleMinutes = Math.max(1, config().getLong("asyncResumeAfterMinutes", 10L));
+      // first sweep once the async query listener is up, then twice per stale period
+      resumeTimerId =
+          vertx.setPeriodic(
+              TimeUnit.MINUTES.toMillis(1),
+              Math.max(TimeUnit.MINUTES.toMillis(staleMinutes) / 2, TimeUnit.MINUTES.toMillis(1)),
+              id -> asyncServiceImpl.resumeOrphanedJobs(staleMinutes));
+      waitingConsumer =
+          vertx
+              .eventBus()
+              .<JsonObject>consumer(
+                  ASYNC_JOB_WAITING_ADDRESS,
+                  message ->
+                      asyncServiceImpl.keepWaitingJobs(
+                          message.body().getJsonArray("searchIds")));
+    }
   }
 
   @Override
   public void stop() {
     binder.unregister(consumer);
+    fileOpsHelper.close();
+    releaseProgressReporter();
+    if (resumeTimerId >= 0) {
+      vertx.cancelTimer(resumeTimerId);
+      waitingConsumer.unregister();
+      RESUME_SWEEP.set(false);
+    }
+  }
+
+  private static synchronized AsyncProgressReporter acquireProgressReporter(
+      Vertx vertx, PostgresService pgService, long flushIntervalMillis) {
+    if (progressReporterUsers++ == 0) {
+      AsyncStatusCache statusCache = new AsyncStatusCache(vertx);
+      statusConsumer = statusCache.listen();
+      progressReporter =
+          new AsyncProgressReporter(vertx, pgService, flushIntervalMillis, statusCache);
+    }
+    return progressReporter;
+  }
+
+  private static synchronized void releaseProgressReporter() {
+    if (--progressReporterUsers == 0) {
+      statusConsumer.unregister();
+      statusConsumer = null;
+      progressReporter.close();
+      progressReporter = null;
+    }
   }
 }
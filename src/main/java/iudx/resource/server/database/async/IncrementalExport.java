@@ -0,0 +1,166 @@
+package iudx.resource.server.database.async;
+
+import static iudx.resource.server.apiserver.util.Constants.HEADER_CSV;
+import static iudx.resource.server.database.archives.Constants.BETWEEN;
+import static iudx.resource.server.database.archives.Constants.DURING;
+import static iudx.resource.server.database.archives.Constants.END_TIME;
+import static iudx.resource.server.database.archives.Constants.REQ_TIMEREL;
+import static iudx.resource.server.database.archives.Constants.SIZE_KEY;
+import static iudx.resource.server.database.archives.Constants.TIME_KEY;
+import static iudx.resource.server.database.async.util.Constants.OBJECT_ID;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.json.JsonData;
+import com.google.common.hash.Hashing;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.async.util.S3FileOpsHelper;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Finds an earlier export that an async query can continue instead of exporting its whole window.
+ *
+ * <p>Queries that only differ in the bounds of their during or between window share a window key.
+ * A completed CSV export with the same window key, the same start and an earlier end covers a
+ * prefix of the requested window: only the hits after its end are exported, as rows without
+ * header, and its object is composed with them.
+ *
+ * <p>Documents can be indexed some time after their observation time, so an export only covers its
+ * window up to the time it started reading less the ingest lag. Its object holds every row up to
+ * the end of its window and can not be cut, so it is only continued when that covered point is
+ * the end of its window, otherwise documents indexed late into the prefix would be missed.
+ */
+final class IncrementalExport {
+
+  static final String COLUMNS = "columns";
+  static final Duration DEFAULT_INGEST_LAG = Duration.ofMinutes(15);
+  private static final String EXPORT = "export";
+  private static final String STARTED_AT = "startedAt";
+
+  private IncrementalExport() {}
+
+  /** Whether the export of a query can continue an earlier one or be continued later. */
+  static boolean isIncremental(JsonObject query, String format) {
+    String timerel = query.getString(REQ_TIMEREL);
+    return HEADER_CSV.equalsIgnoreCase(format)
+        && (DURING.equalsIgnoreCase(timerel) || BETWEEN.equalsIgnoreCase(timerel))
+        && query.getString(TIME_KEY) != null
+        && query.getString(END_TIME) != null;
+  }
+
+  /** Hash of the query without its time window, format and compression are part of the query. */
+  static String windowKey(JsonObject query) {
+    JsonObject key = query.copy();
+    key.remove(TIME_KEY);
+    key.remove(END_TIME);
+    key.remove("search");
+    return Hashing.sha256().hashString(key.toString(), StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * What is kept of a completed export to continue it later.
+   *
+   * @param startedAt time the export started reading documents
+   */
+  static JsonObject summary(JsonObject query, JsonArray columns, ZonedDateTime startedAt) {
+    return new JsonObject()
+        .put(TIME_KEY, query.getString(TIME_KEY))
+        .put(END_TIME, query.getString(END_TIME))
+        .put(STARTED_AT, startedAt.toString())
+        .put(COLUMNS, columns);
+  }
+
+  /**
+   * The completed export covering the longest prefix of the window of a query.
+   *
+   * @param query query to export
+   * @param rows completed exports with the window key of the query
+   * @param ingestLag time documents may take to be indexed after their observation time
+   * @return row of the export with its object id, size and summary, null when none covers a prefix
+   *     or its object can not be copied as a part
+   */
+  static JsonObject findBase(JsonObject query, JsonArray rows, Duration ingestLag) {
+    ZonedDateTime start = parse(query.getString(TIME_KEY));
+    ZonedDateTime end = parse(query.getString(END_TIME));
+    if (start == null || end == null) {
+      return null;
+    }
+    JsonObject base = null;
+    ZonedDateTime baseEnd = null;
+    for (int i = 0; i < rows.size(); i++) {
+      JsonObject row = rows.getJsonObject(i);
+      JsonObject export = row.getJsonObject(EXPORT);
+      long size = row.getLong(SIZE_KEY, 0L);
+      if (export == null
+          || row.getString(OBJECT_ID) == null
+          || size < S3FileOpsHelper.MIN_COPY_PART_SIZE
+          || size > S3FileOpsHelper.MAX_COPY_PART_SIZE) {
+        continue;
+      }
+      ZonedDateTime exportStart = parse(export.getString(TIME_KEY));
+      ZonedDateTime exportEnd = coveredUntil(export, ingestLag);
+      if (exportStart == null
+          || exportEnd == null
+          || !exportEnd.isEqual(parse(export.getString(END_TIME)))
+          || !exportStart.isEqual(start)
+          || !exportEnd.isAfter(start)
+          || !exportEnd.isBefore(end)) {
+        continue;
+      }
+      if (baseEnd == null || exportEnd.isAfter(baseEnd)) {
+        base = row;
+        baseEnd = exportEnd;
+      }
+    }
+    return base;
+  }
+
+  /** Summary of the export continued from a row found by {@link #findBase}. */
+  static JsonObject getSummary(JsonObject base) {
+    return base.getJsonObject(EXPORT);
+  }
+
+  /**
+   * End of the part of the window of an export that no document could still be indexed into when
+   * it started reading, the earlier of the end of its window and its start less the ingest lag.
+   *
+   * @return the covered point, null when the summary does not tell when the export started
+   */
+  static ZonedDateTime coveredUntil(JsonObject summary, Duration ingestLag) {
+    ZonedDateTime end = parse(summary.getString(END_TIME));
+    ZonedDateTime startedAt = parse(summary.getString(STARTED_AT));
+    if (end == null || startedAt == null) {
+      return null;
+    }
+    ZonedDateTime settled = startedAt.minus(ingestLag);
+    return settled.isBefore(end) ? settled : end;
+  }
+
+  /** The query restricted to the part of its window after the end of an earlier export. */
+  static JsonObject deltaQuery(JsonObject query, JsonObject summary) {
+    return query.copy().put(TIME_KEY, summary.getString(END_TIME));
+  }
+
+  /** Leave out the hits at the end of the earlier export, the time range includes its bounds. */
+  static Query excludeUntil(Query query, JsonObject summary) {
+    String end = summary.getString(END_TIME);
+    Query exported =
+        RangeQuery.of(r -> r.field("observationDateTime").lte(JsonData.of(end)))._toQuery();
+    return Query.of(q -> q.bool(b -> b.filter(query).mustNot(exported)));
+  }
+
+  private static ZonedDateTime parse(String time) {
+    if (time == null) {
+      return null;
+    }
+    try {
+      return ZonedDateTime.parse(time);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+}
@@ -1,8 +1,13 @@
 package iudx.resource.server.database.async;
 
+import io.vertx.core.json.JsonObject;
+
 public interface ProgressListener {
 
   void updateProgress(double progress);
 
+  /** Latest position of the export, to resume it from if it is interrupted. */
+  void checkpoint(JsonObject checkpoint);
+
   void finish();
 }
@@ -0,0 +1,44 @@
+package iudx.resource.server.database.async;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Combines the documents downloaded by parallel scroll slices into a single progress value for a
+ * {@link ProgressListener}. Progress is scaled so the remaining part is left for the upload to S3.
+ */
+public class ScrollProgressAggregator {
+
+  private final ProgressListener progressListener;
+  private final long totalDocs;
+  private final double scale;
+  private long downloadedDocs;
+
+  /**
+   * Aggregator for one export.
+   *
+   * @param progressListener listener receiving the combined progress
+   * @param totalDocs total documents of the export across all slices
+   * @param scale fraction of the whole job covered by the download
+   */
+  public ScrollProgressAggregator(ProgressListener progressListener, long totalDocs, double scale) {
+    this.progressListener = progressListener;
+    this.totalDocs = totalDocs;
+    this.scale = scale;
+  }
+
+  /** Record a page of documents written by one of the slices. */
+  public synchronized void addDocuments(long docs) {
+    downloadedDocs += docs;
+    double progress = totalDocs <= 0 ? 1.0 : Math.min(1.0, (double) downloadedDocs / totalDocs);
+    progressListener.updateProgress(progress * scale);
+  }
+
+  /** Pass the position of the export to the listener, so that it can be resumed. */
+  public void checkpoint(JsonObject checkpoint) {
+    progressListener.checkpoint(checkpoint);
+  }
+
+  public synchronized long getDownloadedDocs() {
+    return downloadedDocs;
+  }
+}
@@ -6,111 +6,306 @@ import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyPartRequest;
 import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.net.URL;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Uploads async search results to S3 and signs their download urls.
+ *
+ * <p>One client and one {@link TransferManager} are kept for the lifetime of the helper. Files are
+ * uploaded in parts of {@code partSize} bytes, up to {@code uploadThreads} parts at a time across
+ * all uploads of the helper. Upload handlers are completed from the transfer completion callback,
+ * on the Vert.x context of the caller, no thread waits for an upload.
+ *
+ * <p>An object can also be composed from an object already in the bucket followed by a file, the
+ * object is copied server side as the first part of a multipart upload.
+ */
 public class S3FileOpsHelper {
 
+  public static final long DEFAULT_PART_SIZE = 16L * 1024 * 1024;
+  public static final int DEFAULT_UPLOAD_THREADS = 10;
+  /** bounds of a part of a multipart upload, only the last part may be smaller. */
+  public static final long MIN_COPY_PART_SIZE = 5L * 1024 * 1024;
+  public static final long MAX_COPY_PART_SIZE = 5L * 1024 * 1024 * 1024;
   private static final Logger LOGGER = LogManager.getLogger(S3FileOpsHelper.class);
-  static FileInputStream fileInputStream;
-  private final Regions clientRegion;
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  private final AmazonS3 s3Client;
+  private final TransferManager transferManager;
   private final String bucketName;
 
   public S3FileOpsHelper(Regions clientRegion, String bucketName) {
-    this.clientRegion = clientRegion;
+    this(createClient(clientRegion, null), bucketName, DEFAULT_PART_SIZE, DEFAULT_UPLOAD_THREADS);
+  }
+
+  /**
+   * Helper uploading through the given client.
+   *
+   * @param s3Client client shared by all uploads, shut down with the helper
+   * @param bucketName bucket of the uploaded objects
+   * @param partSize size of the parts of a multipart upload, files above it are uploaded in parts
+   * @param uploadThreads parts uploaded in parallel
+   */
+  public S3FileOpsHelper(AmazonS3 s3Client, String bucketName, long partSize, int uploadThreads) {
+    this.s3Client = s3Client;
     this.bucketName = bucketName;
+    this.transferManager =
+        TransferManagerBuilder.standard()
+            .withS3Client(s3Client)
+            .withMinimumUploadPartSize(partSize)
+            .withMultipartUploadThreshold(partSize)
+            .withExecutorFactory(
+                () ->
+                    Executors.newFixedThreadPool(
+                        uploadThreads,
+                        runnable -> {
+                          Thread thread =
+                              new Thread(runnable, "s3-upload-" + THREAD_COUNT.incrementAndGet());
+                          thread.setDaemon(true);
+                          return thread;
+                        }))
+            .withShutDownThreadPools(true)
+            .build();
+  }
+
+  /**
+   * Client with the default credential chain.
+   *
+   * @param clientRegion region of the bucket
+   * @param endpoint url of an S3 compatible store, null for AWS
+   * @return client
+   */
+  public static AmazonS3 createClient(Regions clientRegion, String endpoint) {
+    AmazonS3ClientBuilder builder =
+        AmazonS3ClientBuilder.standard()
+            .withCredentials(new DefaultAWSCredentialsProviderChain())
+            .withClientConfiguration(getClientConfiguration());
+    if (endpoint == null || endpoint.isBlank()) {
+      builder.withRegion(clientRegion);
+    } else {
+      builder
+          .withEndpointConfiguration(
+              new AwsClientBuilder.EndpointConfiguration(endpoint, clientRegion.getName()))
+          .withPathStyleAccessEnabled(true);
+    }
+    return builder.build();
   }
 
-  private ClientConfiguration getClientConfiguration() {
+  private static ClientConfiguration getClientConfiguration() {
     ClientConfiguration clientConfiguration = new ClientConfiguration();
     clientConfiguration.setRetryPolicy(new RetryPolicy(null, null, 3, false));
     return clientConfiguration;
   }
 
   public void s3Upload(File file, String objectKey, Handler<AsyncResult<JsonObject>> handler) {
+    s3Upload(file, objectKey, file.getName(), null, handler);
+  }
 
-    DefaultAWSCredentialsProviderChain credentialProviderChain =
-        new DefaultAWSCredentialsProviderChain();
-
-    try (FileInputStream fileInputStream = new FileInputStream(file)) {
-      AmazonS3 s3Client =
-          AmazonS3ClientBuilder.standard()
-              .withRegion(clientRegion)
-              .withCredentials(credentialProviderChain)
-              .withClientConfiguration(getClientConfiguration())
-              .build();
-
-      TransferManager tm = TransferManagerBuilder.standard().withS3Client(s3Client).build();
-      ObjectMetadata objectMetadata = new ObjectMetadata();
-      objectMetadata.setContentDisposition("attachment; filename=" + file.getName());
-      objectMetadata.setContentLength(file.length());
-      // TransferManager processes all transfers asynchronously,
-      // so this call returns immediately.
-      Upload upload = tm.upload(bucketName, objectKey, fileInputStream, objectMetadata);
+  /**
+   * Upload a result file, a compressed file is named after its content so that clients decoding
+   * the content encoding save it under the right name.
+   *
+   * @param file file to upload
+   * @param objectKey key of the object
+   * @param fileName file name offered for download
+   * @param contentEncoding encoding of the file, null when not compressed
+   * @param handler completed with the pre-signed url of the object
+   */
+  public void s3Upload(
+      File file,
+      String objectKey,
+      String fileName,
+      String contentEncoding,
+      Handler<AsyncResult<JsonObject>> handler) {
+    Context context = Vertx.currentContext();
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentDisposition("attachment; filename=" + fileName);
+    if (contentEncoding != null) {
+      objectMetadata.setContentEncoding(contentEncoding);
+    }
+    PutObjectRequest request =
+        new PutObjectRequest(bucketName, objectKey, file).withMetadata(objectMetadata);
+    // the listener may be called before upload() returns
+    CompletableFuture<Upload> started = new CompletableFuture<>();
+    request.setGeneralProgressListener(
+        event -> {
+          ProgressEventType type = event.getEventType();
+          if (type == ProgressEventType.TRANSFER_COMPLETED_EVENT
+              || type == ProgressEventType.TRANSFER_FAILED_EVENT
+              || type == ProgressEventType.TRANSFER_CANCELED_EVENT) {
+            started.thenAccept(
+                upload -> {
+                  AsyncResult<JsonObject> result = uploadResult(upload, type, objectKey);
+                  if (context == null) {
+                    handler.handle(result);
+                  } else {
+                    context.runOnContext(v -> handler.handle(result));
+                  }
+                });
+          }
+        });
+    try {
+      started.complete(transferManager.upload(request));
       LOGGER.info("Object upload started");
-      // upload.addProgressListener(uploadProgressListener);
-      upload.waitForCompletion();
-
-      LOGGER.info("Object upload complete");
-      ZonedDateTime zdt = ZonedDateTime.now();
-      zdt = zdt.plusDays(1);
-      Long expiry = zdt.toEpochSecond() * 1000;
-      JsonObject result =
-          new JsonObject()
-              .put("s3_url", generatePreSignedUrl(expiry, objectKey))
-              .put("expiry", zdt.toLocalDateTime().toString())
-              .put("object_id", objectKey);
-      handler.handle(Future.succeededFuture(result));
-    } catch (AmazonServiceException e) {
-      // The call was transmitted successfully, but Amazon S3 couldn't process
-      // it, so it returned an error response.
-      LOGGER.error(e);
-      LOGGER.error(e.getErrorCode());
-      LOGGER.error(e.getErrorMessage());
-      LOGGER.error(e.getErrorType());
-      handler.handle(Future.failedFuture(e));
     } catch (AmazonClientException e) {
       LOGGER.error(e);
-      LOGGER.error(e.getCause());
       handler.handle(Future.failedFuture(e));
+    }
+  }
+
+  /**
+   * Write an object made of an existing object followed by the content of a file, the existing
+   * object is not downloaded. Runs on a worker thread of the caller context.
+   *
+   * @param baseKey key of the existing object, between {@link #MIN_COPY_PART_SIZE} and {@link
+   *     #MAX_COPY_PART_SIZE} bytes
+   * @param file file appended to the existing object
+   * @param objectKey key of the new object
+   * @param fileName file name offered for download
+   * @param contentEncoding encoding of the object, null when not compressed
+   * @param handler completed with the pre-signed url of the new object
+   */
+  public void s3Compose(
+      String baseKey,
+      File file,
+      String objectKey,
+      String fileName,
+      String contentEncoding,
+      Handler<AsyncResult<JsonObject>> handler) {
+    Context context = Vertx.currentContext();
+    if (context == null) {
+      try {
+        JsonObject result = compose(baseKey, file, objectKey, fileName, contentEncoding);
+        handler.handle(Future.succeededFuture(result));
+      } catch (AmazonClientException e) {
+        handler.handle(Future.failedFuture(e));
+      }
+      return;
+    }
+    context
+        .executeBlocking(
+            () -> compose(baseKey, file, objectKey, fileName, contentEncoding), false)
+        .onComplete(handler);
+  }
+
+  private JsonObject compose(
+      String baseKey, File file, String objectKey, String fileName, String contentEncoding) {
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentDisposition("attachment; filename=" + fileName);
+    if (contentEncoding != null) {
+      objectMetadata.setContentEncoding(contentEncoding);
+    }
+    String uploadId =
+        s3Client
+            .initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectKey, objectMetadata))
+            .getUploadId();
+    try {
+      List<PartETag> parts = new ArrayList<>(2);
+      parts.add(
+          s3Client
+              .copyPart(
+                  new CopyPartRequest()
+                      .withSourceBucketName(bucketName)
+                      .withSourceKey(baseKey)
+                      .withDestinationBucketName(bucketName)
+                      .withDestinationKey(objectKey)
+                      .withUploadId(uploadId)
+                      .withPartNumber(1))
+              .getPartETag());
+      if (file.length() > 0) {
+        parts.add(
+            s3Client
+                .uploadPart(
+                    new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(objectKey)
+                        .withUploadId(uploadId)
+                        .withPartNumber(2)
+                        .withFile(file)
+                        .withPartSize(file.length()))
+                .getPartETag());
+      }
+      s3Client.completeMultipartUpload(
+          new CompleteMultipartUploadRequest(bucketName, objectKey, uploadId, parts));
+    } catch (AmazonClientException e) {
+      LOGGER.error("Object compose failed : {}", e.getMessage());
+      s3Client.abortMultipartUpload(
+          new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+      throw e;
+    }
+    LOGGER.info("Object compose complete");
+    return uploadedObject(objectKey);
+  }
+
+  private JsonObject uploadedObject(String objectKey) {
+    ZonedDateTime zdt = ZonedDateTime.now();
+    zdt = zdt.plusDays(1);
+    Long expiry = zdt.toEpochSecond() * 1000;
+    return new JsonObject()
+        .put("s3_url", generatePreSignedUrl(expiry, objectKey))
+        .put("expiry", zdt.toLocalDateTime().toString())
+        .put("object_id", objectKey);
+  }
+
+  private AsyncResult<JsonObject> uploadResult(
+      Upload upload, ProgressEventType type, String objectKey) {
+    if (type == ProgressEventType.TRANSFER_COMPLETED_EVENT) {
+      LOGGER.info("Object upload complete");
+      return Future.succeededFuture(uploadedObject(objectKey));
+    }
+    try {
+      AmazonClientException e = upload.waitForException();
+      if (e instanceof AmazonServiceException) {
+        // The call was transmitted successfully, but Amazon S3 couldn't process
+        // it, so it returned an error response.
+        AmazonServiceException serviceException = (AmazonServiceException) e;
+        LOGGER.error(serviceException.getErrorCode());
+        LOGGER.error(serviceException.getErrorMessage());
+      }
+      LOGGER.error("Object upload {} : {}", upload.getState(), e);
+      return Future.failedFuture(e != null ? e : new AmazonClientException("upload canceled"));
     } catch (InterruptedException e) {
-      LOGGER.error(e);
-      handler.handle(Future.failedFuture(e));
-    } catch (FileNotFoundException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-      handler.handle(Future.failedFuture(e));
-    } catch (IOException e) {
-      LOGGER.error("unable to access file");
-      LOGGER.error(e);
+      Thread.currentThread().interrupt();
+      return Future.failedFuture(e);
     }
   }
 
   public URL generatePreSignedUrl(long expiryTimeMillis, String objectKey) {
 
     URL url = null;
-    DefaultAWSCredentialsProviderChain credentialProviderChain =
-        new DefaultAWSCredentialsProviderChain();
 
     try {
 
@@ -126,11 +321,6 @@ public class S3FileOpsHelper {
           new GeneratePresignedUrlRequest(bucketName, objectKey)
               .withMethod(HttpMethod.GET)
               .withExpiration(expiration);
-      AmazonS3 s3Client =
-          AmazonS3ClientBuilder.standard()
-              .withRegion(clientRegion)
-              .withCredentials(credentialProviderChain)
-              .build();
 
       url = s3Client.generatePresignedUrl(generatePresignedUrlRequest);
 
@@ -143,4 +333,9 @@ public class S3FileOpsHelper {
     }
     return url;
   }
+
+  /** Stop the upload threads and the client, uploads in progress are aborted. */
+  public void close() {
+    transferManager.shutdownNow(true);
+  }
 }
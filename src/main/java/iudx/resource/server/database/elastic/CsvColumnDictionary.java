@@ -0,0 +1,135 @@
+package iudx.resource.server.database.elastic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columns of one CSV export, shared by every writer of the export.
+ *
+ * <p>Columns are the flattened paths of the document fields ("a.b.0.c"), numbered in the order they
+ * are first seen. Paths are kept as a tree so a writer walks the tree alongside the document and
+ * only builds a path string when a new column is discovered.
+ */
+public final class CsvColumnDictionary {
+
+  private final Node root = new Node(null);
+  private final List<String> columns = new ArrayList<>();
+  private volatile int size = 0;
+
+  Node root() {
+    return root;
+  }
+
+  private synchronized int register(String path) {
+    columns.add(path);
+    size = columns.size();
+    return size - 1;
+  }
+
+  /** Number of columns discovered so far. */
+  public int size() {
+    return size;
+  }
+
+  public synchronized List<String> getColumns() {
+    return new ArrayList<>(columns);
+  }
+
+  /**
+   * Register columns of an export being continued, in their original order, before any row is
+   * written.
+   *
+   * @param paths columns of the export
+   */
+  public void restore(List<String> paths) {
+    for (String path : paths) {
+      Node node = root;
+      for (String name : path.split("\\.", -1)) {
+        node = node.child(name);
+      }
+      node.column();
+    }
+  }
+
+  /** Header row with every column discovered so far, terminated by a new line. */
+  public String headerLine() {
+    StringBuilder header = new StringBuilder();
+    List<String> names = getColumns();
+    for (int i = 0; i < names.size(); i++) {
+      if (i > 0) {
+        header.append(',');
+      }
+      header.append(escape(names.get(i)));
+    }
+    return header.append('\n').toString();
+  }
+
+  static String escape(String value) {
+    if (!needsQuotes(value)) {
+      return value;
+    }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  static boolean needsQuotes(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Write a cell value, quoted only when needed. */
+  static void writeCell(Writer writer, String value) throws IOException {
+    if (!needsQuotes(value)) {
+      writer.write(value);
+      return;
+    }
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        writer.write('"');
+      }
+      writer.write(c);
+    }
+    writer.write('"');
+  }
+
+  /** A path in the documents, with its column once a value was seen at that path. */
+  final class Node {
+    private final String path;
+    private final ConcurrentHashMap<String, Node> children = new ConcurrentHashMap<>();
+    private volatile int column = -1;
+
+    private Node(String path) {
+      this.path = path;
+    }
+
+    Node child(String name) {
+      Node child = children.get(name);
+      if (child == null) {
+        child = children.computeIfAbsent(name, n -> new Node(path == null ? n : path + "." + n));
+      }
+      return child;
+    }
+
+    int column() {
+      int current = column;
+      if (current < 0) {
+        synchronized (this) {
+          if (column < 0) {
+            column = register(path);
+          }
+          current = column;
+        }
+      }
+      return current;
+    }
+  }
+}
@@ -1,15 +1,18 @@
 package iudx.resource.server.database.elastic;
 
+import static iudx.resource.server.apiserver.util.Constants.HEADER_CSV;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_PARQUET;
 import static iudx.resource.server.database.archives.Constants.*;
 
 import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
-import co.elastic.clients.elasticsearch.core.ClearScrollRequest;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
 import co.elastic.clients.elasticsearch.core.CountRequest;
-import co.elastic.clients.elasticsearch.core.ScrollRequest;
-import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
@@ -19,30 +22,68 @@ import co.elastic.clients.transport.rest_client.RestClientTransport;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.archives.ResponseBuilder;
 import iudx.resource.server.database.async.ProgressListener;
+import iudx.resource.server.database.async.ScrollProgressAggregator;
+import jakarta.json.stream.JsonGenerator;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 
+/**
+ * Elasticsearch client of the archive searches.
+ *
+ * <p>An instance holds no state of a request, so one instance can be shared by the verticles of a
+ * JVM. Its futures are completed on the threads of the Elasticsearch client, not on the context of
+ * the caller.
+ */
 public class ElasticClient {
 
   private static final Logger LOGGER = LogManager.getLogger(ElasticClient.class);
+  private static final String RAW_SEARCH_FILTER_PATH = "took,hits.total,hits.hits._source";
+  private static final String PIT_KEEP_ALIVE = "1m";
+  private static final long PIT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final long DEFAULT_DOCS_PER_SCROLL_SLICE = 500000L;
+
+  /**
+   * Cursor points in time opened from this JVM and not closed yet, with the time their keep alive
+   * ends. A client that stops paging never closes its point in time, so it is counted until it
+   * expires on the Elasticsearch side.
+   */
+  private static final Map<String, Long> CURSOR_PITS = new HashMap<>();
+
+  private static int pendingCursorPits;
+  private static int maxOpenCursorPits = DEFAULT_MAX_OPEN_CURSORS;
   private final RestClient client;
+  private final JacksonJsonpMapper jsonpMapper = new JacksonJsonpMapper();
   ElasticsearchClient esClient;
   ElasticsearchAsyncClient asyncClient;
-  private ResponseBuilder responseBuilder;
+  private int maxScrollSlices = 1;
+  private long docsPerScrollSlice = DEFAULT_DOCS_PER_SCROLL_SLICE;
 
   /**
    * ElasticClient - Elastic Low level wrapper.
@@ -59,12 +100,31 @@ public class ElasticClient {
                 httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentials));
     client = restClientBuilder.build();
 
-    ElasticsearchTransport transport = new RestClientTransport(client, new JacksonJsonpMapper());
+    ElasticsearchTransport transport = new RestClientTransport(client, jsonpMapper);
     // And create the API client
     esClient = new ElasticsearchClient(transport);
     asyncClient = new ElasticsearchAsyncClient(transport);
   }
 
+  /**
+   * Enable parallel sliced scrolls for async exports.
+   *
+   * @param maxScrollSlices upper bound of slices scrolled in parallel for one export
+   * @param docsPerScrollSlice documents each slice should cover before another slice is added
+   * @return this client
+   */
+  public ElasticClient setScrollSlices(int maxScrollSlices, long docsPerScrollSlice) {
+    this.maxScrollSlices = Math.max(1, maxScrollSlices);
+    this.docsPerScrollSlice = Math.max(1L, docsPerScrollSlice);
+    return this;
+  }
+
+  /**
+   * Export every hit of a query into a file.
+   *
+   * @param checkpoint position of an interrupted export of the file to continue from, null to
+   *     start a new export. The export starts over when it can not be continued.
+   */
   public Future<JsonObject> asyncScroll(
       File file,
       String index,
@@ -73,104 +133,128 @@ public class ElasticClient {
       String searchId,
       ProgressListener progressListener,
       String format,
+      ExportCompression compression,
+      ExportCheckpoint checkpoint,
       String filePath) {
-    Promise<JsonObject> promise = Promise.promise();
-    SearchRequest searchRequest =
-        SearchRequest.of(
-            e -> e.index(index).query(query).size(10000).scroll(scr -> scr.time("5m")));
-
-    asyncClient
-        .search(searchRequest, ObjectNode.class)
-        .whenCompleteAsync(
-            (response, ex) -> {
-              String scrollId = null;
-              try {
-                // LOGGER.info("response : {}",response.toString());
-                scrollId = response.scrollId();
-
-                long totalHits = response.hits().total().value();
-                LOGGER.debug("Total documents to be downloaded : " + totalHits);
-
-                List<Hit<ObjectNode>> searchHits = response.hits().hits();
-                LOGGER.debug("Total records : {}", searchHits.size());
-
-                EsResponseFormatterFactory convertFactory =
-                    new EsResponseFormatterFactory(format, file);
-                EsResponseFormatter instance = convertFactory.createInstance();
-
-                LOGGER.debug(file.getAbsolutePath());
-
-                int totaldocsDownloaded = 0;
-                Set<String> headers = null;
-
-                if (format.equalsIgnoreCase("json")) {
-                  instance.write(searchHits);
-                } else {
-                  headers = instance.writeToCsv(searchHits);
-                }
-
-                int totalIterations = totalHits < 10000 ? 1 : (int) Math.ceil(totalHits / 10000.0);
-                double iterationCount = 0.0;
-                double progress;
-                boolean appendComma = false;
-                while (searchHits != null && searchHits.size() > 0) {
-                  long downloadedDocs = searchHits.size();
-                  totaldocsDownloaded += downloadedDocs;
-
-                  String downloadLogMessage = "downloaded {} docs of {} total [{} new]";
-                  LOGGER.debug(downloadLogMessage, totaldocsDownloaded, totalHits, downloadedDocs);
-                  iterationCount += 1;
-                  progress = iterationCount / totalIterations;
-                  // keeping progress at 90% of actual to update the last 10% after upload to
-                  // external (s3)
-                  double finalProgress = progress * 0.9;
-                  Future.future(handler -> progressListener.updateProgress(finalProgress));
-
-                  if (format.equalsIgnoreCase("json")) {
-                    instance.append(searchHits, appendComma);
-                  } else {
-                    instance.append(searchHits, appendComma, headers);
-                  }
-
-                  ScrollRequest scrollRequest = nextScrollRequest(scrollId);
-                  CompletableFuture<ScrollResponse<ObjectNode>> future =
-                      asyncClient.scroll(scrollRequest, ObjectNode.class);
-                  ScrollResponse<ObjectNode> scrollResponse = future.get();
-                  scrollId = scrollResponse.scrollId();
-                  searchHits = scrollResponse.hits().hits();
-                  appendComma = true;
-                }
+    CompletableFuture<JsonObject> export;
+    if (checkpoint != null && checkpoint.canResume(file, format)) {
+      // keeping progress at 90% of actual to update the last 10% after upload to
+      // external (s3)
+      ScrollProgressAggregator progress =
+          new ScrollProgressAggregator(progressListener, checkpoint.getTotalHits(), 0.9);
+      progress.addDocuments(checkpoint.getDocs());
+      SlicedScrollExport resumed =
+          new SlicedScrollExport(asyncClient, index, query, file, format, compression, progress);
+      export =
+          resumed
+              .resume(checkpoint)
+              .thenApply(done -> getSummary(resumed))
+              .exceptionallyCompose(
+                  ex -> {
+                    // most likely the point in time expired
+                    LOGGER.warn("resume failed for searchId {}, exporting again", searchId);
+                    return export(file, index, query, progressListener, format, compression);
+                  });
+    } else {
+      export = export(file, index, query, progressListener, format, compression);
+    }
+    return toFuture(export, searchId);
+  }
 
-                instance.finish();
-                promise.complete();
+  /**
+   * Export the hits of a query as CSV rows continuing an earlier CSV export, the file is written
+   * without header and can be appended to the earlier file as it is.
+   *
+   * @param columns columns of the earlier export. The export fails when a hit has a field outside
+   *     of them, the earlier header would not describe it.
+   */
+  public Future<JsonObject> asyncScrollAppend(
+      File file,
+      String index,
+      Query query,
+      String searchId,
+      ProgressListener progressListener,
+      ExportCompression compression,
+      List<String> columns) {
+    SearchRequest probeRequest =
+        SearchRequest.of(
+            e -> e.index(index).query(query).size(0).trackTotalHits(t -> t.enabled(true)));
+    CompletableFuture<JsonObject> export =
+        asyncClient
+            .search(probeRequest, ObjectNode.class)
+            .thenCompose(
+                response -> {
+                  long totalHits = response.hits().total().value();
+                  ScrollProgressAggregator progress =
+                      new ScrollProgressAggregator(progressListener, totalHits, 0.9);
+                  SlicedScrollExport appended =
+                      new SlicedScrollExport(
+                              asyncClient, index, query, file, HEADER_CSV, compression, progress)
+                          .appendTo(columns);
+                  return appended
+                      .run(getScrollSlices(totalHits), totalHits)
+                      .thenApply(done -> getSummary(appended));
+                });
+    return toFuture(export, searchId);
+  }
 
-              } catch (Exception exception) {
-                promise.fail("failed for some exception");
-                exception.printStackTrace();
-              } finally {
-                clearScrollRequest(scrollId);
-              }
-            });
+  private Future<JsonObject> toFuture(CompletableFuture<JsonObject> export, String searchId) {
+    Promise<JsonObject> promise = Promise.promise();
+    export.whenComplete(
+        (result, exception) -> {
+          if (exception != null) {
+            LOGGER.error("scroll export failed for searchId {} : {}", searchId, exception);
+            promise.fail("failed for some exception");
+          } else {
+            promise.complete(result);
+          }
+        });
     return promise.future();
   }
 
-  private ScrollRequest nextScrollRequest(final String scrollId) {
-    return ScrollRequest.of(
-        scrollRequest -> scrollRequest.scrollId(scrollId).scroll(Time.of(t -> t.time("5m"))));
+  /** What the caller keeps of a finished export, the columns of a CSV export. */
+  private static JsonObject getSummary(SlicedScrollExport export) {
+    return new JsonObject().put("columns", new JsonArray(export.getColumns()));
   }
 
-  private void clearScrollRequest(String scrollId) {
-    if (scrollId != null) {
-      LOGGER.debug("Closing scroll request with id : {}", scrollId);
-      final String finalScroll = scrollId;
-      ClearScrollRequest clearScrollRequest = ClearScrollRequest.of(f -> f.scrollId(finalScroll));
-      try {
-        asyncClient.clearScroll(clearScrollRequest);
-      } catch (Exception e) {
-        LOGGER.error(e);
-        LOGGER.error(e.getMessage());
-      }
-    }
+  private CompletableFuture<JsonObject> export(
+      File file,
+      String index,
+      Query query,
+      ProgressListener progressListener,
+      String format,
+      ExportCompression compression) {
+    // probe for the total, used to size the slices
+    SearchRequest probeRequest =
+        SearchRequest.of(
+            e -> e.index(index).query(query).size(0).trackTotalHits(t -> t.enabled(true)));
+    return asyncClient
+        .search(probeRequest, ObjectNode.class)
+        .thenCompose(
+            response -> {
+              long totalHits = response.hits().total().value();
+              // a parquet file is written by a single writer, its segments can not be joined
+              int slices =
+                  HEADER_PARQUET.equalsIgnoreCase(format) ? 1 : getScrollSlices(totalHits);
+              LOGGER.debug("Total documents to be downloaded : {} in {} slices", totalHits, slices);
+              // keeping progress at 90% of actual to update the last 10% after upload to
+              // external (s3)
+              ScrollProgressAggregator progress =
+                  new ScrollProgressAggregator(progressListener, totalHits, 0.9);
+              SlicedScrollExport sliced =
+                  new SlicedScrollExport(
+                      asyncClient, index, query, file, format, compression, progress);
+              return sliced.run(slices, totalHits).thenApply(done -> getSummary(sliced));
+            });
+  }
+
+  /**
+   * Number of parallel scroll slices for an export, one slice per docsPerScrollSlice documents up
+   * to maxScrollSlices.
+   */
+  int getScrollSlices(long totalHits) {
+    long slices = (totalHits + docsPerScrollSlice - 1) / docsPerScrollSlice;
+    return (int) Math.max(1, Math.min(maxScrollSlices, slices));
   }
 
   public Future<JsonObject> asyncSearch(
@@ -184,6 +268,7 @@ public class ElasticClient {
                     .size(size)
                     .from(from)
                     .source(sourceFilterConfig)
+                    .trackTotalHits(t -> t.count(MAX_SEARCH_HITS + 1))
                     .timeout("180s"));
     asyncClient
         .search(searchRequest, ObjectNode.class)
@@ -197,12 +282,19 @@ public class ElasticClient {
               JsonObject queryResult;
               try {
                 JsonArray dbResponse = new JsonArray();
-                if (response.hits().total().value() == 0) {
-                  responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                long totalHits = response.hits().total().value();
+                if (totalHits == 0) {
+                  ResponseBuilder responseBuilder =
+                      new ResponseBuilder(FAILED).setTypeAndTitle(204);
                   responseBuilder.setMessage(EMPTY_RESPONSE);
                   promise.fail(responseBuilder.getResponse().toString());
                   return;
                 }
+                if (totalHits > MAX_SEARCH_HITS) {
+                  // over the limit, caller rejects the request so skip building the results
+                  promise.complete(new JsonObject().put(TOTAL_HITS, totalHits));
+                  return;
+                }
 
                 // TODO : explore client API docs to directly get response, avoid loop over response
                 // to
@@ -212,13 +304,13 @@ public class ElasticClient {
                   dbResponse.add(queryResult);
                 }
 
-                responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
+                ResponseBuilder responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
                 responseBuilder.setMessage(dbResponse);
-                promise.complete(responseBuilder.getResponse());
+                promise.complete(responseBuilder.getResponse().put(TOTAL_HITS, totalHits));
               } catch (Exception ex) {
                 LOGGER.error("Exception occurred while executing query: {}", ex);
                 JsonObject dbException = new JsonObject(ex.getMessage());
-                responseBuilder =
+                ResponseBuilder responseBuilder =
                     new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbException);
                 promise.fail(responseBuilder.getResponse().toString());
               }
@@ -226,6 +318,385 @@ public class ElasticClient {
     return promise.future();
   }
 
+  /**
+   * Limit the cursor points in time open at a time from this JVM, so abandoned cursors can not use
+   * up the open point in time contexts of the cluster that async exports need as well.
+   *
+   * @param maxOpenCursorPits cursor points in time open at a time
+   */
+  public static synchronized void setMaxOpenCursorPits(int maxOpenCursorPits) {
+    ElasticClient.maxOpenCursorPits = Math.max(1, maxOpenCursorPits);
+  }
+
+  /**
+   * Open a point in time on the index, used to keep cursor pagination consistent across pages.
+   * Fails with a 429 response when too many cursor points in time are open.
+   *
+   * @param index index to search
+   * @return Future of the point in time id
+   */
+  public Future<String> asyncOpenPointInTime(String index) {
+    Promise<String> promise = Promise.promise();
+    if (!reserveCursorPit()) {
+      LOGGER.warn("open cursor points in time limit of {} reached", maxOpenCursorPits);
+      ResponseBuilder failureBuilder =
+          new ResponseBuilder(FAILED)
+              .setTypeAndTitle(429, ResponseUrn.LIMIT_EXCEED_URN.getUrn())
+              .setMessage(TOO_MANY_CURSORS);
+      promise.fail(failureBuilder.getResponse().toString());
+      return promise.future();
+    }
+    OpenPointInTimeRequest request =
+        OpenPointInTimeRequest.of(p -> p.index(index).keepAlive(k -> k.time(PIT_KEEP_ALIVE)));
+    asyncClient
+        .openPointInTime(request)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("open point in time failed : {}", exception.getMessage());
+                releaseCursorPit(null);
+                promise.fail(searchFailure(exception));
+                return;
+              }
+              releaseCursorPit(response.id());
+              promise.complete(response.id());
+            });
+    return promise.future();
+  }
+
+  public void closePointInTime(String pitId) {
+    if (pitId == null) {
+      return;
+    }
+    synchronized (ElasticClient.class) {
+      CURSOR_PITS.remove(pitId);
+    }
+    asyncClient
+        .closePointInTime(ClosePointInTimeRequest.of(c -> c.id(pitId)))
+        .whenComplete(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.warn("close point in time failed : {}", exception.getMessage());
+              }
+            });
+  }
+
+  /** Count a point in time about to be opened, unless the limit is reached. */
+  private static synchronized boolean reserveCursorPit() {
+    long now = System.currentTimeMillis();
+    CURSOR_PITS.values().removeIf(expiresAt -> expiresAt <= now);
+    if (CURSOR_PITS.size() + pendingCursorPits >= maxOpenCursorPits) {
+      return false;
+    }
+    pendingCursorPits++;
+    return true;
+  }
+
+  /** Record the point in time a reservation was opened with, null when it failed to open. */
+  private static synchronized void releaseCursorPit(String pitId) {
+    pendingCursorPits--;
+    if (pitId != null) {
+      CURSOR_PITS.put(pitId, System.currentTimeMillis() + PIT_KEEP_ALIVE_MILLIS);
+    }
+  }
+
+  /** Extend the keep alive of a counted point in time, whose id a page may have refreshed. */
+  private static synchronized void keepCursorPit(String pitId, String nextPitId) {
+    if (CURSOR_PITS.remove(pitId) != null && nextPitId != null) {
+      CURSOR_PITS.put(nextPitId, System.currentTimeMillis() + PIT_KEEP_ALIVE_MILLIS);
+    }
+  }
+
+  /**
+   * Response for a failed search of a cursor page. Elasticsearch not finding the point in time
+   * means the cursor expired, rejecting the request means the cursor was not one it issued. Any
+   * other failure may pass when the client retries with the same cursor.
+   */
+  private static String cursorFailure(Throwable exception) {
+    int status = statusOf(exception);
+    if (status == 404) {
+      return new ResponseBuilder(FAILED)
+          .setTypeAndTitle(410, ResponseUrn.CURSOR_EXPIRED_URN.getUrn())
+          .setMessage(CURSOR_EXPIRED)
+          .getResponse()
+          .toString();
+    } else if (status == 400) {
+      return new ResponseBuilder(FAILED)
+          .setTypeAndTitle(400, ResponseUrn.INVALID_CURSOR_URN.getUrn())
+          .setMessage(INVALID_CURSOR)
+          .getResponse()
+          .toString();
+    }
+    return searchFailure(exception);
+  }
+
+  /** Response for a failed search without a cursor, a missing index is an unknown resource. */
+  private static String searchFailure(Throwable exception) {
+    int status = statusOf(exception);
+    if (status == 404) {
+      return new ResponseBuilder(FAILED)
+          .setTypeAndTitle(404, ResponseUrn.RESOURCE_NOT_FOUND_URN.getUrn())
+          .setMessage(INVALID_RESOURCE_ID)
+          .getResponse()
+          .toString();
+    } else if (status == 400) {
+      return new ResponseBuilder(FAILED)
+          .setTypeAndTitle(400, ResponseUrn.BAD_REQUEST_URN.getUrn())
+          .setMessage(BAD_PARAMETERS)
+          .getResponse()
+          .toString();
+    }
+    return new ResponseBuilder(FAILED)
+        .setTypeAndTitle(503, ResponseUrn.DB_ERROR_URN.getUrn())
+        .setMessage(SEARCH_RETRY)
+        .getResponse()
+        .toString();
+  }
+
+  /** Observation time a hit of the first page is sorted by. */
+  private static Object timeOf(Hit<ObjectNode> hit) {
+    return SearchCursor.toJson(hit.sort()).getValue(0);
+  }
+
+  /** HTTP status Elasticsearch answered a failed request with, 0 when it did not answer. */
+  private static int statusOf(Throwable exception) {
+    Throwable cause =
+        exception instanceof CompletionException && exception.getCause() != null
+            ? exception.getCause()
+            : exception;
+    return cause instanceof ElasticsearchException ? ((ElasticsearchException) cause).status() : 0;
+  }
+
+  /**
+   * Fetch the first page of a cursor paginated search from the index itself, without a point in
+   * time, sorted by observation time. It tells whether the page already holds every hit, so that a
+   * point in time is only opened when there are more pages to read.
+   *
+   * <p>Later pages are read from a point in time with the shard doc as tiebreaker, which this page
+   * can not resume from in the middle of hits of the same time. When there are more hits the page
+   * ends before the hits sharing the time of its last hit, and the sort values the next page
+   * continues after start at that time. When every hit of the page shares one time, no results are
+   * kept and the sort values are empty, the next page starts from the beginning.
+   *
+   * @return Future of the results with the total hits and, when there are more hits, the sort
+   *     values the next page continues after
+   */
+  public Future<JsonObject> asyncSearchFirstPage(
+      String index,
+      Query query,
+      int size,
+      List<SortOptions> sort,
+      SourceConfig sourceFilterConfig) {
+    Promise<JsonObject> promise = Promise.promise();
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            e ->
+                e.index(index)
+                    .query(query)
+                    .size(size)
+                    .sort(sort)
+                    .source(sourceFilterConfig)
+                    .trackTotalHits(t -> t.count(MAX_SEARCH_HITS + 1))
+                    .timeout("180s"));
+    asyncClient
+        .search(searchRequest, ObjectNode.class)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("async first page query failed : {}", exception);
+                promise.fail(searchFailure(exception));
+                return;
+              }
+              long totalHits = response.hits().total().value();
+              if (totalHits == 0) {
+                ResponseBuilder failureBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                failureBuilder.setMessage(EMPTY_RESPONSE);
+                promise.fail(failureBuilder.getResponse().toString());
+                return;
+              }
+              List<Hit<ObjectNode>> hits = response.hits().hits();
+              int pageEnd = hits.size();
+              JsonArray nextSort = null;
+              if (totalHits > hits.size() && !hits.isEmpty()) {
+                Object lastTime = timeOf(hits.get(pageEnd - 1));
+                while (lastTime != null
+                    && pageEnd > 0
+                    && lastTime.equals(timeOf(hits.get(pageEnd - 1)))) {
+                  pageEnd--;
+                }
+                // the shard doc of every hit is above -1, so the next page starts at lastTime
+                nextSort =
+                    lastTime == null || pageEnd == 0
+                        ? new JsonArray()
+                        : new JsonArray().add(lastTime).add(-1L);
+              }
+              JsonArray dbResponse = new JsonArray();
+              for (Hit<ObjectNode> esHitResponse : hits.subList(0, pageEnd)) {
+                dbResponse.add(new JsonObject(esHitResponse.source().toString()));
+              }
+              ResponseBuilder successBuilder =
+                  new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(dbResponse);
+              JsonObject result = successBuilder.getResponse().put(TOTAL_HITS, totalHits);
+              if (nextSort != null) {
+                result.put(LAST_SORT, nextSort);
+              }
+              promise.complete(result);
+            });
+    return promise.future();
+  }
+
+  /**
+   * Fetch one page of a cursor paginated search. The response carries the results, the
+   * (possibly refreshed) point in time id, the sort values of the last hit and, when tracked, the
+   * bounded total hits.
+   *
+   * @param trackTotalHits count the total hits, only needed on the first page so later pages cost
+   *     the same whatever their depth
+   */
+  public Future<JsonObject> asyncSearchAfter(
+      String pitId,
+      Query query,
+      int size,
+      List<FieldValue> searchAfter,
+      List<SortOptions> sort,
+      SourceConfig sourceFilterConfig,
+      boolean trackTotalHits) {
+    Promise<JsonObject> promise = Promise.promise();
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            e -> {
+              e.pit(p -> p.id(pitId).keepAlive(k -> k.time(PIT_KEEP_ALIVE)))
+                  .query(query)
+                  .size(size)
+                  .sort(sort)
+                  .source(sourceFilterConfig)
+                  .timeout("180s");
+              if (trackTotalHits) {
+                e.trackTotalHits(t -> t.count(MAX_SEARCH_HITS + 1));
+              } else {
+                e.trackTotalHits(t -> t.enabled(false));
+              }
+              if (!searchAfter.isEmpty()) {
+                e.searchAfter(searchAfter);
+              }
+              return e;
+            });
+    asyncClient
+        .search(searchRequest, ObjectNode.class)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("async search after query failed : {}", exception);
+                promise.fail(cursorFailure(exception));
+                return;
+              }
+              keepCursorPit(pitId, response.pitId());
+              JsonObject result = new JsonObject().put(PIT_ID, response.pitId());
+              if (trackTotalHits) {
+                long totalHits = response.hits().total().value();
+                if (totalHits == 0) {
+                  ResponseBuilder failureBuilder =
+                      new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                  failureBuilder.setMessage(EMPTY_RESPONSE);
+                  promise.fail(failureBuilder.getResponse().toString());
+                  return;
+                }
+                result.put(TOTAL_HITS, totalHits);
+              }
+              JsonArray dbResponse = new JsonArray();
+              List<Hit<ObjectNode>> hits = response.hits().hits();
+              for (Hit<ObjectNode> esHitResponse : hits) {
+                dbResponse.add(new JsonObject(esHitResponse.source().toString()));
+              }
+              if (!hits.isEmpty()) {
+                result.put(LAST_SORT, SearchCursor.toJson(hits.get(hits.size() - 1).sort()));
+              }
+              ResponseBuilder successBuilder =
+                  new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(dbResponse);
+              promise.complete(successBuilder.getResponse().mergeIn(result));
+            });
+    return promise.future();
+  }
+
+  /**
+   * Execute a search through the low level client and return the response body untouched, so that
+   * the documents can be streamed to the caller without being parsed into objects.
+   *
+   * @return Future of the raw response body filtered to total hits and <code>_source</code>
+   */
+  public Future<Buffer> asyncSearchRaw(
+      String index, Query query, int size, int from, SourceConfig sourceFilterConfig) {
+    Promise<Buffer> promise = Promise.promise();
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            e ->
+                e.index(index)
+                    .query(query)
+                    .size(size)
+                    .from(from)
+                    .source(sourceFilterConfig)
+                    .trackTotalHits(t -> t.count(MAX_SEARCH_HITS + 1))
+                    .timeout("180s"));
+    Request request = new Request("POST", "/" + index + "/_search");
+    request.addParameter("filter_path", RAW_SEARCH_FILTER_PATH);
+    request.setJsonEntity(toJson(searchRequest));
+    client.performRequestAsync(
+        request,
+        new ResponseListener() {
+          @Override
+          public void onSuccess(Response response) {
+            try {
+              promise.complete(readBody(response.getEntity()));
+            } catch (Exception ex) {
+              LOGGER.error("Failed to read search response : {}", ex.getMessage());
+              promise.fail(ex);
+            }
+          }
+
+          @Override
+          public void onFailure(Exception exception) {
+            LOGGER.error("async raw search query failed : {}", exception.getMessage());
+            if (!(exception instanceof ResponseException)) {
+              promise.fail(exception);
+              return;
+            }
+            try {
+              Response errorResponse = ((ResponseException) exception).getResponse();
+              JsonObject dbException =
+                  new JsonObject(EntityUtils.toString(errorResponse.getEntity()));
+              ResponseBuilder failureBuilder =
+                  new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbException);
+              promise.fail(failureBuilder.getResponse().toString());
+            } catch (Exception ex) {
+              promise.fail(exception);
+            }
+          }
+        });
+    return promise.future();
+  }
+
+  /** Read a response body straight into a buffer, sized up front when its length is known. */
+  private static Buffer readBody(HttpEntity entity) throws IOException {
+    long length = entity.getContentLength();
+    Buffer body = Buffer.buffer(length > 0 && length < Integer.MAX_VALUE ? (int) length : 8192);
+    byte[] chunk = new byte[8192];
+    try (InputStream in = entity.getContent()) {
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        body.appendBytes(chunk, 0, read);
+      }
+    }
+    return body;
+  }
+
+  private String toJson(SearchRequest searchRequest) {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = jsonpMapper.jsonProvider().createGenerator(writer)) {
+      searchRequest.serialize(generator, jsonpMapper);
+    }
+    return writer.toString();
+  }
+
   public Future<JsonObject> asyncCount(String index, Query query) {
     Promise<JsonObject> promise = Promise.promise();
     CountRequest countRequest = CountRequest.of(e -> e.index(index).query(query));
@@ -242,18 +713,19 @@ public class ElasticClient {
 
                 long count = response.count();
                 if (count == 0) {
-                  responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                  ResponseBuilder responseBuilder =
+                      new ResponseBuilder(FAILED).setTypeAndTitle(204);
                   responseBuilder.setMessage(EMPTY_RESPONSE);
                   promise.fail(responseBuilder.getResponse().toString());
                   return;
                 }
-                responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
+                ResponseBuilder responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
                 responseBuilder.setCount(count);
                 promise.complete(responseBuilder.getResponse());
               } catch (Exception ex) {
                 LOGGER.error("Exception occurred while executing query: {}", ex);
                 JsonObject dbException = new JsonObject(ex.getMessage());
-                responseBuilder =
+                ResponseBuilder responseBuilder =
                     new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbException);
                 promise.fail(responseBuilder.getResponse().toString());
               }
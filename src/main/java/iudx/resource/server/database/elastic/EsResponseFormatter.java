@@ -12,6 +12,12 @@ public interface EsResponseFormatter {
 
   void finish();
 
+  /** Close the file without writing the closing part of the format, used for file segments. */
+  void close();
+
+  /** Write buffered records to the file, so that its length covers every appended hit. */
+  void flush();
+
   void append(List<Hit<ObjectNode>> searchHits, boolean appendComma);
 
   void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers);
@@ -1,30 +1,48 @@
 package iudx.resource.server.database.elastic;
 
 import static iudx.resource.server.apiserver.util.Constants.HEADER_CSV;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_PARQUET;
 
 import java.io.File;
 
 public class EsResponseFormatterFactory {
-  private AbstractEsSearchResponseFormatter responseToCsv;
-  // private AbstractConvertElasticSearchResponse responseToParquet;
-  private AbstractEsSearchResponseFormatter responseToJson;
   private String format;
+  private File file;
+  private CsvColumnDictionary columns;
 
   public EsResponseFormatterFactory(String format, File file) {
+    this(format, file, new CsvColumnDictionary());
+  }
+
+  /**
+   * Factory for one segment of an export.
+   *
+   * @param columns csv columns shared by all segments of the export
+   */
+  public EsResponseFormatterFactory(String format, File file, CsvColumnDictionary columns) {
     this.format = format;
-    responseToCsv = new EsResponseFormatterToCsv(file);
-    // responseToParquet = new ConvertElasticResponseToParquet(file);
-    responseToJson = new EsResponseFormatterToJson(file);
+    this.file = file;
+    this.columns = columns;
   }
 
+  /** Create the formatter for the format, only that formatter opens the file. */
   public EsResponseFormatter createInstance() {
+    return createInstance(false);
+  }
+
+  /**
+   * Create the formatter for the format.
+   *
+   * @param append continue the file instead of replacing it, not supported by parquet
+   */
+  public EsResponseFormatter createInstance(boolean append) {
     switch (format) {
       case HEADER_CSV:
-        return responseToCsv;
-        //            case HEADER_PARQUET:
-        //                return responseToParquet;
+        return new EsResponseFormatterToCsv(file, columns, append);
+      case HEADER_PARQUET:
+        return new EsResponseFormatterToParquet(file);
       default:
-        return responseToJson;
+        return new EsResponseFormatterToJson(file, append);
     }
   }
 }
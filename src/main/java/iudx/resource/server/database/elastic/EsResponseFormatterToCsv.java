@@ -3,18 +3,49 @@ package iudx.resource.server.database.elastic;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Writes Elasticsearch hits as CSV rows.
+ *
+ * <p>Hits are flattened straight from the {@link ObjectNode} into a reused row of cells, one per
+ * column of the {@link CsvColumnDictionary}. New fields add columns as they appear, so the header
+ * is only known once every hit was written: {@link #finish()} puts it in front of the rows, while
+ * {@link #close()} leaves the rows alone for segments whose header is written by the caller. Rows
+ * written before a column appeared end before that column.
+ */
 public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter {
-  static JsonFlatten jsonFlatten;
-  static LinkedHashMap<String, Object> map;
-  FileWriter fileWriter;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String[] ARRAY_INDEXES = new String[64];
+
+  static {
+    for (int i = 0; i < ARRAY_INDEXES.length; i++) {
+      ARRAY_INDEXES[i] = String.valueOf(i);
+    }
+  }
+
+  private final CsvColumnDictionary columns;
+  Writer fileWriter;
+  private String[] cells = new String[64];
+  private int lastCell = -1;
 
   /**
    * Converts JSON records from Elasticsearch batch response to CSV format and writes it into a CSV
@@ -23,104 +54,133 @@ public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter
    * @param file File to write csv records
    */
   public EsResponseFormatterToCsv(File file) {
-    super(file);
-    try {
-      this.fileWriter = new FileWriter(file);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    this(file, new CsvColumnDictionary());
   }
 
   /**
-   * Flattens each record from Elastic search response and appends it to the file
+   * CSV writer sharing its columns with the other writers of an export.
    *
-   * @param searchHits ElasticSearch response searchHits
+   * @param file File to write csv records
+   * @param columns columns of the export
    */
-  public void flattenRecord(List<Hit<ObjectNode>> searchHits, Set<String> headers) {
-    for (Hit hit : searchHits) {
-      jsonFlatten = new JsonFlatten((JsonNode) hit.source());
-      map = jsonFlatten.flatten();
-      /*Set<String> header = map.keySet();*/
-      /*appendToCsvFile(map, header);*/
-      appendToCsvFile(map, headers);
-    }
+  public EsResponseFormatterToCsv(File file, CsvColumnDictionary columns) {
+    this(file, columns, false);
   }
 
   /**
-   * Produces set of headers from the first record or row of the data
+   * CSV writer sharing its columns with the other writers of an export.
    *
-   * @param searchHits Elastic search scroll response
+   * @param file File to write csv records
+   * @param columns columns of the export
+   * @param append continue a file written before instead of replacing it
    */
-  public Set<String> getHeader(List<Hit<ObjectNode>> searchHits) {
-    Hit<ObjectNode> firstHit = searchHits.get(0);
-    if (jsonFlatten == null) {
-      jsonFlatten = new JsonFlatten((JsonNode) firstHit.source());
+  public EsResponseFormatterToCsv(File file, CsvColumnDictionary columns, boolean append) {
+    super(file);
+    this.columns = columns;
+    try {
+      this.fileWriter =
+          new BufferedWriter(
+              new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8),
+              BUFFER_SIZE);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
-    map = jsonFlatten.flatten();
-    Set<String> header = map.keySet();
-    simpleFileWriter(header);
-    return header;
   }
 
   /**
-   * Appends the values from the records to the csv file according to the header
+   * Flattens each record from Elastic search response and appends it to the file
    *
-   * @param map Data to be appended
-   * @param header Set of headers
+   * @param searchHits ElasticSearch response searchHits
    */
-  public void appendToCsvFile(Map<String, Object> map, Set<String> header) {
-
-    StringBuilder stringBuilder = new StringBuilder();
-
-    for (String field : header) {
-      Object cell = map.get(field);
-      if (cell == null) {
-        stringBuilder.append("").append(",");
-      } else {
-        String cellValue = cell.toString();
-        if (cellValue.contains(",") || cellValue.contains("\"")) {
-          cellValue = "\"" + cellValue.replace("\"", "\"\"") + "\"";
+  public void flattenRecord(List<Hit<ObjectNode>> searchHits) {
+    try {
+      for (Hit<ObjectNode> hit : searchHits) {
+        if (hit.source() != null) {
+          flatten(hit.source(), columns.root());
+          writeRow();
         }
-        stringBuilder.append(cellValue).append(",");
       }
-    }
-
-    String row = stringBuilder.substring(0, stringBuilder.length() - 1);
-    try {
-      fileWriter.append(row).append("\n");
     } catch (IOException ex) {
       throw new RuntimeException(ex);
     }
   }
 
-  /**
-   * Writes the column names or the header for the csv file
-   *
-   * @param header Set of headers to be written
-   */
-  private void simpleFileWriter(Set<String> header) {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (String obj : header) {
-      stringBuilder.append(obj + ",");
+  private void flatten(JsonNode node, CsvColumnDictionary.Node path) {
+    if (node.isObject()) {
+      for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = it.next();
+        flatten(field.getValue(), path.child(field.getKey()));
+      }
+    } else if (node.isArray()) {
+      for (int i = 0; i < node.size(); i++) {
+        flatten(node.get(i), path.child(i < ARRAY_INDEXES.length ? ARRAY_INDEXES[i] : "" + i));
+      }
+    } else if (!node.isNull() && !node.isMissingNode()) {
+      int column = path.column();
+      if (column >= cells.length) {
+        cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+      }
+      cells[column] = node.asText();
+      lastCell = Math.max(lastCell, column);
     }
-    String data = stringBuilder.substring(0, stringBuilder.length() - 1);
-    try {
-      fileWriter.write(data + "\n");
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+  }
+
+  private void writeRow() throws IOException {
+    int width = Math.max(lastCell + 1, columns.size());
+    for (int i = 0; i < width; i++) {
+      if (i > 0) {
+        fileWriter.write(',');
+      }
+      if (i <= lastCell && cells[i] != null) {
+        CsvColumnDictionary.writeCell(fileWriter, cells[i]);
+        cells[i] = null;
+      }
     }
+    fileWriter.write('\n');
+    lastCell = -1;
   }
 
   @Override
   public void write(List<Hit<ObjectNode>> searchHits) {}
 
+  /** The header is written on finish, returns the columns seen so far. */
   @Override
   public Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits) {
-    return this.getHeader(searchHits);
+    return new LinkedHashSet<>(columns.getColumns());
   }
 
   @Override
   public void finish() {
+    close();
+    Path rows = file.toPath().resolveSibling(file.getName() + ".rows");
+    try {
+      Files.move(file.toPath(), rows, StandardCopyOption.REPLACE_EXISTING);
+      try (FileChannel target =
+              FileChannel.open(
+                  file.toPath(),
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.TRUNCATE_EXISTING,
+                  StandardOpenOption.WRITE);
+          FileChannel source = FileChannel.open(rows, StandardOpenOption.READ)) {
+        ByteBuffer header = StandardCharsets.UTF_8.encode(columns.headerLine());
+        while (header.hasRemaining()) {
+          target.write(header);
+        }
+        long position = 0;
+        long size = source.size();
+        while (position < size) {
+          position += source.transferTo(position, size - position, target);
+        }
+      } finally {
+        Files.deleteIfExists(rows);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void close() {
     try {
       fileWriter.close();
     } catch (IOException e) {
@@ -128,11 +188,20 @@ public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter
     }
   }
 
+  @Override
+  public void flush() {
+    try {
+      fileWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {}
 
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {
-    this.flattenRecord(searchHits, headers);
+    this.flattenRecord(searchHits);
   }
 }
@@ -20,9 +20,19 @@ public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter
    * @param file File to write JSON response
    */
   public EsResponseFormatterToJson(File file) {
+    this(file, false);
+  }
+
+  /**
+   * Writes ElasticSearch response batch response into a JSON File
+   *
+   * @param file File to write JSON response
+   * @param append continue a file written before instead of replacing it
+   */
+  public EsResponseFormatterToJson(File file, boolean append) {
     super(file);
     try {
-      this.fileWriter = new FileWriter(file);
+      this.fileWriter = new FileWriter(file, append);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -52,6 +62,24 @@ public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter
     }
   }
 
+  @Override
+  public void close() {
+    try {
+      fileWriter.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void flush() {
+    try {
+      fileWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {
     try {
@@ -3,124 +3,305 @@ package iudx.resource.server.database.elastic;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.File;
-import java.util.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
 
+/**
+ * Writes Elasticsearch hits as a Parquet file.
+ *
+ * <p>Hits are flattened with {@link JsonFlatten} and every column is typed from its values (int,
+ * long, double, boolean or string), all columns are optional. Pages are written as they arrive,
+ * the writer cuts row groups on its own, with dictionary encoding and zstd compression.
+ *
+ * <p>A Parquet file has one schema, so when a page brings a new column or a value that needs a
+ * wider type (int to long to double, anything mixed with a string becomes a string) the current
+ * file is closed as a segment and a new one is started with the widened schema. On finish a single
+ * segment is renamed to the target, several segments are rewritten into it with the final schema.
+ */
 public class EsResponseFormatterToParquet extends AbstractEsSearchResponseFormatter {
-  //    private File file;
-  //    private static final Logger LOGGER =
-  // LogManager.getLogger(ConvertElasticResponseToParquet.class);
+  private static final Logger LOGGER = LogManager.getLogger(EsResponseFormatterToParquet.class);
+  private static final String SCHEMA_NAME = "record";
+  private static final int ROW_GROUP_SIZE = 64 * 1024 * 1024;
+
+  private final List<File> segments = new ArrayList<>();
+  private Map<String, ColumnType> columns = new LinkedHashMap<>();
+  private MessageType schema;
+  private SimpleGroupFactory groupFactory;
+  private ParquetWriter<Group> writer;
+  private boolean finished = false;
 
   public EsResponseFormatterToParquet(File file) {
     super(file);
-    this.file = file;
   }
 
-  @Override
-  public void write(List<Hit<ObjectNode>> searchHits) {
-    //        Schema arrowSchema = this.getSchema(searchHits);
-    //        SchemaMapping parquetSchema = this.getParquetSchema(arrowSchema);
-    //        MessageType messageTypeParquetSchema = parquetSchema.getParquetSchema();
-
-    //        LOGGER.debug("message type parquet schema {}", messageTypeParquetSchema);
-    //        LOGGER.debug("Whats the parquet schema heree ? : {}",parquetSchema.toString());
-    //        LOGGER.debug("\n\n\n\n");
-    //        LOGGER.debug("What is the schema : {} ", parquetSchema.getChildren());
-    //        LOGGER.debug("\n\n\n\n");
-
-    //        ParquetWriter parquetWriter = this.getParquetWriter(file, messageTypeParquetSchema);
+  /** Column types, ordered from the narrowest to the widest. */
+  enum ColumnType {
+    BOOLEAN,
+    INT,
+    LONG,
+    DOUBLE,
+    STRING;
+
+    static ColumnType of(Object value) {
+      if (value instanceof Boolean) {
+        return BOOLEAN;
+      } else if (value instanceof Integer) {
+        return INT;
+      } else if (value instanceof Long) {
+        return LONG;
+      } else if (value instanceof Double) {
+        return DOUBLE;
+      }
+      return STRING;
+    }
+
+    /** Narrowest type holding values of both types. */
+    ColumnType widen(ColumnType other) {
+      if (this == other) {
+        return this;
+      }
+      if (this == BOOLEAN || other == BOOLEAN || this == STRING || other == STRING) {
+        return STRING;
+      }
+      return compareTo(other) > 0 ? this : other;
+    }
   }
 
+  @Override
+  public void write(List<Hit<ObjectNode>> searchHits) {}
+
   @Override
   public Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits) {
     return null;
   }
 
   @Override
-  public void finish() {}
-
-  @Override
-  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {}
+  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {
+    writePage(searchHits);
+  }
 
   @Override
-  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {}
-
-  /*    private SchemaMapping getParquetSchema(Schema arrowSchema) {
-      SchemaConverter schemaConverter = new SchemaConverter();
-      return schemaConverter.fromArrow(arrowSchema);
-
-  }*/
-
-  /*
-      private ParquetWriter getParquetWriter(File file, MessageType parquetSchema) {
-          Configuration configuration = new Configuration();
-  //        LOGGER.debug("whats the file path : ");
-          Path path = new Path(file.getPath());
-          try {
-              HadoopOutputFile hadoopOutputFile = HadoopOutputFile.fromPath(path,configuration);
-              ParquetFileWriter p = new ParquetFileWriter(
-                      hadoopOutputFile,
-                      parquetSchema,
-                      ParquetFileWriter.Mode.CREATE, 1024, 1024, 1024, 1024, true
-              );
-
-          } catch (IOException e) {
-              throw new RuntimeException(e);
-          }
+  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {
+    writePage(searchHits);
+  }
 
-          return null;
+  private void writePage(List<Hit<ObjectNode>> searchHits) {
+    List<Map<String, Object>> rows = new ArrayList<>(searchHits.size());
+    Map<String, ColumnType> pageColumns = new LinkedHashMap<>(columns);
+    for (Hit<ObjectNode> hit : searchHits) {
+      if (hit.source() == null) {
+        continue;
       }
-  */
-
-  /*    public Schema getSchema(List<Hit<ObjectNode>> searchHits) {
-          for (Hit hit : searchHits) {
-              JsonObject jsonSource = new JsonObject(hit.source().toString());
-              List<Field> fields = new ArrayList<>();
-              Set<String> firstHit = jsonSource.fieldNames();
-              for(String s : firstHit)
-              {
-                  var value = jsonSource.getValue(s);
-                  LOGGER.debug("value : {} ", value);
-                  Field field;
-                  FieldType fieldType;
-                  fieldType = getFieldType(value);
-                  field = new Field(s,fieldType,null);
-                  fields.add(field);
-              }
-              Schema schema = new Schema(fields);
-  //            LOGGER.debug("whats the schema ? ::::::: ");
-  //            LOGGER.debug("{}", schema);
-              return schema;
-          }
-          return null;
-      }*/
-
-  /*    private FieldType getFieldType(Object value) {
-      FieldType fieldType;
-      if(value instanceof Integer)
-      {
-          fieldType = new FieldType(true,new ArrowType.Int(32, true),null);
-      }else if(value instanceof Long)
-      {
-          fieldType = new FieldType(true,new ArrowType.Int(64, true),null);
+      Map<String, Object> row = new JsonFlatten(hit.source()).flatten();
+      for (Map.Entry<String, Object> cell : row.entrySet()) {
+        pageColumns.merge(cell.getKey(), ColumnType.of(cell.getValue()), ColumnType::widen);
+      }
+      rows.add(row);
+    }
+    if (rows.isEmpty()) {
+      return;
+    }
+    try {
+      if (writer == null || !pageColumns.equals(columns)) {
+        startSegment(pageColumns);
+      }
+      for (Map<String, Object> row : rows) {
+        Group group = groupFactory.newGroup();
+        for (Map.Entry<String, Object> cell : row.entrySet()) {
+          addValue(group, cell.getKey(), columns.get(cell.getKey()), cell.getValue());
+        }
+        writer.write(group);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void startSegment(Map<String, ColumnType> newColumns) throws IOException {
+    if (writer != null) {
+      LOGGER.debug("schema of {} changed, starting a new segment", file.getName());
+      writer.close();
+    }
+    columns = newColumns;
+    schema = toSchema(columns);
+    groupFactory = new SimpleGroupFactory(schema);
+    File segment = new File(file.getPath() + ".s" + segments.size());
+    segments.add(segment);
+    writer = openWriter(segment, schema);
+  }
 
+  private static ParquetWriter<Group> openWriter(File target, MessageType schema)
+      throws IOException {
+    return ExampleParquetWriter.builder(new LocalOutputFile(target.toPath()))
+        .withConf(new PlainParquetConfiguration())
+        .withType(schema)
+        .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+        .withCodecFactory(ParquetZstdCodecFactory.INSTANCE)
+        .withCompressionCodec(CompressionCodecName.ZSTD)
+        .withDictionaryEncoding(true)
+        .withRowGroupSize(ROW_GROUP_SIZE)
+        .build();
+  }
+
+  static MessageType toSchema(Map<String, ColumnType> columns) {
+    Types.MessageTypeBuilder builder = Types.buildMessage();
+    for (Map.Entry<String, ColumnType> column : columns.entrySet()) {
+      switch (column.getValue()) {
+        case BOOLEAN:
+          builder.optional(PrimitiveTypeName.BOOLEAN).named(column.getKey());
+          break;
+        case INT:
+          builder.optional(PrimitiveTypeName.INT32).named(column.getKey());
+          break;
+        case LONG:
+          builder.optional(PrimitiveTypeName.INT64).named(column.getKey());
+          break;
+        case DOUBLE:
+          builder.optional(PrimitiveTypeName.DOUBLE).named(column.getKey());
+          break;
+        default:
+          builder
+              .optional(PrimitiveTypeName.BINARY)
+              .as(LogicalTypeAnnotation.stringType())
+              .named(column.getKey());
       }
-      else if(value instanceof Double)
-      {
-          fieldType = new FieldType(true,new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE),null);
+    }
+    return builder.named(SCHEMA_NAME);
+  }
+
+  private static void addValue(Group group, String column, ColumnType type, Object value) {
+    switch (type) {
+      case BOOLEAN:
+        group.add(column, (Boolean) value);
+        break;
+      case INT:
+        group.add(column, (Integer) value);
+        break;
+      case LONG:
+        group.add(column, ((Number) value).longValue());
+        break;
+      case DOUBLE:
+        group.add(column, ((Number) value).doubleValue());
+        break;
+      default:
+        group.add(column, String.valueOf(value));
+    }
+  }
 
+  @Override
+  public void finish() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    try {
+      if (writer == null) {
+        // no hits, still a valid file without columns
+        openWriter(file, toSchema(columns)).close();
+        return;
+      }
+      writer.close();
+      if (segments.size() == 1) {
+        Files.move(
+            segments.get(0).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        mergeSegments();
       }
-      else if (value instanceof Boolean)
-      {
-          fieldType = new FieldType(true,ArrowType.Bool.INSTANCE,null);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      segments.forEach(File::delete);
+    }
+  }
+
+  /** Rewrite all segments into the target with the final, widest schema. */
+  private void mergeSegments() throws IOException {
+    try (ParquetWriter<Group> merged = openWriter(file, schema)) {
+      for (File segment : segments) {
+        try (ParquetReader<Group> reader =
+            new GroupReaderBuilder(new LocalInputFile(segment.toPath())).build()) {
+          for (Group record = reader.read(); record != null; record = reader.read()) {
+            merged.write(convert(record));
+          }
+        }
       }
-      else if (value instanceof String)
-      {
-          fieldType = new FieldType(true,new ArrowType.Utf8(),null);
+    }
+  }
 
-      }else {
-          fieldType = new FieldType(true,new ArrowType.Binary(),null);
+  private Group convert(Group record) {
+    Group group = groupFactory.newGroup();
+    List<org.apache.parquet.schema.Type> fields = record.getType().getFields();
+    for (int i = 0; i < fields.size(); i++) {
+      if (record.getFieldRepetitionCount(i) == 0) {
+        continue;
+      }
+      String column = fields.get(i).getName();
+      Object value;
+      switch (fields.get(i).asPrimitiveType().getPrimitiveTypeName()) {
+        case BOOLEAN:
+          value = record.getBoolean(i, 0);
+          break;
+        case INT32:
+          value = record.getInteger(i, 0);
+          break;
+        case INT64:
+          value = record.getLong(i, 0);
+          break;
+        case DOUBLE:
+          value = record.getDouble(i, 0);
+          break;
+        default:
+          value = record.getString(i, 0);
       }
-      return fieldType;
-  }*/
+      addValue(group, column, columns.get(column), value);
+    }
+    return group;
+  }
+
+  /** Segments are complete files, closing has to write the footer. */
+  @Override
+  public void close() {
+    finish();
+  }
+
+  /** Row groups are only readable once the footer is written, a segment is never continued. */
+  @Override
+  public void flush() {}
 
+  private static final class GroupReaderBuilder extends ParquetReader.Builder<Group> {
+    private GroupReaderBuilder(InputFile file) {
+      super(file, new PlainParquetConfiguration());
+      withCodecFactory(ParquetZstdCodecFactory.INSTANCE);
+    }
+
+    @Override
+    protected ReadSupport<Group> getReadSupport() {
+      return new GroupReadSupport();
+    }
+  }
 }
@@ -0,0 +1,247 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.archives.Constants.*;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.streams.WriteStream;
+import iudx.resource.server.common.ResponseUrn;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams a raw Elasticsearch search response to a {@link WriteStream} without building an object
+ * tree.
+ *
+ * <p>The raw response is scanned once with a Jackson streaming parser to locate the byte range of
+ * every <code>_source</code> document and the total hit count. The search envelope (type, title,
+ * results, limit, offset, totalHits) is then written around those byte ranges, copying the
+ * documents verbatim into the response in chunks.
+ */
+public final class EsSearchResponseStreamer {
+
+  private static final Logger LOGGER = LogManager.getLogger(EsSearchResponseStreamer.class);
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final Buffer RESULTS_END = Buffer.buffer("],");
+  private static final Buffer COMMA = Buffer.buffer(",");
+
+  private final Buffer raw;
+  private final long totalHits;
+  private final String totalRelation;
+  private final int[] sourceOffsets;
+  private final int sourceCount;
+  private int limit;
+  private int offset;
+
+  private EsSearchResponseStreamer(
+      Buffer raw, long totalHits, String totalRelation, int[] sourceOffsets, int sourceCount) {
+    this.raw = raw;
+    this.totalHits = totalHits;
+    this.totalRelation = totalRelation;
+    this.sourceOffsets = sourceOffsets;
+    this.sourceCount = sourceCount;
+  }
+
+  /**
+   * Scan a raw search response body filtered to <code>hits.total</code> and <code>
+   * hits.hits._source</code>.
+   *
+   * @param raw raw response body as returned by Elasticsearch
+   * @return streamer holding the raw body and the located document ranges
+   * @throws IOException if the body is not a valid search response
+   */
+  public static EsSearchResponseStreamer parse(Buffer raw) throws IOException {
+    long totalHits = 0L;
+    String relation = "eq";
+    int[] offsets = new int[64];
+    int count = 0;
+
+    // scan the bytes of the buffer in place, the byte offsets are relative to its start
+    try (JsonParser parser = JSON_FACTORY.createParser(new ByteBufInputStream(raw.getByteBuf()))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("search response is not a json object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        if (!"hits".equals(field)) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String hitsField = parser.currentName();
+          JsonToken token = parser.nextToken();
+          if ("total".equals(hitsField) && token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String totalField = parser.currentName();
+              parser.nextToken();
+              if ("value".equals(totalField)) {
+                totalHits = parser.getLongValue();
+              } else if ("relation".equals(totalField)) {
+                relation = parser.getText();
+              } else {
+                parser.skipChildren();
+              }
+            }
+          } else if ("hits".equals(hitsField) && token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String hitField = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("_source".equals(hitField) && value == JsonToken.START_OBJECT) {
+                  int start = (int) parser.currentTokenLocation().getByteOffset();
+                  parser.skipChildren();
+                  int end = (int) parser.currentLocation().getByteOffset();
+                  if (count * 2 + 2 > offsets.length) {
+                    int[] grown = new int[offsets.length * 2];
+                    System.arraycopy(offsets, 0, grown, 0, offsets.length);
+                    offsets = grown;
+                  }
+                  offsets[count * 2] = start;
+                  offsets[count * 2 + 1] = end;
+                  count++;
+                } else {
+                  parser.skipChildren();
+                }
+              }
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+    }
+    return new EsSearchResponseStreamer(raw, totalHits, relation, offsets, count);
+  }
+
+  public long getTotalHits() {
+    return totalHits;
+  }
+
+  /**
+   * Whether the total hit count is exact or only a lower bound (when <code>track_total_hits
+   * </code> stops counting).
+   */
+  public boolean isTotalHitsLowerBound() {
+    return "gte".equalsIgnoreCase(totalRelation);
+  }
+
+  public int getResultCount() {
+    return sourceCount;
+  }
+
+  /** Set the pagination values echoed in the envelope. */
+  public EsSearchResponseStreamer setPage(int limit, int offset) {
+    this.limit = limit;
+    this.offset = offset;
+    return this;
+  }
+
+  /**
+   * Write the search envelope and the raw documents to the stream, honouring write queue
+   * backpressure. The stream is not ended.
+   *
+   * @param stream target stream, usually a chunked HttpServerResponse
+   * @return Future completed once every chunk has been handed to the stream
+   */
+  public Future<Void> writeTo(WriteStream<Buffer> stream) {
+    Promise<Void> promise = Promise.promise();
+    new ChunkWriter(stream, promise).run();
+    return promise.future();
+  }
+
+  Buffer envelopeHead() {
+    return Buffer.buffer(
+        "{\""
+            + TYPE_KEY
+            + "\":"
+            + Json.encode(ResponseUrn.SUCCESS_URN.getUrn())
+            + ",\""
+            + TITLE
+            + "\":"
+            + Json.encode(ResponseUrn.SUCCESS_URN.getMessage())
+            + ",\""
+            + RESULTS
+            + "\":[");
+  }
+
+  Buffer envelopeTail() {
+    String tail =
+        "\""
+            + PARAM_SIZE
+            + "\":"
+            + limit
+            + ",\""
+            + PARAM_FROM
+            + "\":"
+            + offset
+            + ",\""
+            + TOTAL_HITS
+            + "\":"
+            + totalHits
+            + "}";
+    return Buffer.buffer(tail.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Copies documents into fixed size chunks and pauses whenever the write queue is full. */
+  private final class ChunkWriter implements Runnable {
+    private final WriteStream<Buffer> stream;
+    private final Promise<Void> promise;
+    private int next = 0;
+    private boolean headWritten = false;
+    private boolean done = false;
+
+    private ChunkWriter(WriteStream<Buffer> stream, Promise<Void> promise) {
+      this.stream = stream;
+      this.promise = promise;
+    }
+
+    @Override
+    public void run() {
+      if (done) {
+        return;
+      }
+      try {
+        if (!headWritten) {
+          stream.write(envelopeHead());
+          headWritten = true;
+        }
+        while (next < sourceCount) {
+          if (stream.writeQueueFull()) {
+            stream.drainHandler(v -> run());
+            return;
+          }
+          Buffer chunk = Buffer.buffer(CHUNK_SIZE + 1024);
+          while (next < sourceCount && chunk.length() < CHUNK_SIZE) {
+            if (next > 0) {
+              chunk.appendBuffer(COMMA);
+            }
+            int start = sourceOffsets[next * 2];
+            int end = sourceOffsets[next * 2 + 1];
+            chunk.appendBuffer(raw, start, end - start);
+            next++;
+          }
+          stream.write(chunk);
+        }
+        stream.write(RESULTS_END.copy());
+        stream.write(envelopeTail());
+        done = true;
+        stream.drainHandler(null);
+        promise.tryComplete();
+      } catch (Exception ex) {
+        LOGGER.error("Failed to stream search response : {}", ex.getMessage());
+        done = true;
+        promise.tryFail(ex);
+      }
+    }
+  }
+}
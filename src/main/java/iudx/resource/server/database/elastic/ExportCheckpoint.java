@@ -0,0 +1,146 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.apiserver.util.Constants.HEADER_PARQUET;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Position of an async export, saved while it runs so that an interrupted export resumes where it
+ * stopped instead of starting over.
+ *
+ * <p>Holds the point in time paged by the slices of the export and, for each slice, the sort values
+ * of its last written hit with the length of its segment file at that hit. CSV exports also keep
+ * the columns seen so far, the rows already written refer to them by position.
+ */
+public final class ExportCheckpoint {
+
+  private static final String FILE = "file";
+  private static final String PIT = "pit";
+  private static final String TOTAL = "total";
+  private static final String COLUMNS = "columns";
+  private static final String SLICES = "slices";
+  private static final String AFTER = "after";
+  private static final String BYTES = "bytes";
+  private static final String DOCS = "docs";
+
+  private final JsonObject json;
+
+  public ExportCheckpoint(JsonObject json) {
+    this.json = json;
+  }
+
+  /**
+   * Checkpoint of an export.
+   *
+   * @param file target file of the export
+   * @param pitId point in time paged by the slices
+   * @param totalHits documents of the export
+   * @param columns csv columns seen so far
+   * @param slices position of each slice
+   * @return checkpoint
+   */
+  static ExportCheckpoint of(
+      File file, String pitId, long totalHits, List<String> columns, List<Slice> slices) {
+    JsonArray positions = new JsonArray();
+    for (Slice slice : slices) {
+      positions.add(
+          new JsonObject()
+              .put(AFTER, slice.after)
+              .put(BYTES, slice.bytes)
+              .put(DOCS, slice.docs));
+    }
+    return new ExportCheckpoint(
+        new JsonObject()
+            .put(FILE, file.getPath())
+            .put(PIT, pitId)
+            .put(TOTAL, totalHits)
+            .put(COLUMNS, new JsonArray(columns))
+            .put(SLICES, positions));
+  }
+
+  public String getFile() {
+    return json.getString(FILE);
+  }
+
+  String getPitId() {
+    return json.getString(PIT);
+  }
+
+  long getTotalHits() {
+    return json.getLong(TOTAL, 0L);
+  }
+
+  @SuppressWarnings("unchecked")
+  List<String> getColumns() {
+    return json.getJsonArray(COLUMNS, new JsonArray()).getList();
+  }
+
+  int getSliceCount() {
+    return json.getJsonArray(SLICES, new JsonArray()).size();
+  }
+
+  Slice getSlice(int slice) {
+    JsonObject position = json.getJsonArray(SLICES).getJsonObject(slice);
+    return new Slice(
+        position.getJsonArray(AFTER, new JsonArray()),
+        position.getLong(BYTES, 0L),
+        position.getLong(DOCS, 0L));
+  }
+
+  /** Documents written by all slices. */
+  long getDocs() {
+    long docs = 0;
+    for (int i = 0; i < getSliceCount(); i++) {
+      docs += getSlice(i).docs;
+    }
+    return docs;
+  }
+
+  /**
+   * Whether the export can continue from this checkpoint: every segment file is still on disk
+   * with at least the bytes written at the checkpoint. A parquet file can not be appended to.
+   *
+   * @param file target file of the export
+   * @param format format of the export
+   */
+  public boolean canResume(File file, String format) {
+    if (getPitId() == null || getSliceCount() == 0 || HEADER_PARQUET.equalsIgnoreCase(format)) {
+      return false;
+    }
+    for (int i = 0; i < getSliceCount(); i++) {
+      File segment = SlicedScrollExport.segment(file, i);
+      if (!segment.isFile() || segment.length() < getSlice(i).bytes) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public JsonObject toJson() {
+    return json;
+  }
+
+  /** Position of one slice. */
+  static final class Slice {
+    static final Slice START = new Slice(new JsonArray(), 0L, 0L);
+
+    final JsonArray after;
+    final long bytes;
+    final long docs;
+
+    Slice(JsonArray after, long bytes, long docs) {
+      this.after = after;
+      this.bytes = bytes;
+      this.docs = docs;
+    }
+
+    /** Sort values to search after, empty for the first page. */
+    List<FieldValue> getSearchAfter() {
+      return new SearchCursor(null, after).getSearchAfter();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package iudx.resource.server.database.elastic;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to an async export file while it is written, before it is uploaded.
+ *
+ * <p>The name of each codec is the value of the compression header and the content encoding set on
+ * the uploaded object.
+ */
+public enum ExportCompression {
+  NONE(null, ""),
+  GZIP("gzip", ".gz"),
+  ZSTD("zstd", ".zst");
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int ZSTD_LEVEL = 3;
+
+  private final String encoding;
+  private final String extension;
+
+  ExportCompression(String encoding, String extension) {
+    this.encoding = encoding;
+    this.extension = extension;
+  }
+
+  /**
+   * Codec for the value of the compression header.
+   *
+   * @param value header value, null or none for no compression
+   * @return codec
+   */
+  public static ExportCompression of(String value) {
+    if (value == null || "none".equalsIgnoreCase(value)) {
+      return NONE;
+    }
+    for (ExportCompression compression : values()) {
+      if (value.equalsIgnoreCase(compression.encoding)) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException("unsupported compression : " + value);
+  }
+
+  /** Content-Encoding of the compressed file, null when not compressed. */
+  public String getContentEncoding() {
+    return encoding;
+  }
+
+  /** Suffix added to the name of the compressed file. */
+  public String getExtension() {
+    return extension;
+  }
+
+  /** Wrap the file output, closing the returned stream closes the output. */
+  public OutputStream wrap(OutputStream out) throws IOException {
+    switch (this) {
+      case GZIP:
+        return new GZIPOutputStream(out, BUFFER_SIZE);
+      case ZSTD:
+        return new ZstdOutputStream(out, ZSTD_LEVEL);
+      default:
+        return out;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package iudx.resource.server.database.elastic;
+
+import com.github.luben.zstd.Zstd;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.apache.parquet.bytes.BytesInput;
+import org.apache.parquet.compression.CompressionCodecFactory;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+/**
+ * Zstandard page compression for Parquet files, backed by zstd-jni.
+ *
+ * <p>The codec factory of parquet-hadoop goes through the Hadoop codec classes, which need the whole
+ * Hadoop runtime on the classpath. This one compresses pages directly, it also handles uncompressed
+ * pages for reading.
+ */
+final class ParquetZstdCodecFactory implements CompressionCodecFactory {
+
+  static final ParquetZstdCodecFactory INSTANCE = new ParquetZstdCodecFactory();
+  private static final int LEVEL = 3;
+
+  private ParquetZstdCodecFactory() {}
+
+  @Override
+  public BytesInputCompressor getCompressor(CompressionCodecName codecName) {
+    checkSupported(codecName);
+    return new BytesInputCompressor() {
+      @Override
+      public BytesInput compress(BytesInput bytes) throws IOException {
+        if (codecName == CompressionCodecName.UNCOMPRESSED) {
+          return bytes;
+        }
+        return BytesInput.from(Zstd.compress(bytes.toByteArray(), LEVEL));
+      }
+
+      @Override
+      public CompressionCodecName getCodecName() {
+        return codecName;
+      }
+
+      @Override
+      public void release() {}
+    };
+  }
+
+  @Override
+  public BytesInputDecompressor getDecompressor(CompressionCodecName codecName) {
+    checkSupported(codecName);
+    return new BytesInputDecompressor() {
+      @Override
+      public BytesInput decompress(BytesInput bytes, int uncompressedSize) throws IOException {
+        if (codecName == CompressionCodecName.UNCOMPRESSED) {
+          return bytes;
+        }
+        return BytesInput.from(Zstd.decompress(bytes.toByteArray(), uncompressedSize));
+      }
+
+      @Override
+      public void decompress(
+          ByteBuffer input, int compressedSize, ByteBuffer output, int uncompressedSize)
+          throws IOException {
+        byte[] compressed = new byte[compressedSize];
+        input.get(compressed);
+        output.put(
+            codecName == CompressionCodecName.UNCOMPRESSED
+                ? compressed
+                : Zstd.decompress(compressed, uncompressedSize));
+      }
+
+      @Override
+      public void release() {}
+    };
+  }
+
+  private static void checkSupported(CompressionCodecName codecName) {
+    if (codecName != CompressionCodecName.ZSTD
+        && codecName != CompressionCodecName.UNCOMPRESSED) {
+      throw new IllegalArgumentException("unsupported parquet codec : " + codecName);
+    }
+  }
+
+  @Override
+  public void release() {}
+}
@@ -3,6 +3,8 @@ package iudx.resource.server.database.elastic;
 import static iudx.resource.server.database.archives.Constants.*;
 
 import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
@@ -12,6 +14,7 @@ import co.elastic.clients.elasticsearch.core.search.SourceConfig;
 import co.elastic.clients.elasticsearch.core.search.SourceFilter;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.elastic.exception.EsQueryException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -119,6 +122,45 @@ public class QueryDecoder {
     return getSourceFilter(responseFilteringFileds.getList());
   }
 
+  /**
+   * Get the pagination cursor of a cursor paginated search.
+   *
+   * @param queryJson search request
+   * @return decoded cursor, or null if the request uses offset pagination
+   */
+  public SearchCursor getSearchCursor(JsonObject queryJson) {
+    String cursor = queryJson.getString(PARAM_CURSOR);
+    if (cursor == null) {
+      return null;
+    }
+    try {
+      return SearchCursor.decode(cursor);
+    } catch (IllegalArgumentException ex) {
+      LOGGER.error("invalid pagination cursor : {}", ex.getMessage());
+      throw new EsQueryException(ResponseUrn.BAD_REQUEST_URN, INVALID_CURSOR);
+    }
+  }
+
+  /**
+   * Sort used by cursor pagination, observation time with the shard doc as tiebreaker so that
+   * search_after always resumes after a unique hit.
+   */
+  public List<SortOptions> getCursorSort() {
+    List<SortOptions> sort = getFirstPageSort();
+    sort.add(SortOptions.of(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc))));
+    return sort;
+  }
+
+  /**
+   * Sort of a first cursor page read without a point in time, the shard doc tiebreaker is only
+   * available inside one.
+   */
+  public List<SortOptions> getFirstPageSort() {
+    List<SortOptions> sort = new ArrayList<>();
+    sort.add(SortOptions.of(s -> s.field(f -> f.field(CURSOR_SORT_FIELD).order(SortOrder.Asc))));
+    return sort;
+  }
+
   private SourceConfig getSourceFilter(List<String> sourceFilterList) {
     SourceFilter sourceFilter = SourceFilter.of(f -> f.includes(sourceFilterList));
     SourceConfig sourceFilteringFields = SourceConfig.of(c -> c.filter(sourceFilter));
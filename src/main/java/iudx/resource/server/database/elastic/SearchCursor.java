@@ -0,0 +1,107 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Opaque pagination cursor for search_after paging. Holds the point in time id and the sort values
+ * of the last hit returned, encoded as base64url json so clients can pass it back unchanged.
+ */
+public final class SearchCursor {
+
+  /** Cursor value a client sends to start a cursor paginated search. */
+  public static final String START = "*";
+
+  private static final String PIT_KEY = "p";
+  private static final String SEARCH_AFTER_KEY = "s";
+
+  private final String pitId;
+  private final JsonArray searchAfter;
+
+  public SearchCursor(String pitId, JsonArray searchAfter) {
+    this.pitId = pitId;
+    this.searchAfter = searchAfter == null ? new JsonArray() : searchAfter;
+  }
+
+  /**
+   * Decode a cursor received from the client.
+   *
+   * @param cursor encoded cursor or {@link #START}
+   * @return decoded cursor, with no point in time for the first page
+   * @throws IllegalArgumentException if the cursor is malformed
+   */
+  public static SearchCursor decode(String cursor) {
+    if (START.equals(cursor)) {
+      return new SearchCursor(null, new JsonArray());
+    }
+    try {
+      JsonObject json =
+          new JsonObject(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+      String pitId = json.getString(PIT_KEY);
+      JsonArray searchAfter = json.getJsonArray(SEARCH_AFTER_KEY);
+      if (pitId == null || searchAfter == null || searchAfter.isEmpty()) {
+        throw new IllegalArgumentException("incomplete cursor");
+      }
+      return new SearchCursor(pitId, searchAfter);
+    } catch (IllegalArgumentException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IllegalArgumentException("malformed cursor", ex);
+    }
+  }
+
+  public String encode() {
+    JsonObject json = new JsonObject().put(PIT_KEY, pitId).put(SEARCH_AFTER_KEY, searchAfter);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(json.encode().getBytes(StandardCharsets.UTF_8));
+  }
+
+  public boolean isStart() {
+    return pitId == null;
+  }
+
+  public String getPitId() {
+    return pitId;
+  }
+
+  /** Sort values of the last hit, converted to elastic field values. */
+  public List<FieldValue> getSearchAfter() {
+    if (searchAfter.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<FieldValue> values = new ArrayList<>(searchAfter.size());
+    for (Object value : searchAfter) {
+      values.add(toFieldValue(value));
+    }
+    return values;
+  }
+
+  /** Convert the sort values of a hit into the json form stored in a cursor. */
+  public static JsonArray toJson(List<FieldValue> sortValues) {
+    JsonArray json = new JsonArray();
+    for (FieldValue value : sortValues) {
+      json.add(value.isNull() ? null : value._get());
+    }
+    return json;
+  }
+
+  private static FieldValue toFieldValue(Object value) {
+    if (value == null) {
+      return FieldValue.NULL;
+    } else if (value instanceof Integer || value instanceof Long) {
+      return FieldValue.of(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      return FieldValue.of(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      return FieldValue.of((Boolean) value);
+    }
+    return FieldValue.of(value.toString());
+  }
+}
@@ -0,0 +1,404 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.apiserver.util.Constants.HEADER_JSON;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_PARQUET;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import iudx.resource.server.database.async.ScrollProgressAggregator;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Exports every hit of a query into a file using parallel slices of a point in time.
+ *
+ * <p>Each slice pages through the point in time with search_after and is written into its own
+ * segment file next to the target file, the next page of a slice is fetched while the current one
+ * is written on a dedicated executor. Once all slices are drained the segments are concatenated
+ * into the target, wrapped in a JSON array or preceded by the CSV header. Parquet exports are run
+ * as a single slice whose segment is already a complete file. JSON and CSV targets are compressed
+ * while they are concatenated when the export asks for it. Segment files are removed once the
+ * export completes or fails.
+ *
+ * <p>After every page of a JSON or CSV export an {@link ExportCheckpoint} is passed to the
+ * progress listener. A checkpointed export whose process died is continued with {@link
+ * #resume(ExportCheckpoint)}: the segments are cut back to the checkpoint and each slice searches
+ * after its last written hit, as long as the point in time is still alive.
+ *
+ * <p>A CSV export can also continue the rows of an earlier export, see {@link #appendTo(List)}:
+ * it is written without header with the columns of the earlier export, and fails when a hit brings
+ * a column the earlier header does not have.
+ */
+final class SlicedScrollExport {
+
+  static final int SCROLL_PAGE_SIZE = 10000;
+  private static final Logger LOGGER = LogManager.getLogger(SlicedScrollExport.class);
+  /** long enough for an interrupted export to be picked up again after a restart. */
+  private static final String PIT_KEEP_ALIVE = "30m";
+  private static final List<SortOptions> SHARD_DOC_SORT =
+      List.of(SortOptions.of(s -> s.field(f -> f.field("_shard_doc").order(SortOrder.Asc))));
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  /** writes pages and continues the pipelines, kept off the common pool and the client threads. */
+  private static final ExecutorService SCROLL_EXECUTOR =
+      Executors.newFixedThreadPool(
+          Math.max(2, Runtime.getRuntime().availableProcessors()),
+          runnable -> {
+            Thread thread = new Thread(runnable, "es-scroll-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final ElasticsearchAsyncClient asyncClient;
+  private final String index;
+  private final Query query;
+  private final File file;
+  private final String format;
+  private final boolean json;
+  private final boolean parquet;
+  private final ExportCompression compression;
+  private final ScrollProgressAggregator progress;
+  private final CsvColumnDictionary columns = new CsvColumnDictionary();
+  private final AtomicBoolean failed = new AtomicBoolean(false);
+  /** latest point in time id, a search may return a new one. */
+  private final AtomicReference<String> pitId = new AtomicReference<>();
+  private AtomicReferenceArray<ExportCheckpoint.Slice> positions;
+  private long totalHits;
+  /** columns of the export continued by this one, null for a complete export. */
+  private List<String> baseColumns;
+
+  SlicedScrollExport(
+      ElasticsearchAsyncClient asyncClient,
+      String index,
+      Query query,
+      File file,
+      String format,
+      ExportCompression compression,
+      ScrollProgressAggregator progress) {
+    this.asyncClient = asyncClient;
+    this.index = index;
+    this.query = query;
+    this.file = file;
+    this.format = format;
+    this.json = HEADER_JSON.equalsIgnoreCase(format);
+    this.parquet = HEADER_PARQUET.equalsIgnoreCase(format);
+    this.compression = compression;
+    this.progress = progress;
+  }
+
+  /** Segment file written by one slice of the export of a file. */
+  static File segment(File file, int slice) {
+    return new File(file.getPath() + ".part" + slice);
+  }
+
+  /**
+   * Write the rows of this export as a continuation of an earlier CSV export: its columns are kept
+   * in their positions and no header is written.
+   *
+   * @param columns columns of the earlier export
+   * @return this export
+   */
+  SlicedScrollExport appendTo(List<String> columns) {
+    this.baseColumns = List.copyOf(columns);
+    this.columns.restore(baseColumns);
+    return this;
+  }
+
+  /** Columns of the export, known once every slice is drained. */
+  List<String> getColumns() {
+    return columns.getColumns();
+  }
+
+  /**
+   * Export all slices in parallel and build the target file.
+   *
+   * @param slices number of slices, 1 disables slicing
+   * @param totalHits documents of the export, kept in the checkpoints
+   * @return future completed once the target file is written
+   */
+  CompletableFuture<Void> run(int slices, long totalHits) {
+    this.totalHits = totalHits;
+    OpenPointInTimeRequest request =
+        OpenPointInTimeRequest.of(p -> p.index(index).keepAlive(k -> k.time(PIT_KEEP_ALIVE)));
+    return asyncClient
+        .openPointInTime(request)
+        .thenCompose(
+            response -> {
+              pitId.set(response.id());
+              List<ExportCheckpoint.Slice> start = new ArrayList<>(slices);
+              for (int i = 0; i < slices; i++) {
+                start.add(ExportCheckpoint.Slice.START);
+              }
+              return export(start);
+            });
+  }
+
+  /**
+   * Continue an export from a checkpoint accepted by {@link ExportCheckpoint#canResume}.
+   *
+   * @param checkpoint last checkpoint of the export
+   * @return future completed once the target file is written
+   */
+  CompletableFuture<Void> resume(ExportCheckpoint checkpoint) {
+    this.totalHits = checkpoint.getTotalHits();
+    pitId.set(checkpoint.getPitId());
+    // rows already written refer to the columns by position
+    columns.restore(checkpoint.getColumns());
+    List<ExportCheckpoint.Slice> start = new ArrayList<>(checkpoint.getSliceCount());
+    for (int i = 0; i < checkpoint.getSliceCount(); i++) {
+      start.add(checkpoint.getSlice(i));
+    }
+    LOGGER.info("resuming export of {} from {} documents", file.getName(), checkpoint.getDocs());
+    return export(start);
+  }
+
+  private CompletableFuture<Void> export(List<ExportCheckpoint.Slice> start) {
+    int slices = start.size();
+    positions = new AtomicReferenceArray<>(slices);
+    List<File> segments = new ArrayList<>(slices);
+    CompletableFuture<?>[] tasks = new CompletableFuture<?>[slices];
+    for (int i = 0; i < slices; i++) {
+      File segment = segment(file, i);
+      segments.add(segment);
+      positions.set(i, start.get(i));
+      tasks[i] = exportSlice(new SliceWriter(i, slices, segment, start.get(i)));
+    }
+    return CompletableFuture.allOf(tasks)
+        .thenRun(
+            () -> {
+              if (baseColumns != null && columns.size() > baseColumns.size()) {
+                throw new IllegalStateException("new columns missing in the earlier header");
+              }
+              concatenate(segments);
+            })
+        .whenComplete(
+            (result, ex) -> {
+              segments.forEach(File::delete);
+              closePointInTime();
+            });
+  }
+
+  /**
+   * Export one slice as a pipeline: the next page is requested as soon as a page arrives, so it is
+   * fetched while the current page is written. At most two pages of a slice are held at a time.
+   */
+  private CompletableFuture<Void> exportSlice(SliceWriter writer) {
+    return page(writer.sliceId, writer.slices, writer.start.getSearchAfter())
+        .thenComposeAsync(response -> writer.pump(response.hits().hits()), SCROLL_EXECUTOR)
+        .whenComplete(
+            (result, ex) -> {
+              if (ex != null) {
+                failed.set(true);
+              }
+              writer.close();
+            });
+  }
+
+  private CompletableFuture<SearchResponse<ObjectNode>> page(
+      int sliceId, int slices, List<FieldValue> searchAfter) {
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            e -> {
+              e.pit(p -> p.id(pitId.get()).keepAlive(k -> k.time(PIT_KEEP_ALIVE)))
+                  .query(query)
+                  .size(SCROLL_PAGE_SIZE)
+                  .sort(SHARD_DOC_SORT)
+                  .trackTotalHits(t -> t.enabled(false));
+              if (slices > 1) {
+                e.slice(s -> s.id(String.valueOf(sliceId)).max(slices));
+              }
+              if (!searchAfter.isEmpty()) {
+                e.searchAfter(searchAfter);
+              }
+              return e;
+            });
+    return asyncClient
+        .search(searchRequest, ObjectNode.class)
+        .thenApply(
+            response -> {
+              if (response.pitId() != null) {
+                pitId.set(response.pitId());
+              }
+              return response;
+            });
+  }
+
+  private void checkpoint() {
+    List<ExportCheckpoint.Slice> slices = new ArrayList<>(positions.length());
+    for (int i = 0; i < positions.length(); i++) {
+      slices.add(positions.get(i));
+    }
+    progress.checkpoint(
+        ExportCheckpoint.of(file, pitId.get(), totalHits, columns.getColumns(), slices).toJson());
+  }
+
+  private void concatenate(List<File> segments) {
+    if (parquet) {
+      try {
+        Files.move(
+            segments.get(0).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      return;
+    }
+    try (FileChannel out =
+            FileChannel.open(
+                file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        WritableByteChannel target =
+            compression == ExportCompression.NONE
+                ? out
+                : Channels.newChannel(compression.wrap(Channels.newOutputStream(out)))) {
+      if (json) {
+        write(target, "[");
+      } else if (baseColumns == null && columns.size() > 0) {
+        // every slice is drained, so the header covers all columns seen by any of them
+        write(target, columns.headerLine());
+      }
+      boolean first = true;
+      for (File segment : segments) {
+        if (segment.length() == 0) {
+          continue;
+        }
+        if (json && !first) {
+          write(target, ",\n");
+        }
+        try (FileChannel source = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+          long position = 0;
+          long size = source.size();
+          while (position < size) {
+            position += source.transferTo(position, size - position, target);
+          }
+        }
+        first = false;
+      }
+      if (json) {
+        write(target, "]");
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static void write(WritableByteChannel channel, String value) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private void closePointInTime() {
+    String id = pitId.get();
+    if (id != null) {
+      asyncClient
+          .closePointInTime(ClosePointInTimeRequest.of(c -> c.id(id)))
+          .whenComplete(
+              (response, exception) -> {
+                if (exception != null) {
+                  LOGGER.warn("close point in time failed : {}", exception.getMessage());
+                }
+              });
+    }
+  }
+
+  /** Writes the pages of one slice in order into its segment and keeps its position. */
+  private final class SliceWriter {
+    private final int sliceId;
+    private final int slices;
+    private final File segment;
+    private final ExportCheckpoint.Slice start;
+    private final EsResponseFormatter formatter;
+    private boolean appendComma;
+    private long docs;
+
+    private SliceWriter(int sliceId, int slices, File segment, ExportCheckpoint.Slice start) {
+      this.sliceId = sliceId;
+      this.slices = slices;
+      this.segment = segment;
+      this.start = start;
+      boolean resumed = start.bytes > 0;
+      if (resumed) {
+        // drop what was written after the checkpoint
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+          channel.truncate(start.bytes);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+      }
+      this.formatter =
+          new EsResponseFormatterFactory(format, segment, columns).createInstance(resumed);
+      this.appendComma = resumed;
+      this.docs = start.docs;
+    }
+
+    private CompletableFuture<Void> pump(List<Hit<ObjectNode>> searchHits) {
+      if (failed.get() || searchHits == null || searchHits.isEmpty()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      List<FieldValue> lastSort = searchHits.get(searchHits.size() - 1).sort();
+      CompletableFuture<SearchResponse<ObjectNode>> nextPage = page(sliceId, slices, lastSort);
+      CompletableFuture<Void> written =
+          CompletableFuture.runAsync(() -> write(searchHits, lastSort), SCROLL_EXECUTOR);
+      return written
+          .thenCombine(nextPage, (ignored, response) -> response)
+          .thenComposeAsync(response -> pump(response.hits().hits()), SCROLL_EXECUTOR);
+    }
+
+    private void write(List<Hit<ObjectNode>> searchHits, List<FieldValue> lastSort) {
+      if (json) {
+        formatter.append(searchHits, appendComma);
+      } else {
+        formatter.append(searchHits, appendComma, null);
+      }
+      appendComma = true;
+      docs += searchHits.size();
+      progress.addDocuments(searchHits.size());
+      LOGGER.debug("slice {} : {} new docs", sliceId, searchHits.size());
+      if (!parquet) {
+        formatter.flush();
+        positions.set(
+            sliceId,
+            new ExportCheckpoint.Slice(SearchCursor.toJson(lastSort), segment.length(), docs));
+        // a continuation only covers a short window, it is exported again instead of resumed
+        if (baseColumns == null) {
+          checkpoint();
+        }
+      }
+    }
+
+    private void close() {
+      formatter.close();
+    }
+  }
+}
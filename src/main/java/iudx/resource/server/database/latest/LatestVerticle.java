@@ -50,7 +50,7 @@ public class LatestVerticle extends AbstractVerticle {
         .onSuccess(
             handler -> {
               redisClient = handler;
-              cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
+              cacheService = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
               binder = new ServiceBinder(vertx);
               latestData = new LatestDataServiceImpl(redisClient, cacheService, tenantPrefix);
               consumer =
@@ -34,6 +34,30 @@ public class Constants {
       "SELECT search_id, status, s3_url, expiry, user_id, object_id,size "
           + "FROM s3_upload_url WHERE request_id='$1' and status='$2'";
 
-  public static String UPDATE_S3_PROGRESS_SQL =
-      "UPDATE s3_upload_url SET progress=$1 WHERE search_id='$2'";
+  public static String UPDATE_S3_PROGRESS_BATCH_SQL =
+      "UPDATE s3_upload_url AS s SET progress=greatest(s.progress, v.progress), "
+          + "checkpoint=coalesce(v.checkpoint::jsonb, s.checkpoint) "
+          + "FROM (VALUES $1) AS v(request_id, progress, checkpoint) "
+          + "WHERE s.request_id=v.request_id and s.status='IN_PROGRESS'";
+
+  public static String UPDATE_S3_JOB_SQL =
+      "UPDATE s3_upload_url SET status='$1', job='$2'::JSONB WHERE search_id='$3'";
+
+  public static String SELECT_S3_CHECKPOINT_SQL =
+      "SELECT checkpoint FROM s3_upload_url WHERE search_id='$1' and status='IN_PROGRESS'";
+
+  public static String CLAIM_S3_ORPHANED_JOBS_SQL =
+      "UPDATE s3_upload_url SET modified_at=now() WHERE status='IN_PROGRESS' and job IS NOT NULL "
+          + "and modified_at < now() - interval '$1 minutes' RETURNING job";
+
+  public static String TOUCH_S3_WAITING_JOBS_SQL =
+      "UPDATE s3_upload_url SET modified_at=now() WHERE status='IN_PROGRESS' and search_id IN ($1)";
+
+  public static String UPDATE_S3_EXPORT_SQL =
+      "UPDATE s3_upload_url SET window_key='$1', export='$2'::JSONB WHERE search_id='$3'";
+
+  public static String SELECT_S3_EXPORT_BASE_SQL =
+      "SELECT object_id, size, export FROM s3_upload_url WHERE window_key='$1' "
+          + "and status='COMPLETE' and export IS NOT NULL and expiry > now() "
+          + "ORDER BY modified_at DESC LIMIT 20";
 }
@@ -1,5 +1,7 @@
 package iudx.resource.server.databroker;
 
+import static iudx.resource.server.common.Constants.ASYNC_JOB_DONE_ADDRESS;
+import static iudx.resource.server.common.Constants.ASYNC_JOB_RESUME_ADDRESS;
 import static iudx.resource.server.common.Constants.ASYNC_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.BROKER_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
@@ -16,12 +18,15 @@ import io.vertx.rabbitmq.RabbitMQOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
 import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.common.MeterRegistryProvider;
 import iudx.resource.server.common.Vhosts;
+import iudx.resource.server.database.async.AsyncJobScheduler;
 import iudx.resource.server.database.async.AsyncService;
 import iudx.resource.server.databroker.listeners.AsyncQueryListener;
 import iudx.resource.server.databroker.listeners.RevokeClientQlistener;
 import iudx.resource.server.databroker.listeners.RmqListeners;
 import iudx.resource.server.databroker.listeners.UniqueAttribQlistener;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -167,7 +172,7 @@ public class DataBrokerVerticle extends AbstractVerticle {
     rabbitWebClient = new RabbitWebClient(vertx, webConfig, propObj);
     pgClient = new PostgresClient(vertx, connectOptions, poolOptions);
     rabbitClient = new RabbitClient(vertx, config, rabbitWebClient, pgClient, config());
-    cache = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
+    cache = CacheService.createNearCache(vertx, CACHE_SERVICE_ADDRESS);
     binder = new ServiceBinder(vertx);
     iudxRabbitMqClient = RabbitMQClient.create(vertx, iudxConfig);
     iudxRabbitMqClient
@@ -189,8 +194,31 @@ public class DataBrokerVerticle extends AbstractVerticle {
     RmqListeners revokeQlistener = new RevokeClientQlistener(vertx, cache, config, internalVhost);
     RmqListeners uniqueAttrQlistener =
         new UniqueAttribQlistener(vertx, cache, config, internalVhost);
-    RmqListeners asyncQueryQlistener =
-        new AsyncQueryListener(vertx, config, internalVhost, asyncService);
+    int maxRunningJobs = config().getInteger("asyncMaxRunningJobs", 4);
+    AsyncJobScheduler asyncJobScheduler =
+        new AsyncJobScheduler(
+            vertx,
+            maxRunningJobs,
+            TimeUnit.MINUTES.toMillis(config().getLong("asyncJobTimeoutMinutes", 360L)),
+            MeterRegistryProvider.get());
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(
+            ASYNC_JOB_DONE_ADDRESS,
+            message -> asyncJobScheduler.complete(message.body().getString("searchId")));
+    AsyncQueryListener asyncQueryQlistener =
+        new AsyncQueryListener(
+            vertx,
+            config,
+            internalVhost,
+            asyncService,
+            asyncJobScheduler,
+            config()
+                .getInteger("asyncJobPrefetch", AsyncQueryListener.defaultPrefetch(maxRunningJobs)));
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(
+            ASYNC_JOB_RESUME_ADDRESS, message -> asyncQueryQlistener.resume(message.body()));
 
     // start
     revokeQlistener.start();
@@ -1,5 +1,6 @@
 package iudx.resource.server.databroker.listeners;
 
+import static iudx.resource.server.apiserver.util.Constants.HEADER_RESPONSE_FILE_COMPRESSION;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_RESPONSE_FILE_FORMAT;
 import static iudx.resource.server.authenticator.Constants.*;
 import static iudx.resource.server.common.Constants.*;
@@ -7,69 +8,166 @@ import static iudx.resource.server.common.Constants.*;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.rabbitmq.QueueOptions;
 import io.vertx.rabbitmq.RabbitMQClient;
-import io.vertx.rabbitmq.RabbitMQConsumer;
+import io.vertx.rabbitmq.RabbitMQMessage;
 import io.vertx.rabbitmq.RabbitMQOptions;
+import iudx.resource.server.database.async.AsyncJobScheduler;
 import iudx.resource.server.database.async.AsyncService;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Consumes submitted async queries and runs them through the {@link AsyncJobScheduler}.
+ *
+ * <p>Messages are acked when their job starts. The broker prefetch bounds the jobs waiting in the
+ * scheduler, the other queries stay in the queue until a job finishes. By default it is several
+ * times the running jobs, so the queries of other users reach the scheduler to take their turn
+ * while one user has many queries queued. Queries whose export was
+ * orphaned are handed back through {@link #resume(JsonObject)} and queued the same way, their rows
+ * are written while they wait so they are not taken for orphaned again. A query already waiting or
+ * running in the scheduler is not queued twice.
+ */
 public class AsyncQueryListener implements RmqListeners {
 
   private static final Logger LOGGER = LogManager.getLogger(AsyncQueryListener.class);
-  private final QueueOptions options =
-      new QueueOptions().setMaxInternalQueueSize(2).setKeepMostRecent(true);
+  private static final long KEEP_WAITING_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final int PREFETCH_PER_RUNNING_JOB = 8;
+  private final QueueOptions options = new QueueOptions().setAutoAck(false);
   private final AsyncService asyncService;
+  private final AsyncJobScheduler scheduler;
+  private final int prefetch;
+  /** search ids of the resumed queries waiting for a slot. */
+  private final Set<String> waitingResumes = ConcurrentHashMap.newKeySet();
+  private final Vertx vertx;
   RabbitMQClient client;
 
+  /**
+   * Listener of the async query queue.
+   *
+   * @param scheduler scheduler running the queries
+   * @param prefetch queries held waiting for a free slot of the scheduler
+   */
   public AsyncQueryListener(
-      Vertx vertx, RabbitMQOptions config, String vhost, AsyncService asyncService) {
+      Vertx vertx,
+      RabbitMQOptions config,
+      String vhost,
+      AsyncService asyncService,
+      AsyncJobScheduler scheduler,
+      int prefetch) {
     config.setVirtualHost(vhost);
     this.client = RabbitMQClient.create(vertx, config);
+    this.vertx = vertx;
     this.asyncService = asyncService;
+    this.scheduler = scheduler;
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Prefetch used when none is configured.
+   *
+   * @param maxRunningJobs jobs running at a time in the scheduler
+   * @return queries held by the listener
+   */
+  public static int defaultPrefetch(int maxRunningJobs) {
+    return Math.max(1, maxRunningJobs) * PREFETCH_PER_RUNNING_JOB;
   }
 
   @Override
   public void start() {
+    vertx.setPeriodic(KEEP_WAITING_MILLIS, id -> keepWaitingResumes());
     Future<Void> future = client.start();
     future.onComplete(
         startHandler -> {
           if (startHandler.succeeded()) {
             LOGGER.trace("starting Q listener for Async query");
-            client.basicConsumer(
-                ASYNC_QUERY_Q,
-                options,
-                asyncQListenerHandler -> {
-                  if (asyncQListenerHandler.succeeded()) {
-                    RabbitMQConsumer mqConsumer = asyncQListenerHandler.result();
-                    mqConsumer.handler(
-                        message -> {
-                          Buffer body = message.body();
-                          if (body != null) {
-                            JsonObject asyncQueryJson = new JsonObject(body);
-                            LOGGER.debug("received message from async-query Q :" + asyncQueryJson);
-                            String requestId = asyncQueryJson.getString("requestId");
-                            String searchId = asyncQueryJson.getString("searchId");
-                            String user = asyncQueryJson.getString("user");
-                            String format = asyncQueryJson.getString(HEADER_RESPONSE_FILE_FORMAT);
-                            String role = asyncQueryJson.getString(ROLE);
-                            String drl = asyncQueryJson.getString(DRL);
-                            String did = asyncQueryJson.getString(DID);
-                            JsonObject query = asyncQueryJson.getJsonObject("query");
-                            LOGGER.debug("query received from RMQ : {}", query);
-                            asyncService.asyncSearch(
-                                requestId, user, searchId, query, format, role, drl, did);
-                          } else {
-                            LOGGER.error("Empty json received from async query queue");
-                          }
-                        });
-                  }
-                });
+            client
+                .basicQos(prefetch)
+                .onFailure(qosFailure -> LOGGER.error("failed to set prefetch : " + qosFailure))
+                .onSuccess(
+                    qos ->
+                        client.basicConsumer(
+                            ASYNC_QUERY_Q,
+                            options,
+                            asyncQListenerHandler -> {
+                              if (asyncQListenerHandler.succeeded()) {
+                                asyncQListenerHandler.result().handler(this::schedule);
+                              }
+                            }));
           } else {
             LOGGER.error("Rabbit client startup failed.");
           }
         });
   }
+
+  private void schedule(RabbitMQMessage message) {
+    long deliveryTag = message.envelope().getDeliveryTag();
+    Buffer body = message.body();
+    if (body == null) {
+      LOGGER.error("Empty json received from async query queue");
+      ack(deliveryTag);
+      return;
+    }
+    JsonObject asyncQueryJson = new JsonObject(body);
+    LOGGER.debug("received message from async-query Q :" + asyncQueryJson);
+    if (!submit(asyncQueryJson, () -> ack(deliveryTag))) {
+      // redelivery of a query already scheduled
+      ack(deliveryTag);
+    }
+  }
+
+  /**
+   * Queue an async query again whose export stopped, it continues from its last checkpoint.
+   *
+   * @param asyncQueryJson the query as received from the queue
+   */
+  public void resume(JsonObject asyncQueryJson) {
+    String searchId = asyncQueryJson.getString("searchId");
+    boolean waiting = waitingResumes.add(searchId);
+    if (!submit(asyncQueryJson, () -> waitingResumes.remove(searchId)) && waiting) {
+      waitingResumes.remove(searchId);
+    }
+  }
+
+  private void keepWaitingResumes() {
+    if (!waitingResumes.isEmpty()) {
+      JsonArray searchIds = new JsonArray(new ArrayList<>(waitingResumes));
+      vertx
+          .eventBus()
+          .send(ASYNC_JOB_WAITING_ADDRESS, new JsonObject().put("searchIds", searchIds));
+    }
+  }
+
+  private boolean submit(JsonObject asyncQueryJson, Runnable onStart) {
+    String requestId = asyncQueryJson.getString("requestId");
+    String searchId = asyncQueryJson.getString("searchId");
+    String user = asyncQueryJson.getString("user");
+    String format = asyncQueryJson.getString(HEADER_RESPONSE_FILE_FORMAT);
+    String compression = asyncQueryJson.getString(HEADER_RESPONSE_FILE_COMPRESSION);
+    String role = asyncQueryJson.getString(ROLE);
+    String drl = asyncQueryJson.getString(DRL);
+    String did = asyncQueryJson.getString(DID);
+    JsonObject query = asyncQueryJson.getJsonObject("query");
+    LOGGER.debug("query received from RMQ : {}", query);
+    return scheduler.submit(
+        user,
+        searchId,
+        () -> {
+          onStart.run();
+          asyncService.asyncSearch(
+              requestId, user, searchId, query, format, compression, role, drl, did);
+        });
+  }
+
+  private void ack(long deliveryTag) {
+    client
+        .basicAck(deliveryTag, false)
+        .onFailure(ackFailure -> LOGGER.error("failed to ack async query : " + ackFailure));
+  }
 }
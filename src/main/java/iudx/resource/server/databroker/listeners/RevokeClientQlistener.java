@@ -12,6 +12,7 @@ import io.vertx.rabbitmq.RabbitMQConsumer;
 import io.vertx.rabbitmq.RabbitMQOptions;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.common.BroadcastSequence;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -19,6 +20,7 @@ public class RevokeClientQlistener implements RmqListeners {
 
   private static final Logger LOGGER = LogManager.getLogger(RevokeClientQlistener.class);
   private final CacheService cache;
+  private final BroadcastSequence sequence = new BroadcastSequence();
   private final QueueOptions options =
       new QueueOptions().setMaxInternalQueueSize(1000).setKeepMostRecent(true);
   RabbitMQClient client;
@@ -55,8 +57,13 @@ public class RevokeClientQlistener implements RmqListeners {
                             JsonObject cacheJson = new JsonObject();
                             String value = invalidClientJson.getString("expiry");
                             cacheJson.put("type", CacheType.REVOKED_CLIENT);
-                            cacheJson.put("key", key);
-                            cacheJson.put("value", value);
+                            if (sequence.inSequence(invalidClientJson)) {
+                              cacheJson.put("key", key);
+                              cacheJson.put("value", value);
+                            } else {
+                              // revocations were missed, reload all of them from DB.
+                              LOGGER.warn("revoked client messages missed, refreshing cache");
+                            }
 
                             Future<JsonObject> cacheFuture = cache.refresh(cacheJson);
                             cacheFuture
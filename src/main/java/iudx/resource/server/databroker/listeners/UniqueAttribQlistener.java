@@ -13,6 +13,7 @@ import io.vertx.rabbitmq.RabbitMQOptions;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.common.BroadcastEventType;
+import iudx.resource.server.common.BroadcastSequence;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -20,6 +21,7 @@ public class UniqueAttribQlistener implements RmqListeners {
 
   private static final Logger LOGGER = LogManager.getLogger(UniqueAttribQlistener.class);
   private final CacheService cache;
+  private final BroadcastSequence sequence = new BroadcastSequence();
   private final QueueOptions options =
       new QueueOptions().setMaxInternalQueueSize(1000).setKeepMostRecent(true);
   RabbitMQClient client;
@@ -64,15 +66,20 @@ public class UniqueAttribQlistener implements RmqListeners {
                               return;
                             }
 
-                            if (event.equals(BroadcastEventType.CREATE)) {
-                              // pass key and value only for create event, for others update,delete
-                              // cache will
-                              // fetch from DB.
+                            Future<JsonObject> cacheFuture;
+                            if (!sequence.inSequence(uniqueAttribJson)) {
+                              // messages were missed, reload the whole cache from DB.
+                              LOGGER.warn("unique attrib messages missed, refreshing cache");
+                              cacheFuture = cache.refresh(cacheJson);
+                            } else if (event.equals(BroadcastEventType.DELETE)) {
+                              cacheJson.put("key", key);
+                              cacheFuture = cache.delete(cacheJson);
+                            } else {
+                              // create and update carry the value, applied to the key in place.
                               cacheJson.put("key", key);
                               cacheJson.put("value", value);
+                              cacheFuture = cache.refresh(cacheJson);
                             }
-
-                            Future<JsonObject> cacheFuture = cache.refresh(cacheJson);
                             cacheFuture
                                 .onSuccess(
                                     successHandler -> {
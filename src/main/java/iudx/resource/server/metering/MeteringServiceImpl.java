@@ -5,6 +5,7 @@ import static iudx.resource.server.authenticator.Constants.ROLE;
 import static iudx.resource.server.common.Constants.*;
 import static iudx.resource.server.metering.util.Constants.*;
 import static iudx.resource.server.metering.util.Constants.IID;
+import static iudx.resource.server.metering.util.Constants.USER_ID;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -414,6 +415,7 @@ public class MeteringServiceImpl implements MeteringService {
           if (rmqHandler.succeeded()) {
             handler.handle(Future.succeededFuture());
             LOGGER.info("inserted into rmq");
+            publishUsage(writeMessage);
           } else {
             LOGGER.error(rmqHandler.cause());
             try {
@@ -430,6 +432,15 @@ public class MeteringServiceImpl implements MeteringService {
     return this;
   }
 
+  /** Tell the quota counters of every node about an audited call. */
+  private void publishUsage(JsonObject auditMessage) {
+    JsonObject usage =
+        new JsonObject()
+            .put(USER_ID, auditMessage.getString(USER_ID))
+            .put(EPOCH_TIME, auditMessage.getLong(EPOCH_TIME, System.currentTimeMillis()));
+    vertx.eventBus().publish(METERING_USAGE_ADDRESS, usage);
+  }
+
   private Future<JsonObject> executeQueryDatabaseOperation(String query) {
     Promise<JsonObject> promise = Promise.promise();
     postgresService.executeQuery(
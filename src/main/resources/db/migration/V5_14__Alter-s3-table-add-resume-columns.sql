@@ -0,0 +1,4 @@
+-- Add columns to resume interrupted async exports to s3_upload_url table.
+-- job : the async query as received from the queue, checkpoint : position of the running export.
+ALTER TABLE s3_upload_url ADD COLUMN job jsonb;
+ALTER TABLE s3_upload_url ADD COLUMN checkpoint jsonb;
@@ -0,0 +1,5 @@
+-- Add columns to continue completed async exports over a longer time window to s3_upload_url table.
+-- window_key : hash of the query without its time window, export : time window and csv columns.
+ALTER TABLE s3_upload_url ADD COLUMN window_key TEXT;
+ALTER TABLE s3_upload_url ADD COLUMN export jsonb;
+CREATE INDEX s3_window_key_index ON s3_upload_url USING HASH (window_key);
@@ -1,5 +1,6 @@
 package iudx.resource.server.apiserver.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 import io.vertx.core.Future;
@@ -8,6 +9,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -60,33 +62,41 @@ public class CatalogueServiceTest {
     vertxTestContext.completeNow();
   }
 
-  @Test
-  @DisplayName("Test getApplicableFilters method Success [Group level resource]")
-  public void testGetApplicableFiltersSuccessGroup(VertxTestContext vertxTestContext) {
-    String id = "abcd/abcd/abcd";
-    JsonObject cacheReply = new JsonObject();
-    cacheReply.put("iudxResourceAPIs", new JsonArray());
-
+  private static JsonObject resource(JsonArray filters) {
     List<String> list = new ArrayList<String>();
     list.add("iudx:Resource");
     list.add("iudx:TransitManagement");
 
-    JsonObject jsonObject =
-        new JsonObject()
-            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
-            .put("type", list)
-            .put("name", "dummy_name")
-            .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
-    when(cache.get(any()))
-        .thenReturn(Future.succeededFuture(jsonObject))
-        .thenReturn(Future.succeededFuture(cacheReply))
-        .thenReturn(Future.succeededFuture(new JsonObject()));
+    return new JsonObject()
+        .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+        .put("type", list)
+        .put("name", "dummy_name")
+        .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22")
+        .put("iudxResourceAPIs", filters);
+  }
+
+  private static JsonObject group(JsonArray filters) {
+    return new JsonObject()
+        .put("id", "5b7556b5-0779-4c47-9cf2-3f209779aa22")
+        .put("type", new JsonArray().add("iudx:ResourceGroup"))
+        .put("iudxResourceAPIs", filters);
+  }
+
+  @Test
+  @DisplayName("Test getApplicableFilters method Success [Group level resource]")
+  public void testGetApplicableFiltersSuccessGroup(VertxTestContext vertxTestContext) {
+    String id = "abcd/abcd/abcd";
+    CatalogueItem item =
+        CatalogueItem.of(
+            resource(null), group(new JsonArray().add("TEMPORAL").add("SPATIAL")));
+    when(cache.getCatalogueItem(any())).thenReturn(Future.succeededFuture(item));
     catalogueService
         .getApplicableFilters(id)
         .onComplete(
             handler -> {
               if (handler.succeeded()) {
-                verify(cache, times(3)).get(any());
+                verify(cache, times(1)).getCatalogueItem(id);
+                assertEquals(List.of("TEMPORAL", "SPATIAL"), handler.result());
                 vertxTestContext.completeNow();
               } else {
                 vertxTestContext.failNow(handler.cause());
@@ -98,30 +108,18 @@ public class CatalogueServiceTest {
   @DisplayName("Test getApplicableFilters method Success [Resource level]")
   public void testGetApplicableFiltersSuccessItem(VertxTestContext vertxTestContext) {
     String id = "abcd/abcd/abcd";
-    JsonObject cacheReply = new JsonObject();
-    cacheReply.put("iudxResourceAPIs", new JsonArray());
-    List<String> list = new ArrayList<String>();
-    list.add("iudx:Resource");
-    list.add("iudx:TransitManagement");
-
-    JsonObject jsonObject =
-        new JsonObject()
-            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
-            .put("type", list)
-            .put("name", "dummy_name")
-            .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
-
-    when(cache.get(any()))
-        .thenReturn(Future.succeededFuture(jsonObject))
-        .thenReturn(Future.succeededFuture(new JsonObject()))
-        .thenReturn(Future.succeededFuture(cacheReply));
+    CatalogueItem item =
+        CatalogueItem.of(
+            resource(new JsonArray().add("ATTR")), group(new JsonArray().add("TEMPORAL")));
+    when(cache.getCatalogueItem(any())).thenReturn(Future.succeededFuture(item));
 
     catalogueService
         .getApplicableFilters(id)
         .onComplete(
             handler -> {
               if (handler.succeeded()) {
-                verify(cache, times(3)).get(any());
+                verify(cache, times(1)).getCatalogueItem(id);
+                assertEquals(List.of("TEMPORAL", "ATTR"), handler.result());
                 vertxTestContext.completeNow();
               } else {
                 vertxTestContext.failNow(handler.cause());
@@ -133,29 +131,15 @@ public class CatalogueServiceTest {
   @DisplayName("Test getApplicableFilters method fail [Resource level]")
   public void testGetApplicableFiltersFailItem(VertxTestContext vertxTestContext) {
     String id = "abcd/abcd/abcd";
-    JsonObject cacheReply = new JsonObject();
-    cacheReply.put("iudxResourceAPIs", new JsonArray());
-    List<String> list = new ArrayList<String>();
-    list.add("iudx:Resource");
-    list.add("iudx:TransitManagement");
-
-    JsonObject jsonObject =
-        new JsonObject()
-            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
-            .put("type", list)
-            .put("name", "dummy_name")
-            .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
-    when(cache.get(any()))
-        .thenReturn(Future.succeededFuture(jsonObject))
-        .thenReturn(Future.succeededFuture(new JsonObject()))
-        .thenReturn(Future.failedFuture("Failed"));
+    CatalogueItem item = CatalogueItem.of(resource(new JsonArray()), null);
+    when(cache.getCatalogueItem(any())).thenReturn(Future.succeededFuture(item));
 
     catalogueService
         .getApplicableFilters(id)
         .onComplete(
             handler -> {
               if (handler.failed()) {
-                verify(cache, times(3)).get(any());
+                verify(cache, times(1)).getCatalogueItem(id);
                 vertxTestContext.completeNow();
               } else {
                 vertxTestContext.failNow(handler.cause());
@@ -167,29 +151,14 @@ public class CatalogueServiceTest {
   @DisplayName("Test getApplicableFilters method Failed [Resource level]")
   public void testGetApplicableFiltersFailedItem(VertxTestContext vertxTestContext) {
     String id = "abcd/abcd/abcd";
-    JsonObject cacheReply = new JsonObject();
-    cacheReply.put("iudxResourceAPIs", new JsonArray());
-    List<String> list = new ArrayList<String>();
-    list.add("iudx:Resource");
-    list.add("iudx:TransitManagement");
-
-    JsonObject jsonObject =
-        new JsonObject()
-            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
-            .put("type", list)
-            .put("name", "dummy_name")
-            .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
-
-    when(cache.get(any()))
-        .thenReturn(Future.succeededFuture(jsonObject))
-        .thenReturn(Future.failedFuture("failed"));
+    when(cache.getCatalogueItem(any())).thenReturn(Future.failedFuture("failed"));
 
     catalogueService
         .getApplicableFilters(id)
         .onComplete(
             handler -> {
               if (handler.failed()) {
-                verify(cache, times(3)).get(any());
+                verify(cache, times(1)).getCatalogueItem(id);
                 vertxTestContext.completeNow();
               } else {
                 vertxTestContext.failNow(handler.cause());
@@ -0,0 +1,70 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.cli.annotations.Description;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.PaginationCursorTypeValidator;
+
+@ExtendWith(VertxExtension.class)
+public class PaginationCursorTypeValidatorTest {
+
+  private PaginationCursorTypeValidator paginationCursorTypeValidator;
+
+  @BeforeEach
+  public void setup(Vertx vertx, VertxTestContext testContext) {
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> allowedValues() {
+    // Add any valid value which will pass successfully.
+    return Stream.of(
+            Arguments.of(null, false),
+            Arguments.of("*", false),
+            Arguments.of("eyJwIjoiYWJjIiwicyI6WzEsMl19", false),
+            Arguments.of("abc_DEF-123", false));
+  }
+
+  @ParameterizedTest
+  @MethodSource("allowedValues")
+  @Description("pagination cursor type parameter allowed values.")
+  public void testValidCursorTypeValue(String value, boolean required, Vertx vertx,
+                                       VertxTestContext testContext) {
+    paginationCursorTypeValidator = new PaginationCursorTypeValidator(value, required);
+    assertTrue(paginationCursorTypeValidator.isValid());
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> invalidValues() {
+    return Stream.of(
+            Arguments.of("   ", false),
+            Arguments.of("**", false),
+            Arguments.of("abc+def/ghi=", false),
+            Arguments.of("a".repeat(2049), false),
+            Arguments.of(null, true),
+            Arguments.of("", true)
+    );
+  }
+
+  @ParameterizedTest
+  @MethodSource("invalidValues")
+  @Description("pagination cursor type parameter invalid values.")
+  public void testInvalidCursorTypeValue(String value, boolean required, Vertx vertx,
+                                         VertxTestContext testContext) {
+    paginationCursorTypeValidator = new PaginationCursorTypeValidator(value, required);
+    assertThrows(DxRuntimeException.class, () -> paginationCursorTypeValidator.isValid());
+    testContext.completeNow();
+  }
+}
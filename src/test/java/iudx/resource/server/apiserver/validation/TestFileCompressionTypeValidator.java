@@ -0,0 +1,59 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.FileCompressionTypeValidator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith({MockitoExtension.class, VertxExtension.class})
+public class TestFileCompressionTypeValidator {
+  FileCompressionTypeValidator typeValidator;
+
+  static Stream<Arguments> input() {
+    return Stream.of(
+        Arguments.of(null, false),
+        Arguments.of("gzip", false),
+        Arguments.of("zstd", false),
+        Arguments.of("none", false),
+        Arguments.of("gzip", true),
+        Arguments.of("zstd", true));
+  }
+
+  static Stream<Arguments> inputValues() {
+
+    return Stream.of(
+        Arguments.of("deflate", false),
+        Arguments.of("", true),
+        Arguments.of(null, true),
+        Arguments.of("", false));
+  }
+
+  @ParameterizedTest
+  @DisplayName("Test isValid method : Success")
+  @MethodSource("input")
+  public void testIsValid(String value, boolean required, VertxTestContext vertxTestContext) {
+    typeValidator = new FileCompressionTypeValidator(value, required);
+    assertTrue(typeValidator.isValid());
+    vertxTestContext.completeNow();
+  }
+
+  @ParameterizedTest
+  @DisplayName("Test isValid method : Failure")
+  @MethodSource("inputValues")
+  public void testIsValidFailure(
+      String value, boolean required, VertxTestContext vertxTestContext) {
+    typeValidator = new FileCompressionTypeValidator(value, required);
+    assertThrows(DxRuntimeException.class, () -> typeValidator.isValid());
+    vertxTestContext.completeNow();
+  }
+}
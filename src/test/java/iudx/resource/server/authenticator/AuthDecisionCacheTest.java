@@ -0,0 +1,69 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class AuthDecisionCacheTest {
+
+  private static final JsonObject RESPONSE = new JsonObject().put("userid", "client");
+
+  private static long inOneHour() {
+    return System.currentTimeMillis() / 1000 + 3600;
+  }
+
+  @Test
+  @DisplayName("Test decisions kept per request until the token expires or the client changes")
+  public void testDecisions(Vertx vertx, VertxTestContext vertxTestContext) {
+    AuthDecisionCache decisions = new AuthDecisionCache(vertx, new JsonObject());
+    String key = AuthDecisionCache.key("token", "/ngsi-ld/v1/entities", "get", "id");
+    assertEquals(key, AuthDecisionCache.key("token", "/ngsi-ld/v1/Entities", "GET", "id"));
+    assertNotEquals(key, AuthDecisionCache.key("token", "/ngsi-ld/v1/entities", "GET", "other"));
+
+    decisions.put(key, "client", inOneHour(), RESPONSE, decisions.generation());
+    assertEquals(RESPONSE, decisions.get(key));
+
+    decisions.put("expired", "client", System.currentTimeMillis() / 1000 - 1, RESPONSE, 0);
+    assertNull(decisions.get("expired"));
+
+    long startedAt = decisions.generation();
+    decisions.invalidateClient("other");
+    decisions.put("stale", "client", inOneHour(), RESPONSE, startedAt);
+    assertNull(decisions.get("stale"));
+    assertEquals(RESPONSE, decisions.get(key));
+
+    decisions.invalidateClient("client");
+    assertNull(decisions.get(key));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test catalogue changes drop all decisions")
+  public void testCatalogueInvalidation(Vertx vertx, VertxTestContext vertxTestContext) {
+    AuthDecisionCache decisions = new AuthDecisionCache(vertx, new JsonObject());
+    decisions.put("key", "client", inOneHour(), RESPONSE, decisions.generation());
+
+    CacheInvalidation.publish(vertx, CacheType.UNIQUE_ATTRIBUTE, "id");
+    CacheInvalidation.publish(vertx, CacheType.CATALOGUE_CACHE, "id");
+    vertx.setTimer(
+        100,
+        id ->
+            vertxTestContext.verify(
+                () -> {
+                  assertNull(decisions.get("key"));
+                  assertEquals(0, decisions.size());
+                  vertxTestContext.completeNow();
+                }));
+  }
+}
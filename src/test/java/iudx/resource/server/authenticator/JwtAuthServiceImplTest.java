@@ -39,9 +39,9 @@ import io.vertx.junit5.VertxTestContext;
 import iudx.resource.server.authenticator.model.JwtData;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
 import iudx.resource.server.configuration.Configuration;
 import iudx.resource.server.database.postgres.PostgresService;
-import iudx.resource.server.metering.MeteringService;
 import org.mockito.stubbing.Answer;
 
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
@@ -67,7 +67,7 @@ public class JwtAuthServiceImplTest {
   private static String invalidId;
   private static PostgresService pgService;
   private static CacheService cacheService;
-  private static MeteringService meteringService;
+  private static RevokedTokenIndex revokedTokens = new RevokedTokenIndex();
   private static Api apis;
 
   @BeforeAll
@@ -95,10 +95,9 @@ public class JwtAuthServiceImplTest {
     JWTAuth jwtAuth = JWTAuth.create(vertx, jwtAuthOptions);
 
     cacheService = Mockito.mock(CacheService.class);
-    meteringService=Mockito.mock(MeteringService.class);
     WebClient webClient = AuthenticationVerticle.createWebClient(vertx, authConfig, true);
     jwtAuthenticationService =
-            new JwtAuthenticationServiceImpl(vertx, jwtAuth, authConfig, cacheService,meteringService,apis);
+            new JwtAuthenticationServiceImpl(vertx, jwtAuth, authConfig, cacheService,new QuotaCounters(),revokedTokens,apis);
 
     // since test token doesn't contains valid id's, so forcibly put some dummy id in cache
     // for
@@ -199,6 +198,10 @@ public class JwtAuthServiceImplTest {
     closedIdJson.put("type", CacheType.CATALOGUE_CACHE);
     closedIdJson.put("key", closeId);
     when(cacheService.get(closedIdJson)).thenReturn(Future.succeededFuture(new JsonObject().put("accessPolicy", "SECURE")));
+    when(cacheService.getCatalogueItem(closeId))
+        .thenReturn(
+            Future.succeededFuture(
+                CatalogueItem.of(new JsonObject().put("accessPolicy", "SECURE"), null)));
 
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.failed()) {
@@ -264,13 +267,11 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value","2021-09-09T12:52:37")));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T12:52:37"));
 
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.succeeded()) {
         testContext.completeNow();
@@ -314,13 +315,11 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", "2021-09-09T13:10:01")));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T13:10:01"));
 
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.succeeded()) {
         testContext.completeNow();
@@ -364,13 +363,11 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", "2021-09-09T14:04:071")));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T14:04:07"));
 
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.succeeded()) {
         testContext.completeNow();
@@ -414,12 +411,10 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", "2021-09-09T13:00:39")));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T13:00:39"));
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.succeeded()) {
         testContext.completeNow();
@@ -463,12 +458,10 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", "2021-09-09T12:52:37")));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T12:52:37"));
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     jwtAuthenticationService.tokenInterospect(request, authInfo, handler -> {
       if (handler.succeeded()) {
         testContext.completeNow();
@@ -933,11 +926,7 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
     
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
-    
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", LocalDateTime.now().minusDays(1).toString())));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond(LocalDateTime.now().minusDays(1).toString()));
     
     jwtAuthenticationService.isRevokedClientToken(jwtData).onComplete(handler->{
       if(handler.succeeded()) {
@@ -964,11 +953,8 @@ public class JwtAuthServiceImplTest {
     jwtData.setRole("provider");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
     
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
     String time="2023-02-08T12:37:26.796"; 
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value", time)));
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond(time));
     
     
     jwtAuthenticationService.isRevokedClientToken(jwtData).onComplete(handler->{
@@ -1004,7 +990,10 @@ public class JwtAuthServiceImplTest {
     
     JsonObject openGroupIdJson=openResourceIdJson.copy();
     openGroupIdJson.put("key", "groupId");
-    when(cacheService.get(any())).thenReturn(Future.succeededFuture(groupId)).thenReturn(Future.succeededFuture(new JsonObject().put("accessPolicy", "OPEN")));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(
+            Future.succeededFuture(
+                CatalogueItem.of(groupId, new JsonObject().put("accessPolicy", "OPEN"))));
 
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.succeeded()) {
@@ -1035,7 +1024,10 @@ public class JwtAuthServiceImplTest {
     JsonObject openResourceIdJson=new JsonObject();
     openResourceIdJson.put("type", CacheType.CATALOGUE_CACHE);
     openResourceIdJson.put("key", id);
-    when(cacheService.get(any())).thenReturn(Future.succeededFuture(groupId)).thenReturn(Future.succeededFuture(new JsonObject().put("accessPolicy", "OPEN")));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(
+            Future.succeededFuture(
+                CatalogueItem.of(groupId, new JsonObject().put("accessPolicy", "OPEN"))));
 
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.succeeded()) {
@@ -1065,7 +1057,8 @@ public class JwtAuthServiceImplTest {
     JsonObject openResourceIdJson=new JsonObject();
     openResourceIdJson.put("type", CacheType.CATALOGUE_CACHE);
     openResourceIdJson.put("key", id);
-    when(cacheService.get(any())).thenReturn(Future.succeededFuture(groupId)).thenReturn(Future.failedFuture("failed for group id"));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(groupId, null)));
 
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.failed()) {
@@ -1090,11 +1083,7 @@ public class JwtAuthServiceImplTest {
     JsonObject openResourceIdJson=new JsonObject();
     openResourceIdJson.put("type", CacheType.CATALOGUE_CACHE);
     openResourceIdJson.put("key", id);
-    when(cacheService.get(openResourceIdJson)).thenReturn(Future.failedFuture("failed for resource id"));
-    
-    JsonObject openGroupIdJson=openResourceIdJson.copy();
-    openGroupIdJson.put("key", groupId);
-    when(cacheService.get(openGroupIdJson)).thenReturn(Future.succeededFuture(new JsonObject().put("accessPolicy", "OPEN")));
+    when(cacheService.getCatalogueItem(id)).thenReturn(Future.failedFuture("failed for resource id"));
 
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.succeeded()) {
@@ -1130,7 +1119,10 @@ public class JwtAuthServiceImplTest {
     
     JsonObject openGroupIdJson=openResourceIdJson.copy();
     openGroupIdJson.put("key", groupId);
-    when(cacheService.get(any())).thenReturn(Future.succeededFuture(groupId)).thenReturn(Future.succeededFuture(new JsonObject().put("accessPolicy", "OPEN")));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(
+            Future.succeededFuture(
+                CatalogueItem.of(groupId, new JsonObject().put("accessPolicy", "OPEN"))));
 
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.succeeded()) {
@@ -1158,7 +1150,8 @@ public class JwtAuthServiceImplTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    when(cacheService.get(any())).thenReturn(Future.succeededFuture(abc));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(abc, null)));
     jwtAuthenticationService.isOpenResource(id).onComplete(handler -> {
       if (handler.succeeded()) {
         vertxTestContext.failNow(handler.cause());
@@ -1206,17 +1199,15 @@ public class JwtAuthServiceImplTest {
     jwtData.setDid("b58da193-23d9-43eb-b98a-a103d4b6103c");
     jwtData.setCons(new JsonObject().put("access", new JsonArray().add("api")));
 
-    JsonObject revokedTokenRequest=new JsonObject();
-    revokedTokenRequest.put("type", CacheType.REVOKED_CLIENT);
-    revokedTokenRequest.put("key", jwtData.getSub());
+    revokedTokens.put(jwtData.getSub(), RevokedTokenIndex.toEpochSecond("2021-09-09T12:52:37"));
 
     JsonObject cacheRequest=new JsonObject();
     cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
     cacheRequest.put("key", authInfo.getString("id"));
 
-    when(cacheService.get(revokedTokenRequest)).thenReturn(Future.succeededFuture(new JsonObject().put("value","2021-09-09T12:52:37")));
-
     when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(any()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
     JsonObject jsonObject1 = new JsonObject();
     JsonArray jsonArray = new JsonArray();
     JsonArray jsonArray1 = new JsonArray();
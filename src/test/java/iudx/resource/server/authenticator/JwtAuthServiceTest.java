@@ -29,7 +29,6 @@ import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.resource.server.authenticator.model.JwtData;
 import iudx.resource.server.cache.CacheService;
-import iudx.resource.server.metering.MeteringService;
 
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
 public class JwtAuthServiceTest {
@@ -44,12 +43,11 @@ public class JwtAuthServiceTest {
     @Mock
     CacheService cacheService;
     @Mock
-    MeteringService meteringService;
-    @Mock
     Throwable throwable;
     @Mock
     AsyncResult<JsonObject> asyncResult;
     JwtAuthenticationServiceImpl jwtAuthenticationService;
+    RevokedTokenIndex revokedTokens;
     private Api apis;
     private String dxApiBasePath;
     private String dxCatalogueBasePath;
@@ -77,7 +75,8 @@ public class JwtAuthServiceTest {
         JWTAuth jwtAuth = JWTAuth.create(Vertx.vertx(), jwtAuthOptions);
         when(config.getString(anyString())).thenReturn("Dummy String");
         when(config.getInteger(anyString())).thenReturn(8443);
-        jwtAuthenticationService = new JwtAuthenticationServiceImpl(Vertx.vertx(),jwtAuth,config,cacheService,meteringService,apis);
+        revokedTokens = new RevokedTokenIndex();
+        jwtAuthenticationService = new JwtAuthenticationServiceImpl(Vertx.vertx(),jwtAuth,config,cacheService,new QuotaCounters(),revokedTokens,apis);
         vertxTestContext.completeNow();
     }
 
@@ -85,12 +84,10 @@ public class JwtAuthServiceTest {
     @DisplayName("Test isRevokedClientToken method : Failure")
     public void testRevokedClientToken(VertxTestContext vertxTestContext)
     {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.put("value", "2022-06-13T17:20:00.330");
+        revokedTokens.put("Dummy ID", RevokedTokenIndex.toEpochSecond("2022-06-13T17:20:00.330"));
         when(jwtData.getSub()).thenReturn("Dummy ID");
         when(jwtData.getIat()).thenReturn(3000);
 
-        when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
         jwtAuthenticationService.isRevokedClientToken(jwtData).onComplete(handler -> {
             if(handler.succeeded())
             {
@@ -108,8 +105,7 @@ public class JwtAuthServiceTest {
     @DisplayName("Test isRevokedClientToken method : Success")
     public void testRevokedClientTokenSuccess(VertxTestContext vertxTestContext)
     {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.put("value", "1022-06-13T17:20:00.330");
+        revokedTokens.put("Dummy ID", RevokedTokenIndex.toEpochSecond("1022-06-13T17:20:00.330"));
         when(jwtData.getSub()).thenReturn("Dummy ID");
 //        when(asyncResult.succeeded()).thenReturn(true);
 //        when(asyncResult.result()).thenReturn(jsonObject);
@@ -122,7 +118,6 @@ public class JwtAuthServiceTest {
 //                return null;
 //            }
 //        }).when(jwtAuthenticationService.cache).get(any());
-        when(cacheService.get(any())).thenReturn(Future.succeededFuture(jsonObject));
         jwtAuthenticationService.isRevokedClientToken(jwtData).onComplete(handler -> {
             if(handler.succeeded())
             {
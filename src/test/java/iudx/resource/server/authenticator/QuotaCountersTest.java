@@ -0,0 +1,41 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class QuotaCountersTest {
+
+  @Test
+  @DisplayName("Test calls of the day counted and raised to the audit table counts")
+  public void testConsumed(VertxTestContext vertxTestContext) {
+    QuotaCounters counters = new QuotaCounters();
+    long now = System.currentTimeMillis();
+    counters.record("consumer", now);
+    counters.record("consumer", now);
+    counters.record("consumer", now - TimeUnit.DAYS.toMillis(1));
+    counters.record("other", now);
+    counters.record(null, now);
+    assertEquals(2, counters.consumed("consumer"));
+    assertEquals(1, counters.consumed("other"));
+    assertEquals(0, counters.consumed("unknown"));
+
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    counters.reconcile(today, Map.of("consumer", 1L, "other", 5L));
+    assertEquals(2, counters.consumed("consumer"));
+    assertEquals(5, counters.consumed("other"));
+
+    counters.reconcile(today.minusDays(1), Map.of("consumer", 50L));
+    assertEquals(2, counters.consumed("consumer"));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,82 @@
+package iudx.resource.server.authenticator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class RevokedTokenIndexTest {
+
+  private static long epochSecond(String timestamp) {
+    return LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toEpochSecond();
+  }
+
+  @Test
+  @DisplayName("Test tokens issued before the revocation are revoked")
+  public void testIsRevoked(VertxTestContext vertxTestContext) {
+    RevokedTokenIndex index = new RevokedTokenIndex();
+    index.put("client", RevokedTokenIndex.toEpochSecond("2023-02-08T12:37:26.796"));
+    index.put("other", RevokedTokenIndex.toEpochSecond("2023-02-08T12:37:26"));
+
+    long revokedAt = epochSecond("2023-02-08T12:37:26");
+    assertTrue(index.isRevoked("client", revokedAt));
+    assertFalse(index.isRevoked("client", revokedAt + 1));
+    assertTrue(index.isRevoked("other", revokedAt - 1));
+    assertFalse(index.isRevoked("other", revokedAt));
+    assertFalse(index.isRevoked("unknown", 0));
+    assertFalse(index.isRevoked(null, 0));
+
+    index.remove("client");
+    assertFalse(index.isRevoked("client", revokedAt));
+    JsonObject metrics = index.metrics();
+    assertEquals(1, metrics.getInteger("size"));
+    assertEquals(7L, metrics.getLong("lookups"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test reload keeps the clients changed meanwhile")
+  public void testPublish(VertxTestContext vertxTestContext) {
+    RevokedTokenIndex index = new RevokedTokenIndex();
+    index.put("stale", 10L);
+
+    index.publish(Map.of("b", 20L, "a", 30L, "c", 40L));
+    assertFalse(index.isRevoked("stale", 0));
+    assertTrue(index.isRevoked("a", 29));
+    assertTrue(index.isRevoked("b", 19));
+    assertTrue(index.isRevoked("c", 39));
+    assertFalse(index.isRevoked("c", 40));
+    assertEquals(3, index.size());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test size and lookups reported to the meter registry")
+  public void testMeters(VertxTestContext vertxTestContext) {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    RevokedTokenIndex index = new RevokedTokenIndex(registry);
+    index.put("client", 10L);
+    index.put("other", 20L);
+    index.isRevoked("client", 0);
+    index.isRevoked("unknown", 0);
+
+    assertEquals(2.0, registry.get("rs.auth.revoked.entries").gauge().value());
+    FunctionTimer lookups = registry.get("rs.auth.revoked.lookup").functionTimer();
+    assertEquals(2.0, lookups.count());
+    assertTrue(lookups.totalTime(TimeUnit.NANOSECONDS) >= 0);
+    vertxTestContext.completeNow();
+  }
+}
@@ -18,6 +18,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -58,7 +59,7 @@ public class CacheServiceImplTest {
   public static void setup(Vertx vertx, VertxTestContext testContext) {
     pgService = mock(PostgresService.class);
     catalogueCache=mock(CatalogueCacheImpl.class);
-    cacheService = new CacheServiceImpl(vertx, pgService,catalogueCache);
+    cacheService = new CacheServiceImpl(vertx, pgService,catalogueCache,new SimpleMeterRegistry());
     testContext.completeNow();
   }
 
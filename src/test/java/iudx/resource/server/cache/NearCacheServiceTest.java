@@ -0,0 +1,100 @@
+package iudx.resource.server.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.resource.server.cache.cachelmpl.CacheInvalidation;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.common.BroadcastSequence;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith({VertxExtension.class, MockitoExtension.class})
+public class NearCacheServiceTest {
+  @Mock CacheService cacheService;
+
+  private static JsonObject request(String key) {
+    return new JsonObject().put("type", CacheType.REVOKED_CLIENT).put("key", key);
+  }
+
+  @Test
+  @DisplayName("Test lookups answered locally until invalidated")
+  public void testInvalidate(Vertx vertx, VertxTestContext vertxTestContext) {
+    NearCacheService nearCache = new NearCacheService(vertx, cacheService);
+    when(cacheService.get(request("client")))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("value", "1")))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("value", "2")));
+    when(cacheService.get(request("unknown")))
+        .thenReturn(Future.failedFuture(new ServiceException(404, "No entry for given key")));
+
+    nearCache.get(request("client"));
+    nearCache.get(request("unknown"));
+    assertEquals("1", nearCache.get(request("client")).result().getString("value"));
+    assertTrue(nearCache.get(request("unknown")).failed());
+    verify(cacheService, times(2)).get(any());
+
+    CacheInvalidation.publish(vertx, CacheType.REVOKED_CLIENT, "client");
+    vertx.setTimer(
+        100,
+        id ->
+            vertxTestContext.verify(
+                () -> {
+                  assertEquals("2", nearCache.get(request("client")).result().getString("value"));
+                  assertTrue(nearCache.get(request("unknown")).failed());
+                  verify(cacheService, times(3)).get(any());
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test failures other than not found are not kept")
+  public void testFailureNotKept(Vertx vertx, VertxTestContext vertxTestContext) {
+    NearCacheService nearCache = new NearCacheService(vertx, cacheService);
+    when(cacheService.get(request("client")))
+        .thenReturn(Future.failedFuture(new ServiceException(-1, "No entry for given key")))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("value", "1")));
+
+    assertTrue(nearCache.get(request("client")).failed());
+    assertEquals("1", nearCache.get(request("client")).result().getString("value"));
+    verify(cacheService, times(2)).get(any());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test whole cache forgotten when an invalidation was missed")
+  public void testMissedInvalidation(Vertx vertx, VertxTestContext vertxTestContext) {
+    NearCacheService nearCache = new NearCacheService(vertx, cacheService);
+    when(cacheService.get(request("client")))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("value", "1")))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("value", "2")));
+
+    nearCache.get(request("client"));
+    nearCache.invalidate(invalidation("other", 1));
+    assertEquals("1", nearCache.get(request("client")).result().getString("value"));
+    nearCache.invalidate(invalidation("other", 3));
+    assertEquals("2", nearCache.get(request("client")).result().getString("value"));
+    verify(cacheService, times(2)).get(any());
+    vertxTestContext.completeNow();
+  }
+
+  private static JsonObject invalidation(String key, long sequence) {
+    return new JsonObject()
+        .put(CacheInvalidation.TYPE, CacheType.REVOKED_CLIENT.toString())
+        .put(CacheInvalidation.KEY, key)
+        .put(BroadcastSequence.PUBLISHER, "publisher")
+        .put(BroadcastSequence.SEQUENCE, sequence);
+  }
+}
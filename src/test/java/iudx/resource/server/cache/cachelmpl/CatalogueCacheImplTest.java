@@ -1,8 +1,12 @@
 package iudx.resource.server.cache.cachelmpl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -11,6 +15,9 @@ import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.cache.CacheService;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,7 +27,11 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 @ExtendWith(VertxExtension.class)
@@ -36,7 +47,10 @@ public class CatalogueCacheImplTest {
     HttpResponse<Buffer> httpResponse;
     @Mock
     AsyncResult<HttpResponse<Buffer>> asyncResult;
+    @Mock
+    EventBus eventBus;
     CatalogueCacheImpl CatalogueCacheImpl;
+    MeterRegistry registry;
 
     @BeforeEach
     public void setUp(VertxTestContext vertxTestContext) {
@@ -51,6 +65,18 @@ public class CatalogueCacheImplTest {
         jsonObject1.put("id", "abcd/abcd/abcd/abcd");
         jsonObject1.put("iudxResourceAPIs", jsonArray1);
         jsonArray.add(jsonObject1);
+        jsonArray.add(new JsonObject()
+                .put("id", "group-id")
+                .put("type", new JsonArray().add("iudx:ResourceGroup"))
+                .put("provider", "provider-id")
+                .put("accessPolicy", "OPEN")
+                .put("iudxResourceAPIs", new JsonArray().add("TEMPORAL")));
+        jsonArray.add(new JsonObject()
+                .put("id", "resource-id")
+                .put("type", new JsonArray().add("iudx:Resource").add("iudx:AQM"))
+                .put("provider", "provider-id")
+                .put("resourceGroup", "group-id")
+                .put("iudxResourceAPIs", new JsonArray().add("ATTR")));
         jsonObject.put("results", jsonArray);
 
         CatalogueCacheImpl.catWebClient = mock(WebClient.class);
@@ -60,6 +86,7 @@ public class CatalogueCacheImplTest {
         when(asyncResult.succeeded()).thenReturn(true);
         when(asyncResult.result()).thenReturn(httpResponse);
         when(httpResponse.bodyAsJsonObject()).thenReturn(jsonObject);
+        when(vertxObj.eventBus()).thenReturn(eventBus);
         doAnswer(new Answer<AsyncResult<HttpResponse<Buffer>>>() {
             @Override
             public AsyncResult<HttpResponse<Buffer>> answer(InvocationOnMock arg0) throws Throwable {
@@ -69,7 +96,22 @@ public class CatalogueCacheImplTest {
             }
         }).when(httpRequest).send(any());
 
-        CatalogueCacheImpl = new CatalogueCacheImpl(vertxObj, config);
+        registry = new SimpleMeterRegistry();
+        CatalogueCacheImpl = new CatalogueCacheImpl(vertxObj, config, registry);
+        vertxTestContext.completeNow();
+    }
+
+    @Test
+    @DisplayName("Testing lookups and refreshes are measured per cache")
+    void testMetrics(VertxTestContext vertxTestContext) {
+        CatalogueCacheImpl.getItem("resource-id");
+        CatalogueCacheImpl.getItem("resource-id");
+        assertEquals(2.0, registry.get("rs.cache.requests")
+                .tags("cache", "CATALOGUE_CACHE", "result", "hit").counter().count());
+        assertEquals(3.0, registry.get("rs.cache.entries").gauge().value());
+        assertEquals(1L, registry.get("rs.cache.refresh")
+                .tags("result", "success").timer().count());
+        assertTrue(registry.get("rs.cache.refresh.age").gauge().value() >= 0);
         vertxTestContext.completeNow();
     }
 
@@ -87,5 +129,83 @@ public class CatalogueCacheImplTest {
         vertxTestContext.completeNow();
     }
 
+    @Test
+    @DisplayName("Testing item resolved with its group")
+    void testGetItem(VertxTestContext vertxTestContext) {
+        CatalogueCacheImpl.getItem("resource-id").onComplete(vertxTestContext.succeeding(item -> {
+            assertEquals("Resource", item.getKind());
+            assertEquals("group-id", item.getGroupId());
+            assertEquals("provider-id", item.getProvider());
+            assertEquals("OPEN", item.getAccessPolicy());
+            assertEquals(List.of("TEMPORAL", "ATTR"), item.getApplicableFilters());
+            assertEquals(item.getItem(), new CatalogueItem(item.toJson()).getItem());
+            vertxTestContext.completeNow();
+        }));
+    }
+
+    @Test
+    @DisplayName("Testing misses for an unknown id share one fetch and are remembered")
+    void testUnknownId(VertxTestContext vertxTestContext) {
+        List<Handler<AsyncResult<HttpResponse<Buffer>>>> pending = new ArrayList<>();
+        doAnswer(arg0 -> {
+            pending.add(arg0.getArgument(0));
+            return null;
+        }).when(httpRequest).send(any());
+        when(httpResponse.statusCode()).thenReturn(404);
+
+        Future<CatalogueItem> first = CatalogueCacheImpl.getItem("unknown-id");
+        Future<CatalogueItem> second = CatalogueCacheImpl.getItem("unknown-id");
+        assertSame(first, second);
+        assertEquals(1, pending.size());
+
+        pending.get(0).handle(asyncResult);
+        assertTrue(first.failed());
+        assertTrue(CacheService.isNotFound(first.cause()));
+        assertTrue(CacheService.isNotFound(CatalogueCacheImpl.getItem("unknown-id").cause()));
+        assertEquals(1, pending.size());
+        vertxTestContext.completeNow();
+    }
+
+    @Test
+    @DisplayName("Testing item not cached when its group can not be fetched")
+    void testGroupFetchFailed(VertxTestContext vertxTestContext) {
+        List<Handler<AsyncResult<HttpResponse<Buffer>>>> pending = new ArrayList<>();
+        doAnswer(arg0 -> {
+            pending.add(arg0.getArgument(0));
+            return null;
+        }).when(httpRequest).send(any());
+        JsonObject item = new JsonObject()
+                .put("id", "new-resource-id")
+                .put("type", new JsonArray().add("iudx:Resource"))
+                .put("resourceGroup", "new-group-id");
+        JsonObject group = new JsonObject()
+                .put("id", "new-group-id")
+                .put("type", new JsonArray().add("iudx:ResourceGroup"))
+                .put("accessPolicy", "SECURE")
+                .put("iudxResourceAPIs", new JsonArray().add("TEMPORAL"));
+        when(httpResponse.statusCode()).thenReturn(200);
+
+        Future<CatalogueItem> failed = CatalogueCacheImpl.getItem("new-resource-id");
+        when(httpResponse.bodyAsJsonObject())
+                .thenReturn(new JsonObject().put("results", new JsonArray().add(item)));
+        pending.get(0).handle(asyncResult);
+        when(httpResponse.statusCode()).thenReturn(503);
+        pending.get(1).handle(asyncResult);
+        assertTrue(failed.failed());
+        assertFalse(CacheService.isNotFound(failed.cause()));
+
+        Future<CatalogueItem> loaded = CatalogueCacheImpl.getItem("new-resource-id");
+        assertEquals(3, pending.size());
+        when(httpResponse.statusCode()).thenReturn(200);
+        pending.get(2).handle(asyncResult);
+        when(httpResponse.bodyAsJsonObject())
+                .thenReturn(new JsonObject().put("results", new JsonArray().add(group)));
+        pending.get(3).handle(asyncResult);
+        assertTrue(loaded.succeeded());
+        assertEquals("SECURE", loaded.result().getAccessPolicy());
+        assertEquals(List.of("TEMPORAL"), loaded.result().getApplicableFilters());
+        vertxTestContext.completeNow();
+    }
+
 
 }
@@ -0,0 +1,40 @@
+package iudx.resource.server.cache.cachelmpl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class SnapshotCacheTest {
+
+  @Test
+  @DisplayName("Test refresh replaces entries at once and keeps entries put meanwhile")
+  public void testPublish(VertxTestContext vertxTestContext) {
+    SnapshotCache<String> cache = new SnapshotCache<>();
+    cache.put("old", "1");
+
+    cache.beginRefresh();
+    cache.put("revoked", "2");
+    cache.invalidate("deleted");
+    assertEquals("1", cache.getIfPresent("old"));
+
+    cache.publish(Map.of("new", "3", "deleted", "5"));
+    assertNull(cache.getIfPresent("deleted"));
+    assertNull(cache.getIfPresent("old"));
+    assertEquals("2", cache.getIfPresent("revoked"));
+    assertEquals("3", cache.getIfPresent("new"));
+
+    cache.beginRefresh();
+    cache.endRefresh();
+    cache.put("later", "4");
+    cache.publish(Map.of());
+    assertNull(cache.getIfPresent("later"));
+    vertxTestContext.completeNow();
+  }
+}
@@ -1,8 +1,10 @@
 package iudx.resource.server.cache.cachelmpl;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
@@ -42,6 +44,8 @@ public class UniqueAttributeCacheTest {
     JsonArray jsonArray;
     @Mock
     Object e;
+    @Mock
+    EventBus eventBus;
 
 
     @Test
@@ -51,10 +55,11 @@ public class UniqueAttributeCacheTest {
         JsonObject jsonObject=new JsonObject();
         jsonObject.put("resource_id","dummy id");
         jsonObject.put("unique_attribute","dummy string");
-        uniqueAttributeCache=new UniqueAttributeCache(vertx,postgresService);
+        uniqueAttributeCache=new UniqueAttributeCache(vertx,postgresService,new SimpleMeterRegistry());
         when(asyncResult.succeeded()).thenReturn(true);
         when(asyncResult.result()).thenReturn(json);
         when(json.getJsonArray(any())).thenReturn(jsonArray);
+        when(vertx.eventBus()).thenReturn(eventBus);
 
         doAnswer(new Answer<AsyncResult<JsonObject>>() {
             @Override
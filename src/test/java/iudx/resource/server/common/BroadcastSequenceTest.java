@@ -0,0 +1,60 @@
+package iudx.resource.server.common;
+
+import static iudx.resource.server.common.Constants.TOKEN_INVALID_EX;
+import static iudx.resource.server.common.Constants.UNIQUE_ATTR_EX;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class BroadcastSequenceTest {
+
+  private static JsonObject message(String publisher, long sequence) {
+    return new JsonObject()
+        .put(BroadcastSequence.PUBLISHER, publisher)
+        .put(BroadcastSequence.SEQUENCE, sequence);
+  }
+
+  @Test
+  @DisplayName("Test missed and reordered messages detected per publisher")
+  public void testInSequence(VertxTestContext vertxTestContext) {
+    BroadcastSequence sequence = new BroadcastSequence();
+
+    assertTrue(sequence.inSequence(message("a", 7)));
+    assertTrue(sequence.inSequence(message("a", 8)));
+    assertTrue(sequence.inSequence(message("b", 1)));
+    assertFalse(sequence.inSequence(message("a", 10)));
+    assertFalse(sequence.inSequence(message("a", 9)));
+    assertTrue(sequence.inSequence(message("a", 11)));
+    assertTrue(sequence.inSequence(new JsonObject().put("id", "no sequence")));
+
+    JsonObject first = BroadcastSequence.stamp("exchange", new JsonObject());
+    JsonObject second = BroadcastSequence.stamp("exchange", new JsonObject());
+    assertTrue(sequence.inSequence(first));
+    assertTrue(sequence.inSequence(second));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test messages of two exchanges published mixed stay in sequence on each")
+  public void testExchangesMixed(VertxTestContext vertxTestContext) {
+    BroadcastSequence revocations = new BroadcastSequence();
+    BroadcastSequence uniqueAttributes = new BroadcastSequence();
+
+    for (int i = 0; i < 3; i++) {
+      JsonObject revoked = BroadcastSequence.stamp(TOKEN_INVALID_EX, new JsonObject());
+      JsonObject attribute = BroadcastSequence.stamp(UNIQUE_ATTR_EX, new JsonObject());
+      JsonObject other = BroadcastSequence.stamp(UNIQUE_ATTR_EX, new JsonObject());
+      assertTrue(revocations.inSequence(revoked));
+      assertTrue(uniqueAttributes.inSequence(attribute));
+      assertTrue(uniqueAttributes.inSequence(other));
+    }
+    vertxTestContext.completeNow();
+  }
+}
@@ -18,6 +18,7 @@ import java.util.Set;
 
 import io.vertx.core.Future;
 import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.cache.cachelmpl.CatalogueItem;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.*;
@@ -32,8 +33,10 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import io.vertx.serviceproxy.ServiceException;
 import iudx.resource.server.configuration.Configuration;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.SearchCursor;
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
 public class DatabaseServiceTest {
   private static final Logger LOGGER = LogManager.getLogger(DatabaseServiceTest.class);
@@ -129,11 +132,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -334,11 +336,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -448,11 +449,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -499,11 +499,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -590,11 +589,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -678,11 +676,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -721,7 +718,7 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
@@ -771,11 +768,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -819,11 +815,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -868,11 +863,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -913,7 +907,7 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
@@ -975,7 +969,7 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
@@ -1022,11 +1016,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -1212,7 +1205,7 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
@@ -1268,11 +1261,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
@@ -1387,11 +1379,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
@@ -1432,11 +1423,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
@@ -1477,11 +1467,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
 
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
@@ -1523,11 +1512,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
 
@@ -1570,11 +1558,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -1633,11 +1620,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -1648,6 +1634,172 @@ public class DatabaseServiceTest {
     });
   }
 
+  @Test
+  @DisplayName("Testing Attribute Search without total hits in the response")
+  void searchAttributeWithoutTotalHits(VertxTestContext testContext) {
+    JsonObject request = new JsonObject()
+            .put("id", new JsonArray()
+                    .add(
+                            "b58da193-23d9-43eb-b98a-a103d4b6103c"))
+            .put("searchType", "attributeSearch_")
+            .put("attr-query",
+                    new JsonArray()
+                            .add(new JsonObject()
+                                    .put("attribute", "referenceLevel")
+                                    .put("operator", "!=")
+                                    .put("value", "5")))
+            .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"));
+
+    JsonObject jsonObject = new JsonObject()
+            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+            .put("type", new JsonArray().add("iudx:Resource").add("iudx:TransitManagement"))
+            .put("name","dummy_name")
+            .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
+
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
+
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray());
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+
+    databaseServiceImpl
+        .search(request)
+        .onFailure(
+            handler -> {
+              assertTrue(handler.getMessage().contains("Exception occured executing query"));
+              testContext.completeNow();
+            })
+        .onSuccess(
+            handler -> {
+              testContext.failNow("search succeeded without total hits");
+            });
+  }
+  @Test
+  @DisplayName("Testing cursor search without a point in time when one page holds every hit")
+  void searchCursorSinglePage(VertxTestContext testContext) {
+    JsonObject request = cursorRequest();
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(cursorItem(), null)));
+    JsonObject firstPage = new JsonObject()
+        .put("results", new JsonArray().add(new JsonObject()).add(new JsonObject()))
+        .put(TOTAL_HITS, 2L);
+    when(elasticClient.asyncSearchFirstPage(anyString(), any(), anyInt(), any(), any()))
+        .thenReturn(Future.succeededFuture(firstPage));
+
+    databaseServiceImpl
+        .search(request)
+        .onSuccess(
+            handler -> {
+              assertEquals(2L, handler.getLong(TOTAL_HITS));
+              assertFalse(handler.containsKey(NEXT_CURSOR));
+              verify(elasticClient, never()).asyncOpenPointInTime(anyString());
+              testContext.completeNow();
+            })
+        .onFailure(handler -> testContext.failNow(handler.getMessage()));
+  }
+
+  @Test
+  @DisplayName("Testing cursor search opens a point in time when there are more pages")
+  void searchCursorMorePages(VertxTestContext testContext) {
+    JsonObject request = cursorRequest();
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(cursorItem(), null)));
+    JsonArray page = new JsonArray().add(new JsonObject());
+    when(elasticClient.asyncSearchFirstPage(anyString(), any(), anyInt(), any(), any()))
+        .thenReturn(Future.succeededFuture(new JsonObject()
+            .put("results", page)
+            .put(TOTAL_HITS, 3L)
+            .put(LAST_SORT, new JsonArray().add(1L).add(-1L))));
+    when(elasticClient.asyncOpenPointInTime(anyString()))
+        .thenReturn(Future.succeededFuture("pit-1"));
+
+    databaseServiceImpl
+        .search(request)
+        .onSuccess(
+            handler -> {
+              assertEquals(3L, handler.getLong(TOTAL_HITS));
+              assertEquals(1, handler.getJsonArray("results").size());
+              SearchCursor next = SearchCursor.decode(handler.getString(NEXT_CURSOR));
+              assertEquals("pit-1", next.getPitId());
+              assertEquals(-1L, next.getSearchAfter().get(1).longValue());
+              verify(elasticClient, never())
+                  .asyncSearchAfter(anyString(), any(), anyInt(), any(), any(), any(), anyBoolean());
+              verify(elasticClient, never()).closePointInTime(anyString());
+              testContext.completeNow();
+            })
+        .onFailure(handler -> testContext.failNow(handler.getMessage()));
+  }
+
+  @Test
+  @DisplayName("Testing expired cursor closes its point in time")
+  void searchCursorExpired(VertxTestContext testContext) {
+    JsonObject request = cursorRequest().put(PARAM_CURSOR, nextCursor());
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(cursorItem(), null)));
+    when(elasticClient.asyncSearchAfter(
+            anyString(), any(), anyInt(), any(), any(), any(), anyBoolean()))
+        .thenReturn(Future.failedFuture(
+            new JsonObject().put("type", 410).put("title", "urn:dx:rs:cursorExpired").toString()));
+
+    databaseServiceImpl
+        .search(request)
+        .onSuccess(handler -> testContext.failNow("Failed"))
+        .onFailure(
+            handler -> {
+              assertEquals(410, new JsonObject(handler.getMessage()).getInteger("type"));
+              verify(elasticClient).closePointInTime("pit-1");
+              testContext.completeNow();
+            });
+  }
+
+  @Test
+  @DisplayName("Testing cursor kept open when its page fails for a retry")
+  void searchCursorRetry(VertxTestContext testContext) {
+    JsonObject request = cursorRequest().put(PARAM_CURSOR, nextCursor());
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(cursorItem(), null)));
+    when(elasticClient.asyncSearchAfter(
+            anyString(), any(), anyInt(), any(), any(), any(), anyBoolean()))
+        .thenReturn(Future.failedFuture(
+            new JsonObject().put("type", 503).put("title", "urn:dx:rs:DatabaseError").toString()));
+
+    databaseServiceImpl
+        .search(request)
+        .onSuccess(handler -> testContext.failNow("Failed"))
+        .onFailure(
+            handler -> {
+              verify(elasticClient, never()).closePointInTime(anyString());
+              testContext.completeNow();
+            });
+  }
+
+  private String nextCursor() {
+    return new SearchCursor("pit-1", new JsonArray().add(1L).add(2L)).encode();
+  }
+
+  private JsonObject cursorRequest() {
+    return new JsonObject()
+        .put("id", new JsonArray().add("b58da193-23d9-43eb-b98a-a103d4b6103c"))
+        .put("searchType", "attributeSearch_")
+        .put("attr-query",
+            new JsonArray()
+                .add(new JsonObject()
+                    .put("attribute", "referenceLevel")
+                    .put("operator", "!=")
+                    .put("value", "5")))
+        .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"))
+        .put(PARAM_SIZE, "2")
+        .put(PARAM_CURSOR, "*");
+  }
+
+  private JsonObject cursorItem() {
+    return new JsonObject()
+        .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+        .put("type", new JsonArray().add("iudx:Resource").add("iudx:TransitManagement"))
+        .put("name", "dummy_name")
+        .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
+  }
+
   @Test
   @DisplayName("Testing Attribute Search (property is not equal)")
   void searchAttributeNe(VertxTestContext testContext) {
@@ -1678,11 +1830,10 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1))).put("totalHits",1);
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -2092,12 +2243,13 @@ public class DatabaseServiceTest {
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-   when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",60000)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:rs:payloadTooLarge").put("details","Response size exceeds limit use filters to get value within limit or use async api");
-    dbService
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray()).put("totalHits",60000);
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:rs:payloadTooLarge").put("details","Response size exceeds limit use filters to get value within limit or use async api");
+    databaseServiceImpl
         .search(request)
         .onFailure(
             handler -> {
@@ -2136,10 +2288,10 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",0)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
     when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
 
     dbService.search(request).onSuccess(handler -> {
@@ -2175,7 +2327,8 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
 
     dbService
         .search(request)
@@ -2217,7 +2370,8 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
 
     dbService
             .count(request)
@@ -2258,7 +2412,8 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.succeededFuture(CatalogueItem.of(jsonObject, null)));
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",0)));
     when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.failedFuture("esJson"));
@@ -2292,7 +2447,7 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
     dbSpy.search(request).onSuccess(handler -> {
       testContext.failNow("Failed");
@@ -2326,7 +2481,7 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
     dbSpy
         .search(request)
@@ -2366,7 +2521,7 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
             .put("name","dummy_name")
             .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
 
-    doAnswer(Answer -> Future.succeededFuture(jsonObject))
+    doAnswer(Answer -> Future.succeededFuture(CatalogueItem.of(jsonObject, null)))
             .when(dbSpy).checkQuery(any());
     dbSpy
         .search(request)
@@ -2383,6 +2538,26 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
               testContext.completeNow();
             });
   }
-}
 
+  @Test
+  @DisplayName("Testing search fails when the catalogue item is not found")
+  void searchUnknownCatalogueItem(VertxTestContext testContext) {
+    JsonObject request = new JsonObject()
+            .put("id", new JsonArray().add(idOpen))
+            .put("searchType", "temporalSearch_")
+            .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"));
 
+    when(cacheService.getCatalogueItem(anyString()))
+        .thenReturn(Future.failedFuture(new ServiceException(404, "key not found")));
+    databaseServiceImpl
+        .search(request)
+        .onSuccess(handler -> testContext.failNow("Failed"))
+        .onFailure(
+            handler -> {
+              JsonObject response = new JsonObject(handler.getMessage());
+              assertEquals(404, response.getInteger("status"));
+              assertEquals("urn:dx:rs:resourceNotFound", response.getString("type"));
+              testContext.completeNow();
+            });
+  }
+}
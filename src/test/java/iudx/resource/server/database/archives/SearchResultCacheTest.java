@@ -0,0 +1,93 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class SearchResultCacheTest {
+
+  private static final String INDEX = "iudx__group";
+
+  private SearchResultCache cache;
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void setUp() {
+    registry = new SimpleMeterRegistry();
+    cache = new SearchResultCache(new JsonObject(), registry);
+  }
+
+  private JsonObject closedWindowRequest() {
+    return new JsonObject()
+        .put("id", new JsonArray().add("id1"))
+        .put("searchType", "temporalSearch_")
+        .put("timerel", "during")
+        .put("time", "2020-01-01T00:00:00+05:30")
+        .put("endtime", "2020-01-02T00:00:00+05:30")
+        .put("size", 10)
+        .put("from", 0);
+  }
+
+  private JsonObject response() {
+    return new JsonObject()
+        .put("type", "urn:dx:rs:success")
+        .put("results", new JsonArray().add(new JsonObject().put("id", "id1")))
+        .put("size", 10)
+        .put("from", 0)
+        .put("totalHits", 1);
+  }
+
+  @Test
+  @DisplayName("Test cache hit for the same request with keys in a different order")
+  public void testHitIgnoresKeyOrder(VertxTestContext vertxTestContext) {
+    cache.put(INDEX, closedWindowRequest(), response());
+
+    JsonObject reordered = new JsonObject();
+    JsonObject request = closedWindowRequest().put("instanceID", "rs.iudx.io");
+    request.fieldNames().stream()
+        .sorted((a, b) -> b.compareTo(a))
+        .forEach(key -> reordered.put(key, request.getValue(key)));
+
+    assertEquals(response(), cache.get(INDEX, reordered));
+    assertNull(cache.get(INDEX, closedWindowRequest().put("from", 10)));
+    assertNull(cache.get("iudx__other", closedWindowRequest()));
+    assertEquals(1.0, registry.counter("rs.search.cache.requests", "result", "hit").count());
+    assertEquals(2.0, registry.counter("rs.search.cache.requests", "result", "miss").count());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test invalidating cached results of an index")
+  public void testInvalidate(VertxTestContext vertxTestContext) {
+    cache.put(INDEX, closedWindowRequest(), response());
+    cache.put("iudx__other", closedWindowRequest(), response());
+
+    cache.invalidate(INDEX);
+
+    assertNull(cache.get(INDEX, closedWindowRequest()));
+    assertNotNull(cache.get("iudx__other", closedWindowRequest()));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test open and closed time windows")
+  public void testIsClosedWindow(VertxTestContext vertxTestContext) {
+    assertTrue(cache.isClosedWindow(closedWindowRequest()));
+    assertFalse(cache.isClosedWindow(closedWindowRequest().put("timerel", "after")));
+    assertFalse(
+        cache.isClosedWindow(
+            closedWindowRequest().put("endtime", ZonedDateTime.now().toString())));
+    assertFalse(cache.isClosedWindow(new JsonObject().put("searchType", "geoSearch_")));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,119 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class AsyncJobSchedulerTest {
+  private final List<String> started = new ArrayList<>();
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    registry = new SimpleMeterRegistry();
+    vertxTestContext.completeNow();
+  }
+
+  private void submit(AsyncJobScheduler scheduler, String user, String searchId) {
+    scheduler.submit(user, searchId, () -> started.add(searchId));
+  }
+
+  @Test
+  @DisplayName("Test running jobs limited and freed slots shared between users")
+  public void testRoundRobin(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncJobScheduler scheduler =
+        new AsyncJobScheduler(vertx, 2, TimeUnit.HOURS.toMillis(1), registry);
+
+    submit(scheduler, "a", "a1");
+    submit(scheduler, "a", "a2");
+    submit(scheduler, "a", "a3");
+    submit(scheduler, "a", "a4");
+    submit(scheduler, "b", "b1");
+    submit(scheduler, "c", "c1");
+
+    assertEquals(List.of("a1", "a2"), started);
+    assertEquals(4, scheduler.getQueuedJobs());
+    assertEquals(4.0, registry.get("rs.async.jobs.queued").gauge().value());
+
+    scheduler.complete("a1");
+    scheduler.complete("a2");
+    scheduler.complete("b1");
+    scheduler.complete("unknown");
+
+    assertEquals(List.of("a1", "a2", "a3", "b1", "c1"), started);
+    assertEquals(2, scheduler.getRunningJobs());
+    assertEquals(1, scheduler.getQueuedJobs());
+    assertEquals(5, registry.get("rs.async.jobs.wait").timer().count());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test slot of a job without completion freed after the timeout")
+  public void testTimeout(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncJobScheduler scheduler = new AsyncJobScheduler(vertx, 1, 50, registry);
+
+    submit(scheduler, "a", "a1");
+    submit(scheduler, "b", "b1");
+    assertEquals(List.of("a1"), started);
+
+    vertx.setTimer(
+        500,
+        id ->
+            vertxTestContext.verify(
+                () -> {
+                  assertEquals(List.of("a1", "b1"), started);
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test job of a search id already waiting or running rejected")
+  public void testDuplicate(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncJobScheduler scheduler =
+        new AsyncJobScheduler(vertx, 1, TimeUnit.HOURS.toMillis(1), registry);
+
+    assertTrue(scheduler.submit("a", "a1", () -> started.add("a1")));
+    assertTrue(scheduler.submit("b", "b1", () -> started.add("b1")));
+    assertFalse(scheduler.submit("a", "a1", () -> started.add("a1")));
+    assertFalse(scheduler.submit("b", "b1", () -> started.add("b1")));
+    assertEquals(1, scheduler.getQueuedJobs());
+
+    scheduler.complete("a1");
+    assertEquals(List.of("a1", "b1"), started);
+    assertTrue(scheduler.submit("a", "a1", () -> started.add("a1")));
+    scheduler.complete("b1");
+    assertEquals(List.of("a1", "b1", "a1"), started);
+    assertEquals(1, scheduler.getRunningJobs());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test job failing to start frees its slot")
+  public void testFailedStart(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncJobScheduler scheduler =
+        new AsyncJobScheduler(vertx, 1, TimeUnit.HOURS.toMillis(1), registry);
+
+    scheduler.submit(
+        "a",
+        "a1",
+        () -> {
+          throw new IllegalStateException("broker closed");
+        });
+    submit(scheduler, "a", "a2");
+
+    assertEquals(List.of("a2"), started);
+    assertEquals(1, scheduler.getRunningJobs());
+    vertxTestContext.completeNow();
+  }
+}
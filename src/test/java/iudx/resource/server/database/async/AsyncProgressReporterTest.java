@@ -0,0 +1,81 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith({VertxExtension.class, MockitoExtension.class})
+public class AsyncProgressReporterTest {
+  @Mock PostgresService pgService;
+
+  @Test
+  @DisplayName("Test progress of all running exports written in one statement per flush")
+  public void testFlush(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncProgressReporter reporter =
+        new AsyncProgressReporter(vertx, pgService, TimeUnit.HOURS.toMillis(1));
+
+    reporter.report("request-1", 0.2);
+    reporter.report("request-1", 0.5);
+    reporter.report("request-1", 0.4);
+    reporter.report("request-2", 0.1);
+    reporter.checkpoint("request-2", new JsonObject().put("file", "it's.csv"));
+    reporter.report("request-3", 0.3);
+    reporter.finish("request-3");
+    assertEquals(2, reporter.getRunning());
+
+    reporter.flush();
+
+    ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+    verify(pgService, times(1)).executeQuery(query.capture(), any());
+    assertTrue(query.getValue().contains("('request-1',50.0,NULL)"));
+    assertTrue(query.getValue().contains("('request-2',10.0,'{\"file\":\"it''s.csv\"}')"));
+    assertFalse(query.getValue().contains("request-3"));
+
+    // running exports are written again, checkpoints only once
+    reporter.flush();
+    verify(pgService, times(2)).executeQuery(query.capture(), any());
+    assertTrue(query.getValue().contains("('request-2',10.0,NULL)"));
+
+    reporter.finish("request-1");
+    reporter.finish("request-2");
+    reporter.flush();
+    verify(pgService, times(2)).executeQuery(anyString(), any());
+    reporter.close();
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test progress flushed periodically")
+  public void testPeriodicFlush(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncProgressReporter reporter = new AsyncProgressReporter(vertx, pgService, 50);
+    verify(pgService, never()).executeQuery(anyString(), any());
+
+    reporter.report("request-1", 0.7);
+    vertx.setTimer(
+        500,
+        id ->
+            vertxTestContext.verify(
+                () -> {
+                  verify(pgService, atLeastOnce()).executeQuery(anyString(), any());
+                  reporter.close();
+                  vertxTestContext.completeNow();
+                }));
+  }
+}
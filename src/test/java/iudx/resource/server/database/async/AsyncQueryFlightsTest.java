@@ -0,0 +1,43 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class AsyncQueryFlightsTest {
+
+  private static AsyncQueryFlights.Passenger passenger(String searchId, String sub) {
+    return new AsyncQueryFlights.Passenger(searchId, sub, "item", "consumer", "", "");
+  }
+
+  @Test
+  @DisplayName("Test identical queries attached to the running export")
+  public void testJoinAndLand(VertxTestContext vertxTestContext) {
+    AsyncQueryFlights flights = new AsyncQueryFlights();
+
+    assertTrue(flights.join("request-1", passenger("s1", "user-a")));
+    assertFalse(flights.join("request-1", passenger("s2", "user-b")));
+    assertFalse(flights.join("request-1", passenger("s3", "user-a")));
+    // the leader resumed while its export still runs neither leads nor follows
+    assertFalse(flights.join("request-1", passenger("s1", "user-a")));
+    assertTrue(flights.join("request-2", passenger("s4", "user-a")));
+
+    List<AsyncQueryFlights.Passenger> followers = flights.land("request-1");
+    assertEquals(2, followers.size());
+    assertEquals("s2", followers.get(0).searchId);
+    assertEquals("user-b", followers.get(0).sub);
+    assertEquals("s3", followers.get(1).searchId);
+    assertFalse(flights.isFlying("request-1"));
+    assertTrue(flights.isFlying("request-2"));
+    assertTrue(flights.land("request-1").isEmpty());
+
+    assertTrue(flights.join("request-1", passenger("s5", "user-b")));
+    vertxTestContext.completeNow();
+  }
+}
@@ -19,8 +19,6 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -39,6 +37,7 @@ import iudx.resource.server.configuration.Configuration;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
 import iudx.resource.server.database.async.util.Util;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.ExportCompression;
 import iudx.resource.server.database.postgres.PostgresService;
 
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
@@ -66,7 +65,6 @@ public class AsyncServiceTest {
   private static String bucketName;
   static AsyncServiceImpl asyncService2;
   private static AsyncResult<JsonObject> asyncResult1, asyncResult2;
-  static AsyncFileScrollProgressListener listener;
   private static String tenantPrefix;
   @Mock
   static PostgresService postgresService;
@@ -130,19 +128,19 @@ public class AsyncServiceTest {
               }
             })
         .when(client)
-        .asyncScroll(any(File.class), any(), any(),any(), any(), any(), anyString(), anyString());
+        .asyncScroll(any(File.class), any(), any(),any(), any(), any(), anyString(), any(), any(), anyString());
 
     Mockito.doAnswer(
             new Answer<AsyncResult<JsonObject>>() {
               @SuppressWarnings("unchecked")
               @Override
               public AsyncResult<JsonObject> answer(InvocationOnMock arg0) throws Throwable {
-                ((Handler<AsyncResult<JsonObject>>) arg0.getArgument(2)).handle(asyncResult2);
+                ((Handler<AsyncResult<JsonObject>>) arg0.getArgument(4)).handle(asyncResult2);
                 return null;
               }
             })
         .when(fileOpsHelper)
-        .s3Upload(any(File.class), any(), any());
+        .s3Upload(any(File.class), any(), any(), any(), any());
 
     LOGGER.info("Async Test steup complete");
     testContext.completeNow();
@@ -212,7 +210,7 @@ public class AsyncServiceTest {
                     .put("resourceGroup", "dummy_resource");
 
     when(cacheSer.get(any())).thenReturn(Future.succeededFuture(providerJson));
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"consumer","","");
     testContext.completeNow();
   }
   //@Test
@@ -232,9 +230,9 @@ public class AsyncServiceTest {
     when(asyncResult1.succeeded()).thenReturn(true);
     when(asyncResult1.result()).thenReturn(jsonObject);
 
-    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),anyString())).thenReturn(Future.failedFuture(""));
+    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),any(),any(),anyString())).thenReturn(Future.failedFuture(""));
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"consumer","","");
 
     testContext.completeNow();
   }
@@ -268,9 +266,9 @@ public class AsyncServiceTest {
             .put("size", 0);
     when(asyncResult2.succeeded()).thenReturn(true);
     when(asyncResult2.result()).thenReturn(jsonObject2);
-    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),anyString())).thenReturn(Future.succeededFuture(jsonObject2));
+    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),any(),any(),anyString())).thenReturn(Future.succeededFuture(jsonObject2));
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"consumer","","");
 
     verify(asyncServiceSpy, times(1)).executePgQuery(any());
     testContext.completeNow();
@@ -289,7 +287,7 @@ public class AsyncServiceTest {
         .getRecord4RequestId(any());
     doAnswer(Answer -> Future.failedFuture("fail")).when(asyncServiceSpy).executePgQuery(any());
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"consumer","","");
     testContext.completeNow();
   }
 
@@ -307,7 +305,7 @@ public class AsyncServiceTest {
 
     when(asyncResult1.succeeded()).thenReturn(false);
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"consumer","","");
     testContext.completeNow();
   }
 
@@ -498,7 +496,7 @@ public class AsyncServiceTest {
     asyncService2 = new AsyncServiceImpl(Vertx.vertx(), client, postgresService, fileOpsHelper,
         filePath, tenantPrefix,cacheService);
     when(jsonObject.put(anyString(), anyBoolean())).thenReturn(jsonObject);
-    asyncService2.scrollQuery(file, jsonObject, "Dummy SearchID", progressListener, "csv", handler -> {
+    asyncService2.scrollQuery(file, jsonObject, "Dummy SearchID", progressListener, "csv", ExportCompression.NONE, null, handler -> {
       if (handler.succeeded()) {
         vertxTestContext.failNow(handler.cause());
       } else {
@@ -510,24 +508,6 @@ public class AsyncServiceTest {
 
 
 
-  @ParameterizedTest
-  @ValueSource(booleans = {true,false})
-  @DisplayName("Test updateProgress method : Different boolean values")
-  public void testUpdateProgressFailure(boolean value,VertxTestContext vertxTestContext) {
-    AsyncFileScrollProgressListener.executionCounter = mock(AsyncFileScrollProgressListener.ExecutionCounter.class);
-    when(asyncResult2.succeeded()).thenReturn(value);
-    lenient().when(asyncResult2.cause()).thenReturn(throwable);
-    lenient().doAnswer(new Answer<AsyncResult<JsonObject>>() {
-      @Override
-      public AsyncResult<JsonObject> answer(InvocationOnMock arg0) throws Throwable {
-        ((Handler<AsyncResult<JsonObject>>) arg0.getArgument(1)).handle(asyncResult2);
-        return null;
-      }
-    }).when(postgresService).executeQuery(anyString(), any());
-    listener = new AsyncFileScrollProgressListener("Dummy search ID", postgresService);
-    listener.updateProgress(0.55);
-    vertxTestContext.completeNow();
-  }
 //@Test
 //@DisplayName("s3Upload upload successfully")
 //public void failDownloadForNewRequestI(Vertx vertx, VertxTestContext testContext) {
@@ -583,7 +563,7 @@ public void successfulAsyncSearchForExistingRecordTest2(VertxTestContext testCon
                   .put("resourceGroup", "dummy_resource");
 
   when(cacheSer.get(any())).thenReturn(Future.succeededFuture(providerJson));
-  asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","delegate","dummy","dummy");
+  asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv",null,"delegate","dummy","dummy");
   testContext.completeNow();
 }
 }
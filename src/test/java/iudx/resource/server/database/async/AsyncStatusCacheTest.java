@@ -0,0 +1,74 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class AsyncStatusCacheTest {
+
+  @Test
+  @DisplayName("Test final status not replaced by progress")
+  public void testApply(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncStatusCache cache = new AsyncStatusCache(vertx);
+
+    cache.apply(new JsonObject().put("searchId", "s1").put("status", "IN_PROGRESS"));
+    assertNull(cache.get("s1"));
+
+    cache.put(
+        new JsonObject()
+            .put("searchId", "s1")
+            .put("userId", "user-a")
+            .put("status", "IN_PROGRESS")
+            .put("progress", 10.0));
+    cache.apply(
+        new JsonObject().put("searchId", "s1").put("status", "IN_PROGRESS").put("progress", 40.0));
+    assertEquals(40.0, cache.get("s1").getDouble("progress"));
+    assertEquals("user-a", cache.get("s1").getString("userId"));
+
+    cache.apply(
+        new JsonObject()
+            .put("searchId", "s1")
+            .put("status", "COMPLETE")
+            .put("progress", 100.0)
+            .put("file-download-url", "url"));
+    cache.apply(
+        new JsonObject().put("searchId", "s1").put("status", "IN_PROGRESS").put("progress", 50.0));
+    assertEquals("COMPLETE", cache.get("s1").getString("status"));
+    assertEquals("url", cache.get("s1").getString("file-download-url"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test progress of an export published for its searches")
+  public void testProgress(Vertx vertx, VertxTestContext vertxTestContext) {
+    AsyncStatusCache cache = new AsyncStatusCache(vertx);
+    MessageConsumer<JsonObject> consumer = cache.listen();
+
+    cache.started("request-1", "s1", "user-a");
+    cache.started("request-1", "s2", "user-b");
+    cache.progress("request-1", 30.0);
+    cache.completed("request-1", "s2", "user-b", "url");
+    cache.progress("request-1", 60.0);
+
+    vertx.setTimer(
+        200,
+        id ->
+            vertxTestContext.verify(
+                () -> {
+                  assertEquals(60.0, cache.get("s1").getDouble("progress"));
+                  assertEquals("user-a", cache.get("s1").getString("userId"));
+                  assertEquals("COMPLETE", cache.get("s2").getString("status"));
+                  assertEquals(100.0, cache.get("s2").getDouble("progress"));
+                  consumer.unregister();
+                  vertxTestContext.completeNow();
+                }));
+  }
+}
@@ -0,0 +1,112 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class IncrementalExportTest {
+  private static final long SIZE = 10L * 1024 * 1024;
+  private static final Duration LAG = Duration.ofMinutes(15);
+  private static final String SETTLED = "2024-02-01T00:00:00Z";
+
+  private static JsonObject query(String time, String endtime) {
+    return new JsonObject()
+        .put("id", new JsonArray().add("item"))
+        .put("timerel", "during")
+        .put("time", time)
+        .put("endtime", endtime)
+        .put("format", "csv");
+  }
+
+  private static JsonObject row(String objectId, long size, String time, String endtime) {
+    return row(objectId, size, time, endtime, SETTLED);
+  }
+
+  private static JsonObject row(
+      String objectId, long size, String time, String endtime, String startedAt) {
+    return new JsonObject()
+        .put("object_id", objectId)
+        .put("size", size)
+        .put(
+            "export",
+            IncrementalExport.summary(
+                query(time, endtime), new JsonArray().add("id"), ZonedDateTime.parse(startedAt)));
+  }
+
+  @Test
+  @DisplayName("Test window key ignores the time window")
+  public void testWindowKey(VertxTestContext vertxTestContext) {
+    JsonObject query = query("2024-01-01T00:00:00Z", "2024-01-05T00:00:00Z");
+    JsonObject longer = query("2024-01-01T00:00:00Z", "2024-01-09T00:00:00Z");
+
+    assertEquals(IncrementalExport.windowKey(query), IncrementalExport.windowKey(longer));
+    assertNotEquals(
+        IncrementalExport.windowKey(query),
+        IncrementalExport.windowKey(longer.copy().put("q", "speed>10")));
+    assertTrue(IncrementalExport.isIncremental(query, "csv"));
+    assertFalse(IncrementalExport.isIncremental(query, "json"));
+    assertFalse(IncrementalExport.isIncremental(query.copy().put("timerel", "after"), "csv"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test export covering the longest prefix of the window chosen")
+  public void testFindBase(VertxTestContext vertxTestContext) {
+    JsonObject query = query("2024-01-01T00:00:00Z", "2024-01-09T00:00:00Z");
+    JsonArray rows =
+        new JsonArray()
+            .add(row("short", SIZE, "2024-01-01T00:00:00Z", "2024-01-03T00:00:00Z"))
+            .add(row("long", SIZE, "2024-01-01T05:30:00+05:30", "2024-01-05T00:00:00Z"))
+            .add(row("small", 1024, "2024-01-01T00:00:00Z", "2024-01-07T00:00:00Z"))
+            .add(row("later", SIZE, "2024-01-02T00:00:00Z", "2024-01-08T00:00:00Z"))
+            .add(row("beyond", SIZE, "2024-01-01T00:00:00Z", "2024-01-10T00:00:00Z"));
+
+    JsonObject base = IncrementalExport.findBase(query, rows, LAG);
+    assertEquals("long", base.getString("object_id"));
+
+    JsonObject delta = IncrementalExport.deltaQuery(query, IncrementalExport.getSummary(base));
+    assertEquals("2024-01-05T00:00:00Z", delta.getString("time"));
+    assertEquals("2024-01-09T00:00:00Z", delta.getString("endtime"));
+    assertEquals("2024-01-01T00:00:00Z", query.getString("time"));
+
+    assertNull(IncrementalExport.findBase(query, new JsonArray().add(rows.getValue(2)), LAG));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test export started before its window settled not continued")
+  public void testFindBaseUnsettled(VertxTestContext vertxTestContext) {
+    JsonObject query = query("2024-01-01T00:00:00Z", "2024-01-09T00:00:00Z");
+    JsonObject unsettled =
+        row(
+            "unsettled",
+            SIZE,
+            "2024-01-01T00:00:00Z",
+            "2024-01-07T00:00:00Z",
+            "2024-01-07T00:10:00Z");
+    JsonObject legacy = row("legacy", SIZE, "2024-01-01T00:00:00Z", "2024-01-08T00:00:00Z");
+    legacy.getJsonObject("export").remove("startedAt");
+    JsonArray rows =
+        new JsonArray()
+            .add(row("settled", SIZE, "2024-01-01T00:00:00Z", "2024-01-05T00:00:00Z"))
+            .add(unsettled)
+            .add(legacy);
+
+    assertEquals(
+        ZonedDateTime.parse("2024-01-06T23:55:00Z"),
+        IncrementalExport.coveredUntil(unsettled.getJsonObject("export"), LAG));
+    assertEquals("settled", IncrementalExport.findBase(query, rows, LAG).getString("object_id"));
+    assertNull(
+        IncrementalExport.findBase(query, new JsonArray().add(unsettled).add(legacy), LAG));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,45 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.doubleThat;
+import static org.mockito.Mockito.verify;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith({VertxExtension.class, MockitoExtension.class})
+public class ScrollProgressAggregatorTest {
+
+  @Mock ProgressListener progressListener;
+
+  @Test
+  @DisplayName("Test progress aggregated across slices")
+  public void testAddDocuments(VertxTestContext vertxTestContext) {
+    ScrollProgressAggregator aggregator =
+        new ScrollProgressAggregator(progressListener, 40000L, 0.9);
+
+    aggregator.addDocuments(10000);
+    aggregator.addDocuments(10000);
+
+    assertEquals(20000L, aggregator.getDownloadedDocs());
+    verify(progressListener).updateProgress(doubleThat(p -> Math.abs(p - 0.225) < 1e-9));
+    verify(progressListener).updateProgress(doubleThat(p -> Math.abs(p - 0.45) < 1e-9));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test progress capped when more documents than the total arrive")
+  public void testAddDocumentsOverTotal(VertxTestContext vertxTestContext) {
+    ScrollProgressAggregator aggregator = new ScrollProgressAggregator(progressListener, 10L, 1.0);
+
+    aggregator.addDocuments(20);
+
+    verify(progressListener).updateProgress(1.0);
+    vertxTestContext.completeNow();
+  }
+}
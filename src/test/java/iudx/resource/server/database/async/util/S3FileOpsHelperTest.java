@@ -1,53 +1,247 @@
 package iudx.resource.server.database.async.util;
 
-import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import io.vertx.core.Context;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
-import com.amazonaws.regions.Regions;
-import io.vertx.junit5.VertxExtension;
-import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.io.TempDir;
 
-@ExtendWith({VertxExtension.class, MockitoExtension.class})
+/** Uploads against a minimal S3 stand-in serving path style put and multipart requests. */
+@ExtendWith({VertxExtension.class})
 public class S3FileOpsHelperTest {
-    @Mock
-    Regions clientRegion;
-    @Mock
-    File file;
-    String bucketName;
-    S3FileOpsHelper opsHelper;
-    String bucket;
-    String expected_error;
-
-    @BeforeEach
-    public void setUp(VertxTestContext vertxTestContext) {
-//        bucketName = "arn:/abcd:abcd:abcd:abcd:accesspoint:dummy/access/point.:abcd/abcd/:abcd/:abcd/:abcd/::abcd:abcdabcd:s3-object-lambda";
-        bucket = "arn:aws:s3:::examplebucket/developers/design_info.doc";
-        when(clientRegion.getName()).thenReturn("Dummy.client-region.3");
-        S3FileOpsHelper.fileInputStream = mock(FileInputStream.class);
-        opsHelper = new S3FileOpsHelper(clientRegion, bucket);
-        vertxTestContext.completeNow();
+  private static final String BUCKET = "exports";
+  private static final long PART_SIZE = 1024 * 1024;
+
+  private final Map<String, Buffer> objects = new ConcurrentHashMap<>();
+  private final Map<String, MultiMap> objectHeaders = new ConcurrentHashMap<>();
+  private final Map<String, Map<Integer, Buffer>> uploads = new ConcurrentHashMap<>();
+  private final Map<String, Integer> partCounts = new ConcurrentHashMap<>();
+
+  @TempDir Path tempDir;
+  HttpServer server;
+  S3FileOpsHelper opsHelper;
+
+  @BeforeEach
+  public void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+    vertx
+        .createHttpServer(new HttpServerOptions().setHandle100ContinueAutomatically(true))
+        .requestHandler(request -> request.body().onSuccess(body -> serve(request, body)))
+        .listen(0)
+        .onComplete(
+            vertxTestContext.succeeding(
+                httpServer -> {
+                  server = httpServer;
+                  opsHelper =
+                      new S3FileOpsHelper(client(httpServer.actualPort()), BUCKET, PART_SIZE, 4);
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @AfterEach
+  public void tearDown(VertxTestContext vertxTestContext) {
+    opsHelper.close();
+    server.close().onComplete(vertxTestContext.succeedingThenComplete());
+  }
+
+  private static AmazonS3 client(int port) {
+    return AmazonS3ClientBuilder.standard()
+        .withEndpointConfiguration(
+            new AwsClientBuilder.EndpointConfiguration("http://localhost:" + port, "ap-south-1"))
+        .withPathStyleAccessEnabled(true)
+        .withCredentials(
+            new AWSStaticCredentialsProvider(new BasicAWSCredentials("access", "secret")))
+        .disableChunkedEncoding()
+        .build();
+  }
+
+  private void serve(HttpServerRequest request, Buffer body) {
+    String path = request.path();
+    MultiMap params = request.params();
+    if (path.startsWith("/denied/")) {
+      request
+          .response()
+          .setStatusCode(403)
+          .end("<Error><Code>AccessDenied</Code><Message>denied</Message></Error>");
+    } else if (request.method() == HttpMethod.POST && params.contains("uploads")) {
+      String uploadId = UUID.randomUUID().toString();
+      uploads.put(uploadId, new ConcurrentSkipListMap<>());
+      objectHeaders.put(path, MultiMap.caseInsensitiveMultiMap().addAll(request.headers()));
+      request
+          .response()
+          .end(
+              "<InitiateMultipartUploadResult><Bucket>"
+                  + BUCKET
+                  + "</Bucket><Key>"
+                  + path
+                  + "</Key><UploadId>"
+                  + uploadId
+                  + "</UploadId></InitiateMultipartUploadResult>");
+    } else if (request.method() == HttpMethod.GET && params.contains("uploadId")) {
+      // parts already uploaded, listed before the parts are uploaded in parallel
+      request
+          .response()
+          .end(
+              "<ListPartsResult><Bucket>"
+                  + BUCKET
+                  + "</Bucket><UploadId>"
+                  + params.get("uploadId")
+                  + "</UploadId><IsTruncated>false</IsTruncated></ListPartsResult>");
+    } else if (request.method() == HttpMethod.PUT && params.contains("partNumber")) {
+      uploads.get(params.get("uploadId")).put(Integer.parseInt(params.get("partNumber")), body);
+      request.response().putHeader("ETag", md5(body)).end();
+    } else if (request.method() == HttpMethod.POST && params.contains("uploadId")) {
+      Map<Integer, Buffer> parts = uploads.remove(params.get("uploadId"));
+      Buffer object = Buffer.buffer();
+      parts.values().forEach(object::appendBuffer);
+      objects.put(path, object);
+      partCounts.put(path, parts.size());
+      request
+          .response()
+          .end(
+              "<CompleteMultipartUploadResult><Bucket>"
+                  + BUCKET
+                  + "</Bucket><Key>"
+                  + path
+                  + "</Key><ETag>"
+                  + md5(object)
+                  + "</ETag></CompleteMultipartUploadResult>");
+    } else if (request.method() == HttpMethod.PUT) {
+      objects.put(path, body);
+      objectHeaders.put(path, MultiMap.caseInsensitiveMultiMap().addAll(request.headers()));
+      request.response().putHeader("ETag", md5(body)).end();
+    } else {
+      request.response().setStatusCode(400).end();
     }
+  }
 
-    /**
-     * this test case fails due to SdkClientException
-     * which is caused by NULL access key and secret key
-     **/
-
-    @Test
-    @DisplayName("Test generatePreSignedUrl method : with SdkClientException")
-    public void test_generatePreSignedUrl_with_SdkClientException(VertxTestContext vertxTestContext) {
-        long expiryTimeMillis = 3032000;
-        String objectKey = "Dummy objectKey";
-        assertNotNull(opsHelper.generatePreSignedUrl(expiryTimeMillis, objectKey));
-        vertxTestContext.completeNow();
+  private static String md5(Buffer body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(body.getBytes());
+      return "\"" + String.format("%032x", new BigInteger(1, digest)) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
+  }
+
+  private File file(String name, int size) throws IOException {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    return Files.write(tempDir.resolve(name), content).toFile();
+  }
+
+  @Test
+  @DisplayName("Test s3Upload method : multipart upload completed on caller context")
+  public void testMultipartUpload(Vertx vertx, VertxTestContext vertxTestContext)
+      throws IOException {
+    File file = file("export.json.gz", (int) (3.5 * PART_SIZE));
+    Context context = vertx.getOrCreateContext();
+
+    context.runOnContext(
+        v ->
+            opsHelper.s3Upload(
+                file,
+                "object-1",
+                "export.json",
+                "gzip",
+                vertxTestContext.succeeding(
+                    result ->
+                        vertxTestContext.verify(
+                            () -> {
+                              assertSame(context, Vertx.currentContext());
+                              assertEquals("object-1", result.getString("object_id"));
+                              assertTrue(result.getString("s3_url").contains("object-1"));
+                              String path = "/" + BUCKET + "/object-1";
+                              assertEquals(4, partCounts.get(path));
+                              assertArrayEquals(
+                                  Files.readAllBytes(file.toPath()),
+                                  objects.get(path).getBytes());
+                              assertEquals(
+                                  "gzip", objectHeaders.get(path).get("Content-Encoding"));
+                              assertEquals(
+                                  "attachment; filename=export.json",
+                                  objectHeaders.get(path).get("Content-Disposition"));
+                              vertxTestContext.completeNow();
+                            }))));
+  }
+
+  @Test
+  @DisplayName("Test s3Upload method : small file uploaded in a single request")
+  public void testSingleUpload(VertxTestContext vertxTestContext) throws IOException {
+    File file = file("small.csv", 1024);
+
+    opsHelper.s3Upload(
+        file,
+        "object-2",
+        vertxTestContext.succeeding(
+            result ->
+                vertxTestContext.verify(
+                    () -> {
+                      String path = "/" + BUCKET + "/object-2";
+                      assertNull(partCounts.get(path));
+                      assertEquals(1024, objects.get(path).length());
+                      assertNull(objectHeaders.get(path).get("Content-Encoding"));
+                      vertxTestContext.completeNow();
+                    })));
+  }
+
+  @Test
+  @DisplayName("Test s3Upload method : failed upload fails the handler")
+  public void testFailedUpload(VertxTestContext vertxTestContext) throws IOException {
+    File file = file("denied.json", 1024);
+    S3FileOpsHelper deniedHelper =
+        new S3FileOpsHelper(client(server.actualPort()), "denied", PART_SIZE, 2);
+
+    deniedHelper.s3Upload(
+        file,
+        "object-3",
+        vertxTestContext.failing(
+            cause ->
+                vertxTestContext.verify(
+                    () -> {
+                      assertTrue(cause.getMessage().contains("AccessDenied"));
+                      deniedHelper.close();
+                      vertxTestContext.completeNow();
+                    })));
+  }
+
+  @Test
+  @DisplayName("Test generatePreSignedUrl method")
+  public void testGeneratePreSignedUrl(VertxTestContext vertxTestContext) {
+    URL url = opsHelper.generatePreSignedUrl(System.currentTimeMillis() + 60000, "object-4");
 
+    assertTrue(url.getPath().endsWith("/" + BUCKET + "/object-4"));
+    assertTrue(url.getQuery().contains("X-Amz-Signature"));
+    vertxTestContext.completeNow();
+  }
 }
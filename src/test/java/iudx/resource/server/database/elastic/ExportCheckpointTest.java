@@ -0,0 +1,80 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith({VertxExtension.class})
+public class ExportCheckpointTest {
+  @TempDir Path tempDir;
+
+  private ExportCheckpoint checkpoint(File file) {
+    return ExportCheckpoint.of(
+        file,
+        "pit-1",
+        300,
+        List.of("id", "location.coordinates.0"),
+        List.of(
+            new ExportCheckpoint.Slice(new JsonArray().add(41L), 10, 100),
+            new ExportCheckpoint.Slice(new JsonArray(), 0, 0)));
+  }
+
+  @Test
+  @DisplayName("Test checkpoint read back from its json")
+  public void testRoundTrip(VertxTestContext vertxTestContext) {
+    File file = tempDir.resolve("search.csv").toFile();
+    JsonObject json = new JsonObject(checkpoint(file).toJson().encode());
+
+    ExportCheckpoint checkpoint = new ExportCheckpoint(json);
+    assertEquals(file.getPath(), checkpoint.getFile());
+    assertEquals("pit-1", checkpoint.getPitId());
+    assertEquals(300, checkpoint.getTotalHits());
+    assertEquals(100, checkpoint.getDocs());
+    assertEquals(List.of("id", "location.coordinates.0"), checkpoint.getColumns());
+    assertEquals(2, checkpoint.getSliceCount());
+    assertEquals(41L, checkpoint.getSlice(0).getSearchAfter().get(0).longValue());
+    assertTrue(checkpoint.getSlice(1).getSearchAfter().isEmpty());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test export resumed only with its segments on disk")
+  public void testCanResume(VertxTestContext vertxTestContext) throws IOException {
+    File file = tempDir.resolve("search.csv").toFile();
+    ExportCheckpoint checkpoint = checkpoint(file);
+    assertFalse(checkpoint.canResume(file, "csv"));
+
+    Files.write(SlicedScrollExport.segment(file, 0).toPath(), new byte[8]);
+    Files.write(SlicedScrollExport.segment(file, 1).toPath(), new byte[0]);
+    assertFalse(checkpoint.canResume(file, "csv"));
+
+    Files.write(SlicedScrollExport.segment(file, 0).toPath(), new byte[12]);
+    assertTrue(checkpoint.canResume(file, "csv"));
+    assertFalse(checkpoint.canResume(file, "parquet"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test csv columns restored in their order")
+  public void testRestoreColumns(VertxTestContext vertxTestContext) {
+    CsvColumnDictionary columns = new CsvColumnDictionary();
+    columns.restore(List.of("id", "location.coordinates.0"));
+
+    assertEquals(1, columns.root().child("location").child("coordinates").child("0").column());
+    assertEquals(2, columns.root().child("observationDateTime").column());
+    assertEquals("id,location.coordinates.0,observationDateTime\n", columns.headerLine());
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,60 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class ExportCompressionTest {
+  private static final String CONTENT = "[{\"id\":\"a\",\"v\":1},\n{\"id\":\"b\",\"v\":2}]";
+
+  private static byte[] compress(ExportCompression compression) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = compression.wrap(bytes)) {
+      out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String read(InputStream in) throws IOException {
+    try (in) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  @DisplayName("Test gzip and zstd streams decode to the written content")
+  public void testRoundTrip(VertxTestContext vertxTestContext) throws IOException {
+    byte[] gzip = compress(ExportCompression.GZIP);
+    byte[] zstd = compress(ExportCompression.ZSTD);
+
+    assertEquals(CONTENT, read(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+    assertEquals(CONTENT, read(new ZstdInputStream(new ByteArrayInputStream(zstd))));
+    assertEquals(CONTENT, new String(compress(ExportCompression.NONE), StandardCharsets.UTF_8));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test codec from header value")
+  public void testOf(VertxTestContext vertxTestContext) {
+    assertEquals(ExportCompression.NONE, ExportCompression.of(null));
+    assertEquals(ExportCompression.NONE, ExportCompression.of("none"));
+    assertEquals(ExportCompression.GZIP, ExportCompression.of("gzip"));
+    assertEquals(".zst", ExportCompression.of("zstd").getExtension());
+    assertNull(ExportCompression.NONE.getContentEncoding());
+    assertThrows(IllegalArgumentException.class, () -> ExportCompression.of("br"));
+    vertxTestContext.completeNow();
+  }
+}
@@ -1,128 +1,87 @@
 package iudx.resource.server.database.elastic;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.Mockito.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.vertx.core.Vertx;
-import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
-import iudx.resource.server.configuration.Configuration;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.*;
-import org.junit.jupiter.api.BeforeEach;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
+import org.junit.jupiter.api.io.TempDir;
 
-@ExtendWith({MockitoExtension.class, VertxExtension.class})
+@ExtendWith({VertxExtension.class})
 public class TestEsResponseFormatterToCsv {
-    @Mock
-    FileWriter fileWriter;
-    private EsResponseFormatterToCsv responseFormatterToCsv;
-    private File file;
-    private Configuration configuration;
-    private JsonObject config;
-    @Mock
-    private List<Hit<ObjectNode>> searchHits;
-    @Mock
-    private Hit<ObjectNode> objectNodeHit;
-    @Mock
-    private ObjectNode objectNode;
-    private Set<String> stringSet;
-    private JsonFlatten jsonFlatten;
-    @Mock
-    private Map<String, Object> map;
-    private LinkedHashMap<String, Object> stringObjectMap;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
 
+  @TempDir Path tempDir;
 
-    @BeforeEach
-    public void setUp(VertxTestContext vertxTestContext)
-    {
-        configuration = new Configuration();
-        config = configuration.configLoader(8, Vertx.vertx());
-        String filePath = config.getString("filePath") + "dummy_file" + "." + "csv";
-        file = new File(filePath);
-        EsResponseFormatterToCsv.jsonFlatten = mock(JsonFlatten.class);
-        jsonFlatten = EsResponseFormatterToCsv.jsonFlatten;
-        EsResponseFormatterToCsv.map = mock(LinkedHashMap.class);
-        stringObjectMap = EsResponseFormatterToCsv.map;
-        stringSet = new HashSet<>(Arrays.asList("header1" ,"header2", "header3", "header4"));
-        lenient().when(searchHits.get(anyInt())).thenReturn(objectNodeHit);
-        lenient().when(objectNodeHit.source()).thenReturn(objectNode);
-        lenient().when(jsonFlatten.flatten()).thenReturn(stringObjectMap);
-        lenient().when(stringObjectMap.keySet()).thenReturn(stringSet);
-        responseFormatterToCsv = new EsResponseFormatterToCsv(file);
-        vertxTestContext.completeNow();
-    }
+  private static Hit<ObjectNode> hit(String json) throws IOException {
+    ObjectNode source = (ObjectNode) MAPPER.readTree(json);
+    return Hit.of(h -> h.index("index").id("id").source(source));
+  }
 
-    @Test
-    @DisplayName("Test method : Success")
-    public void testWriteMethod(VertxTestContext vertxTestContext)
-    {
-        responseFormatterToCsv.writeToCsv(searchHits);
-        verify(searchHits, times(1)).get(anyInt());
-        verify(jsonFlatten,times(1)).flatten();
-        verify(stringObjectMap,times(1)).keySet();
-        vertxTestContext.completeNow();
-    }
-    @Test
-    @DisplayName("Test method : Failure")
-    public void testWriteMethodFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.writeToCsv(searchHits);
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).write(anyString());
+  private static String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+  }
 
-        verify(searchHits, times(1)).get(anyInt());
-        verify(jsonFlatten,times(1)).flatten();
-        verify(stringObjectMap,times(1)).keySet();
+  @Test
+  @DisplayName("Test header covers columns that appear in later hits")
+  public void testSchemaGrowth(VertxTestContext vertxTestContext) throws IOException {
+    File file = tempDir.resolve("export.csv").toFile();
+    EsResponseFormatterToCsv formatter = new EsResponseFormatterToCsv(file);
 
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.writeToCsv(searchHits));
-        vertxTestContext.completeNow();
-    }
+    formatter.append(List.of(hit("{\"a\":1,\"b\":{\"c\":\"x,y\"}}")), false, null);
+    formatter.append(List.of(hit("{\"a\":2,\"d\":true,\"e\":null}")), true, null);
+    formatter.finish();
 
-    @Test
-    @DisplayName("Test finish method : Success")
-    public void testFinish(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        responseFormatterToCsv.finish();
-        verify(responseFormatterToCsv.fileWriter, times(1)).close();
-        vertxTestContext.completeNow();
-    }
-    @Test
-    @DisplayName("Test finish method : Failure")
-    public void testFinishFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).close();
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.finish());
-        verify(responseFormatterToCsv.fileWriter, times(1)).close();
-        vertxTestContext.completeNow();
-    }
+    assertEquals("a,b.c,d\n1,\"x,y\"\n2,,true\n", read(file));
+    assertFalse(tempDir.resolve("export.csv.rows").toFile().exists());
+    vertxTestContext.completeNow();
+  }
 
-    @Test
-    @DisplayName("Test appendToCsvFile method : Success")
-    public void testAppend(VertxTestContext vertxTestContext)
-    {
-        when(map.get(anyString())).thenReturn("dummy");
-        responseFormatterToCsv.appendToCsvFile(map,stringSet);
-        verify(map, times(stringSet.size())).get(anyString());
-        vertxTestContext.completeNow();
-    }
+  @Test
+  @DisplayName("Test arrays, quotes and new lines in values")
+  public void testFlattenValues(VertxTestContext vertxTestContext) throws IOException {
+    File file = tempDir.resolve("values.csv").toFile();
+    EsResponseFormatterToCsv formatter = new EsResponseFormatterToCsv(file);
 
-    @Test
-    @DisplayName("Test appendToCsvFile method : Failure")
-    public void testAppendFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        when(responseFormatterToCsv.fileWriter.append(anyString())).thenThrow(IOException.class);
-        when(map.get(anyString())).thenReturn("dummy");
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.appendToCsvFile(map,stringSet));
-        vertxTestContext.completeNow();
-    }
+    formatter.append(
+        List.of(hit("{\"loc\":{\"coordinates\":[73.8,18.5]},\"s\":\"say \\\"hi\\\"\\nbye\"}")),
+        false,
+        null);
+    formatter.finish();
+
+    assertEquals(
+        "loc.coordinates.0,loc.coordinates.1,s\n73.8,18.5,\"say \"\"hi\"\"\nbye\"\n", read(file));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test segments share columns and close writes no header")
+  public void testSharedColumns(VertxTestContext vertxTestContext) throws IOException {
+    CsvColumnDictionary columns = new CsvColumnDictionary();
+    File first = tempDir.resolve("segment0").toFile();
+    File second = tempDir.resolve("segment1").toFile();
+    EsResponseFormatterToCsv firstWriter = new EsResponseFormatterToCsv(first, columns);
+    EsResponseFormatterToCsv secondWriter = new EsResponseFormatterToCsv(second, columns);
+
+    firstWriter.append(List.of(hit("{\"a\":1}")), false, null);
+    secondWriter.append(List.of(hit("{\"b\":2,\"a\":3}")), false, null);
+    firstWriter.close();
+    secondWriter.close();
+
+    assertEquals("a,b\n", columns.headerLine());
+    assertEquals("1\n", read(first));
+    assertEquals("3,2\n", read(second));
+    vertxTestContext.completeNow();
+  }
 }
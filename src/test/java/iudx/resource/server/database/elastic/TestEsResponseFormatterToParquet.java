@@ -0,0 +1,121 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.api.ReadSupport;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+@ExtendWith({VertxExtension.class})
+public class TestEsResponseFormatterToParquet {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @TempDir Path tempDir;
+
+  private static Hit<ObjectNode> hit(String json) throws IOException {
+    ObjectNode source = (ObjectNode) MAPPER.readTree(json);
+    return Hit.of(h -> h.index("index").id("id").source(source));
+  }
+
+  private static List<Group> read(File file) throws IOException {
+    List<Group> records = new ArrayList<>();
+    try (ParquetReader<Group> reader =
+        new ParquetReader.Builder<Group>(
+            new LocalInputFile(file.toPath()), new PlainParquetConfiguration()) {
+          @Override
+          protected ReadSupport<Group> getReadSupport() {
+            return new GroupReadSupport();
+          }
+        }.withCodecFactory(ParquetZstdCodecFactory.INSTANCE).build()) {
+      for (Group record = reader.read(); record != null; record = reader.read()) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+
+  @Test
+  @DisplayName("Test typed columns written from flattened hits")
+  public void testTypedColumns(VertxTestContext vertxTestContext) throws IOException {
+    File file = tempDir.resolve("export.parquet").toFile();
+    EsResponseFormatterToParquet formatter = new EsResponseFormatterToParquet(file);
+
+    formatter.append(
+        List.of(
+            hit("{\"id\":\"a\",\"count\":1,\"level\":2.5,\"ok\":true,\"loc\":{\"c\":[1,2]}}"),
+            hit("{\"id\":\"b\",\"count\":2,\"level\":3.5,\"ok\":false}")),
+        false);
+    formatter.finish();
+
+    List<Group> records = read(file);
+    assertEquals(2, records.size());
+    MessageType schema = (MessageType) records.get(0).getType();
+    assertEquals(PrimitiveTypeName.INT32, schema.getType("count").asPrimitiveType()
+        .getPrimitiveTypeName());
+    assertEquals(PrimitiveTypeName.DOUBLE, schema.getType("level").asPrimitiveType()
+        .getPrimitiveTypeName());
+    assertEquals(2, records.get(0).getInteger("loc.c.1", 0));
+    assertEquals("b", records.get(1).getString("id", 0));
+    assertEquals(0, records.get(1).getFieldRepetitionCount("loc.c.0"));
+    assertFalse(tempDir.resolve("export.parquet.s0").toFile().exists());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test schema widened when later pages add columns and wider values")
+  public void testSchemaEvolution(VertxTestContext vertxTestContext) throws IOException {
+    File file = tempDir.resolve("evolved.parquet").toFile();
+    EsResponseFormatterToParquet formatter = new EsResponseFormatterToParquet(file);
+
+    formatter.append(List.of(hit("{\"v\":1,\"s\":\"x\"}")), false);
+    formatter.append(List.of(hit("{\"v\":5000000000,\"extra\":true}")), true);
+    formatter.append(List.of(hit("{\"v\":2,\"s\":7}")), true);
+    formatter.finish();
+
+    List<Group> records = read(file);
+    assertEquals(3, records.size());
+    MessageType schema = (MessageType) records.get(0).getType();
+    assertEquals(PrimitiveTypeName.INT64, schema.getType("v").asPrimitiveType()
+        .getPrimitiveTypeName());
+    assertEquals(1L, records.get(0).getLong("v", 0));
+    assertEquals("x", records.get(0).getString("s", 0));
+    assertEquals(5000000000L, records.get(1).getLong("v", 0));
+    assertTrue(records.get(1).getBoolean("extra", 0));
+    assertEquals("7", records.get(2).getString("s", 0));
+    assertFalse(tempDir.resolve("evolved.parquet.s1").toFile().exists());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test column type widening")
+  public void testWiden(VertxTestContext vertxTestContext) {
+    assertEquals(
+        EsResponseFormatterToParquet.ColumnType.LONG,
+        EsResponseFormatterToParquet.ColumnType.INT.widen(
+            EsResponseFormatterToParquet.ColumnType.LONG));
+    assertEquals(
+        EsResponseFormatterToParquet.ColumnType.STRING,
+        EsResponseFormatterToParquet.ColumnType.BOOLEAN.widen(
+            EsResponseFormatterToParquet.ColumnType.INT));
+    vertxTestContext.completeNow();
+  }
+}
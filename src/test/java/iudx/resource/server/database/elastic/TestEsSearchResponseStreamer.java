@@ -0,0 +1,106 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class TestEsSearchResponseStreamer {
+
+  private static final String RAW_RESPONSE =
+      "{\"took\":3,\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"},"
+          + "\"hits\":[{\"_source\":{\"id\":\"a\",\"nested\":{\"v\":[1,2]},\"s\":\"x}y\"}},"
+          + "{\"_source\":{\"id\":\"b\",\"unicode\":\"é\"}}]}}";
+
+  @Test
+  @DisplayName("Test streaming raw documents inside the search envelope")
+  public void testWriteTo(VertxTestContext vertxTestContext) throws IOException {
+    EsSearchResponseStreamer streamer =
+        EsSearchResponseStreamer.parse(Buffer.buffer(RAW_RESPONSE)).setPage(10, 0);
+    assertEquals(2L, streamer.getTotalHits());
+    assertEquals(2, streamer.getResultCount());
+    assertFalse(streamer.isTotalHitsLowerBound());
+
+    CollectingStream stream = new CollectingStream();
+    streamer
+        .writeTo(stream)
+        .onComplete(
+            vertxTestContext.succeeding(
+                v -> {
+                  JsonObject response = new JsonObject(stream.collected);
+                  assertEquals("urn:dx:rs:success", response.getString("type"));
+                  assertEquals(2, response.getJsonArray("results").size());
+                  assertEquals(
+                      "x}y", response.getJsonArray("results").getJsonObject(0).getString("s"));
+                  assertEquals(
+                      "b", response.getJsonArray("results").getJsonObject(1).getString("id"));
+                  assertEquals(10, response.getInteger("limit"));
+                  assertEquals(0, response.getInteger("offset"));
+                  assertEquals(2, response.getInteger("totalHits"));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test parsing a lower bound total and an empty hits array")
+  public void testParseLowerBound(VertxTestContext vertxTestContext) throws IOException {
+    String raw = "{\"took\":1,\"hits\":{\"total\":{\"value\":50000,\"relation\":\"gte\"}}}";
+    EsSearchResponseStreamer streamer = EsSearchResponseStreamer.parse(Buffer.buffer(raw));
+    assertEquals(50000L, streamer.getTotalHits());
+    assertTrue(streamer.isTotalHitsLowerBound());
+    assertEquals(0, streamer.getResultCount());
+    vertxTestContext.completeNow();
+  }
+
+  private static final class CollectingStream implements WriteStream<Buffer> {
+    private final Buffer collected = Buffer.buffer();
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      collected.appendBuffer(data);
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      collected.appendBuffer(data);
+      handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return false;
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import io.vertx.core.json.JsonArray;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class TestSearchCursor {
+
+  @Test
+  @DisplayName("Test cursor round trip through its encoded form")
+  public void testEncodeDecode(VertxTestContext vertxTestContext) {
+    List<FieldValue> sort = List.of(FieldValue.of(1697500800000L), FieldValue.of(42L));
+    String encoded = new SearchCursor("pit-id==", SearchCursor.toJson(sort)).encode();
+
+    SearchCursor decoded = SearchCursor.decode(encoded);
+    assertFalse(decoded.isStart());
+    assertEquals("pit-id==", decoded.getPitId());
+    assertEquals(1697500800000L, decoded.getSearchAfter().get(0).longValue());
+    assertEquals(42L, decoded.getSearchAfter().get(1).longValue());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test start cursor has no point in time")
+  public void testStartCursor(VertxTestContext vertxTestContext) {
+    SearchCursor cursor = SearchCursor.decode(SearchCursor.START);
+    assertTrue(cursor.isStart());
+    assertTrue(cursor.getSearchAfter().isEmpty());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test malformed cursor is rejected")
+  public void testMalformedCursor(VertxTestContext vertxTestContext) {
+    assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not-a-cursor"));
+    String incomplete = new SearchCursor("pit", new JsonArray()).encode();
+    assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(incomplete));
+    vertxTestContext.completeNow();
+  }
+}
@@ -3,12 +3,20 @@ package iudx.resource.server.databroker.listeners;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -29,6 +37,9 @@ import io.vertx.rabbitmq.RabbitMQClient;
 import io.vertx.rabbitmq.RabbitMQConsumer;
 import io.vertx.rabbitmq.RabbitMQMessage;
 import io.vertx.rabbitmq.RabbitMQOptions;
+import com.rabbitmq.client.Envelope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iudx.resource.server.database.async.AsyncJobScheduler;
 import iudx.resource.server.database.async.AsyncService;
 
 
@@ -54,13 +65,22 @@ public class TestAsyncQueryListener {
   RabbitMQMessage message;
   @Mock
   Throwable throwable;
+  @Mock
+  Envelope envelope;
 
 
   @BeforeEach
   public void setUp(VertxTestContext vertxTestContext) {
     vHost = "Dummy vHost";
-    asyncQueryListener = new AsyncQueryListener(vertx, config, vHost, asyncService);
+    AsyncJobScheduler scheduler = new AsyncJobScheduler(vertx, 1, 1000, new SimpleMeterRegistry());
+    asyncQueryListener = new AsyncQueryListener(vertx, config, vHost, asyncService, scheduler, 1);
     asyncQueryListener.client = mock(client.getClass());
+    lenient().when(asyncQueryListener.client.basicQos(anyInt())).thenReturn(Future.succeededFuture());
+    lenient()
+        .when(asyncQueryListener.client.basicAck(anyLong(), anyBoolean()))
+        .thenReturn(Future.succeededFuture());
+    lenient().when(message.envelope()).thenReturn(envelope);
+    lenient().when(envelope.getDeliveryTag()).thenReturn(1L);
     vertxTestContext.completeNow();
   }
 
@@ -85,7 +105,6 @@ public class TestAsyncQueryListener {
     AsyncResult<Void> clientStartAsyncResult = mock(AsyncResult.class);
     AsyncResult<RabbitMQConsumer> consumerASyncResult = mock(AsyncResult.class);
     RabbitMQConsumer rmqConsumer = mock(RabbitMQConsumer.class);
-    RabbitMQMessage message = mock(RabbitMQMessage.class);
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
@@ -123,7 +142,9 @@ public class TestAsyncQueryListener {
     asyncQueryListener.start();
     verify(voidFuture, times(1)).onComplete(any());
     verify(clientStartAsyncResult).succeeded();
-    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString());
+    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),any(),anyString(),anyString(),anyString());
+    verify(asyncQueryListener.client).basicQos(1);
+    verify(asyncQueryListener.client).basicAck(1L, false);
     verify(message).body();
     assertEquals(buffer, message.body());
     vertxTestContext.completeNow();
@@ -131,6 +152,151 @@ public class TestAsyncQueryListener {
   }
 
 
+  @Test
+  @DisplayName("Test resume method : orphaned query scheduled without ack")
+  public void test_resume(VertxTestContext vertxTestContext) {
+    JsonObject object = new JsonObject();
+    object.put("requestId", "dummy_key");
+    object.put("searchId", "Dummy_search_id");
+    object.put("user", "Dummy_value");
+    object.put("query", new JsonObject());
+    object.put("format", "csv");
+    object.put("role", "consumer");
+    object.put("drl", "");
+    object.put("did", "");
+
+    asyncQueryListener.resume(object);
+
+    verify(asyncService)
+        .asyncSearch(
+            "dummy_key",
+            "Dummy_value",
+            "Dummy_search_id",
+            new JsonObject(),
+            "csv",
+            null,
+            "consumer",
+            "",
+            "");
+    verify(asyncQueryListener.client, times(0)).basicAck(anyLong(), anyBoolean());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test resume method : query already running not scheduled again")
+  public void test_resume_running(VertxTestContext vertxTestContext) {
+    JsonObject object = new JsonObject();
+    object.put("requestId", "dummy_key");
+    object.put("searchId", "Dummy_search_id");
+    object.put("user", "Dummy_value");
+    object.put("query", new JsonObject());
+    object.put("format", "csv");
+    object.put("role", "consumer");
+    object.put("drl", "");
+    object.put("did", "");
+
+    asyncQueryListener.resume(object);
+    asyncQueryListener.resume(object);
+
+    verify(asyncService, times(1))
+        .asyncSearch(
+            anyString(), anyString(), anyString(), any(), anyString(), any(), anyString(),
+            anyString(), anyString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test default prefetch : queries of another user take a turn behind a busy user")
+  public void test_default_prefetch_fairness(VertxTestContext vertxTestContext) {
+    int maxRunningJobs = 4;
+    int prefetch = AsyncQueryListener.defaultPrefetch(maxRunningJobs);
+    AsyncJobScheduler scheduler =
+        new AsyncJobScheduler(vertx, maxRunningJobs, 1000, new SimpleMeterRegistry());
+    AsyncQueryListener listener =
+        new AsyncQueryListener(vertx, config, vHost, asyncService, scheduler, prefetch);
+    listener.client = mock(client.getClass());
+
+    // the queue as the broker holds it : one user submitted many queries before another
+    Deque<RabbitMQMessage> queue = new ArrayDeque<>();
+    for (int i = 0; i < 20; i++) {
+      queue.add(queryMessage(queue.size(), "busy-user", "busy-" + i));
+    }
+    queue.add(queryMessage(queue.size(), "other-user", "other-0"));
+    int[] unacked = {0};
+    List<Handler<RabbitMQMessage>> consumer = new ArrayList<>();
+    Runnable deliver =
+        () -> {
+          while (unacked[0] < prefetch && !queue.isEmpty()) {
+            unacked[0]++;
+            consumer.get(0).handle(queue.poll());
+          }
+        };
+    List<String> started = new ArrayList<>();
+    doAnswer(
+            arg0 -> {
+              started.add(arg0.getArgument(2));
+              return asyncService;
+            })
+        .when(asyncService)
+        .asyncSearch(
+            anyString(), anyString(), anyString(), any(), anyString(), any(), anyString(),
+            anyString(), anyString());
+    when(listener.client.start()).thenReturn(Future.succeededFuture());
+    when(listener.client.basicQos(prefetch)).thenReturn(Future.succeededFuture());
+    when(listener.client.basicAck(anyLong(), anyBoolean()))
+        .thenAnswer(
+            arg0 -> {
+              unacked[0]--;
+              return Future.succeededFuture();
+            });
+    RabbitMQConsumer rmqConsumer = mock(RabbitMQConsumer.class);
+    doAnswer(
+            arg0 -> {
+              consumer.add(arg0.getArgument(0));
+              return rmqConsumer;
+            })
+        .when(rmqConsumer)
+        .handler(any());
+    doAnswer(
+            arg0 -> {
+              ((Handler<AsyncResult<RabbitMQConsumer>>) arg0.getArgument(2))
+                  .handle(Future.succeededFuture(rmqConsumer));
+              return null;
+            })
+        .when(listener.client)
+        .basicConsumer(anyString(), any(), any());
+
+    listener.start();
+    deliver.run();
+    assertEquals(List.of("busy-0", "busy-1", "busy-2", "busy-3"), started);
+
+    scheduler.complete("busy-0");
+    deliver.run();
+    scheduler.complete("busy-1");
+    deliver.run();
+    assertEquals(List.of("busy-4", "other-0"), started.subList(4, 6));
+    vertxTestContext.completeNow();
+  }
+
+  private static RabbitMQMessage queryMessage(long deliveryTag, String user, String searchId) {
+    JsonObject query =
+        new JsonObject()
+            .put("requestId", searchId)
+            .put("searchId", searchId)
+            .put("user", user)
+            .put("query", new JsonObject())
+            .put("format", "csv")
+            .put("role", "consumer")
+            .put("drl", "")
+            .put("did", "");
+    RabbitMQMessage message = mock(RabbitMQMessage.class);
+    Envelope envelope = mock(Envelope.class);
+    when(message.body()).thenReturn(query.toBuffer());
+    when(message.envelope()).thenReturn(envelope);
+    when(envelope.getDeliveryTag()).thenReturn(deliveryTag);
+    return message;
+  }
+
   @Test
   @DisplayName("Test start method : with null message body")
   public void test_start_with_null_body(VertxTestContext vertxTestContext) {
@@ -139,7 +305,6 @@ public class TestAsyncQueryListener {
     AsyncResult<Void> clientStartAsyncResult = mock(AsyncResult.class);
     AsyncResult<RabbitMQConsumer> consumerASyncResult = mock(AsyncResult.class);
     RabbitMQConsumer rmqConsumer = mock(RabbitMQConsumer.class);
-    RabbitMQMessage message = mock(RabbitMQMessage.class);
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
@@ -215,7 +380,6 @@ public class TestAsyncQueryListener {
     AsyncResult<Void> clientStartAsyncResult = mock(AsyncResult.class);
     AsyncResult<RabbitMQConsumer> consumerASyncResult = mock(AsyncResult.class);
     RabbitMQConsumer rmqConsumer = mock(RabbitMQConsumer.class);
-    RabbitMQMessage message = mock(RabbitMQMessage.class);
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
@@ -253,7 +417,7 @@ public class TestAsyncQueryListener {
     asyncQueryListener.start();
     verify(voidFuture, times(1)).onComplete(any());
     verify(clientStartAsyncResult).succeeded();
-    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString());
+    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),any(),anyString(),anyString(),anyString());
     verify(message).body();
     assertEquals(buffer, message.body());
     vertxTestContext.completeNow();